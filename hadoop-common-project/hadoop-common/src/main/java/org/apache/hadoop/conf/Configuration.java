@@ -26,6 +26,7 @@
 import com.fasterxml.jackson.core.JsonGenerator;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.File;
@@ -85,6 +86,7 @@
 import javax.xml.transform.stream.StreamResult;
 
 import org.apache.commons.collections4.map.UnmodifiableMap;
+import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.classification.VisibleForTesting;
@@ -874,6 +876,25 @@ public Configuration(Configuration other) {
     setQuietMode(other.getQuietMode());
   }
 
+  /**
+   * Return an immutable snapshot of this configuration, for code which looks
+   * up the same properties many times. Deprecated keys and variables are
+   * resolved once, and the values are then read without locking. Changes
+   * made to this configuration afterwards are not seen by the snapshot, and
+   * the snapshot itself throws {@link UnsupportedOperationException} on any
+   * modification.
+   *
+   * The snapshot is always a plain {@link Configuration}, also when this is
+   * a subclass such as {@code JobConf}: the accessors and state of the
+   * subclass are not carried over, so it cannot be cast back to it. Code
+   * which needs them has to keep using the modifiable configuration.
+   *
+   * @return a frozen copy of this configuration.
+   */
+  public Configuration freeze() {
+    return new FrozenConfiguration(this);
+  }
+
   /**
    * Reload existing configuration instances.
    */
@@ -3113,8 +3134,8 @@ private Resource loadResource(Properties properties,
         overlay(properties, (Properties)resource);
       }
 
-      XMLStreamReader2 reader = getStreamReader(wrapper, quiet);
-      if (reader == null) {
+      List<ParsedItem> items = parseResource(wrapper, quiet);
+      if (items == null) {
         if (quiet) {
           return null;
         }
@@ -3125,12 +3146,26 @@ private Resource loadResource(Properties properties,
         toAddTo = new Properties();
       }
 
-      List<ParsedItem> items = new Parser(reader, wrapper, quiet).parse();
+      DeprecationContext deprecations = deprecationContext.get();
       for (ParsedItem item : items) {
-        loadProperty(toAddTo, item.name, item.key, item.value,
-            item.isFinal, item.sources);
+        // Read tags and put them in propertyTagsMap
+        if (item.tag != null) {
+          readTagFromConfig(item.tag, item.key, item.value, item.sources);
+        }
+        DeprecatedKeyInfo keyInfo =
+            deprecations.getDeprecatedKeyMap().get(item.key);
+        if (keyInfo != null) {
+          keyInfo.clearAccessed();
+          for (String key : keyInfo.newKeys) {
+            // update new keys with deprecated key's value
+            loadProperty(toAddTo, name, key, item.value, item.isFinal,
+                item.sources);
+          }
+        } else {
+          loadProperty(toAddTo, name, item.key, item.value, item.isFinal,
+              item.sources);
+        }
       }
-      reader.close();
 
       if (returnCachedProperties) {
         overlay(properties, toAddTo);
@@ -3146,6 +3181,76 @@ private Resource loadResource(Properties properties,
     }
   }
 
+  /**
+   * Parse the properties of a resource. The properties of URL, classpath and
+   * file resources are looked up in the {@link ConfigurationResourceCache}
+   * by the checksum of their content, and only parsed on a miss.
+   *
+   * @return the properties, or null if the resource does not exist.
+   */
+  private List<ParsedItem> parseResource(Resource wrapper, boolean quiet)
+      throws XMLStreamException, IOException {
+    Object resource = wrapper.getResource();
+    if (resource instanceof String) {
+      resource = getResource((String) resource);
+    }
+    byte[] content;
+    String systemId;
+    if (resource instanceof URL) {
+      URL url = (URL) resource;
+      if (!quiet && LOG.isDebugEnabled()) {
+        LOG.debug("parsing URL " + url);
+      }
+      URLConnection connection = url.openConnection();
+      if (connection instanceof JarURLConnection) {
+        // Disable caching for JarURLConnection to avoid sharing JarFile
+        // with other users.
+        connection.setUseCaches(false);
+      }
+      try (InputStream in = connection.getInputStream()) {
+        content = IOUtils.toByteArray(in);
+      }
+      systemId = url.toString();
+    } else if (resource instanceof Path) {
+      // Can't use FileSystem API or we get an infinite loop
+      // since FileSystem uses Configuration API.  Use java.io.File instead.
+      File file = new File(((Path)resource).toUri().getPath())
+        .getAbsoluteFile();
+      if (!file.exists()) {
+        return null;
+      }
+      if (!quiet) {
+        LOG.debug("parsing File " + file);
+      }
+      content = Files.readAllBytes(file.toPath());
+      systemId = resource.toString();
+    } else if (wrapper.getResource() instanceof InputStream) {
+      XMLStreamReader2 reader = getStreamReader(wrapper, quiet);
+      List<ParsedItem> items = new Parser(reader, wrapper, quiet).parse();
+      reader.close();
+      return items;
+    } else {
+      return null;
+    }
+
+    String key = ConfigurationResourceCache.getKey(wrapper.getName(),
+        wrapper.isParserRestricted(), content);
+    List<ParsedItem> items = ConfigurationResourceCache.get(key);
+    if (items == null) {
+      XMLStreamReader2 reader = (XMLStreamReader2) parse(
+          new ByteArrayInputStream(content), systemId,
+          wrapper.isParserRestricted());
+      Parser parser = new Parser(reader, wrapper, quiet);
+      items = parser.parse();
+      reader.close();
+      // the checksum does not cover the included resources
+      if (!parser.hasIncludes()) {
+        ConfigurationResourceCache.put(key, items);
+      }
+    }
+    return items;
+  }
+
   private XMLStreamReader2 getStreamReader(Resource wrapper, boolean quiet)
       throws XMLStreamException, IOException {
     Object resource = wrapper.getResource();
@@ -3176,19 +3281,23 @@ private XMLStreamReader2 getStreamReader(Resource wrapper, boolean quiet)
     return reader;
   }
 
-  private static class ParsedItem {
-    String name;
-    String key;
-    String value;
-    boolean isFinal;
-    String[] sources;
-
-    ParsedItem(String name, String key, String value,
-        boolean isFinal, String[] sources) {
-      this.name = name;
+  /**
+   * A property as read from a resource, before its tags are recorded and
+   * deprecated keys are mapped to their replacements.
+   */
+  static class ParsedItem {
+    final String key;
+    final String value;
+    final boolean isFinal;
+    final String tag;
+    final String[] sources;
+
+    ParsedItem(String key, String value, boolean isFinal, String tag,
+        String[] sources) {
       this.key = key;
       this.value = value;
       this.isFinal = isFinal;
+      this.tag = tag;
       this.sources = sources;
     }
   }
@@ -3204,8 +3313,6 @@ private class Parser {
     private final boolean isRestricted;
     private final boolean quiet;
 
-    DeprecationContext deprecations = deprecationContext.get();
-
     private StringBuilder token = new StringBuilder();
     private String confName = null;
     private String confValue = null;
@@ -3215,6 +3322,7 @@ private class Parser {
     private boolean fallbackAllowed = false;
     private boolean fallbackEntered = false;
     private boolean parseToken = false;
+    private boolean hasIncludes = false;
     private List<String> confSource = new ArrayList<>();
     private List<ParsedItem> results = new ArrayList<>();
 
@@ -3237,6 +3345,11 @@ List<ParsedItem> parse() throws IOException, XMLStreamException {
       return results;
     }
 
+    /** @return true if the resource includes other resources. */
+    boolean hasIncludes() {
+      return hasIncludes;
+    }
+
     private void handleStartElement() throws XMLStreamException, IOException {
       switch (reader.getLocalName()) {
       case "property":
@@ -3307,6 +3420,7 @@ private void handleInclude() throws XMLStreamException, IOException {
       if (confInclude == null) {
         return;
       }
+      hasIncludes = true;
       if (isRestricted) {
         throw new RuntimeException("Error parsing resource " + wrapper
             + ": XInclude is not supported for restricted resources");
@@ -3424,25 +3538,8 @@ void handleEndProperty() {
         confSourceArray = confSource.toArray(new String[confSource.size()]);
       }
 
-      // Read tags and put them in propertyTagsMap
-      if (confTag != null) {
-        readTagFromConfig(confTag, confName, confValue, confSourceArray);
-      }
-
-      DeprecatedKeyInfo keyInfo =
-          deprecations.getDeprecatedKeyMap().get(confName);
-
-      if (keyInfo != null) {
-        keyInfo.clearAccessed();
-        for (String key : keyInfo.newKeys) {
-          // update new keys with deprecated key's value
-          results.add(new ParsedItem(
-              name, key, confValue, confFinal, confSourceArray));
-        }
-      } else {
-        results.add(new ParsedItem(name, confName, confValue, confFinal,
-            confSourceArray));
-      }
+      results.add(new ParsedItem(confName, confValue, confFinal, confTag,
+          confSourceArray));
     }
 
     void parseNext() throws IOException, XMLStreamException {
@@ -0,0 +1,293 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.conf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.conf.Configuration.ParsedItem;
+import org.apache.hadoop.util.StringInterner;
+import org.apache.hadoop.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of the properties parsed from configuration resources, keyed by
+ * a checksum of the resource name and content, so that a resource is only
+ * parsed again when it changes.
+ *
+ * The properties are kept in memory for the lifetime of the JVM. If the
+ * system property {@value #CACHE_DIR_PROPERTY} names a directory, they are
+ * also written there in a compact binary form, which other JVMs map into
+ * memory instead of parsing the XML again. That directory must only be
+ * writable by the users of the cache, as its content is trusted.
+ */
+@InterfaceAudience.Private
+final class ConfigurationResourceCache {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(ConfigurationResourceCache.class);
+
+  /** System property with the directory of the binary cache. */
+  static final String CACHE_DIR_PROPERTY = "hadoop.conf.cache.dir";
+
+  /** Maximum number of resources kept in memory. */
+  static final int MAX_ENTRIES = 64;
+
+  private static final int MAGIC = 0x48434643;
+  private static final int VERSION = 1;
+  private static final String SUFFIX = ".bin";
+  /**
+   * Smallest size of a serialized property: the lengths of its key, value
+   * and tag, its final flag and its number of sources.
+   */
+  private static final int MIN_ITEM_BYTES = 4 + 4 + 4 + 1 + 4;
+
+  private static final ConcurrentHashMap<String, List<ParsedItem>> CACHE =
+      new ConcurrentHashMap<>();
+
+  private static final AtomicLong MEMORY_HITS = new AtomicLong();
+  private static final AtomicLong FILE_HITS = new AtomicLong();
+  private static final AtomicLong MISSES = new AtomicLong();
+
+  private ConfigurationResourceCache() {
+  }
+
+  /**
+   * @param name the name of the resource.
+   * @param restricted if the resource is parsed with the restricted parser.
+   * @param content the content of the resource.
+   * @return the cache key of the resource.
+   */
+  static String getKey(String name, boolean restricted, byte[] content) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    digest.update(name.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) (restricted ? 1 : 0));
+    digest.update(content);
+    return StringUtils.byteToHexString(digest.digest());
+  }
+
+  /**
+   * @param key the cache key of a resource.
+   * @return the cached properties of the resource, or null.
+   */
+  static List<ParsedItem> get(String key) {
+    List<ParsedItem> items = CACHE.get(key);
+    if (items != null) {
+      MEMORY_HITS.incrementAndGet();
+      return items;
+    }
+    File dir = getCacheDir();
+    if (dir != null) {
+      items = read(new File(dir, key + SUFFIX));
+      if (items != null) {
+        FILE_HITS.incrementAndGet();
+        cache(key, items);
+        return items;
+      }
+    }
+    MISSES.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Cache the properties parsed from a resource.
+   * @param key the cache key of the resource.
+   * @param items the properties of the resource.
+   */
+  static void put(String key, List<ParsedItem> items) {
+    cache(key, items);
+    File dir = getCacheDir();
+    if (dir != null) {
+      write(new File(dir, key + SUFFIX), items);
+    }
+  }
+
+  private static void cache(String key, List<ParsedItem> items) {
+    if (CACHE.size() >= MAX_ENTRIES) {
+      // resources rewritten over and over, start again
+      CACHE.clear();
+    }
+    CACHE.put(key, items);
+  }
+
+  private static File getCacheDir() {
+    String dir = System.getProperty(CACHE_DIR_PROPERTY);
+    if (dir == null || dir.isEmpty()) {
+      return null;
+    }
+    File file = new File(dir);
+    return file.isDirectory() ? file : null;
+  }
+
+  private static List<ParsedItem> read(File file) {
+    if (!file.isFile()) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(file.toPath(),
+        StandardOpenOption.READ)) {
+      ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          channel.size());
+      if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+        LOG.debug("Ignoring {} with an unknown format", file);
+        return null;
+      }
+      int count = checkCount(buf.getInt(), MIN_ITEM_BYTES, buf);
+      List<ParsedItem> items = new ArrayList<>(count);
+      String[] lastSources = null;
+      for (int i = 0; i < count; i++) {
+        String key = readString(buf);
+        String value = readString(buf);
+        boolean isFinal = buf.get() != 0;
+        String tag = readString(buf);
+        String[] sources = new String[checkCount(buf.getInt(), 4, buf)];
+        for (int j = 0; j < sources.length; j++) {
+          sources[j] = readString(buf);
+        }
+        // most properties of a resource share the same sources
+        if (Arrays.equals(sources, lastSources)) {
+          sources = lastSources;
+        }
+        lastSources = sources;
+        items.add(new ParsedItem(key, value, isFinal, tag, sources));
+      }
+      return items;
+    } catch (IOException | RuntimeException e) {
+      LOG.debug("Failed to read cached configuration {}", file, e);
+      return null;
+    }
+  }
+
+  /**
+   * Check a count read from a cache file against what is left of it, so
+   * that a corrupt file is a cache miss rather than a huge allocation.
+   *
+   * @param count the count read.
+   * @param minBytes the smallest size of each counted element.
+   * @param buf the rest of the file.
+   * @return the count.
+   * @throws IOException if the count cannot fit in the rest of the file.
+   */
+  private static int checkCount(int count, int minBytes, ByteBuffer buf)
+      throws IOException {
+    if (count < 0 || count > buf.remaining() / minBytes) {
+      throw new IOException("Invalid count " + count + " with "
+          + buf.remaining() + " bytes left");
+    }
+    return count;
+  }
+
+  private static String readString(ByteBuffer buf) throws IOException {
+    int length = buf.getInt();
+    if (length == -1) {
+      return null;
+    }
+    byte[] bytes = new byte[checkCount(length, 1, buf)];
+    buf.get(bytes);
+    return StringInterner.weakIntern(
+        new String(bytes, StandardCharsets.UTF_8));
+  }
+
+  private static void write(File file, List<ParsedItem> items) {
+    File tmp = null;
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(items.size());
+      for (ParsedItem item : items) {
+        writeString(out, item.key);
+        writeString(out, item.value);
+        out.writeByte(item.isFinal ? 1 : 0);
+        writeString(out, item.tag);
+        out.writeInt(item.sources.length);
+        for (String source : item.sources) {
+          writeString(out, source);
+        }
+      }
+      out.flush();
+      // readers only ever see complete files
+      tmp = File.createTempFile(file.getName(), ".tmp",
+          file.getParentFile());
+      Files.write(tmp.toPath(), bytes.toByteArray());
+      Files.move(tmp.toPath(), file.toPath(),
+          StandardCopyOption.ATOMIC_MOVE);
+      tmp = null;
+    } catch (IOException | RuntimeException e) {
+      LOG.debug("Failed to cache configuration in {}", file, e);
+    } finally {
+      if (tmp != null && !tmp.delete()) {
+        LOG.debug("Failed to delete {}", tmp);
+      }
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String s)
+      throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  @VisibleForTesting
+  static void clear() {
+    CACHE.clear();
+  }
+
+  @VisibleForTesting
+  static long getMemoryHits() {
+    return MEMORY_HITS.get();
+  }
+
+  @VisibleForTesting
+  static long getFileHits() {
+    return FILE_HITS.get();
+  }
+
+  @VisibleForTesting
+  static long getMisses() {
+    return MISSES.get();
+  }
+}
@@ -0,0 +1,330 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.conf;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.StringUtils;
+
+/**
+ * An immutable snapshot of a {@link Configuration}, returned by
+ * {@link Configuration#freeze()}.
+ *
+ * The values of the properties are resolved once: deprecated keys are
+ * mapped to their replacements and variables are expanded when the snapshot
+ * is taken, or on the first lookup of a name which was not set. The resolved
+ * values are kept in a map which is read without locking, and the parsed
+ * values of {@link #getInt}, {@link #getLong}, {@link #getBoolean} and
+ * {@link #getTimeDuration} are cached per name.
+ *
+ * As a consequence, later changes of system properties, environment
+ * variables, deprecations or default resources are not seen by the
+ * snapshot. Any attempt to modify it throws
+ * {@link UnsupportedOperationException}; use
+ * {@link Configuration#Configuration(Configuration)} to get a modifiable
+ * copy. Only the properties are copied, the type and the state of a
+ * subclass of {@link Configuration} are not.
+ */
+@InterfaceAudience.Private
+final class FrozenConfiguration extends Configuration {
+
+  private final ConcurrentHashMap<String, String> values =
+      new ConcurrentHashMap<>();
+  /** Names looked up which are not set. */
+  private final Set<String> unset = ConcurrentHashMap.newKeySet();
+  private final ConcurrentHashMap<String, Integer> ints =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Long> longs =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Boolean> booleans =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, TimeDuration> durations =
+      new ConcurrentHashMap<>();
+
+  /** A time duration as set, in its own unit if it had a suffix. */
+  private static final class TimeDuration {
+    private final long raw;
+    private final ParsedTimeDuration unit;
+
+    private TimeDuration(long raw, ParsedTimeDuration unit) {
+      this.raw = raw;
+      this.unit = unit;
+    }
+  }
+
+  FrozenConfiguration(Configuration other) {
+    super(other);
+    for (String name : getProps().stringPropertyNames()) {
+      // deprecated names are resolved, and warned about, when looked up
+      if (isDeprecated(name)) {
+        continue;
+      }
+      try {
+        get(name);
+      } catch (IllegalStateException e) {
+        // a substitution loop, the lookup of the name fails the same way
+      }
+    }
+  }
+
+  @Override
+  public Configuration freeze() {
+    return this;
+  }
+
+  @Override
+  public String get(String name) {
+    String value = values.get(name);
+    if (value == null && !unset.contains(name)) {
+      value = super.get(name);
+      if (value == null) {
+        unset.add(name);
+      } else {
+        values.put(name, value);
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public String get(String name, String defaultValue) {
+    String value = get(name);
+    if (value != null) {
+      return value;
+    }
+    if (defaultValue == null || !defaultValue.contains("${")) {
+      return defaultValue;
+    }
+    // the default value needs variable expansion
+    return super.get(name, defaultValue);
+  }
+
+  @Override
+  public int getInt(String name, int defaultValue) {
+    Integer value = ints.get(name);
+    if (value == null) {
+      if (get(name) == null) {
+        return defaultValue;
+      }
+      // invalid values are not cached, so they throw on every lookup
+      value = super.getInt(name, defaultValue);
+      ints.put(name, value);
+    }
+    return value;
+  }
+
+  @Override
+  public long getLong(String name, long defaultValue) {
+    Long value = longs.get(name);
+    if (value == null) {
+      if (get(name) == null) {
+        return defaultValue;
+      }
+      value = super.getLong(name, defaultValue);
+      longs.put(name, value);
+    }
+    return value;
+  }
+
+  @Override
+  public boolean getBoolean(String name, boolean defaultValue) {
+    Boolean value = booleans.get(name);
+    if (value == null) {
+      String valueString = getTrimmed(name);
+      if (StringUtils.equalsIgnoreCase("true", valueString)) {
+        value = Boolean.TRUE;
+      } else if (StringUtils.equalsIgnoreCase("false", valueString)) {
+        value = Boolean.FALSE;
+      } else {
+        // unset or invalid, which falls back to the default value
+        return super.getBoolean(name, defaultValue);
+      }
+      booleans.put(name, value);
+    }
+    return value;
+  }
+
+  @Override
+  public long getTimeDuration(String name, long defaultValue,
+      TimeUnit defaultUnit, TimeUnit returnUnit) {
+    TimeDuration duration = getTimeDuration(name);
+    if (duration == null) {
+      return returnUnit.convert(defaultValue, defaultUnit);
+    }
+    return convert(name, duration, defaultUnit, returnUnit);
+  }
+
+  @Override
+  public long getTimeDuration(String name, String defaultValue,
+      TimeUnit defaultUnit, TimeUnit returnUnit) {
+    TimeDuration duration = getTimeDuration(name);
+    if (duration == null) {
+      return super.getTimeDuration(name, defaultValue, defaultUnit,
+          returnUnit);
+    }
+    return convert(name, duration, defaultUnit, returnUnit);
+  }
+
+  private TimeDuration getTimeDuration(String name) {
+    TimeDuration duration = durations.get(name);
+    if (duration == null) {
+      String vStr = get(name);
+      if (vStr == null) {
+        return null;
+      }
+      vStr = StringUtils.toLowerCase(vStr.trim());
+      ParsedTimeDuration unit = ParsedTimeDuration.unitFor(vStr);
+      if (unit != null) {
+        vStr = vStr.substring(0, vStr.lastIndexOf(unit.suffix()));
+      }
+      duration = new TimeDuration(Long.parseLong(vStr), unit);
+      durations.put(name, duration);
+    }
+    return duration;
+  }
+
+  private long convert(String name, TimeDuration duration,
+      TimeUnit defaultUnit, TimeUnit returnUnit) {
+    ParsedTimeDuration vUnit = duration.unit != null
+        ? duration.unit : ParsedTimeDuration.unitFor(defaultUnit);
+    long converted = returnUnit.convert(duration.raw, vUnit.unit());
+    if (vUnit.unit().convert(converted, returnUnit) < duration.raw) {
+      logDeprecation("Possible loss of precision converting " + duration.raw
+          + vUnit.suffix() + " to " + returnUnit + " for " + name);
+    }
+    return converted;
+  }
+
+  /**
+   * Default resources added after the snapshot was taken are ignored.
+   */
+  @Override
+  public synchronized void reloadConfiguration() {
+  }
+
+  @Override
+  public void set(String name, String value, String source) {
+    throw immutable();
+  }
+
+  @Override
+  public synchronized void unset(String name) {
+    throw immutable();
+  }
+
+  @Override
+  public void clear() {
+    throw immutable();
+  }
+
+  @Override
+  public void setDeprecatedProperties() {
+    throw immutable();
+  }
+
+  @Override
+  public void setAllowNullValueProperties(boolean val) {
+    throw immutable();
+  }
+
+  @Override
+  public void setRestrictSystemProps(boolean val) {
+    throw immutable();
+  }
+
+  @Override
+  public void setRestrictSystemProperties(boolean val) {
+    throw immutable();
+  }
+
+  @Override
+  public void addResource(String name) {
+    throw immutable();
+  }
+
+  @Override
+  public void addResource(String name, boolean restrictedParser) {
+    throw immutable();
+  }
+
+  @Override
+  public void addResource(URL url) {
+    throw immutable();
+  }
+
+  @Override
+  public void addResource(URL url, boolean restrictedParser) {
+    throw immutable();
+  }
+
+  @Override
+  public void addResource(Path file) {
+    throw immutable();
+  }
+
+  @Override
+  public void addResource(Path file,
+      boolean restrictedParser) {
+    throw immutable();
+  }
+
+  @Override
+  public void addResource(InputStream in) {
+    throw immutable();
+  }
+
+  @Override
+  public void addResource(InputStream in, boolean restrictedParser) {
+    throw immutable();
+  }
+
+  @Override
+  public void addResource(InputStream in, String name) {
+    throw immutable();
+  }
+
+  @Override
+  public void addResource(InputStream in, String name,
+      boolean restrictedParser) {
+    throw immutable();
+  }
+
+  @Override
+  public void addResource(Configuration conf) {
+    throw immutable();
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    throw immutable();
+  }
+
+  private static UnsupportedOperationException immutable() {
+    return new UnsupportedOperationException(
+        "The configuration is frozen and cannot be modified");
+  }
+}
@@ -78,6 +78,44 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
   public static final int IPC_SERVER_RPC_READ_CONNECTION_QUEUE_SIZE_DEFAULT =
       100;
 
+  /** Whether the RPC server reuses the buffers of requests and responses. */
+  public static final String IPC_SERVER_BUFFER_POOL_ENABLED_KEY =
+      "ipc.server.buffer.pool.enabled";
+  /** Default value for IPC_SERVER_BUFFER_POOL_ENABLED_KEY. */
+  public static final boolean IPC_SERVER_BUFFER_POOL_ENABLED_DEFAULT = false;
+  /** Whether the pooled buffers of the RPC server are direct buffers. */
+  public static final String IPC_SERVER_BUFFER_POOL_DIRECT_KEY =
+      "ipc.server.buffer.pool.direct";
+  /** Default value for IPC_SERVER_BUFFER_POOL_DIRECT_KEY. */
+  public static final boolean IPC_SERVER_BUFFER_POOL_DIRECT_DEFAULT = false;
+  /** Size of the largest buffers pooled by the RPC server. */
+  public static final String IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_KEY =
+      "ipc.server.buffer.pool.max.buffer.size";
+  /** Default value for IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_KEY. */
+  public static final int IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_DEFAULT =
+      1024 * 1024;
+  /** Max number of bytes kept by the buffer pool of the RPC server. */
+  public static final String IPC_SERVER_BUFFER_POOL_CAPACITY_KEY =
+      "ipc.server.buffer.pool.capacity";
+  /** Default value for IPC_SERVER_BUFFER_POOL_CAPACITY_KEY. */
+  public static final long IPC_SERVER_BUFFER_POOL_CAPACITY_DEFAULT =
+      64 * 1024 * 1024;
+
+  /**
+   * Number of responder threads of the RPC server. Each connection is
+   * assigned to the responder of its reader.
+   */
+  public static final String IPC_SERVER_RESPONDER_COUNT_KEY =
+      "ipc.server.responder.count";
+  /** Default value for IPC_SERVER_RESPONDER_COUNT_KEY. */
+  public static final int IPC_SERVER_RESPONDER_COUNT_DEFAULT = 1;
+
+  /** Max number of requests a reader reads from a connection at a time. */
+  public static final String IPC_SERVER_RPC_READ_BATCH_SIZE_KEY =
+      "ipc.server.read.batch.size";
+  /** Default value for IPC_SERVER_RPC_READ_BATCH_SIZE_KEY. */
+  public static final int IPC_SERVER_RPC_READ_BATCH_SIZE_DEFAULT = 1;
+
   /** Max request size a server will accept. */
   public static final String IPC_MAXIMUM_DATA_LENGTH =
       "ipc.maximum.data.length";
@@ -184,6 +222,26 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
   public static final boolean IO_COMPRESSION_CODEC_LZ4_USELZ4HC_DEFAULT =
       false;
 
+  /**
+   * Number of threads compressing the output streams of codecs that support
+   * concatenated streams, see
+   * {@link org.apache.hadoop.io.compress.ParallelCompressorStream}.
+   * 0 or 1 compresses on the writer's thread.
+   */
+  public static final String IO_COMPRESSION_PARALLEL_THREADS_KEY =
+      "io.compression.parallel.threads";
+
+  /** Default value for IO_COMPRESSION_PARALLEL_THREADS_KEY */
+  public static final int IO_COMPRESSION_PARALLEL_THREADS_DEFAULT = 0;
+
+  /** Size of the uncompressed blocks compressed in parallel */
+  public static final String IO_COMPRESSION_PARALLEL_BLOCK_SIZE_KEY =
+      "io.compression.parallel.block.size";
+
+  /** Default value for IO_COMPRESSION_PARALLEL_BLOCK_SIZE_KEY */
+  public static final int IO_COMPRESSION_PARALLEL_BLOCK_SIZE_DEFAULT =
+      1024 * 1024;
+
 
 
   /**
@@ -355,6 +413,13 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
   public static final String  IPC_CLIENT_ASYNC_CALLS_MAX_KEY =
       "ipc.client.async.calls.max";
   public static final int     IPC_CLIENT_ASYNC_CALLS_MAX_DEFAULT = 100;
+  /**
+   * Maximum number of queued requests the sending thread of a connection
+   * writes and flushes together. 1 sends each request on its own.
+   */
+  public static final String  IPC_CLIENT_SEND_BATCH_SIZE_KEY =
+      "ipc.client.send.batch.size";
+  public static final int     IPC_CLIENT_SEND_BATCH_SIZE_DEFAULT = 1;
   public static final String  IPC_CLIENT_FALLBACK_TO_SIMPLE_AUTH_ALLOWED_KEY = "ipc.client.fallback-to-simple-auth-allowed";
   public static final boolean IPC_CLIENT_FALLBACK_TO_SIMPLE_AUTH_ALLOWED_DEFAULT = false;
 
@@ -379,6 +444,13 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
   public static final String RPC_METRICS_QUANTILE_ENABLE =
       "rpc.metrics.quantile.enable";
   public static final boolean RPC_METRICS_QUANTILE_ENABLE_DEFAULT = false;
+  /**
+   * If the rpc percentile metrics are computed from high-resolution
+   * histograms, which are also exported as cumulative buckets.
+   */
+  public static final String RPC_METRICS_HISTOGRAM_ENABLE =
+      "rpc.metrics.histogram.enable";
+  public static final boolean RPC_METRICS_HISTOGRAM_ENABLE_DEFAULT = false;
   public static final String  RPC_METRICS_PERCENTILES_INTERVALS_KEY =
       "rpc.metrics.percentiles.intervals";
 
@@ -1079,6 +1079,49 @@ public class CommonConfigurationKeysPublic {
       "hadoop.prometheus.endpoint.enabled";
   public static final boolean HADOOP_PROMETHEUS_ENABLED_DEFAULT = false;
 
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String HADOOP_SAMPLING_PROFILER_ENABLED_KEY =
+      "hadoop.sampling.profiler.enabled";
+  public static final boolean HADOOP_SAMPLING_PROFILER_ENABLED_DEFAULT = false;
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String HADOOP_SAMPLING_PROFILER_INTERVAL_MS_KEY =
+      "hadoop.sampling.profiler.interval.ms";
+  public static final long HADOOP_SAMPLING_PROFILER_INTERVAL_MS_DEFAULT = 100;
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String HADOOP_SAMPLING_PROFILER_WINDOW_SEC_KEY =
+      "hadoop.sampling.profiler.window.sec";
+  public static final long HADOOP_SAMPLING_PROFILER_WINDOW_SEC_DEFAULT = 300;
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String HADOOP_SAMPLING_PROFILER_THREADS_KEY =
+      "hadoop.sampling.profiler.threads";
+  public static final String HADOOP_SAMPLING_PROFILER_THREADS_DEFAULT =
+      "IPC Server handler.*|DataXceiver.*|.*[Ss]cheduler.*";
+  /**
+   * @see
+   * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
+   * core-default.xml</a>
+   */
+  public static final String HADOOP_SAMPLING_PROFILER_LOCK_MIN_WAIT_US_KEY =
+      "hadoop.sampling.profiler.lock.min.wait.us";
+  public static final long HADOOP_SAMPLING_PROFILER_LOCK_MIN_WAIT_US_DEFAULT =
+      100;
+
   /**
    * @see
    * <a href="{@docRoot}/../hadoop-project-dist/hadoop-common/core-default.xml">
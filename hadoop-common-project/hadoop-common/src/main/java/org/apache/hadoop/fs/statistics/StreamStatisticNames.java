@@ -475,6 +475,34 @@ public final class StreamStatisticNames {
   public static final String STREAM_FILE_CACHE_EVICTION
       = "stream_file_cache_eviction";
 
+  /**
+   * Count of stripes of an erasure coded file read from the DataNodes.
+   * Value: {@value}.
+   */
+  public static final String STREAM_READ_EC_STRIPES
+      = "stream_read_ec_stripes";
+
+  /**
+   * count/duration of decoding the missing cells of an erasure coded file.
+   * Value: {@value}.
+   */
+  public static final String STREAM_READ_EC_DECODE
+      = "stream_read_ec_decode";
+
+  /**
+   * Count of parity cells read because a data cell was slow to read.
+   * Value: {@value}.
+   */
+  public static final String STREAM_READ_EC_SPECULATIVE_READS
+      = "stream_read_ec_speculative_reads";
+
+  /**
+   * Count of seeks served from the stripes read ahead.
+   * Value: {@value}.
+   */
+  public static final String STREAM_READ_EC_STRIPE_CACHE_HITS
+      = "stream_read_ec_stripe_cache_hits";
+
   private StreamStatisticNames() {
   }
 
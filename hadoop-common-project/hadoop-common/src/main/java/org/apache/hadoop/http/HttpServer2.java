@@ -86,6 +86,7 @@
 import org.apache.hadoop.security.ssl.SSLFactory;
 import org.apache.hadoop.util.Lists;
 import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.SamplingProfiler;
 import org.apache.hadoop.util.Shell;
 import org.apache.hadoop.util.StringUtils;
 import org.eclipse.jetty.http.HttpVersion;
@@ -213,6 +214,9 @@ public final class HttpServer2 implements FilterContainer {
           Pattern.compile(HTTP_HEADER_REGEX);
 
   private boolean prometheusSupport;
+  /** Configuration of the sampling profiler, null if it is disabled. */
+  private Configuration samplingProfilerConf;
+  private boolean samplingProfilerStarted;
   protected static final String PROMETHEUS_SINK = "PROMETHEUS_SINK";
   private PrometheusMetricsSink prometheusMetricsSink;
 
@@ -792,6 +796,7 @@ private void initializeWebServer(String name, String hostName,
 
     addDefaultServlets(conf);
     addPrometheusServlet(conf);
+    addSamplingProfilerServlet(conf);
     addAsyncProfilerServlet(contexts, conf);
   }
 
@@ -828,6 +833,15 @@ private void addPrometheusServlet(Configuration conf) {
     }
   }
 
+  private void addSamplingProfilerServlet(Configuration conf) {
+    if (conf.getBoolean(
+        CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_ENABLED_KEY,
+        CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_ENABLED_DEFAULT)) {
+      samplingProfilerConf = conf;
+      addServlet("sampler", "/sampler", SamplingProfilerServlet.class);
+    }
+  }
+
   private void addListener(ServerConnector connector) {
     listeners.add(connector);
   }
@@ -1405,6 +1419,10 @@ public void start() throws IOException {
               .register("prometheus", "Hadoop metrics prometheus exporter",
                   prometheusMetricsSink);
         }
+        if (samplingProfilerConf != null && !samplingProfilerStarted) {
+          SamplingProfiler.acquire(samplingProfilerConf);
+          samplingProfilerStarted = true;
+        }
         if (statsHandler != null) {
           // Create metrics source for each HttpServer2 instance.
           // Use port number to make the metrics source name unique.
@@ -1607,6 +1625,11 @@ public void stop() throws Exception {
       exception = addMultiException(exception, e);
     }
 
+    if (samplingProfilerStarted) {
+      SamplingProfiler.release();
+      samplingProfilerStarted = false;
+    }
+
     try {
       webServer.stop();
       if (metrics != null) {
@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.http;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.util.SamplingProfiler;
+
+/**
+ * Servlet serving the collapsed stacks of the built-in
+ * {@link SamplingProfiler}, ready for flame graph tools.
+ * <p>
+ * The <code>view</code> parameter selects the stacks:
+ * <ul>
+ *   <li><code>wall</code>: the sampled threads in any state, the default.
+ *   </li>
+ *   <li><code>runnable</code>: the sampled threads which were runnable.</li>
+ *   <li><code>lock</code>: the waits for the instrumented locks by lock
+ *   site, in microseconds.</li>
+ * </ul>
+ */
+@InterfaceAudience.Private
+public class SamplingProfilerServlet extends HttpServlet {
+  private static final long serialVersionUID = 1L;
+
+  static final String VIEW_PARAM = "view";
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+      throws IOException {
+    if (!HttpServer2.isInstrumentationAccessAllowed(getServletContext(),
+        req, resp)) {
+      return;
+    }
+    SamplingProfiler profiler = SamplingProfiler.get();
+    if (profiler == null) {
+      resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+          "The sampling profiler is not running");
+      return;
+    }
+    String view = req.getParameter(VIEW_PARAM);
+    String stacks;
+    if (view == null || view.equals("wall")) {
+      stacks = profiler.getWallClockStacks();
+    } else if (view.equals("runnable")) {
+      stacks = profiler.getRunnableStacks();
+    } else if (view.equals("lock")) {
+      stacks = profiler.getLockContention();
+    } else {
+      resp.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "Unknown view, expected wall, runnable or lock");
+      return;
+    }
+    resp.setContentType("text/plain; charset=UTF-8");
+    PrintWriter out = resp.getWriter();
+    out.print(stacks);
+    out.flush();
+  }
+}
@@ -23,6 +23,7 @@
 import java.util.*;
 import java.rmi.server.UID;
 import java.security.MessageDigest;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.util.Options;
@@ -36,6 +37,7 @@
 import org.apache.hadoop.io.compress.Compressor;
 import org.apache.hadoop.io.compress.Decompressor;
 import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.io.compress.ZStandardCodec;
 import org.apache.hadoop.io.serializer.Deserializer;
 import org.apache.hadoop.io.serializer.Serializer;
 import org.apache.hadoop.io.serializer.SerializationFactory;
@@ -48,6 +50,9 @@
 import org.apache.hadoop.util.MergeSort;
 import org.apache.hadoop.util.PriorityQueue;
 import org.apache.hadoop.util.Time;
+import org.apache.hadoop.thirdparty.com.google.common.cache.Cache;
+import org.apache.hadoop.thirdparty.com.google.common.cache.CacheBuilder;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.UncheckedExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -228,6 +233,36 @@ private SequenceFile() {}                         // no public ctor
    */
   public static final int SYNC_INTERVAL = 5 * 1024 * SYNC_SIZE; // 5KB*(16+4)
 
+  /**
+   * The metadata key holding the Base64 encoded dictionary the file was
+   * compressed with, see {@link Writer#compressionDictionary(byte[])}.
+   */
+  public static final String COMPRESSION_DICTIONARY_KEY =
+      "sequencefile.compression.dictionary";
+
+  /**
+   * Decoded dictionaries by their encoded form. {@link CodecPool} pools
+   * codecs per dictionary reference, so all the readers of files sharing a
+   * dictionary should hand out the same array.
+   */
+  private static final Cache<String, byte[]> COMPRESSION_DICTIONARIES =
+      CacheBuilder.newBuilder().maximumSize(16).build();
+
+  private static byte[] decodeCompressionDictionary(Metadata metadata)
+      throws IOException {
+    Text value = metadata.get(new Text(COMPRESSION_DICTIONARY_KEY));
+    if (value == null) {
+      return null;
+    }
+    String encoded = value.toString();
+    try {
+      return COMPRESSION_DICTIONARIES.get(encoded,
+          () -> Base64.getDecoder().decode(encoded));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new IOException("Invalid compression dictionary", e.getCause());
+    }
+  }
+
   /** 
    * The compression type used to compress key/value pairs in the 
    * {@link SequenceFile}.
@@ -857,6 +892,7 @@ public static class Writer implements java.io.Closeable, Syncable,
     DataOutputStream deflateOut = null;
     Metadata metadata = null;
     Compressor compressor = null;
+    byte[] compressionDictionary = null;
 
     private boolean appendMode = false;
 
@@ -964,6 +1000,16 @@ Metadata getValue() {
       }
     }
 
+    static class CompressionDictionaryOption implements Option {
+      private final byte[] value;
+      CompressionDictionaryOption(byte[] value) {
+        this.value = value;
+      }
+      byte[] getValue() {
+        return value;
+      }
+    }
+
     static class ProgressableOption extends Options.ProgressableOption
                                     implements Option {
       ProgressableOption(Progressable value) {
@@ -1058,6 +1104,20 @@ public static Option compression(CompressionType value,
       return new CompressionOption(value, codec);
     }
 
+    /**
+     * Compress with a dictionary, e.g. one trained with
+     * {@link ZStandardCodec#trainDictionary}.
+     * The dictionary is stored in the file metadata for the readers. Only
+     * {@link ZStandardCodec} is accepted, and only when
+     * {@link ZStandardCodec#isDictionarySupported()}.
+     *
+     * @param value the dictionary.
+     * @return compression dictionary option.
+     */
+    public static Option compressionDictionary(byte[] value) {
+      return new CompressionDictionaryOption(value);
+    }
+
     public static Option syncInterval(int value) {
       return new SyncIntervalOption(value);
     }
@@ -1093,6 +1153,8 @@ public static Option syncInterval(int value) {
         Options.getOption(CompressionOption.class, opts);
       SyncIntervalOption syncIntervalOption =
           Options.getOption(SyncIntervalOption.class, opts);
+      CompressionDictionaryOption dictionaryOption =
+          Options.getOption(CompressionDictionaryOption.class, opts);
       // check consistency of options
       if ((fileOption == null) == (streamOption == null)) {
         throw new IllegalArgumentException("file or stream must be specified");
@@ -1104,6 +1166,20 @@ public static Option syncInterval(int value) {
         throw new IllegalArgumentException("file modifier options not " +
                                            "compatible with stream");
       }
+      if (dictionaryOption != null && (compressionTypeOption == null ||
+          compressionTypeOption.getValue() == CompressionType.NONE)) {
+        throw new IllegalArgumentException(
+            "A compression dictionary requires compression");
+      }
+      // zlib needs the dictionary handed over mid-stream, which the readers
+      // do not do, and lz4 and snappy silently ignore it
+      if (dictionaryOption != null &&
+          (!(compressionTypeOption.getCodec() instanceof ZStandardCodec) ||
+              !ZStandardCodec.isDictionarySupported())) {
+        throw new IllegalArgumentException("Codec "
+            + compressionTypeOption.getCodec().getClass().getName()
+            + " does not support compression dictionaries");
+      }
 
       FSDataOutputStream out;
       boolean ownStream = fileOption != null;
@@ -1186,6 +1262,18 @@ public static Option syncInterval(int value) {
           new Metadata() : metadataOption.getValue();
       this.compress = compressionTypeOption.getValue();
       final CompressionCodec codec = compressionTypeOption.getCodec();
+      if (dictionaryOption != null && !appendMode) {
+        String encoded =
+            Base64.getEncoder().encodeToString(dictionaryOption.getValue());
+        metadata = new Metadata(metadata.getMetadata());
+        metadata.set(new Text(COMPRESSION_DICTIONARY_KEY), new Text(encoded));
+      }
+      if (compress != CompressionType.NONE) {
+        // appending keeps the dictionary of the existing file. Decoding also
+        // gives a copy of the caller's array, so changing it later cannot
+        // corrupt the codecs pooled for this dictionary.
+        this.compressionDictionary = decodeCompressionDictionary(metadata);
+      }
       this.syncInterval = (syncIntervalOption == null) ?
           SYNC_INTERVAL :
           syncIntervalOption.getValue();
@@ -1329,7 +1417,8 @@ void init(Configuration config, FSDataOutputStream outStream,
       this.uncompressedValSerializer.open(buffer);
       if (this.codec != null) {
         ReflectionUtils.setConf(this.codec, this.conf);
-        this.compressor = CodecPool.getCompressor(this.codec);
+        this.compressor = CodecPool.getCompressor(this.codec, null,
+            compressionDictionary);
         this.deflateFilter = this.codec.createOutputStream(buffer, compressor);
         this.deflateOut = 
           new DataOutputStream(new BufferedOutputStream(deflateFilter));
@@ -1754,6 +1843,7 @@ public static class Reader implements java.io.Closeable {
 
     private CompressionCodec codec = null;
     private Metadata metadata = null;
+    private byte[] compressionDictionary = null;
     
     private byte[] sync = new byte[SYNC_HASH_SIZE];
     private byte[] syncCheck = new byte[SYNC_HASH_SIZE];
@@ -1983,6 +2073,7 @@ private void initialize(Path filename, FSDataInputStream in,
         succeeded = true;
       } finally {
         if (!succeeded) {
+          returnDecompressors();
           IOUtils.cleanupWithLogger(LOG, this.in);
         }
       }
@@ -2096,11 +2187,23 @@ private void init(boolean tempReader) throws IOException {
         headerEnd = in.getPos();                  // record end of header
       }
       
+      if (decompress) {
+        compressionDictionary = decodeCompressionDictionary(metadata);
+        if (compressionDictionary != null &&
+            (!(codec instanceof ZStandardCodec) ||
+                !ZStandardCodec.isDictionarySupported())) {
+          throw new IOException(filename + " is compressed with a dictionary"
+              + ", which " + codec.getClass().getName()
+              + " does not support in this build");
+        }
+      }
+
       // Initialize... *not* if this we are constructing a temporary Reader
       if (!tempReader) {
         valBuffer = new DataInputBuffer();
         if (decompress) {
-          valDecompressor = CodecPool.getDecompressor(codec);
+          valDecompressor =
+              CodecPool.getDecompressor(codec, compressionDictionary);
           valInFilter = codec.createInputStream(valBuffer, valDecompressor);
           valIn = new DataInputStream(valInFilter);
         } else {
@@ -2112,16 +2215,19 @@ private void init(boolean tempReader) throws IOException {
           keyBuffer = new DataInputBuffer();
           valLenBuffer = new DataInputBuffer();
 
-          keyLenDecompressor = CodecPool.getDecompressor(codec);
+          keyLenDecompressor =
+              CodecPool.getDecompressor(codec, compressionDictionary);
           keyLenInFilter = codec.createInputStream(keyLenBuffer, 
                                                    keyLenDecompressor);
           keyLenIn = new DataInputStream(keyLenInFilter);
 
-          keyDecompressor = CodecPool.getDecompressor(codec);
+          keyDecompressor =
+              CodecPool.getDecompressor(codec, compressionDictionary);
           keyInFilter = codec.createInputStream(keyBuffer, keyDecompressor);
           keyIn = new DataInputStream(keyInFilter);
 
-          valLenDecompressor = CodecPool.getDecompressor(codec);
+          valLenDecompressor =
+              CodecPool.getDecompressor(codec, compressionDictionary);
           valLenInFilter = codec.createInputStream(valLenBuffer, 
                                                    valLenDecompressor);
           valLenIn = new DataInputStream(valLenInFilter);
@@ -2168,13 +2274,7 @@ private Deserializer getDeserializer(SerializationFactory sf, Class c) {
     /** Close the file. */
     @Override
     public synchronized void close() throws IOException {
-      // Return the decompressors to the pool
-      CodecPool.returnDecompressor(keyLenDecompressor);
-      CodecPool.returnDecompressor(keyDecompressor);
-      CodecPool.returnDecompressor(valLenDecompressor);
-      CodecPool.returnDecompressor(valDecompressor);
-      keyLenDecompressor = keyDecompressor = null;
-      valLenDecompressor = valDecompressor = null;
+      returnDecompressors();
       
       if (keyDeserializer != null) {
     	keyDeserializer.close();
@@ -2187,6 +2287,16 @@ public synchronized void close() throws IOException {
       in.close();
     }
 
+    /** Return the decompressors to the pool. */
+    private void returnDecompressors() {
+      CodecPool.returnDecompressor(keyLenDecompressor);
+      CodecPool.returnDecompressor(keyDecompressor);
+      CodecPool.returnDecompressor(valLenDecompressor);
+      CodecPool.returnDecompressor(valDecompressor);
+      keyLenDecompressor = keyDecompressor = null;
+      valLenDecompressor = valDecompressor = null;
+    }
+
     /** @return Returns the name of the key class. */
     public String getKeyClassName() {
       return keyClassName;
@@ -2266,6 +2376,11 @@ public CompressionType getCompressionType() {
     public Metadata getMetadata() {
       return this.metadata;
     }
+
+    @VisibleForTesting
+    byte[] getCompressionDictionary() {
+      return compressionDictionary;
+    }
     
     /** Returns the configuration used for this file. */
     Configuration getConf() { return conf; }
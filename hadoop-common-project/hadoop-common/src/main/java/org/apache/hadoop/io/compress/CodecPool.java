@@ -17,11 +17,15 @@
  */
 package org.apache.hadoop.io.compress;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Set;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -58,6 +62,59 @@ public class CodecPool {
   private static final Map<Class<Decompressor>, Set<Decompressor>> decompressorPool =
     new HashMap<Class<Decompressor>, Set<Decompressor>>();
 
+  /**
+   * Maximum number of distinct dictionaries with pooled codecs, the codecs of
+   * the least recently used dictionary are ended beyond that.
+   */
+  private static final int MAX_DICTIONARY_POOLS = 16;
+
+  /**
+   * Compressors with a dictionary set, pooled per dictionary. Dictionaries
+   * are compared by reference, so callers sharing a dictionary array reuse
+   * the codecs that already loaded it.
+   */
+  private static final Map<byte[], Map<Class<Compressor>, Set<Compressor>>>
+      dictionaryCompressorPools = createDictionaryPools(Compressor::end);
+
+  /**
+   * Decompressors with a dictionary set, pooled per dictionary.
+   */
+  private static final Map<byte[], Map<Class<Decompressor>, Set<Decompressor>>>
+      dictionaryDecompressorPools = createDictionaryPools(Decompressor::end);
+
+  /**
+   * The dictionary of each leased codec that was handed out with one.
+   */
+  private static final Map<Object, byte[]> leasedDictionaries =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  private static <T> Map<byte[], Map<Class<T>, Set<T>>> createDictionaryPools(
+      Consumer<T> end) {
+    return new LinkedHashMap<byte[], Map<Class<T>, Set<T>>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(
+          Map.Entry<byte[], Map<Class<T>, Set<T>>> eldest) {
+        if (size() <= MAX_DICTIONARY_POOLS) {
+          return false;
+        }
+        for (Set<T> codecSet : eldest.getValue().values()) {
+          synchronized (codecSet) {
+            codecSet.forEach(end);
+            codecSet.clear();
+          }
+        }
+        return true;
+      }
+    };
+  }
+
+  private static <T> Map<Class<T>, Set<T>> getDictionaryPool(
+      Map<byte[], Map<Class<T>, Set<T>>> pools, byte[] dictionary) {
+    synchronized (pools) {
+      return pools.computeIfAbsent(dictionary, d -> new HashMap<>());
+    }
+  }
+
   private static <T> LoadingCache<Class<T>, AtomicInteger> createCache(
       Class<T> klass) {
     return CacheBuilder.newBuilder().build(
@@ -171,6 +228,55 @@ public static Compressor getCompressor(CompressionCodec codec, Configuration con
   public static Compressor getCompressor(CompressionCodec codec) {
     return getCompressor(codec, null);
   }
+
+  /**
+   * Get a {@link Compressor} with the given dictionary set, for codecs that
+   * take the dictionary upfront such as {@link ZStandardCodec}. Compressors
+   * are pooled per dictionary reference, so passing the same array again
+   * reuses compressors that already loaded it.
+   *
+   * @param codec the <code>CompressionCodec</code> for which to get the
+   *              <code>Compressor</code>
+   * @param conf the <code>Configuration</code> object which contains confs for
+   *             creating or reinit the compressor
+   * @param dictionary the dictionary, or null for none
+   * @return <code>Compressor</code> for the given
+   *         <code>CompressionCodec</code> from the pool or a new one
+   */
+  public static Compressor getCompressor(CompressionCodec codec,
+      Configuration conf, byte[] dictionary) {
+    if (dictionary == null) {
+      return getCompressor(codec, conf);
+    }
+    Compressor compressor = borrow(
+        getDictionaryPool(dictionaryCompressorPools, dictionary),
+        codec.getCompressorType());
+    if (compressor == null) {
+      compressor = codec.createCompressor();
+      LOG.info("Got brand-new compressor with dictionary ["
+          + codec.getDefaultExtension() + "]");
+    } else {
+      if (conf == null && codec instanceof Configurable) {
+        conf = ((Configurable)codec).getConf();
+      }
+      compressor.reinit(conf);
+      LOG.debug("Got recycled compressor with dictionary");
+    }
+    if (compressor != null) {
+      try {
+        // codecs keeping the dictionary across reset() ignore the same array
+        compressor.setDictionary(dictionary, 0, dictionary.length);
+      } catch (RuntimeException | Error e) {
+        compressor.end();
+        throw e;
+      }
+      if (!compressor.getClass().isAnnotationPresent(DoNotPool.class)) {
+        leasedDictionaries.put(compressor, dictionary);
+        updateLeaseCount(compressorCounts, compressor, 1);
+      }
+    }
+    return compressor;
+  }
   
   /**
    * Get a {@link Decompressor} for the given {@link CompressionCodec} from the
@@ -198,6 +304,47 @@ public static Decompressor getDecompressor(CompressionCodec codec) {
     return decompressor;
   }
   
+  /**
+   * Get a {@link Decompressor} with the given dictionary set, for codecs that
+   * take the dictionary upfront such as {@link ZStandardCodec}. Decompressors
+   * are pooled per dictionary reference.
+   *
+   * @param codec the <code>CompressionCodec</code> for which to get the
+   *              <code>Decompressor</code>
+   * @param dictionary the dictionary, or null for none
+   * @return <code>Decompressor</code> for the given
+   *         <code>CompressionCodec</code> the pool or a new one
+   */
+  public static Decompressor getDecompressor(CompressionCodec codec,
+      byte[] dictionary) {
+    if (dictionary == null) {
+      return getDecompressor(codec);
+    }
+    Decompressor decompressor = borrow(
+        getDictionaryPool(dictionaryDecompressorPools, dictionary),
+        codec.getDecompressorType());
+    if (decompressor == null) {
+      decompressor = codec.createDecompressor();
+      LOG.info("Got brand-new decompressor with dictionary ["
+          + codec.getDefaultExtension() + "]");
+    } else {
+      LOG.debug("Got recycled decompressor with dictionary");
+    }
+    if (decompressor != null) {
+      try {
+        decompressor.setDictionary(dictionary, 0, dictionary.length);
+      } catch (RuntimeException | Error e) {
+        decompressor.end();
+        throw e;
+      }
+      if (!decompressor.getClass().isAnnotationPresent(DoNotPool.class)) {
+        leasedDictionaries.put(decompressor, dictionary);
+        updateLeaseCount(decompressorCounts, decompressor, 1);
+      }
+    }
+    return decompressor;
+  }
+
   /**
    * Return the {@link Compressor} to the pool.
    * 
@@ -213,7 +360,11 @@ public static void returnCompressor(Compressor compressor) {
       return;
     }
     compressor.reset();
-    if (payback(compressorPool, compressor)) {
+    byte[] dictionary = leasedDictionaries.remove(compressor);
+    Map<Class<Compressor>, Set<Compressor>> pool = dictionary == null ?
+        compressorPool :
+        getDictionaryPool(dictionaryCompressorPools, dictionary);
+    if (payback(pool, compressor)) {
       updateLeaseCount(compressorCounts, compressor, -1);
     }
   }
@@ -234,7 +385,11 @@ public static void returnDecompressor(Decompressor decompressor) {
       return;
     }
     decompressor.reset();
-    if (payback(decompressorPool, decompressor)) {
+    byte[] dictionary = leasedDictionaries.remove(decompressor);
+    Map<Class<Decompressor>, Set<Decompressor>> pool = dictionary == null ?
+        decompressorPool :
+        getDictionaryPool(dictionaryDecompressorPools, dictionary);
+    if (payback(pool, decompressor)) {
       updateLeaseCount(decompressorCounts, decompressor, -1);
     }
   }
@@ -25,6 +25,7 @@
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
 
 /**
  * This class encapsulates a streaming compression/decompression pair.
@@ -117,7 +118,10 @@ CompressionInputStream createInputStream(InputStream in,
 
   static class Util {
     /**
-     * Create an output stream with a codec taken from the global CodecPool.
+     * Create an output stream with a codec taken from the global CodecPool,
+     * or a {@link ParallelCompressorStream} when
+     * {@link CommonConfigurationKeys#IO_COMPRESSION_PARALLEL_THREADS_KEY}
+     * is greater than 1 and the codec supports it.
      *
      * @param codec       The codec to use to create the output stream.
      * @param conf        The configuration to use if we need to create a new codec.
@@ -128,6 +132,13 @@ static class Util {
     static CompressionOutputStream createOutputStreamWithCodecPool(
         CompressionCodec codec, Configuration conf, OutputStream out)
         throws IOException {
+      if (conf != null && ParallelCompressorStream.isSupported(codec)
+          && conf.getInt(
+              CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_THREADS_KEY,
+              CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_THREADS_DEFAULT)
+          > 1) {
+        return new ParallelCompressorStream(codec, conf, out);
+      }
       Compressor compressor = CodecPool.getCompressor(codec, conf);
       CompressionOutputStream stream = null;
       try {
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.compress;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Specification of a direct ByteBuffer 'compressor'.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public interface DirectCompressor {
+  /*
+   * This exposes a direct interface for record compression with direct byte
+   * buffers.
+   *
+   * Unlike the streaming Compressor API, each call compresses all the
+   * remaining bytes of src into one self-contained block that the matching
+   * DirectDecompressor can decompress in a single call. The destination
+   * buffer needs room for maxCompressedLength(src.remaining()) bytes.
+   *
+   * The operation is modelled around dst.put(src);
+   *
+   * The end result will move src.position() to src.limit() and
+   * dst.position() by the bytes-written. It should not modify the src.limit()
+   * or dst.limit() to maintain consistency of operation between codecs.
+   *
+   * @param src Source direct {@link ByteBuffer} for reading from. Requires src
+   * != null
+   *
+   * @param dst Destination direct {@link ByteBuffer} for storing the results
+   * into. Requires dst != null and enough space for the compressed block
+   *
+   * @throws IOException if compression fails
+   */
+  void compress(ByteBuffer src, ByteBuffer dst) throws IOException;
+
+  /**
+   * Return the worst case size of the block {@link #compress} produces for
+   * the given number of uncompressed bytes.
+   *
+   * @param uncompressedLength number of bytes to compress.
+   * @return the maximum compressed length.
+   */
+  int maxCompressedLength(int uncompressedLength);
+}
@@ -31,7 +31,8 @@
 /**
  * This class creates lz4 compressors/decompressors.
  */
-public class Lz4Codec implements Configurable, CompressionCodec {
+public class Lz4Codec implements Configurable, CompressionCodec,
+    DirectDecompressionCodec, DirectCompressionCodec {
 
   Configuration conf;
 
@@ -184,4 +185,23 @@ public Decompressor createDecompressor() {
   public String getDefaultExtension() {
     return CodecConstants.LZ4_CODEC_EXTENSION;
   }
+
+  @Override
+  public DirectDecompressor createDirectDecompressor() {
+    int bufferSize = conf.getInt(
+        CommonConfigurationKeys.IO_COMPRESSION_CODEC_LZ4_BUFFERSIZE_KEY,
+        CommonConfigurationKeys.IO_COMPRESSION_CODEC_LZ4_BUFFERSIZE_DEFAULT);
+    return new Lz4Decompressor.Lz4DirectDecompressor(bufferSize);
+  }
+
+  @Override
+  public DirectCompressor createDirectCompressor() {
+    int bufferSize = conf.getInt(
+        CommonConfigurationKeys.IO_COMPRESSION_CODEC_LZ4_BUFFERSIZE_KEY,
+        CommonConfigurationKeys.IO_COMPRESSION_CODEC_LZ4_BUFFERSIZE_DEFAULT);
+    boolean useLz4HC = conf.getBoolean(
+        CommonConfigurationKeys.IO_COMPRESSION_CODEC_LZ4_USELZ4HC_KEY,
+        CommonConfigurationKeys.IO_COMPRESSION_CODEC_LZ4_USELZ4HC_DEFAULT);
+    return new Lz4Compressor.Lz4DirectCompressor(bufferSize, useLz4HC);
+  }
 }
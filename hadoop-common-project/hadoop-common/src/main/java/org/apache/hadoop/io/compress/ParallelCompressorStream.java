@@ -0,0 +1,296 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.io.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.util.concurrent.HadoopThreadPoolExecutor;
+
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A {@link CompressionOutputStream} that splits its input into fixed size
+ * blocks, compresses them independently on a pool of threads and writes the
+ * results in order. Each block is a complete compressed stream of the codec,
+ * so the output is the concatenation of several streams: gzip members (as
+ * pigz writes them), zstd frames, or lz4/snappy blocks. The Hadoop
+ * decompressors read such concatenations, and so do the gzip and zstd
+ * command line tools.
+ *
+ * <p>The blocks of all the streams are compressed by one pool of daemon
+ * threads, created on first use and grown to the largest number of threads
+ * a stream asked for. Each stream has at most twice its number of threads
+ * blocks in flight, which bounds the memory used and applies back pressure
+ * to the writer.</p>
+ *
+ * <p>Once a block fails to compress or to be written, every later write,
+ * flush and finish of the stream fails too, since the output is missing
+ * that block.</p>
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class ParallelCompressorStream extends CompressionOutputStream {
+
+  private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
+
+  /** The pool compressing the blocks of all the streams. */
+  private static ThreadPoolExecutor executor;
+
+  private final CompressionCodec codec;
+  private final Configuration conf;
+  private final int blockSize;
+  private final int maxPending;
+  private final Deque<Future<ByteArrayOutputStream>> pending =
+      new ArrayDeque<>();
+  private final Queue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+  private final byte[] oneByte = new byte[1];
+
+  private byte[] buffer;
+  private int count;
+  private boolean blocksWritten;
+  private boolean closed;
+  /** The first failure of a block, after which the stream is unusable. */
+  private IOException failure;
+
+  /**
+   * Whether the streams of the codec can be concatenated, so that its
+   * output can be compressed in parallel.
+   *
+   * @param codec the codec.
+   * @return true if the codec is supported.
+   */
+  public static boolean isSupported(CompressionCodec codec) {
+    return codec instanceof GzipCodec || codec instanceof ZStandardCodec
+        || codec instanceof Lz4Codec || codec instanceof SnappyCodec;
+  }
+
+  /**
+   * Create a stream compressing with the threads and block size of
+   * {@link CommonConfigurationKeys#IO_COMPRESSION_PARALLEL_THREADS_KEY} and
+   * {@link CommonConfigurationKeys#IO_COMPRESSION_PARALLEL_BLOCK_SIZE_KEY}.
+   *
+   * @param codec the codec to compress each block with.
+   * @param conf configuration of the codec.
+   * @param out the stream to write the compressed blocks to.
+   */
+  public ParallelCompressorStream(CompressionCodec codec, Configuration conf,
+      OutputStream out) {
+    this(codec, conf, out,
+        conf.getInt(CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_THREADS_KEY,
+            CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_THREADS_DEFAULT),
+        conf.getInt(
+            CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_BLOCK_SIZE_KEY,
+            CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_BLOCK_SIZE_DEFAULT));
+  }
+
+  /**
+   * Create a stream.
+   *
+   * @param codec the codec to compress each block with.
+   * @param conf configuration of the codec.
+   * @param out the stream to write the compressed blocks to.
+   * @param threads number of threads compressing the stream in parallel.
+   * @param blockSize size of the uncompressed blocks.
+   */
+  public ParallelCompressorStream(CompressionCodec codec, Configuration conf,
+      OutputStream out, int threads, int blockSize) {
+    super(out);
+    if (threads <= 0 || blockSize <= 0) {
+      throw new IllegalArgumentException("Illegal threads " + threads
+          + " or block size " + blockSize);
+    }
+    this.codec = codec;
+    this.conf = conf;
+    this.blockSize = blockSize;
+    this.maxPending = 2 * threads;
+    initExecutor(threads);
+    this.buffer = new byte[blockSize];
+  }
+
+  /**
+   * Create the shared pool if needed, and grow it to the given number of
+   * threads. Idle threads exit after a while, so the pool does not hold on
+   * to threads once the streams are done.
+   */
+  private static synchronized void initExecutor(int threads) {
+    if (executor == null) {
+      executor = new HadoopThreadPoolExecutor(threads, threads,
+          THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(),
+          new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("Parallel compressor #%d").build());
+      executor.allowCoreThreadTimeOut(true);
+    } else if (threads > executor.getMaximumPoolSize()) {
+      executor.setMaximumPoolSize(threads);
+      executor.setCorePoolSize(threads);
+    }
+  }
+
+  private static synchronized ThreadPoolExecutor getExecutor() {
+    return executor;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    oneByte[0] = (byte) (b & 0xff);
+    write(oneByte, 0, oneByte.length);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    checkOpen();
+    if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+      throw new IndexOutOfBoundsException();
+    }
+    while (len > 0) {
+      int n = Math.min(len, blockSize - count);
+      System.arraycopy(b, off, buffer, count, n);
+      count += n;
+      off += n;
+      len -= n;
+      if (count == blockSize) {
+        submitBlock();
+      }
+    }
+  }
+
+  /**
+   * Write the blocks already compressed and flush the underlying stream.
+   * Data still being buffered or compressed is not flushed, as for
+   * {@link CompressorStream}.
+   */
+  @Override
+  public void flush() throws IOException {
+    checkOpen();
+    while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+      writeBlock(pending.removeFirst());
+    }
+    out.flush();
+  }
+
+  @Override
+  public void finish() throws IOException {
+    checkOpen();
+    // an empty output is still one valid, empty stream
+    if (count > 0 || !blocksWritten) {
+      submitBlock();
+    }
+    while (!pending.isEmpty()) {
+      writeBlock(pending.removeFirst());
+    }
+  }
+
+  @Override
+  public void resetState() throws IOException {
+    // every block is an independent stream already
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      super.close();
+    } finally {
+      closed = true;
+      for (Future<ByteArrayOutputStream> f : pending) {
+        f.cancel(false);
+      }
+      pending.clear();
+    }
+  }
+
+  private void checkOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (failure != null) {
+      throw new IOException("Stream failed earlier: " + failure, failure);
+    }
+  }
+
+  private void submitBlock() throws IOException {
+    final byte[] block = buffer;
+    final int length = count;
+    buffer = freeBuffers.poll();
+    if (buffer == null) {
+      buffer = new byte[blockSize];
+    }
+    count = 0;
+    blocksWritten = true;
+    pending.addLast(getExecutor().submit(() -> compressBlock(block, length)));
+    while (pending.size() >= maxPending) {
+      writeBlock(pending.removeFirst());
+    }
+  }
+
+  private ByteArrayOutputStream compressBlock(byte[] block, int length)
+      throws IOException {
+    Compressor compressor = CodecPool.getCompressor(codec, conf);
+    try {
+      ByteArrayOutputStream compressed =
+          new ByteArrayOutputStream(length / 2 + 64);
+      CompressionOutputStream stream =
+          codec.createOutputStream(compressed, compressor);
+      stream.write(block, 0, length);
+      stream.finish();
+      return compressed;
+    } finally {
+      CodecPool.returnCompressor(compressor);
+      freeBuffers.offer(block);
+    }
+  }
+
+  private void writeBlock(Future<ByteArrayOutputStream> block)
+      throws IOException {
+    try {
+      block.get().writeTo(out);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure = (IOException) new InterruptedIOException(
+          "Interrupted while compressing").initCause(e);
+      throw failure;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      failure = cause instanceof IOException ? (IOException) cause
+          : new IOException(cause);
+      throw failure;
+    } catch (IOException e) {
+      failure = e;
+      throw e;
+    }
+  }
+}
@@ -26,13 +26,15 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.compress.snappy.SnappyCompressor;
 import org.apache.hadoop.io.compress.snappy.SnappyDecompressor;
+import org.apache.hadoop.io.compress.snappy.SnappyCompressor.SnappyDirectCompressor;
 import org.apache.hadoop.io.compress.snappy.SnappyDecompressor.SnappyDirectDecompressor;
 import org.apache.hadoop.fs.CommonConfigurationKeys;
 
 /**
  * This class creates snappy compressors/decompressors.
  */
-public class SnappyCodec implements Configurable, CompressionCodec, DirectDecompressionCodec {
+public class SnappyCodec implements Configurable, CompressionCodec,
+    DirectDecompressionCodec, DirectCompressionCodec {
   Configuration conf;
 
   /**
@@ -180,6 +182,14 @@ public DirectDecompressor createDirectDecompressor() {
     return new SnappyDirectDecompressor();
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DirectCompressor createDirectCompressor() {
+    return new SnappyDirectCompressor();
+  }
+
   /**
    * Get the default filename extension for this kind of compression.
    *
@@ -28,6 +28,7 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
 
 import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_COMPRESSION_CODEC_ZSTD_BUFFER_SIZE_DEFAULT;
 import static org.apache.hadoop.fs.CommonConfigurationKeys.IO_COMPRESSION_CODEC_ZSTD_BUFFER_SIZE_KEY;
@@ -35,8 +36,8 @@
 /**
  * This class creates zstd compressors/decompressors.
  */
-public class ZStandardCodec implements
-    Configurable, CompressionCodec, DirectDecompressionCodec  {
+public class ZStandardCodec implements Configurable, CompressionCodec,
+    DirectDecompressionCodec, DirectCompressionCodec {
   private Configuration conf;
 
   /**
@@ -81,6 +82,19 @@ public static boolean isNativeCodeLoaded() {
         && ZStandardDecompressor.isNativeCodeLoaded();
   }
 
+  /**
+   * Whether zstd compression dictionaries can be used. libhadoop only
+   * includes them when built against libzstd 1.4.0 or later, and the libzstd
+   * loaded at runtime must export the dictionary functions.
+   *
+   * @return true if dictionaries are supported.
+   */
+  public static boolean isDictionarySupported() {
+    return isNativeCodeLoaded()
+        && ZStandardCompressor.isDictionarySupported()
+        && ZStandardDecompressor.isDictionarySupported();
+  }
+
   public static String getLibraryName() {
     return ZStandardCompressor.getLibraryName();
   }
@@ -239,4 +253,30 @@ public DirectDecompressor createDirectDecompressor() {
         getDecompressionBufferSize(conf)
     );
   }
+
+  @Override
+  public DirectCompressor createDirectCompressor() {
+    checkNativeCodeLoaded();
+    return new ZStandardCompressor.ZStandardDirectCompressor(
+        getCompressionLevel(conf), getCompressionBufferSize(conf));
+  }
+
+  /**
+   * Train a dictionary from sample records. Small records compress much
+   * better with a dictionary, which can be handed to
+   * {@link CodecPool#getCompressor(CompressionCodec, Configuration, byte[])}
+   * and stored alongside the data, e.g. in a
+   * {@link org.apache.hadoop.io.SequenceFile} header.
+   *
+   * @param samples sample records.
+   * @param maxDictionarySize the maximum size of the dictionary in bytes.
+   * @return the trained dictionary.
+   * @throws UnsupportedOperationException if {@link #isDictionarySupported()}
+   *         is false.
+   */
+  public static byte[] trainDictionary(List<byte[]> samples,
+      int maxDictionarySize) {
+    checkNativeCodeLoaded();
+    return ZStandardCompressor.trainDictionary(samples, maxDictionarySize);
+  }
 }
@@ -22,11 +22,13 @@
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
+import net.jpountz.lz4.LZ4Exception;
 import net.jpountz.lz4.LZ4Factory;
 import net.jpountz.lz4.LZ4Compressor;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.DirectCompressor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -324,4 +326,55 @@ private int compressDirectBuf() {
       return size;
     }
   }
+
+  synchronized int compressDirect(ByteBuffer src, ByteBuffer dst)
+      throws IOException {
+    assert (this instanceof Lz4DirectCompressor);
+
+    int srcLen = src.remaining();
+    int originalPosition = dst.position();
+    try {
+      lz4Compressor.compress(src, dst);
+    } catch (LZ4Exception e) {
+      throw new IOException(e);
+    }
+    int n = dst.position() - originalPosition;
+    bytesRead += srcLen;
+    bytesWritten += n;
+    finished = true;
+    return n;
+  }
+
+  /**
+   * A {@link DirectCompressor} for lz4, each call produces one raw lz4 block.
+   */
+  public static class Lz4DirectCompressor extends Lz4Compressor
+      implements DirectCompressor {
+
+    public Lz4DirectCompressor(int directBufferSize, boolean useLz4HC) {
+      super(directBufferSize, useLz4HC);
+    }
+
+    @Override
+    public void compress(ByteBuffer src, ByteBuffer dst) throws IOException {
+      this.compressDirect(src, dst);
+    }
+
+    @Override
+    public int maxCompressedLength(int uncompressedLength) {
+      return uncompressedLength + uncompressedLength / 255 + 16;
+    }
+
+    @Override
+    public void setInput(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectCompressor");
+    }
+
+    @Override
+    public int compress(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectCompressor");
+    }
+  }
 }
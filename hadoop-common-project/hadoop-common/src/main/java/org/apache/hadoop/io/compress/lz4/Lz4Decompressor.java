@@ -22,10 +22,12 @@
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
+import net.jpountz.lz4.LZ4Exception;
 import net.jpountz.lz4.LZ4Factory;
 import net.jpountz.lz4.LZ4SafeDecompressor;
 
 import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.io.compress.DirectDecompressor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -284,4 +286,58 @@ private int decompressDirectBuf() {
       return size;
     }
   }
+
+  synchronized int decompressDirect(ByteBuffer src, ByteBuffer dst)
+      throws IOException {
+    assert (this instanceof Lz4DirectDecompressor);
+
+    int originalPosition = dst.position();
+    try {
+      // lz4 always consumes the whole block or throws an exception
+      lz4Decompressor.decompress(src, dst);
+    } catch (LZ4Exception e) {
+      throw new IOException(e);
+    }
+    finished = true;
+    return dst.position() - originalPosition;
+  }
+
+  /**
+   * A {@link DirectDecompressor} for lz4, each call decompresses one raw lz4
+   * block, such as one produced by {@link Lz4Compressor.Lz4DirectCompressor}.
+   */
+  public static class Lz4DirectDecompressor extends Lz4Decompressor
+      implements DirectDecompressor {
+
+    public Lz4DirectDecompressor(int directBufferSize) {
+      super(directBufferSize);
+    }
+
+    @Override
+    public synchronized boolean finished() {
+      return (endOfInput && super.finished());
+    }
+
+    @Override
+    public synchronized void reset() {
+      super.reset();
+      endOfInput = true;
+    }
+
+    private boolean endOfInput;
+
+    @Override
+    public void decompress(ByteBuffer src, ByteBuffer dst)
+        throws IOException {
+      assert dst.remaining() > 0 : "dst.remaining() > 0";
+      this.decompressDirect(src, dst);
+      endOfInput = !src.hasRemaining();
+    }
+
+    @Override
+    public int decompress(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectDecompressor");
+    }
+  }
 }
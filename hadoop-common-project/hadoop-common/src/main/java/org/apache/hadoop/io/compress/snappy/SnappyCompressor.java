@@ -24,6 +24,7 @@
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.DirectCompressor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xerial.snappy.Snappy;
@@ -285,4 +286,54 @@ private int compressDirectBuf() throws IOException {
       return size;
     }
   }
+
+  int compressDirect(ByteBuffer src, ByteBuffer dst) throws IOException {
+    assert (this instanceof SnappyDirectCompressor);
+
+    int srcLen = src.remaining();
+    int dstLimit = dst.limit();
+    int dstPosition = dst.position();
+    // Snappy.compress() leaves the positions alone and moves dst.limit()
+    // to the end of the compressed data
+    int n = Snappy.compress(src, dst);
+    dst.limit(dstLimit);
+    dst.position(dstPosition + n);
+    src.position(src.limit());
+    bytesRead += srcLen;
+    bytesWritten += n;
+    finished = true;
+    return n;
+  }
+
+  public static class SnappyDirectCompressor extends SnappyCompressor
+      implements DirectCompressor {
+
+    @Override
+    public void compress(ByteBuffer src, ByteBuffer dst) throws IOException {
+      assert dst.isDirect() : "dst.isDirect()";
+      assert src.isDirect() : "src.isDirect()";
+      if (dst.remaining() < maxCompressedLength(src.remaining())) {
+        throw new IOException("Insufficient space in the destination buffer,"
+            + " needs " + maxCompressedLength(src.remaining()) + " bytes");
+      }
+      this.compressDirect(src, dst);
+    }
+
+    @Override
+    public int maxCompressedLength(int uncompressedLength) {
+      return Snappy.maxCompressedLength(uncompressedLength);
+    }
+
+    @Override
+    public void setInput(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectCompressor");
+    }
+
+    @Override
+    public int compress(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectCompressor");
+    }
+  }
 }
@@ -23,6 +23,7 @@
 import org.apache.hadoop.fs.CommonConfigurationKeys;
 import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
 import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.DirectCompressor;
 import org.apache.hadoop.io.compress.ZStandardCodec;
 import org.apache.hadoop.util.NativeCodeLoader;
 import org.slf4j.Logger;
@@ -30,6 +31,8 @@
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * A {@link Compressor} based on the zStandard compression algorithm.
@@ -52,8 +55,12 @@ public class ZStandardCompressor implements Compressor {
   private boolean finish, finished;
   private long bytesRead = 0;
   private long bytesWritten = 0;
+  private byte[] dictionary = null;
+  private long cdict = 0;
+  private int cdictLevel;
 
   private static boolean nativeZStandardLoaded = false;
+  private static boolean dictionarySupported = false;
 
   static {
     if (NativeCodeLoader.isNativeCodeLoaded()) {
@@ -65,16 +72,61 @@ public class ZStandardCompressor implements Compressor {
         LOG.warn("Error loading zstandard native libraries: " + t);
       }
     }
+    if (nativeZStandardLoaded) {
+      try {
+        // libhadoop only has the dictionary calls when built against
+        // libzstd 1.4.0 or later, and libzstd may not export what they need
+        freeCDict(createCDict(new byte[] {0}, 1));
+        dictionarySupported = true;
+      } catch (UnsatisfiedLinkError | UnsupportedOperationException
+          | InternalError e) {
+        LOG.debug("zstandard dictionaries are not supported: " + e);
+      }
+    }
   }
 
   public static boolean isNativeCodeLoaded() {
     return nativeZStandardLoaded;
   }
 
+  /**
+   * @return true if the native code supports compression dictionaries.
+   */
+  public static boolean isDictionarySupported() {
+    return dictionarySupported;
+  }
+
   public static int getRecommendedBufferSize() {
     return getStreamSize();
   }
 
+  /**
+   * Train a zstd dictionary from sample records.
+   *
+   * @param samples sample records, typically a few thousands of them.
+   * @param maxDictionarySize the maximum size of the dictionary.
+   * @return the trained dictionary.
+   */
+  public static byte[] trainDictionary(List<byte[]> samples,
+      int maxDictionarySize) {
+    checkDictionarySupported();
+    int total = 0;
+    int[] sizes = new int[samples.size()];
+    for (int i = 0; i < sizes.length; i++) {
+      sizes[i] = samples.get(i).length;
+      total += sizes[i];
+    }
+    byte[] buffer = new byte[total];
+    int off = 0;
+    for (byte[] sample : samples) {
+      System.arraycopy(sample, 0, buffer, off, sample.length);
+      off += sample.length;
+    }
+    byte[] dictionary = new byte[maxDictionarySize];
+    int size = trainDictionary(buffer, sizes, dictionary);
+    return Arrays.copyOf(dictionary, size);
+  }
+
   @VisibleForTesting
   ZStandardCompressor() {
     this(CommonConfigurationKeys.IO_COMPRESSION_CODEC_ZSTD_LEVEL_DEFAULT,
@@ -147,10 +199,39 @@ private void setInputFromSavedData() {
     uncompressedDirectBufLen = uncompressedDirectBuf.position();
   }
 
+  /**
+   * Sets a dictionary for the following frames. The dictionary is digested
+   * once and kept across {@link #reset()}, so it must be set before any
+   * input is given. Setting the same array again is a no-op.
+   *
+   * @param b the dictionary, typically trained with
+   *          {@link #trainDictionary(List, int)}
+   * @param off offset in b.
+   * @param len length of the dictionary.
+   * @throws UnsupportedOperationException if {@link #isDictionarySupported()}
+   *         is false.
+   */
   @Override
   public void setDictionary(byte[] b, int off, int len) {
-    throw new UnsupportedOperationException(
-        "Dictionary support is not enabled");
+    if (b == null) {
+      throw new NullPointerException();
+    }
+    if (off < 0 || len < 0 || off > b.length - len) {
+      throw new ArrayIndexOutOfBoundsException();
+    }
+    checkDictionarySupported();
+    checkStream();
+    if (b == dictionary && off == 0 && len == b.length) {
+      return;
+    }
+    byte[] dict = (off == 0 && len == b.length) ?
+        b : Arrays.copyOfRange(b, off, off + len);
+    long newCDict = createCDict(dict, level);
+    freeDictionary();
+    dictionary = dict;
+    cdict = newCDict;
+    cdictLevel = level;
+    initStream();
   }
 
   @Override
@@ -267,7 +348,7 @@ public long getBytesRead() {
   @Override
   public void reset() {
     checkStream();
-    init(level, stream);
+    initStream();
     finish = false;
     finished = false;
     bytesRead = 0;
@@ -288,6 +369,34 @@ public void end() {
       end(stream);
       stream = 0;
     }
+    freeDictionary();
+  }
+
+  private void initStream() {
+    if (dictionary == null) {
+      init(level, stream);
+      return;
+    }
+    if (cdict == 0 || cdictLevel != level) {
+      freeDictionary();
+      cdict = createCDict(dictionary, level);
+      cdictLevel = level;
+    }
+    initWithCDict(stream, cdict);
+  }
+
+  private void freeDictionary() {
+    if (cdict != 0) {
+      freeCDict(cdict);
+      cdict = 0;
+    }
+  }
+
+  private static void checkDictionarySupported() {
+    if (!dictionarySupported) {
+      throw new UnsupportedOperationException(
+          "Dictionary support is not enabled");
+    }
   }
 
   private void checkStream() {
@@ -302,6 +411,79 @@ private native int deflateBytesDirect(ByteBuffer src, int srcOffset,
       int srcLen, ByteBuffer dst, int dstLen);
   private native static int getStreamSize();
   private native static void end(long strm);
+  private native static long createCDict(byte[] dictionary, int level);
+  private native static void initWithCDict(long stream, long cdict);
+  private native static void freeCDict(long cdict);
+  private native static int trainDictionary(byte[] samples,
+      int[] sampleSizes, byte[] dictionary);
   private native static void initIDs();
   public native static String getLibraryName();
+
+  int compressDirect(ByteBuffer src, ByteBuffer dst) throws IOException {
+    assert (this instanceof ZStandardDirectCompressor);
+
+    reset();
+    finish = true;
+    int written = 0;
+    while (!finished) {
+      // the native side writes at the start of the buffer it is given
+      ByteBuffer out = dst.slice();
+      int n = deflateBytesDirect(src, src.position(), src.limit(), out,
+          out.remaining());
+      src.position(uncompressedDirectBufOff);
+      dst.position(dst.position() + n);
+      written += n;
+      if (n == 0 && !finished) {
+        throw new IOException("Insufficient space in the destination buffer,"
+            + " needs up to " + compressBound(src.remaining()) + " bytes");
+      }
+    }
+    return written;
+  }
+
+  /**
+   * Upper bound of the size of a single zstd frame for srcSize input bytes,
+   * the same as ZSTD_compressBound().
+   */
+  static int compressBound(int srcSize) {
+    int margin = srcSize < (128 << 10) ? ((128 << 10) - srcSize) >> 11 : 0;
+    return srcSize + (srcSize >> 8) + margin;
+  }
+
+  /**
+   * A {@link DirectCompressor} for ZStandard, each call produces one
+   * complete frame.
+   * https://github.com/facebook/zstd.
+   */
+  public static class ZStandardDirectCompressor
+      extends ZStandardCompressor implements DirectCompressor {
+
+    public ZStandardDirectCompressor(int level, int directBufferSize) {
+      super(level, directBufferSize);
+    }
+
+    @Override
+    public void compress(ByteBuffer src, ByteBuffer dst) throws IOException {
+      assert dst.isDirect() : "dst.isDirect()";
+      assert src.isDirect() : "src.isDirect()";
+      this.compressDirect(src, dst);
+    }
+
+    @Override
+    public int maxCompressedLength(int uncompressedLength) {
+      return compressBound(uncompressedLength);
+    }
+
+    @Override
+    public void setInput(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectCompressor");
+    }
+
+    @Override
+    public int compress(byte[] b, int off, int len) {
+      throw new UnsupportedOperationException(
+          "byte[] arrays are not supported for DirectCompressor");
+    }
+  }
 }
@@ -26,6 +26,7 @@
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * A {@link Decompressor} based on the zStandard compression algorithm.
@@ -44,8 +45,11 @@ public class ZStandardDecompressor implements Decompressor {
   private int userBufOff = 0, userBufferBytesToConsume = 0;
   private boolean finished;
   private int remaining = 0;
+  private byte[] dictionary = null;
+  private long ddict = 0;
 
   private static boolean nativeZStandardLoaded = false;
+  private static boolean dictionarySupported = false;
 
   static {
     if (NativeCodeLoader.isNativeCodeLoaded()) {
@@ -57,12 +61,29 @@ public class ZStandardDecompressor implements Decompressor {
         LOG.warn("Error loading zstandard native libraries: " + t);
       }
     }
+    if (nativeZStandardLoaded) {
+      try {
+        // see ZStandardCompressor, the dictionary calls are optional
+        freeDDict(createDDict(new byte[] {0}));
+        dictionarySupported = true;
+      } catch (UnsatisfiedLinkError | UnsupportedOperationException
+          | InternalError e) {
+        LOG.debug("zstandard dictionaries are not supported: " + e);
+      }
+    }
   }
 
   public static boolean isNativeCodeLoaded() {
     return nativeZStandardLoaded;
   }
 
+  /**
+   * @return true if the native code supports compression dictionaries.
+   */
+  public static boolean isDictionarySupported() {
+    return dictionarySupported;
+  }
+
   public static int getRecommendedBufferSize() {
     return getStreamSize();
   }
@@ -124,11 +145,41 @@ private void setInputFromSavedData() {
     userBufferBytesToConsume -= bytesInCompressedBuffer;
   }
 
-  // dictionary is not supported
+  /**
+   * Sets the dictionary the following frames were compressed with. The
+   * dictionary is digested once and kept across {@link #reset()}, so it must
+   * be set before any input is given. Setting the same array again is a
+   * no-op.
+   *
+   * @param b the dictionary.
+   * @param off offset in b.
+   * @param len length of the dictionary.
+   * @throws UnsupportedOperationException if {@link #isDictionarySupported()}
+   *         is false.
+   */
   @Override
   public void setDictionary(byte[] b, int off, int len) {
-    throw new UnsupportedOperationException(
-        "Dictionary support is not enabled");
+    if (b == null) {
+      throw new NullPointerException();
+    }
+    if (off < 0 || len < 0 || off > b.length - len) {
+      throw new ArrayIndexOutOfBoundsException();
+    }
+    if (!dictionarySupported) {
+      throw new UnsupportedOperationException(
+          "Dictionary support is not enabled");
+    }
+    checkStream();
+    if (b == dictionary && off == 0 && len == b.length) {
+      return;
+    }
+    byte[] dict = (off == 0 && len == b.length) ?
+        b : Arrays.copyOfRange(b, off, off + len);
+    long newDDict = createDDict(dict);
+    freeDictionary();
+    dictionary = dict;
+    ddict = newDDict;
+    initStream();
   }
 
   @Override
@@ -150,7 +201,7 @@ public boolean needsInput() {
     return false;
   }
 
-  // dictionary is not supported.
+  // the dictionary must be set upfront, see setDictionary().
   @Override
   public boolean needsDictionary() {
     return false;
@@ -226,7 +277,7 @@ public int getRemaining() {
   @Override
   public void reset() {
     checkStream();
-    init(stream);
+    initStream();
     remaining = 0;
     finished = false;
     compressedDirectBufOff = 0;
@@ -243,6 +294,22 @@ public void end() {
       free(stream);
       stream = 0;
     }
+    freeDictionary();
+  }
+
+  private void initStream() {
+    if (ddict != 0) {
+      initWithDDict(stream, ddict);
+    } else {
+      init(stream);
+    }
+  }
+
+  private void freeDictionary() {
+    if (ddict != 0) {
+      freeDDict(ddict);
+      ddict = 0;
+    }
   }
 
   @Override
@@ -268,6 +335,9 @@ private int populateUncompressedBuffer(byte[] b, int off, int len, int n) {
   private native int inflateBytesDirect(ByteBuffer src, int srcOffset,
       int srcLen, ByteBuffer dst, int dstOffset, int dstLen);
   private native static void free(long strm);
+  private native static long createDDict(byte[] dictionary);
+  private native static void initWithDDict(long stream, long ddict);
+  private native static void freeDDict(long ddict);
   private native static int getStreamSize();
 
   int inflateDirect(ByteBuffer src, ByteBuffer dst) throws IOException {
@@ -322,12 +392,6 @@ public void decompress(ByteBuffer src, ByteBuffer dst)
       endOfInput = !src.hasRemaining();
     }
 
-    @Override
-    public void setDictionary(byte[] b, int off, int len) {
-      throw new UnsupportedOperationException(
-          "byte[] arrays are not supported for DirectDecompressor");
-    }
-
     @Override
     public int decompress(byte[] b, int off, int len) {
       throw new UnsupportedOperationException(
@@ -71,22 +71,18 @@ public RSRawDecoder(ErasureCoderOptions coderOptions) {
 
   @Override
   protected void doDecode(ByteBufferDecodingState decodingState) {
-    CoderUtil.resetOutputBuffers(decodingState.outputs,
-        decodingState.decodeLength);
     prepareDecoding(decodingState.inputs, decodingState.erasedIndexes);
 
     ByteBuffer[] realInputs = new ByteBuffer[getNumDataUnits()];
     for (int i = 0; i < getNumDataUnits(); i++) {
       realInputs[i] = decodingState.inputs[validIndexes[i]];
     }
-    RSUtil.encodeData(gfTables, realInputs, decodingState.outputs);
+    decodeData(gfTables, realInputs, decodingState.outputs);
   }
 
   @Override
   protected void doDecode(ByteArrayDecodingState decodingState) {
     int dataLen = decodingState.decodeLength;
-    CoderUtil.resetOutputBuffers(decodingState.outputs,
-        decodingState.outputOffsets, dataLen);
     prepareDecoding(decodingState.inputs, decodingState.erasedIndexes);
 
     byte[][] realInputs = new byte[getNumDataUnits()][];
@@ -95,10 +91,44 @@ protected void doDecode(ByteArrayDecodingState decodingState) {
       realInputs[i] = decodingState.inputs[validIndexes[i]];
       realInputOffsets[i] = decodingState.inputOffsets[validIndexes[i]];
     }
-    RSUtil.encodeData(gfTables, dataLen, realInputs, realInputOffsets,
+    decodeData(gfTables, dataLen, realInputs, realInputOffsets,
         decodingState.outputs, decodingState.outputOffsets);
   }
 
+  /**
+   * Compute the erased units from the valid inputs with the tables of the
+   * decoding coefficients. Subclasses may override it to use other coding
+   * loops.
+   *
+   * @param tables tables of the decoding coefficients.
+   * @param inputs valid inputs.
+   * @param outputs outputs.
+   */
+  protected void decodeData(byte[] tables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs) {
+    CoderUtil.resetOutputBuffers(outputs, inputs[0].remaining());
+    RSUtil.encodeData(tables, inputs, outputs);
+  }
+
+  /**
+   * Compute the erased units from the valid inputs with the tables of the
+   * decoding coefficients. Subclasses may override it to use other coding
+   * loops.
+   *
+   * @param tables tables of the decoding coefficients.
+   * @param dataLen dataLen.
+   * @param inputs valid inputs.
+   * @param inputOffsets inputOffsets.
+   * @param outputs outputs.
+   * @param outputOffsets outputOffsets.
+   */
+  protected void decodeData(byte[] tables, int dataLen, byte[][] inputs,
+      int[] inputOffsets, byte[][] outputs, int[] outputOffsets) {
+    CoderUtil.resetOutputBuffers(outputs, outputOffsets, dataLen);
+    RSUtil.encodeData(tables, dataLen, inputs, inputOffsets, outputs,
+        outputOffsets);
+  }
+
   private <T> void prepareDecoding(T[] inputs, int[] erasedIndexes) {
     int[] tmpValidIndexes = CoderUtil.getValidIndexes(inputs);
     if (Arrays.equals(this.cachedErasedIndexes, erasedIndexes) &&
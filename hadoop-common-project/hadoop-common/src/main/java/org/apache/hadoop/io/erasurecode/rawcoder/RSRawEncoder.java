@@ -23,6 +23,8 @@
 import org.apache.hadoop.io.erasurecode.rawcoder.util.DumpUtil;
 import org.apache.hadoop.io.erasurecode.rawcoder.util.RSUtil;
 
+import java.nio.ByteBuffer;
+
 /**
  * A raw erasure encoder in RS code scheme in pure Java in case native one
  * isn't available in some environment. Please always use native implementations
@@ -62,19 +64,46 @@ public RSRawEncoder(ErasureCoderOptions coderOptions) {
 
   @Override
   protected void doEncode(ByteBufferEncodingState encodingState) {
-    CoderUtil.resetOutputBuffers(encodingState.outputs,
-        encodingState.encodeLength);
-    RSUtil.encodeData(gfTables, encodingState.inputs, encodingState.outputs);
+    encodeData(gfTables, encodingState.inputs, encodingState.outputs);
   }
 
   @Override
   protected void doEncode(ByteArrayEncodingState encodingState) {
-    CoderUtil.resetOutputBuffers(encodingState.outputs,
-        encodingState.outputOffsets,
-        encodingState.encodeLength);
-    RSUtil.encodeData(gfTables, encodingState.encodeLength,
+    encodeData(gfTables, encodingState.encodeLength,
         encodingState.inputs,
         encodingState.inputOffsets, encodingState.outputs,
         encodingState.outputOffsets);
   }
+
+  /**
+   * Compute the outputs from the inputs with the tables of the coding
+   * coefficients. Subclasses may override it to use other coding loops.
+   *
+   * @param tables tables of the coding coefficients.
+   * @param inputs inputs.
+   * @param outputs outputs.
+   */
+  protected void encodeData(byte[] tables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs) {
+    CoderUtil.resetOutputBuffers(outputs, inputs[0].remaining());
+    RSUtil.encodeData(tables, inputs, outputs);
+  }
+
+  /**
+   * Compute the outputs from the inputs with the tables of the coding
+   * coefficients. Subclasses may override it to use other coding loops.
+   *
+   * @param tables tables of the coding coefficients.
+   * @param dataLen dataLen.
+   * @param inputs inputs.
+   * @param inputOffsets inputOffsets.
+   * @param outputs outputs.
+   * @param outputOffsets outputOffsets.
+   */
+  protected void encodeData(byte[] tables, int dataLen, byte[][] inputs,
+      int[] inputOffsets, byte[][] outputs, int[] outputOffsets) {
+    CoderUtil.resetOutputBuffers(outputs, outputOffsets, dataLen);
+    RSUtil.encodeData(tables, dataLen, inputs, inputOffsets, outputs,
+        outputOffsets);
+  }
 }
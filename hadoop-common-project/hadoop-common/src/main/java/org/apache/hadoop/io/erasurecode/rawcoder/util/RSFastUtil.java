@@ -0,0 +1,242 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder.util;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+import java.nio.ByteBuffer;
+
+/**
+ * GF(2^8) multiply-accumulate loops for the RS coder, computing the same
+ * results as {@link RSUtil#encodeData}. They differ from it in how the data
+ * is walked:
+ * <ul>
+ * <li>the data is coded in chunks of {@link #CHUNK_SIZE} bytes, so an output
+ * chunk stays in the CPU cache while all the inputs are added to it;
+ * <li>up to 4 inputs are added to an output in a single pass, so an output
+ * byte is loaded and stored once for every 4 inputs instead of every input;
+ * <li>the first pass sets the outputs, so they don't need to be reset;
+ * <li>the loops are simple counted loops over arrays that the JIT compiler
+ * unrolls and removes the range checks from.
+ * </ul>
+ * Direct buffers are copied chunk by chunk into heap arrays instead of being
+ * accessed byte by byte.
+ */
+@InterfaceAudience.Private
+public final class RSFastUtil {
+
+  /** Number of bytes coded at once. */
+  public static final int CHUNK_SIZE = 4096;
+
+  /** Number of inputs added to an output in one pass. */
+  private static final int GROUP_SIZE = 4;
+
+  /** Heap copies of the chunks of direct buffers. */
+  private static final ThreadLocal<byte[]> SCRATCH =
+      ThreadLocal.withInitial(() -> new byte[0]);
+
+  private RSFastUtil() { }
+
+  /**
+   * Encode a group of inputs data and generate the outputs. Like
+   * {@link RSUtil#encodeData(byte[], int, byte[][], int[], byte[][], int[])}
+   * but the outputs don't need to be reset before.
+   *
+   * @param gfTables gfTables.
+   * @param dataLen dataLen.
+   * @param inputs inputs.
+   * @param inputOffsets inputOffsets.
+   * @param outputs outputs.
+   * @param outputOffsets outputOffsets.
+   */
+  public static void encodeData(byte[] gfTables, int dataLen, byte[][] inputs,
+      int[] inputOffsets, byte[][] outputs, int[] outputOffsets) {
+    byte[][] tables = getMulTables(gfTables, inputs.length, outputs.length);
+    for (int start = 0; start < dataLen; start += CHUNK_SIZE) {
+      int len = Math.min(CHUNK_SIZE, dataLen - start);
+      encodeChunk(tables, len, inputs, inputOffsets, outputs, outputOffsets,
+          start);
+    }
+  }
+
+  /**
+   * Encode a group of inputs data and generate the outputs. Like
+   * {@link RSUtil#encodeData(byte[], ByteBuffer[], ByteBuffer[])} but the
+   * outputs don't need to be reset before.
+   *
+   * @param gfTables gfTables.
+   * @param inputs inputs.
+   * @param outputs outputs.
+   */
+  public static void encodeData(byte[] gfTables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs) {
+    int numInputs = inputs.length;
+    int numOutputs = outputs.length;
+    int dataLen = inputs[0].remaining();
+    if (dataLen == 0) {
+      return;
+    }
+
+    byte[][] inputArrays = new byte[numInputs][];
+    int[] inputOffsets = new int[numInputs];
+    byte[][] outputArrays = new byte[numOutputs][];
+    int[] outputOffsets = new int[numOutputs];
+    if (hasArrays(inputs) && hasArrays(outputs)) {
+      for (int i = 0; i < numInputs; i++) {
+        inputArrays[i] = inputs[i].array();
+        inputOffsets[i] = inputs[i].arrayOffset() + inputs[i].position();
+      }
+      for (int i = 0; i < numOutputs; i++) {
+        outputArrays[i] = outputs[i].array();
+        outputOffsets[i] = outputs[i].arrayOffset() + outputs[i].position();
+      }
+      encodeData(gfTables, dataLen, inputArrays, inputOffsets, outputArrays,
+          outputOffsets);
+      return;
+    }
+
+    // Code the direct buffers through a heap copy of each chunk
+    int chunkSize = Math.min(CHUNK_SIZE, dataLen);
+    byte[] scratch = getScratch((numInputs + numOutputs) * chunkSize);
+    ByteBuffer[] inputViews = new ByteBuffer[numInputs];
+    for (int i = 0; i < numInputs; i++) {
+      inputArrays[i] = scratch;
+      inputOffsets[i] = i * chunkSize;
+      inputViews[i] = inputs[i].duplicate();
+    }
+    ByteBuffer[] outputViews = new ByteBuffer[numOutputs];
+    for (int i = 0; i < numOutputs; i++) {
+      outputArrays[i] = scratch;
+      outputOffsets[i] = (numInputs + i) * chunkSize;
+      outputViews[i] = outputs[i].duplicate();
+    }
+
+    byte[][] tables = getMulTables(gfTables, numInputs, numOutputs);
+    for (int start = 0; start < dataLen; start += chunkSize) {
+      int len = Math.min(chunkSize, dataLen - start);
+      for (int i = 0; i < numInputs; i++) {
+        inputViews[i].get(scratch, inputOffsets[i], len);
+      }
+      encodeChunk(tables, len, inputArrays, inputOffsets, outputArrays,
+          outputOffsets, 0);
+      for (int i = 0; i < numOutputs; i++) {
+        outputViews[i].put(scratch, outputOffsets[i], len);
+      }
+    }
+  }
+
+  /**
+   * Get the multiplication table line of each coding coefficient.
+   *
+   * @return Table line of input j for output l at l * numInputs + j.
+   */
+  private static byte[][] getMulTables(byte[] gfTables, int numInputs,
+      int numOutputs) {
+    byte[][] tables = new byte[numInputs * numOutputs][];
+    for (int l = 0; l < numOutputs; l++) {
+      for (int j = 0; j < numInputs; j++) {
+        byte s = gfTables[j * 32 + l * numInputs * 32 + 1];
+        tables[l * numInputs + j] = GF256.gfMulTab()[s & 0xff];
+      }
+    }
+    return tables;
+  }
+
+  private static boolean hasArrays(ByteBuffer[] buffers) {
+    for (ByteBuffer buffer : buffers) {
+      if (!buffer.hasArray()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte[] getScratch(int size) {
+    byte[] scratch = SCRATCH.get();
+    if (scratch.length < size) {
+      scratch = new byte[size];
+      SCRATCH.set(scratch);
+    }
+    return scratch;
+  }
+
+  /**
+   * Code len bytes starting at start of every input and output.
+   */
+  private static void encodeChunk(byte[][] tables, int len, byte[][] inputs,
+      int[] inputOffsets, byte[][] outputs, int[] outputOffsets, int start) {
+    int numInputs = inputs.length;
+    for (int l = 0; l < outputs.length; l++) {
+      byte[] output = outputs[l];
+      int oPos = outputOffsets[l] + start;
+      int t = l * numInputs;
+      int j = 0;
+      for (; j + GROUP_SIZE <= numInputs; j += GROUP_SIZE, t += GROUP_SIZE) {
+        mulAdd4(tables[t], tables[t + 1], tables[t + 2], tables[t + 3],
+            inputs[j], inputOffsets[j] + start,
+            inputs[j + 1], inputOffsets[j + 1] + start,
+            inputs[j + 2], inputOffsets[j + 2] + start,
+            inputs[j + 3], inputOffsets[j + 3] + start,
+            output, oPos, len, j > 0);
+      }
+      for (; j < numInputs; j++, t++) {
+        mulAdd(tables[t], inputs[j], inputOffsets[j] + start,
+            output, oPos, len, j > 0);
+      }
+    }
+  }
+
+  /**
+   * Multiply 4 inputs by their coefficients and add them to the output, or
+   * set the output to their sum if add is false.
+   */
+  private static void mulAdd4(byte[] t0, byte[] t1, byte[] t2, byte[] t3,
+      byte[] in0, int p0, byte[] in1, int p1, byte[] in2, int p2,
+      byte[] in3, int p3, byte[] out, int oPos, int len, boolean add) {
+    if (add) {
+      for (int i = 0; i < len; i++) {
+        out[oPos + i] ^= (byte) (t0[in0[p0 + i] & 0xff] ^
+            t1[in1[p1 + i] & 0xff] ^ t2[in2[p2 + i] & 0xff] ^
+            t3[in3[p3 + i] & 0xff]);
+      }
+    } else {
+      for (int i = 0; i < len; i++) {
+        out[oPos + i] = (byte) (t0[in0[p0 + i] & 0xff] ^
+            t1[in1[p1 + i] & 0xff] ^ t2[in2[p2 + i] & 0xff] ^
+            t3[in3[p3 + i] & 0xff]);
+      }
+    }
+  }
+
+  /**
+   * Multiply an input by its coefficient and add it to the output, or set
+   * the output to the product if add is false.
+   */
+  private static void mulAdd(byte[] t0, byte[] in0, int p0, byte[] out,
+      int oPos, int len, boolean add) {
+    if (add) {
+      for (int i = 0; i < len; i++) {
+        out[oPos + i] ^= t0[in0[p0 + i] & 0xff];
+      }
+    } else {
+      for (int i = 0; i < len; i++) {
+        out[oPos + i] = t0[in0[p0 + i] & 0xff];
+      }
+    }
+  }
+}
@@ -291,7 +291,7 @@ public void put(E e) throws InterruptedException {
     if (!isClientBackoffEnabled()) {
       putRef.get().put(e);
     } else if (shouldBackOff(e)) {
-      throwBackoff();
+      throwSchedulerBackoff(e);
     } else {
       // No need to re-check backoff criteria since they were just checked
       addInternal(e, false);
@@ -306,7 +306,7 @@ public boolean add(E e) {
   @VisibleForTesting
   boolean addInternal(E e, boolean checkBackoff) {
     if (checkBackoff && isClientBackoffEnabled() && shouldBackOff(e)) {
-      throwBackoff();
+      throwSchedulerBackoff(e);
     }
     try {
       return putRef.get().add(e);
@@ -327,6 +327,19 @@ private void throwBackoff() throws IllegalStateException {
         CallQueueOverflowException.DISCONNECT;
   }
 
+  // a call the scheduler backed off keeps its connection when the scheduler
+  // can tell the client when to retry.
+  private void throwSchedulerBackoff(Schedulable e)
+      throws IllegalStateException {
+    if (!serverFailOverEnabled) {
+      long retryAfterMs = scheduler.getRetryAfterMs(e);
+      if (retryAfterMs > 0) {
+        throw CallQueueOverflowException.retryAfter(retryAfterMs);
+      }
+    }
+    throwBackoff();
+  }
+
   /**
    * Insert e into the backing queue.
    * Return true if e is queued.
@@ -551,6 +564,15 @@ static class CallQueueOverflowException extends IllegalStateException {
         new CallQueueOverflowException(
             new StandbyException(TOO_BUSY + " - disconnect and failover"),
             RpcStatusProto.FATAL);
+    /**
+     * @param retryAfterMillis when the client may retry.
+     * @return an exception that keeps the connection, with a retry hint.
+     */
+    static CallQueueOverflowException retryAfter(long retryAfterMillis) {
+      return new CallQueueOverflowException(new RetriableException(
+          TOO_BUSY + " - retry after " + retryAfterMillis + "ms"),
+          RpcStatusProto.ERROR);
+    }
     CallQueueOverflowException(final IOException ioe,
         final RpcStatusProto status) {
       super("Queue full", new RpcServerException(ioe.getMessage(), ioe){
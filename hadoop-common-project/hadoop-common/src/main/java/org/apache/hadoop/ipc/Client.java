@@ -113,6 +113,34 @@ protected Boolean initialValue() {
     return (AsyncGet<T, IOException>) ASYNC_RPC_RESPONSE.get();
   }
 
+  /**
+   * Get a future for the response of the last asynchronous call made by the
+   * current thread. The future is completed by the thread receiving the
+   * response, so dependent stages should either be cheap or use an executor.
+   *
+   * @param <T> the type of the response.
+   * @return the future, or null if the thread did not make an asynchronous
+   *         call.
+   */
+  @Unstable
+  public static <T extends Writable> CompletableFuture<T>
+      getAsyncRpcResponseFuture() {
+    return toFuture(getAsyncRpcResponse());
+  }
+
+  /**
+   * Convert the {@link AsyncGet} returned by {@link #getAsyncRpcResponse()}
+   * to a future.
+   */
+  @SuppressWarnings("unchecked")
+  static <T extends Writable> CompletableFuture<T> toFuture(
+      AsyncGet<T, IOException> asyncGet) {
+    if (asyncGet instanceof AsyncRpcResponse) {
+      return (CompletableFuture<T>) ((AsyncRpcResponse) asyncGet).toFuture();
+    }
+    return null;
+  }
+
   /**
    * Set call id and retry count for the next call.
    * @param cid input cid.
@@ -282,6 +310,7 @@ static class Call {
     final RPC.RpcKind rpcKind;      // Rpc EngineKind
     boolean done;               // true when call is done
     private final Object externalHandler;
+    private Runnable completionListener;
     private AlignmentContext alignmentContext;
 
     private Call(RPC.RpcKind rpcKind, Writable param) {
@@ -322,6 +351,23 @@ protected synchronized void callComplete() {
           externalHandler.notify();
         }
       }
+      if (completionListener != null) {
+        completionListener.run();
+      }
+    }
+
+    /**
+     * Run the listener when the call is complete, or right away if it is
+     * already complete.
+     *
+     * @param listener the listener to run.
+     */
+    synchronized void setCompletionListener(Runnable listener) {
+      if (done) {
+        listener.run();
+      } else {
+        this.completionListener = listener;
+      }
     }
 
     /**
@@ -392,8 +438,8 @@ private class Connection extends Thread {
     private IOException closeException; // close reason
 
     private final Thread rpcRequestThread;
-    private final SynchronousQueue<Pair<Call, ResponseBuffer>> rpcRequestQueue =
-        new SynchronousQueue<>(true);
+    private final int sendBatchSize; // max requests written per flush
+    private final BlockingQueue<Pair<Call, ResponseBuffer>> rpcRequestQueue;
 
     private AtomicReference<Thread> connectingThread = new AtomicReference<>();
     private final Consumer<Connection> removeMethod;
@@ -409,6 +455,15 @@ private class Connection extends Thread {
       this.maxResponseLength = remoteId.conf.getInt(
           CommonConfigurationKeys.IPC_MAXIMUM_RESPONSE_LENGTH,
           CommonConfigurationKeys.IPC_MAXIMUM_RESPONSE_LENGTH_DEFAULT);
+      this.sendBatchSize = Math.max(1, remoteId.conf.getInt(
+          CommonConfigurationKeys.IPC_CLIENT_SEND_BATCH_SIZE_KEY,
+          CommonConfigurationKeys.IPC_CLIENT_SEND_BATCH_SIZE_DEFAULT));
+      // without batching, callers hand their request directly to the
+      // sending thread. Otherwise they queue it, so that the requests of
+      // concurrent callers pile up while a previous batch is being written.
+      this.rpcRequestQueue = sendBatchSize > 1
+          ? new LinkedBlockingQueue<>(sendBatchSize)
+          : new SynchronousQueue<>(true);
       this.rpcTimeout = remoteId.getRpcTimeout();
       this.maxIdleTime = remoteId.getMaxIdleTime();
       this.connectionRetryPolicy = remoteId.connectionRetryPolicy;
@@ -1114,24 +1169,33 @@ public void run() {
      * A thread to write rpc requests to the socket.
      */
     private class RpcRequestSender implements Runnable {
+      private final List<Pair<Call, ResponseBuffer>> batch =
+          new ArrayList<>(sendBatchSize);
+
       @Override
       public void run() {
         while (!shouldCloseConnection.get()) {
-          ResponseBuffer buf = null;
           try {
             Pair<Call, ResponseBuffer> pair =
                 rpcRequestQueue.poll(maxIdleTime, TimeUnit.MILLISECONDS);
             if (pair == null || shouldCloseConnection.get()) {
               continue;
             }
-            buf = pair.getRight();
+            batch.add(pair);
+            if (sendBatchSize > 1) {
+              // pick up the requests queued while the last batch was sent
+              rpcRequestQueue.drainTo(batch, sendBatchSize - 1);
+            }
             synchronized (ipcStreams.out) {
               if (LOG.isDebugEnabled()) {
-                Call call = pair.getLeft();
-                LOG.debug("{} sending #{} {}", getName(), call.id, call.rpcRequest);
+                for (Pair<Call, ResponseBuffer> p : batch) {
+                  Call call = p.getLeft();
+                  LOG.debug("{} sending #{} {}", getName(), call.id,
+                      call.rpcRequest);
+                }
               }
               // RpcRequestHeader + RpcRequest
-              ipcStreams.sendRequest(buf.toByteArray());
+              ipcStreams.sendRequest(toByteArray(batch));
               ipcStreams.flush();
             }
           } catch (InterruptedException ie) {
@@ -1143,12 +1207,34 @@ public void run() {
             // So, close the connection, killing any outstanding calls
             markClosed(e);
           } finally {
-            //the buffer is just an in-memory buffer, but it is still polite to
+            //the buffers are just in-memory buffers, but it is still polite to
             // close early
-            IOUtils.closeStream(buf);
+            for (Pair<Call, ResponseBuffer> p : batch) {
+              IOUtils.closeStream(p.getRight());
+            }
+            batch.clear();
           }
         }
       }
+
+      /**
+       * Concatenate the framed requests of a batch, so that they reach the
+       * stream, and the SASL wrapper if any, in a single write.
+       */
+      private byte[] toByteArray(List<Pair<Call, ResponseBuffer>> requests) {
+        if (requests.size() == 1) {
+          return requests.get(0).getRight().toByteArray();
+        }
+        int length = 0;
+        for (Pair<Call, ResponseBuffer> p : requests) {
+          length += p.getRight().framedSize();
+        }
+        ByteBuffer bb = ByteBuffer.allocate(length);
+        for (Pair<Call, ResponseBuffer> p : requests) {
+          p.getRight().copyTo(bb);
+        }
+        return bb.array();
+      }
     }
 
     /** Initiates a rpc call by sending the rpc request to the remote server.
@@ -1495,36 +1581,7 @@ Writable call(RPC.RpcKind rpcKind, Writable rpcRequest,
     }
 
     if (isAsynchronousMode()) {
-      final AsyncGet<Writable, IOException> asyncGet
-          = new AsyncGet<Writable, IOException>() {
-        @Override
-        public Writable get(long timeout, TimeUnit unit)
-            throws IOException, TimeoutException{
-          boolean done = true;
-          try {
-            final Writable w = getRpcResponse(call, connection, timeout, unit);
-            if (w == null) {
-              done = false;
-              throw new TimeoutException(call + " timed out "
-                  + timeout + " " + unit);
-            }
-            return w;
-          } finally {
-            if (done) {
-              releaseAsyncCall();
-            }
-          }
-        }
-
-        @Override
-        public boolean isDone() {
-          synchronized (call) {
-            return call.done;
-          }
-        }
-      };
-
-      ASYNC_RPC_RESPONSE.set(asyncGet);
+      ASYNC_RPC_RESPONSE.set(new AsyncRpcResponse(call, connection));
       return null;
     } else {
       return getRpcResponse(call, connection, -1, null);
@@ -1558,6 +1615,65 @@ private void releaseAsyncCall() {
     asyncCallCounter.decrementAndGet();
   }
 
+  /**
+   * The response of an asynchronous call. It can be waited for with
+   * {@link #get(long, TimeUnit)}, or converted to a future completed when the
+   * response arrives.
+   */
+  private final class AsyncRpcResponse
+      implements AsyncGet<Writable, IOException> {
+    private final Call call;
+    private final Connection connection;
+    private final AtomicBoolean released = new AtomicBoolean();
+    private CompletableFuture<Writable> future;
+
+    private AsyncRpcResponse(Call call, Connection connection) {
+      this.call = call;
+      this.connection = connection;
+    }
+
+    @Override
+    public Writable get(long timeout, TimeUnit unit)
+        throws IOException, TimeoutException {
+      boolean done = true;
+      try {
+        final Writable w = getRpcResponse(call, connection, timeout, unit);
+        if (w == null) {
+          done = false;
+          throw new TimeoutException(call + " timed out "
+              + timeout + " " + unit);
+        }
+        return w;
+      } finally {
+        if (done && released.compareAndSet(false, true)) {
+          releaseAsyncCall();
+        }
+      }
+    }
+
+    @Override
+    public boolean isDone() {
+      synchronized (call) {
+        return call.done;
+      }
+    }
+
+    private synchronized CompletableFuture<Writable> toFuture() {
+      if (future == null) {
+        final CompletableFuture<Writable> f = new CompletableFuture<>();
+        future = f;
+        call.setCompletionListener(() -> {
+          try {
+            f.complete(get(-1, null));
+          } catch (Throwable t) {
+            f.completeExceptionally(t);
+          }
+        });
+      }
+      return future;
+    }
+  }
+
   @VisibleForTesting
   int getAsyncCallCount() {
     return asyncCallCounter.get();
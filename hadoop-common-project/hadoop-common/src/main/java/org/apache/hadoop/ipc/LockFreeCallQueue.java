@@ -0,0 +1,434 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.ipc;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.lang3.NotImplementedException;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.ipc.CallQueueManager.CallQueueOverflowException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A queue with a lock-free queue for each priority level. It schedules calls
+ * like {@link FairCallQueue}, but producers and consumers only contend on
+ * compare-and-set operations; threads park only when there is no call to
+ * take, or no room for a call.
+ */
+public class LockFreeCallQueue<E extends Schedulable> extends AbstractQueue<E>
+    implements BlockingQueue<E> {
+  public static final Logger LOG =
+      LoggerFactory.getLogger(LockFreeCallQueue.class);
+
+  // Max time a producer parks before it checks for room again
+  private static final long MAX_PUT_PARK_NANOS =
+      TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final ConcurrentLinkedQueue<E>[] queues;
+  // Number of elements and capacity of each queue
+  private final AtomicInteger[] counts;
+  private final int[] capacities;
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicLongArray overflowedCalls;
+
+  /* Multiplexer picks which queue to draw from */
+  private RpcMultiplexer multiplexer;
+
+  /* Failover if queue is filled up */
+  private final boolean serverFailOverEnabled;
+
+  // Threads waiting for an element, and for room for an element
+  private final Waiters consumers = new Waiters();
+  private final Waiters producers = new Waiters();
+
+  /**
+   * Threads parked until the queue changes. A thread adds itself before it
+   * checks the queue one last time, and the thread that makes the change
+   * unparks the first waiting thread, so no change goes unnoticed.
+   */
+  private static final class Waiters {
+    private final ConcurrentLinkedQueue<Thread> threads =
+        new ConcurrentLinkedQueue<>();
+
+    void add(Thread thread) {
+      threads.add(thread);
+    }
+
+    /**
+     * @return false if the thread was not waiting anymore, i.e. another
+     * thread signalled it.
+     */
+    boolean remove(Thread thread) {
+      return threads.remove(thread);
+    }
+
+    void signal() {
+      if (!threads.isEmpty()) {
+        Thread thread = threads.poll();
+        if (thread != null) {
+          LockSupport.unpark(thread);
+        }
+      }
+    }
+  }
+
+  @VisibleForTesting
+  public LockFreeCallQueue(int priorityLevels, int capacity, String ns,
+      Configuration conf) {
+    this(priorityLevels, capacity, ns,
+        CallQueueManager.getDefaultQueueCapacityWeights(priorityLevels),
+        false, conf);
+  }
+
+  /**
+   * Create a LockFreeCallQueue.
+   * @param priorityLevels the number of sub-queues
+   * @param capacity the total size of all sub-queues
+   * @param ns the prefix to use for configuration
+   * @param capacityWeights the weights array for capacity allocation
+   *                        among subqueues
+   * @param serverFailOverEnabled whether or not to enable callqueue overflow
+   *                              trigger failover for stateless servers
+   *                              when RPC call queue is filled
+   * @param conf the configuration to read from
+   */
+  @SuppressWarnings("unchecked")
+  public LockFreeCallQueue(int priorityLevels, int capacity, String ns,
+      int[] capacityWeights, boolean serverFailOverEnabled,
+      Configuration conf) {
+    if (priorityLevels < 1) {
+      throw new IllegalArgumentException("Number of Priority Levels must be " +
+          "at least 1");
+    }
+    LOG.info("LockFreeCallQueue is in use with " + priorityLevels +
+        " queues with total capacity of " + capacity);
+    this.serverFailOverEnabled = serverFailOverEnabled;
+    this.queues = new ConcurrentLinkedQueue[priorityLevels];
+    this.counts = new AtomicInteger[priorityLevels];
+    this.capacities = new int[priorityLevels];
+    this.overflowedCalls = new AtomicLongArray(priorityLevels);
+    int totalWeights = 0;
+    for (int w : capacityWeights) {
+      totalWeights += w;
+    }
+    int residueCapacity = capacity % totalWeights;
+    int unitCapacity = capacity / totalWeights;
+    for (int i = 0; i < priorityLevels; i++) {
+      queues[i] = new ConcurrentLinkedQueue<>();
+      counts[i] = new AtomicInteger();
+      capacities[i] = unitCapacity * capacityWeights[i]
+          + (i == 0 ? residueCapacity : 0);
+    }
+    this.multiplexer =
+        new WeightedRoundRobinMultiplexer(priorityLevels, ns, conf);
+  }
+
+  /**
+   * Offer the element to the queue of a specific priority.
+   * @return true if there was room for the element.
+   */
+  @VisibleForTesting
+  boolean offerQueue(int priority, E e) {
+    AtomicInteger count = counts[priority];
+    while (true) {
+      int c = count.get();
+      if (c >= capacities[priority]) {
+        return false;
+      }
+      if (count.compareAndSet(c, c + 1)) {
+        break;
+      }
+    }
+    queues[priority].offer(e);
+    size.incrementAndGet();
+    consumers.signal();
+    return true;
+  }
+
+  /**
+   * Offer the element to the queue of the given or lower priority.
+   * @param includeLast whether to attempt the last queue
+   * @return true if added to a queue
+   */
+  private boolean offerQueues(int priority, E e, boolean includeLast) {
+    int lastPriority = queues.length - (includeLast ? 1 : 2);
+    for (int i = priority; i <= lastPriority; i++) {
+      if (offerQueue(i, e)) {
+        return true;
+      }
+      overflowedCalls.incrementAndGet(i);
+    }
+    return false;
+  }
+
+  /**
+   * Take an element, starting from the queue picked by the multiplexer.
+   * @return the element, or null if all the queues were empty.
+   */
+  private E pollQueues() {
+    if (size.get() == 0) {
+      return null;
+    }
+    int start = multiplexer.getAndAdvanceCurrentIndex();
+    for (int i = 0; i < queues.length; i++) {
+      int priority = (start + i) % queues.length;
+      E e = queues[priority].poll();
+      if (e != null) {
+        counts[priority].decrementAndGet();
+        size.decrementAndGet();
+        producers.signal();
+        return e;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Park until an element is taken or the timeout expires.
+   */
+  private E awaitElement(long timeoutNanos) throws InterruptedException {
+    final Thread current = Thread.currentThread();
+    final long deadline = System.nanoTime() + timeoutNanos;
+    while (true) {
+      consumers.add(current);
+      E e = pollQueues();
+      if (e == null && !current.isInterrupted()) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining > 0) {
+          LockSupport.parkNanos(this, remaining);
+        }
+      }
+      boolean signalled = !consumers.remove(current);
+      if (e == null) {
+        if (Thread.interrupted()) {
+          passSignal(signalled);
+          throw new InterruptedException();
+        }
+        e = pollQueues();
+        if (e == null && deadline - System.nanoTime() > 0) {
+          continue;
+        }
+      }
+      passSignal(signalled);
+      return e;
+    }
+  }
+
+  /**
+   * A thread that was signalled passes the signal on to another consumer
+   * when it leaves, in case the signal was meant for that one.
+   */
+  private void passSignal(boolean signalled) {
+    if (signalled && size.get() > 0) {
+      consumers.signal();
+    }
+  }
+
+  /**
+   * Park until the element is added to the queue of the given priority, or
+   * the timeout expires.
+   */
+  private boolean awaitRoom(int priority, E e, long timeoutNanos)
+      throws InterruptedException {
+    final Thread current = Thread.currentThread();
+    final long deadline = System.nanoTime() + timeoutNanos;
+    while (true) {
+      producers.add(current);
+      boolean added = offerQueue(priority, e);
+      if (!added && !current.isInterrupted()) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining > 0) {
+          LockSupport.parkNanos(this,
+              Math.min(remaining, MAX_PUT_PARK_NANOS));
+        }
+      }
+      boolean signalled = !producers.remove(current);
+      if (signalled && added) {
+        producers.signal();
+      }
+      if (added) {
+        return true;
+      }
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      if (deadline - System.nanoTime() <= 0) {
+        return offerQueue(priority, e);
+      }
+    }
+  }
+
+  /* AbstractQueue and BlockingQueue methods */
+
+  /**
+   * Add, put, and offer behave like in {@link FairCallQueue}:
+   * - Add will move on to the next queue, throw on last queue overflow
+   * - Put will move on to the next queue, block on last queue overflow
+   * - Offer does not attempt other queues on overflow
+   */
+  @Override
+  public boolean add(E e) {
+    final int priorityLevel = e.getPriorityLevel();
+    if (!offerQueues(priorityLevel, e, true)) {
+      CallQueueOverflowException ex;
+      if (serverFailOverEnabled) {
+        // Signal clients to failover and try a separate server.
+        ex = CallQueueOverflowException.FAILOVER;
+      } else if (priorityLevel == queues.length - 1) {
+        // only disconnect the lowest priority users that overflow the queue.
+        ex = CallQueueOverflowException.DISCONNECT;
+      } else {
+        ex = CallQueueOverflowException.KEEPALIVE;
+      }
+      throw ex;
+    }
+    return true;
+  }
+
+  @Override
+  public void put(E e) throws InterruptedException {
+    final int priorityLevel = e.getPriorityLevel();
+    if (!offerQueues(priorityLevel, e, false)) {
+      awaitRoom(queues.length - 1, e, Long.MAX_VALUE);
+    }
+  }
+
+  @Override
+  public boolean offer(E e, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    int priorityLevel = e.getPriorityLevel();
+    return offerQueue(priorityLevel, e)
+        || awaitRoom(priorityLevel, e, unit.toNanos(timeout));
+  }
+
+  @Override
+  public boolean offer(E e) {
+    return offerQueue(e.getPriorityLevel(), e);
+  }
+
+  @Override
+  public E take() throws InterruptedException {
+    E e = pollQueues();
+    return e != null ? e : awaitElement(Long.MAX_VALUE);
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    E e = pollQueues();
+    if (e != null || timeout <= 0) {
+      return e;
+    }
+    return awaitElement(unit.toNanos(timeout));
+  }
+
+  @Override
+  public E poll() {
+    return pollQueues();
+  }
+
+  /**
+   * Peek provides no strict consistency.
+   */
+  @Override
+  public E peek() {
+    E e = null;
+    for (int i = 0; e == null && i < queues.length; i++) {
+      e = queues[i].peek();
+    }
+    return e;
+  }
+
+  /**
+   * Size provides no strict consistency, and should not be used to control
+   * queue IO.
+   */
+  @Override
+  public int size() {
+    return size.get();
+  }
+
+  /**
+   * Iterator is not implemented, as it is not needed.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    throw new NotImplementedException("Code is not implemented");
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c, int maxElements) {
+    int drained = 0;
+    E e;
+    while (drained < maxElements && (e = pollQueues()) != null) {
+      c.add(e);
+      drained++;
+    }
+    return drained;
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int remainingCapacity() {
+    int sum = 0;
+    for (int i = 0; i < queues.length; i++) {
+      sum += capacities[i] - counts[i].get();
+    }
+    return sum;
+  }
+
+  public int[] getQueueSizes() {
+    int[] sizes = new int[queues.length];
+    for (int i = 0; i < queues.length; i++) {
+      sizes[i] = counts[i].get();
+    }
+    return sizes;
+  }
+
+  public long[] getOverflowedCalls() {
+    long[] calls = new long[queues.length];
+    for (int i = 0; i < queues.length; i++) {
+      calls[i] = overflowedCalls.get(i);
+    }
+    return calls;
+  }
+
+  @VisibleForTesting
+  public void setMultiplexer(RpcMultiplexer newMux) {
+    this.multiplexer = newMux;
+  }
+
+  @VisibleForTesting
+  public boolean isServerFailOverEnabled() {
+    return serverFailOverEnabled;
+  }
+}
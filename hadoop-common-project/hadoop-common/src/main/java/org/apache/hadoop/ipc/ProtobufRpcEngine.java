@@ -536,6 +536,13 @@ RequestHeaderProto getRequestHeader() throws IOException {
       return requestHeader;
     }
 
+    // keep the header for toString() once the request buffer is reused.
+    @Override
+    void detach() throws IOException {
+      getRequestHeader();
+      super.detach();
+    }
+
     @Override
     public void writeTo(ResponseBuffer out) throws IOException {
       requestHeader.writeDelimitedTo(out);
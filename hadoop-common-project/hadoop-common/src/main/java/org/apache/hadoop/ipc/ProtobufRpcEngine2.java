@@ -50,6 +50,8 @@
 import java.lang.reflect.Proxy;
 import java.net.InetSocketAddress;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -84,6 +86,24 @@ public static AsyncGet<Message, Exception> getAsyncReturnMessage() {
     return ASYNC_RETURN_MESSAGE.get();
   }
 
+  /**
+   * Get a future for the return message of the last asynchronous call made
+   * by the current thread. The future fails with the IOException of the call.
+   * It is completed by the thread receiving the response, so dependent
+   * stages should either be cheap or use an executor.
+   *
+   * @return the future, or null if the thread did not make an asynchronous
+   *         call.
+   */
+  @Unstable
+  public static CompletableFuture<Message> getAsyncReturnMessageFuture() {
+    AsyncGet<Message, Exception> asyncGet = ASYNC_RETURN_MESSAGE.get();
+    if (asyncGet instanceof AsyncReturnMessage) {
+      return ((AsyncReturnMessage) asyncGet).toFuture();
+    }
+    return null;
+  }
+
   public <T> ProtocolProxy<T> getProxy(Class<T> protocol, long clientVersion,
       InetSocketAddress addr, UserGroupInformation ticket, Configuration conf,
       SocketFactory factory, int rpcTimeout) throws IOException {
@@ -285,19 +305,7 @@ public Message invoke(Object proxy, final Method method, Object[] args)
       if (Client.isAsynchronousMode()) {
         final AsyncGet<RpcWritable.Buffer, IOException> arr
             = Client.getAsyncRpcResponse();
-        final AsyncGet<Message, Exception> asyncGet =
-            new AsyncGet<Message, Exception>() {
-              @Override
-              public Message get(long timeout, TimeUnit unit) throws Exception {
-                return getReturnMessage(method, arr.get(timeout, unit));
-              }
-
-              @Override
-              public boolean isDone() {
-            return arr.isDone();
-          }
-        };
-        ASYNC_RETURN_MESSAGE.set(asyncGet);
+        ASYNC_RETURN_MESSAGE.set(new AsyncReturnMessage(this, method, arr));
         return null;
       } else {
         return getReturnMessage(method, val);
@@ -652,6 +660,47 @@ private RpcWritable call(RPC.Server server,
     }
   }
 
+  /**
+   * The return message of an asynchronous call.
+   */
+  private static final class AsyncReturnMessage
+      implements AsyncGet<Message, Exception> {
+    private final Invoker invoker;
+    private final Method method;
+    private final AsyncGet<RpcWritable.Buffer, IOException> response;
+
+    private AsyncReturnMessage(Invoker invoker, Method method,
+        AsyncGet<RpcWritable.Buffer, IOException> response) {
+      this.invoker = invoker;
+      this.method = method;
+      this.response = response;
+    }
+
+    @Override
+    public Message get(long timeout, TimeUnit unit) throws Exception {
+      return invoker.getReturnMessage(method, response.get(timeout, unit));
+    }
+
+    @Override
+    public boolean isDone() {
+      return response.isDone();
+    }
+
+    private CompletableFuture<Message> toFuture() {
+      CompletableFuture<RpcWritable.Buffer> future = Client.toFuture(response);
+      if (future == null) {
+        return null;
+      }
+      return future.thenApply(buf -> {
+        try {
+          return invoker.getReturnMessage(method, buf);
+        } catch (ServiceException e) {
+          throw new CompletionException(e.getCause());
+        }
+      });
+    }
+  }
+
   // htrace in the ipc layer creates the span name based on toString()
   // which uses the rpc header.  in the normal case we want to defer decoding
   // the rpc header until needed by the rpc engine.
@@ -674,6 +723,13 @@ RequestHeaderProto getRequestHeader() throws IOException {
       return requestHeader;
     }
 
+    // keep the header for toString() once the request buffer is reused.
+    @Override
+    void detach() throws IOException {
+      getRequestHeader();
+      super.detach();
+    }
+
     @Override
     public void writeTo(ResponseBuffer out) throws IOException {
       requestHeader.writeDelimitedTo(out);
@@ -76,9 +76,16 @@ protected <T> T readFrom(ByteBuffer bb) throws IOException {
     // most efficient way to deserialize a protobuf.  it has a direct
     // path to the PB ctor that doesn't create multi-layered streams
     // that internally buffer.
-    com.google.protobuf.CodedInputStream cis =
-        com.google.protobuf.CodedInputStream.newInstance(
-            bb.array(), bb.position() + bb.arrayOffset(), bb.remaining());
+    final com.google.protobuf.CodedInputStream cis;
+    if (bb.hasArray()) {
+      cis = com.google.protobuf.CodedInputStream.newInstance(
+          bb.array(), bb.position() + bb.arrayOffset(), bb.remaining());
+    } else {
+      // the legacy parser can't read a direct buffer in place.
+      byte[] bytes = new byte[bb.remaining()];
+      bb.duplicate().get(bytes);
+      cis = com.google.protobuf.CodedInputStream.newInstance(bytes);
+    }
     try {
       cis.pushLimit(cis.readRawVarint32());
       message = message.getParserForType().parseFrom(cis);
@@ -22,6 +22,7 @@
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -53,6 +54,16 @@ byte[] toByteArray() {
     return getFramedBuffer().toByteArray();
   }
 
+  /** @return the number of bytes of the framed buffer. */
+  int framedSize() {
+    return getFramedBuffer().size() + FramedBuffer.FRAMING_BYTES;
+  }
+
+  /** copy the framed buffer into the given buffer. */
+  void copyTo(ByteBuffer dst) {
+    getFramedBuffer().copyTo(dst);
+  }
+
   int capacity() {
     return ((FramedBuffer)out).capacity();
   }
@@ -92,6 +103,9 @@ void setSize(int size) {
     int capacity() {
       return buf.length - FRAMING_BYTES;
     }
+    void copyTo(ByteBuffer dst) {
+      dst.put(buf, 0, count);
+    }
     void setCapacity(int capacity) {
       buf = Arrays.copyOf(buf, capacity + FRAMING_BYTES);
     }
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.ipc;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.util.Preconditions;
+
+/**
+ * A pool of the buffers that the IPC server reads requests into and
+ * serializes responses into. The buffers are grouped into size classes of a
+ * power of two bytes, from {@link #MIN_BUFFER_SIZE} to the max buffer size.
+ * Each size class keeps at most its share of the capacity of the pool.
+ * Larger buffers are not pooled.
+ * <p>
+ * A buffer must be put back at most once, and only when nothing reads from
+ * it anymore. A buffer that is never put back is garbage collected.
+ */
+@InterfaceAudience.Private
+class RpcBufferPool {
+  /** Size of the smallest size class. */
+  static final int MIN_BUFFER_SIZE = 1024;
+
+  private final boolean direct;
+  private final int maxBufferSize;
+  private final ConcurrentLinkedQueue<ByteBuffer>[] pools;
+  /** Number of buffers in each size class. */
+  private final AtomicInteger[] counts;
+  /** Max number of buffers in each size class. */
+  private final int[] maxCounts;
+
+  private final LongAdder numAllocated = new LongAdder();
+  private final LongAdder numReused = new LongAdder();
+
+  /**
+   * @param direct whether to pool direct buffers.
+   * @param maxBufferSize size of the largest pooled buffers.
+   * @param capacity max number of bytes kept by the pool.
+   */
+  @SuppressWarnings("unchecked")
+  RpcBufferPool(boolean direct, int maxBufferSize, long capacity) {
+    Preconditions.checkArgument(maxBufferSize >= MIN_BUFFER_SIZE,
+        "Max buffer size %s is smaller than %s", maxBufferSize,
+        MIN_BUFFER_SIZE);
+    this.direct = direct;
+    this.maxBufferSize = Integer.highestOneBit(maxBufferSize);
+    int numSizeClasses = getSizeClass(this.maxBufferSize) + 1;
+    this.pools = new ConcurrentLinkedQueue[numSizeClasses];
+    this.counts = new AtomicInteger[numSizeClasses];
+    this.maxCounts = new int[numSizeClasses];
+    for (int i = 0; i < numSizeClasses; i++) {
+      pools[i] = new ConcurrentLinkedQueue<>();
+      counts[i] = new AtomicInteger();
+      long bufferSize = (long) MIN_BUFFER_SIZE << i;
+      maxCounts[i] = (int) Math.max(1,
+          Math.min(Integer.MAX_VALUE, capacity / numSizeClasses / bufferSize));
+    }
+  }
+
+  /**
+   * Get a buffer for size bytes.
+   *
+   * @param size number of bytes.
+   * @return a buffer with its position at 0 and its limit at size.
+   */
+  ByteBuffer get(int size) {
+    if (size > maxBufferSize) {
+      numAllocated.increment();
+      return ByteBuffer.allocate(size);
+    }
+    int sizeClass = getSizeClass(size);
+    ByteBuffer buffer = pools[sizeClass].poll();
+    if (buffer != null) {
+      counts[sizeClass].decrementAndGet();
+      numReused.increment();
+    } else {
+      int bufferSize = MIN_BUFFER_SIZE << sizeClass;
+      buffer = direct ? ByteBuffer.allocateDirect(bufferSize)
+          : ByteBuffer.allocate(bufferSize);
+      numAllocated.increment();
+    }
+    buffer.clear();
+    buffer.limit(size);
+    return buffer;
+  }
+
+  /**
+   * Put back a buffer to the pool. Buffers that don't fit in a size class
+   * of this pool are dropped.
+   *
+   * @param buffer the buffer, can be null.
+   */
+  void put(ByteBuffer buffer) {
+    if (buffer == null || buffer.isDirect() != direct
+        || buffer.isReadOnly()) {
+      return;
+    }
+    int bufferSize = buffer.capacity();
+    if (bufferSize < MIN_BUFFER_SIZE || bufferSize > maxBufferSize
+        || Integer.bitCount(bufferSize) != 1) {
+      return;
+    }
+    int sizeClass = getSizeClass(bufferSize);
+    if (counts[sizeClass].incrementAndGet() > maxCounts[sizeClass]) {
+      counts[sizeClass].decrementAndGet();
+      return;
+    }
+    pools[sizeClass].offer(buffer);
+  }
+
+  /**
+   * @return the size class of the smallest buffers holding size bytes.
+   */
+  private static int getSizeClass(int size) {
+    if (size <= MIN_BUFFER_SIZE) {
+      return 0;
+    }
+    return 32 - Integer.numberOfLeadingZeros(size - 1)
+        - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+  }
+
+  boolean isDirect() {
+    return direct;
+  }
+
+  /**
+   * @return number of buffers allocated by the pool.
+   */
+  long getNumAllocated() {
+    return numAllocated.sum();
+  }
+
+  /**
+   * @return number of buffers reused from the pool.
+   */
+  long getNumReused() {
+    return numReused.sum();
+  }
+}
@@ -33,6 +33,19 @@ public interface RpcScheduler {
 
   boolean shouldBackOff(Schedulable obj);
 
+  /**
+   * How long a client should wait before retrying a call that
+   * {@link #shouldBackOff(Schedulable)} backed off. When positive, the
+   * client is told to retry after that time and keeps its connection.
+   *
+   * @param obj a call that was backed off.
+   * @return the time in milliseconds after which the call may be retried,
+   *         or 0 if the scheduler cannot tell.
+   */
+  default long getRetryAfterMs(Schedulable obj) {
+    return 0;
+  }
+
   /**
    * This method only exists to maintain backwards compatibility with old
    * implementations. It will not be called by any Hadoop code, and should not
@@ -27,6 +27,7 @@
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputByteBuffer;
 import org.apache.hadoop.io.Writable;
 
 import org.apache.hadoop.thirdparty.protobuf.CodedInputStream;
@@ -82,6 +83,13 @@ public void writeTo(ResponseBuffer out) throws IOException {
     @SuppressWarnings("unchecked")
     @Override
     <T> T readFrom(ByteBuffer bb) throws IOException {
+      if (!bb.hasArray()) {
+        // the stream advances over the bytes read.
+        DataInputByteBuffer in = new DataInputByteBuffer();
+        in.reset(bb);
+        writable.readFields(in);
+        return (T)writable;
+      }
       // create a stream that may consume up to the entire ByteBuffer.
       DataInputStream in = new DataInputStream(new ByteArrayInputStream(
           bb.array(), bb.position() + bb.arrayOffset(), bb.remaining()));
@@ -122,8 +130,11 @@ <T> T readFrom(ByteBuffer bb) throws IOException {
       // most efficient way to deserialize a protobuf.  it has a direct
       // path to the PB ctor that doesn't create multi-layered streams
       // that internally buffer.
-      CodedInputStream cis = CodedInputStream.newInstance(
-          bb.array(), bb.position() + bb.arrayOffset(), bb.remaining());
+      // a direct buffer is decoded in place.
+      CodedInputStream cis = bb.hasArray()
+          ? CodedInputStream.newInstance(
+              bb.array(), bb.position() + bb.arrayOffset(), bb.remaining())
+          : CodedInputStream.newInstance(bb.duplicate());
       try {
         cis.pushLimit(cis.readRawVarint32());
         message = message.getParserForType().parseFrom(cis);
@@ -159,7 +170,13 @@ ByteBuffer getByteBuffer() {
     @Override
     void writeTo(ResponseBuffer out) throws IOException {
       out.ensureCapacity(bb.remaining());
-      out.write(bb.array(), bb.position() + bb.arrayOffset(), bb.remaining());
+      if (bb.hasArray()) {
+        out.write(bb.array(), bb.position() + bb.arrayOffset(), bb.remaining());
+      } else {
+        byte[] bytes = new byte[bb.remaining()];
+        bb.duplicate().get(bytes);
+        out.write(bytes);
+      }
     }
 
     @SuppressWarnings("unchecked")
@@ -194,5 +211,15 @@ public <T> T getValue(T value) throws IOException {
     public int remaining() {
       return bb.remaining();
     }
+
+    /**
+     * Stop reading from the buffer, which is about to be reused. Subclasses
+     * decode first what they may still need.
+     *
+     * @throws IOException if decoding fails.
+     */
+    void detach() throws IOException {
+      bb = null;
+    }
   }
 }
\ No newline at end of file
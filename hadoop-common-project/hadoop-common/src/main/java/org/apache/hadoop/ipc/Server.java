@@ -94,6 +94,8 @@
 import org.apache.hadoop.ipc.RPC.VersionMismatch;
 import org.apache.hadoop.ipc.metrics.RpcDetailedMetrics;
 import org.apache.hadoop.ipc.metrics.RpcMetrics;
+import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.metrics2.lib.MutableRate;
 import org.apache.hadoop.ipc.protobuf.IpcConnectionContextProtos.IpcConnectionContextProto;
 import org.apache.hadoop.ipc.protobuf.RpcHeaderProtos.RpcKindProto;
 import org.apache.hadoop.ipc.protobuf.RpcHeaderProtos.RpcRequestHeaderProto;
@@ -473,6 +475,8 @@ public static int getPriorityLevel() {
   private int handlerCount;                       // number of handler threads
   private int readThreads;                        // number of read threads
   private int readerPendingConnectionQueue;         // number of connections to queue per read thread
+  private int readBatchSize;                      // max requests read from a connection at a time
+  private int numReadersCreated = 0;              // readers of all the listeners
   private Class<? extends Writable> rpcRequestClass;   // class used for deserializing the rpc request
   final protected RpcMetrics rpcMetrics;
   final protected RpcDetailedMetrics rpcDetailedMetrics;
@@ -492,6 +496,8 @@ protected ResponseBuffer initialValue() {
           return new ResponseBuffer(INITIAL_RESP_BUF_SIZE);
         }
   };
+  /** Buffers of the requests and responses, null if they are not pooled. */
+  private final RpcBufferPool bufferPool;
   private int socketSendBufferSize;
   private final int maxDataLength;
   private final boolean tcpNoDelay; // if T then disable Nagle's Algorithm
@@ -508,7 +514,7 @@ protected ResponseBuffer initialValue() {
   // arbitrary number of of auxiliary listeners. A map from
   // the port to the listener binding to it.
   private Map<Integer, Listener> auxiliaryListenerMap;
-  private Responder responder = null;
+  private Responder[] responders = null;
   private Handler[] handlers = null;
   private final AtomicInteger numInProcessHandler = new AtomicInteger();
   private final LongAdder totalRequests = new LongAdder();
@@ -1011,6 +1017,8 @@ public static class Call implements Schedulable,
     // Serialized RouterFederatedStateProto message to
     // store last seen states for multiple namespaces.
     private ByteString federatedNamespaceState;
+    // the user the call runs as, if the server resolved it
+    private UserGroupInformation callUser;
 
     Call() {
       this(RpcConstants.INVALID_CALL_ID, RpcConstants.INVALID_RETRY_COUNT,
@@ -1056,6 +1064,13 @@ boolean isOpen() {
       return true;
     }
 
+    /**
+     * Release the buffer the request was read into, once the call has been
+     * handled. Does nothing unless overridden.
+     */
+    void releaseRequestBuffer() {
+    }
+
     String getDetailedMetricsName() {
       return detailedMetricsName;
     }
@@ -1076,6 +1091,24 @@ public ByteString getFederatedNamespaceState() {
       return this.federatedNamespaceState;
     }
 
+    /**
+     * Set the user the call runs as, when the server derives it from more
+     * than the remote user, so it is only resolved once per call.
+     *
+     * @param user the user the call runs as.
+     */
+    public void setCallUser(UserGroupInformation user) {
+      this.callUser = user;
+    }
+
+    /**
+     * @return the user the call runs as, or null if the server did not
+     *         resolve it.
+     */
+    public UserGroupInformation getCallUser() {
+      return this.callUser;
+    }
+
     @Override
     public String toString() {
       return "Call#" + callId + " Retry#" + retryCount;
@@ -1216,6 +1249,7 @@ public void setStartHandleTimestampNanos(long startHandleTimestampNanos) {
   private class RpcCall extends Call {
     final Connection connection;  // connection to client
     final Writable rpcRequest;    // Serialized Rpc request from client
+    ByteBuffer requestBuffer;     // the buffer the request was read into
     ByteBuffer rpcResponse;       // the response for this call
 
     private ResponseParams responseParams; // the response params
@@ -1252,6 +1286,25 @@ boolean isOpen() {
       return connection.channel.isOpen();
     }
 
+    @Override
+    void releaseRequestBuffer() {
+      if (requestBuffer == null) {
+        return;
+      }
+      if (rpcRequest instanceof RpcWritable.Buffer) {
+        try {
+          ((RpcWritable.Buffer) rpcRequest).detach();
+        } catch (IOException e) {
+          // the request may still read from the buffer, don't reuse it.
+          LOG.debug("Cannot detach the request of {}", this, e);
+          requestBuffer = null;
+          return;
+        }
+      }
+      releaseBuffer(requestBuffer);
+      requestBuffer = null;
+    }
+
     void setResponseFields(Writable returnValue,
                            ResponseParams responseParams) {
       this.rv = returnValue;
@@ -1454,6 +1507,46 @@ public String toString() {
     }
   }
 
+  /**
+   * A thread running a select loop over the connections assigned to it.
+   * Each pass of the loop updates the queue depth and loop time metrics of
+   * the thread, once they are registered.
+   */
+  private abstract class Reactor extends Thread {
+    private final String metricsName;
+    private volatile MutableGaugeInt queueDepth;
+    private volatile MutableRate loopTime;
+
+    Reactor(String name, String metricsName) {
+      super(name);
+      this.metricsName = metricsName;
+    }
+
+    void registerMetrics(RpcMetrics metrics) {
+      queueDepth = metrics.addReactorQueueDepth(metricsName);
+      loopTime = metrics.addReactorLoopTime(metricsName);
+    }
+
+    /**
+     * @return number of connections waiting for this thread.
+     */
+    abstract int getQueueDepth();
+
+    /**
+     * Update the metrics after a pass of the select loop.
+     * @param startNanos when the select returned.
+     */
+    void updateMetrics(long startNanos) {
+      MutableRate rate = loopTime;
+      if (rate == null) {
+        return;
+      }
+      rate.add(TimeUnit.NANOSECONDS.toMicros(
+          Time.monotonicNowNanos() - startNanos));
+      queueDepth.set(getQueueDepth());
+    }
+  }
+
   /** Listens on the socket. Creates jobs for the handler threads*/
   private class Listener extends Thread {
     
@@ -1488,7 +1581,8 @@ private class Listener extends Thread {
       readers = new Reader[readThreads];
       for (int i = 0; i < readThreads; i++) {
         Reader reader = new Reader(
-            "Socket Reader #" + (i + 1) + " for port " + port);
+            "Socket Reader #" + (i + 1) + " for port " + port,
+            ++numReadersCreated);
         readers[i] = reader;
         reader.start();
       }
@@ -1503,17 +1597,31 @@ private class Listener extends Thread {
     void setIsAuxiliary() {
       this.isOnAuxiliaryPort = true;
     }
+
+    void registerMetrics(RpcMetrics metrics) {
+      for (Reader reader : readers) {
+        reader.registerMetrics(metrics);
+      }
+    }
     
-    private class Reader extends Thread {
+    private class Reader extends Reactor {
       final private BlockingQueue<Connection> pendingConnections;
       private final Selector readSelector;
+      // sends the responses of the connections of this reader
+      private final Responder responder;
 
-      Reader(String name) throws IOException {
-        super(name);
+      Reader(String name, int index) throws IOException {
+        super(name, "SocketReader" + index);
 
         this.pendingConnections =
             new LinkedBlockingQueue<Connection>(readerPendingConnectionQueue);
         this.readSelector = Selector.open();
+        this.responder = responders[(index - 1) % responders.length];
+      }
+
+      @Override
+      int getQueueDepth() {
+        return pendingConnections.size();
       }
       
       @Override
@@ -1542,6 +1650,7 @@ private synchronized void doRunLoop() {
               conn.channel.register(readSelector, SelectionKey.OP_READ, conn);
             }
             readSelector.select();
+            long startNanos = Time.monotonicNowNanos();
 
             Iterator<SelectionKey> iter = readSelector.selectedKeys().iterator();
             while (iter.hasNext()) {
@@ -1560,6 +1669,7 @@ private synchronized void doRunLoop() {
               }
               key = null;
             }
+            updateMetrics(startNanos);
           } catch (InterruptedException e) {
             if (running) {                      // unexpected -- log it
               LOG.info(Thread.currentThread().getName() + " unexpectedly interrupted", e);
@@ -1681,6 +1791,7 @@ void doAccept(SelectionKey key) throws InterruptedException, IOException,  OutOf
           continue;
         }
         key.attach(c);  // so closeCurrentConnection can get the object
+        c.setResponder(reader.responder);
         reader.addConnection(c);
       }
     }
@@ -1695,6 +1806,12 @@ void doRead(SelectionKey key) throws InterruptedException {
       
       try {
         count = c.readAndProcess();
+        // read the requests the client has already sent, so a pipelining
+        // client does not need a select per request.
+        for (int i = 1; i < readBatchSize && count > 0 && !c.shouldClose();
+             i++) {
+          count = c.readAndProcess();
+        }
       } catch (InterruptedException ieo) {
         LOG.info(Thread.currentThread().getName() + ": readAndProcess caught InterruptedException", ieo);
         throw ieo;
@@ -1744,17 +1861,38 @@ Reader getReader() {
   }
 
   // Sends responses of RPC back to clients.
-  private class Responder extends Thread {
+  private class Responder extends Reactor {
     private final Selector writeSelector;
     private int pending;         // connections waiting to register
 
-    Responder() throws IOException {
-      this.setName("IPC Server Responder");
+    Responder(int index, int numResponders) throws IOException {
+      super(numResponders > 1 ? "IPC Server Responder #" + index
+          : "IPC Server Responder", "Responder" + index);
       this.setDaemon(true);
       writeSelector = Selector.open(); // create a selector
       pending = 0;
     }
 
+    /**
+     * @return number of connections with responses to write.
+     */
+    @Override
+    int getQueueDepth() {
+      int numConnections = 0;
+      synchronized (writeSelector.keys()) {
+        for (SelectionKey key : writeSelector.keys()) {
+          try {
+            if (key.isValid() && key.interestOps() != 0) {
+              numConnections++;
+            }
+          } catch (CancelledKeyException e) {
+            // the connection was closed
+          }
+        }
+      }
+      return numConnections;
+    }
+
     @Override
     public void run() {
       LOG.info(Thread.currentThread().getName() + ": starting");
@@ -1779,6 +1917,7 @@ private void doRunLoop() {
           waitPending();     // If a channel is being registered, wait.
           writeSelector.select(
               TimeUnit.NANOSECONDS.toMillis(purgeIntervalNanos));
+          long startNanos = Time.monotonicNowNanos();
           Iterator<SelectionKey> iter = writeSelector.selectedKeys().iterator();
           while (iter.hasNext()) {
             SelectionKey key = iter.next();
@@ -1800,6 +1939,7 @@ private void doRunLoop() {
               LOG.info(Thread.currentThread().getName() + ": doAsyncWrite threw exception " + e);
             }
           }
+          updateMetrics(startNanos);
           long nowNanos = Time.monotonicNowNanos();
           if (nowNanos < lastPurgeTimeNanos + purgeIntervalNanos) {
             continue;
@@ -1919,7 +2059,8 @@ private boolean processResponse(LinkedList<RpcCall> responseQueue,
             return true;
           }
           if (!call.rpcResponse.hasRemaining()) {
-            //Clear out the response buffer so it can be collected
+            //Clear out the response buffer so it can be reused or collected
+            releaseBuffer(call.rpcResponse);
             call.rpcResponse = null;
             call.connection.decRpcCount();
             if (numElements == 1) {    // last call fully processes.
@@ -2107,6 +2248,8 @@ public class Connection {
 
     private boolean sentNegotiate = false;
     private boolean useWrap = false;
+    // sends the responses of this connection
+    private Responder responder;
     
     public Connection(SocketChannel channel, long lastContact,
         int ingressPort, boolean isOnAuxiliaryPort) {
@@ -2131,6 +2274,7 @@ public Connection(SocketChannel channel, long lastContact,
       }
       this.remotePort = socket.getPort();
       this.responseQueue = new LinkedList<RpcCall>();
+      this.responder = responders[0];
       if (socketSendBufferSize != 0) {
         try {
           socket.setSendBufferSize(socketSendBufferSize);
@@ -2592,7 +2736,7 @@ public int readAndProcess() throws IOException, InterruptedException {
           dataLength = dataLengthBuffer.getInt();
           checkDataLength(dataLength);
           // Set buffer for reading EXACTLY the RPC-packet length and no more.
-          data = ByteBuffer.allocate(dataLength);
+          data = allocateBuffer(dataLength);
         }
         // Now read the RPC packet
         count = channelRead(channel, data);
@@ -2841,6 +2985,8 @@ private void processOneRpc(ByteBuffer bb)
       // should be closed.
       int callId = -1;
       int retry = RpcConstants.INVALID_RETRY_COUNT;
+      // a queued call releases the buffer once it has been handled.
+      boolean queued = false;
       try {
         final RpcWritable.Buffer buffer = RpcWritable.Buffer.wrap(bb);
         final RpcRequestHeaderProto header =
@@ -2858,6 +3004,7 @@ private void processOneRpc(ByteBuffer bb)
               "Connection context not established");
         } else {
           processRpcRequest(header, buffer);
+          queued = true;
         }
       } catch (RpcServerException rse) {
         // inform client of error, but do not rethrow else non-fatal
@@ -2871,6 +3018,10 @@ private void processOneRpc(ByteBuffer bb)
             rse.getRpcStatusProto(), rse.getRpcErrorCodeProto(), null,
             t.getClass().getName(), t.getMessage());
         sendResponse(call);
+      } finally {
+        if (!queued) {
+          releaseBuffer(bb);
+        }
       }
     }
 
@@ -2978,6 +3129,7 @@ private void processRpcRequest(RpcRequestHeaderProto header,
           header.getRetryCount(), rpcRequest,
           ProtoUtil.convert(header.getRpcKind()),
           header.getClientId().toByteArray(), span, callerContext);
+      call.requestBuffer = buffer.getByteBuffer();
 
       // Save the priority level assignment by the scheduler
       call.setPriorityLevel(callQueue.getPriorityLevel(call));
@@ -3115,6 +3267,10 @@ private void sendResponse(RpcCall call) throws IOException {
       responder.doRespond(call);
     }
 
+    private void setResponder(Responder responder) {
+      this.responder = responder;
+    }
+
     /**
      * Get service class for connection
      * @return the serviceClass
@@ -3275,6 +3431,7 @@ public void run() {
                 call, (call.isResponseDeferred() ? ", deferred" : ""),
                 call.getDetailedMetricsName(), call.getRemoteUser(),
                 call.getProcessingDetails());
+            call.releaseRequestBuffer();
           }
         }
       }
@@ -3394,6 +3551,25 @@ protected Server(String bindAddress, int port,
     this.readerPendingConnectionQueue = conf.getInt(
         CommonConfigurationKeys.IPC_SERVER_RPC_READ_CONNECTION_QUEUE_SIZE_KEY,
         CommonConfigurationKeys.IPC_SERVER_RPC_READ_CONNECTION_QUEUE_SIZE_DEFAULT);
+    this.readBatchSize = Math.max(1, conf.getInt(
+        CommonConfigurationKeys.IPC_SERVER_RPC_READ_BATCH_SIZE_KEY,
+        CommonConfigurationKeys.IPC_SERVER_RPC_READ_BATCH_SIZE_DEFAULT));
+    if (conf.getBoolean(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_KEY,
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_DEFAULT)) {
+      this.bufferPool = new RpcBufferPool(
+          conf.getBoolean(
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_DIRECT_KEY,
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_DIRECT_DEFAULT),
+          conf.getInt(
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_KEY,
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_DEFAULT),
+          conf.getLong(
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_CAPACITY_KEY,
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_CAPACITY_DEFAULT));
+    } else {
+      this.bufferPool = null;
+    }
 
     // Setup appropriate callqueue
     final String prefix = getQueueClassPrefix();
@@ -3412,12 +3588,26 @@ protected Server(String bindAddress, int port,
     this.enabledAuthMethods = getAuthMethods(secretManager, conf);
     this.negotiateResponse = buildNegotiateResponse(enabledAuthMethods);
     
+    // Create the responders here, each reader of the listener sends its
+    // responses through one of them
+    int numResponders = Math.max(1, conf.getInt(
+        CommonConfigurationKeys.IPC_SERVER_RESPONDER_COUNT_KEY,
+        CommonConfigurationKeys.IPC_SERVER_RESPONDER_COUNT_DEFAULT));
+    responders = new Responder[numResponders];
+    for (int i = 0; i < numResponders; i++) {
+      responders[i] = new Responder(i + 1, numResponders);
+    }
+
     // Start the listener here and let it bind to the port
     listener = new Listener(port);
     // set the server port to the default listener port.
     this.port = listener.getAddress().getPort();
     connectionManager = new ConnectionManager();
     this.rpcMetrics = RpcMetrics.create(this, conf);
+    listener.registerMetrics(rpcMetrics);
+    for (Responder responder : responders) {
+      responder.registerMetrics(rpcMetrics);
+    }
     this.rpcDetailedMetrics = RpcDetailedMetrics.create(this.port);
     this.tcpNoDelay = conf.getBoolean(
         CommonConfigurationKeysPublic.IPC_SERVER_TCPNODELAY_KEY,
@@ -3435,9 +3625,6 @@ protected Server(String bindAddress, int port,
         CommonConfigurationKeysPublic.IPC_SERVER_PURGE_INTERVAL_MINUTES_KEY,
         CommonConfigurationKeysPublic.IPC_SERVER_PURGE_INTERVAL_MINUTES_DEFAULT));
 
-    // Create the responder here
-    responder = new Responder();
-    
     if (secretManager != null || UserGroupInformation.isSecurityEnabled()) {
       SaslRpcServer.init(conf);
       saslPropsResolver = SaslPropertiesResolver.getInstance(conf);
@@ -3487,6 +3674,7 @@ public synchronized void addAuxiliaryListener(int auxiliaryPort)
     }
     Listener newListener = new Listener(auxiliaryPort);
     newListener.setIsAuxiliary();
+    newListener.registerMetrics(rpcMetrics);
 
     // in the case of port = 0, the listener would be on a != 0 port.
     LOG.info("Adding a server listener on port " +
@@ -3600,20 +3788,20 @@ private void setupResponse(
 
   private void setupResponse(RpcCall call,
       RpcResponseHeaderProto header, Writable rv) throws IOException {
-    final byte[] response;
+    final ByteBuffer response;
     if (rv == null || (rv instanceof RpcWritable.ProtobufWrapper)) {
       response = setupResponseForProtobuf(header, rv);
     } else {
       response = setupResponseForWritable(header, rv);
     }
-    if (response.length > maxRespSize) {
-      LOG.warn("Large response size " + response.length + " for call "
+    if (response.remaining() > maxRespSize) {
+      LOG.warn("Large response size " + response.remaining() + " for call "
           + call.toString());
     }
-    call.setResponse(ByteBuffer.wrap(response));
+    call.setResponse(response);
   }
 
-  private byte[] setupResponseForWritable(
+  private ByteBuffer setupResponseForWritable(
       RpcResponseHeaderProto header, Writable rv) throws IOException {
     ResponseBuffer buf = responseBuffer.get().reset();
     try {
@@ -3621,7 +3809,13 @@ private byte[] setupResponseForWritable(
       if (rv != null) {
         RpcWritable.wrap(rv).writeTo(buf);
       }
-      return buf.toByteArray();
+      if (bufferPool == null) {
+        return ByteBuffer.wrap(buf.toByteArray());
+      }
+      ByteBuffer response = bufferPool.get(buf.framedSize());
+      buf.copyTo(response);
+      response.flip();
+      return response;
     } finally {
       // Discard a large buf and reset it back to smaller size
       // to free up heap.
@@ -3634,7 +3828,7 @@ private byte[] setupResponseForWritable(
 
   // writing to a pre-allocated array is the most efficient way to construct
   // a protobuf response.
-  private byte[] setupResponseForProtobuf(
+  private ByteBuffer setupResponseForProtobuf(
       RpcResponseHeaderProto header, Writable rv) throws IOException {
     Message payload = (rv != null)
         ? ((RpcWritable.ProtobufWrapper)rv).getMessage() : null;
@@ -3642,8 +3836,12 @@ private byte[] setupResponseForProtobuf(
     if (payload != null) {
       length += getDelimitedLength(payload);
     }
-    byte[] buf = new byte[length + 4];
-    CodedOutputStream cos = CodedOutputStream.newInstance(buf);
+    ByteBuffer buf = allocateBuffer(length + 4);
+    // a pooled direct buffer is written in place.
+    CodedOutputStream cos = buf.hasArray()
+        ? CodedOutputStream.newInstance(buf.array(), buf.arrayOffset(),
+            length + 4)
+        : CodedOutputStream.newInstance(buf.duplicate());
     // the stream only supports little endian ints
     cos.writeRawByte((byte)((length >>> 24) & 0xFF));
     cos.writeRawByte((byte)((length >>> 16) & 0xFF));
@@ -3655,9 +3853,39 @@ private byte[] setupResponseForProtobuf(
       cos.writeUInt32NoTag(payload.getSerializedSize());
       payload.writeTo(cos);
     }
+    cos.flush();
     return buf;
   }
 
+  /**
+   * Get a buffer for a request or a response, from the pool if buffers are
+   * pooled.
+   *
+   * @param size number of bytes.
+   * @return a buffer with its position at 0 and its limit at size.
+   */
+  private ByteBuffer allocateBuffer(int size) {
+    return bufferPool != null ? bufferPool.get(size)
+        : ByteBuffer.allocate(size);
+  }
+
+  /**
+   * Put back a buffer which is not used anymore to the pool, if buffers are
+   * pooled.
+   *
+   * @param buffer the buffer, can be null.
+   */
+  private void releaseBuffer(ByteBuffer buffer) {
+    if (bufferPool != null) {
+      bufferPool.put(buffer);
+    }
+  }
+
+  @VisibleForTesting
+  RpcBufferPool getBufferPool() {
+    return bufferPool;
+  }
+
   private static int getDelimitedLength(Message message) {
     int length = message.getSerializedSize();
     return length + CodedOutputStream.computeUInt32SizeNoTag(length);
@@ -3692,12 +3920,24 @@ private void setupResponseOldVersionFatal(ByteArrayOutputStream response,
 
   private void wrapWithSasl(RpcCall call) throws IOException {
     if (call.connection.saslServer != null) {
-      byte[] token = call.rpcResponse.array();
+      ByteBuffer response = call.rpcResponse;
+      byte[] token;
+      int offset;
+      if (response.hasArray()) {
+        token = response.array();
+        offset = response.arrayOffset() + response.position();
+      } else {
+        token = new byte[response.remaining()];
+        response.duplicate().get(token);
+        offset = 0;
+      }
       // synchronization may be needed since there can be multiple Handler
       // threads using saslServer to wrap responses.
       synchronized (call.connection.saslServer) {
-        token = call.connection.saslServer.wrap(token, 0, token.length);
+        token = call.connection.saslServer.wrap(token, offset,
+            response.remaining());
       }
+      releaseBuffer(response);
       LOG.debug("Adding saslServer wrapped token of size {} as call response.", token.length);
       // rebuild with sasl header and payload
       RpcResponseHeaderProto saslHeader = RpcResponseHeaderProto.newBuilder()
@@ -3728,7 +3968,9 @@ public void setTracer(Tracer t) {
 
   /** Starts the service.  Must be called before any calls will be handled. */
   public synchronized void start() {
-    responder.start();
+    for (Responder responder : responders) {
+      responder.start();
+    }
     listener.start();
     if (auxiliaryListenerMap != null && auxiliaryListenerMap.size() > 0) {
       for (Listener newListener : auxiliaryListenerMap.values()) {
@@ -3763,7 +4005,9 @@ public synchronized void stop() {
         newListener.doStop();
       }
     }
-    responder.interrupt();
+    for (Responder responder : responders) {
+      responder.interrupt();
+    }
     notifyAll();
     shutdownMetricsUpdaterExecutor();
     this.rpcMetrics.shutdown();
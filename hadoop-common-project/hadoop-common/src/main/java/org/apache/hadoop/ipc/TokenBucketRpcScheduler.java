@@ -0,0 +1,364 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.ipc;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.util.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The token bucket RPC scheduler gives each identity a bucket of tokens that
+ * refills continuously at a fixed rate, up to a burst size. Each call takes
+ * one token when it is scheduled and the rest of its cost, as measured by the
+ * {@link CostProvider}, when it completes. The emptier the bucket of an
+ * identity, the lower the priority of its calls; identities with an
+ * overdrawn bucket are backed off with a hint of when to retry.
+ * <p>
+ * A bucket is a single {@link AtomicLong} holding the time at which it will
+ * be full again, so scheduling a call takes one compare-and-set and there is
+ * no periodic sweep over the identities.
+ */
+public class TokenBucketRpcScheduler implements RpcScheduler {
+  /**
+   * Number of cost units the bucket of each identity refills per second.
+   */
+  public static final String IPC_TOKENBUCKET_SCHEDULER_RATE_KEY =
+      "token-bucket-scheduler.rate";
+  public static final double IPC_TOKENBUCKET_SCHEDULER_RATE_DEFAULT = 1000;
+
+  /**
+   * Max number of cost units the bucket of each identity holds.
+   */
+  public static final String IPC_TOKENBUCKET_SCHEDULER_BURST_KEY =
+      "token-bucket-scheduler.burst";
+  public static final double IPC_TOKENBUCKET_SCHEDULER_BURST_DEFAULT = 5000;
+
+  /**
+   * Service users are always scheduled into the highest-priority queue and
+   * are never backed off. They are specified as a comma-separated list.
+   */
+  public static final String IPC_TOKENBUCKET_SCHEDULER_SERVICE_USERS_KEY =
+      "token-bucket-scheduler.service-users";
+
+  // Specifies the identity to use when the IdentityProvider cannot handle
+  // a schedulable.
+  public static final String TOKENBUCKET_SCHEDULER_UNKNOWN_IDENTITY =
+      "IdentityProvider.Unknown";
+
+  public static final Logger LOG =
+      LoggerFactory.getLogger(TokenBucketRpcScheduler.class);
+
+  // Cost taken from the bucket when a call is scheduled
+  private static final long ADMISSION_COST = 1;
+  // Min number of buckets before full ones are dropped
+  private static final int MIN_BUCKETS_TO_CLEAN = 1024;
+
+  // The time in nanoseconds at which the bucket of each identity is full.
+  // A bucket that is full is the same as no bucket.
+  private final ConcurrentHashMap<String, AtomicLong> buckets =
+      new ConcurrentHashMap<>();
+  // Number of buckets at which the full ones are dropped next
+  private volatile int bucketsToClean = MIN_BUCKETS_TO_CLEAN;
+
+  private final int numLevels;
+  private final double nanosPerCost;
+  private final long burstNanos;
+  // An identity can overdraw its bucket by up to another burst
+  private final long maxDebtNanos;
+  private final IdentityProvider identityProvider;
+  private final CostProvider costProvider;
+  private final Set<String> serviceUserNames;
+  private final Timer timer;
+
+  private final LongAdder numScheduledCalls = new LongAdder();
+  private final LongAdder numBackedOffCalls = new LongAdder();
+
+  /**
+   * Create a token bucket scheduler.
+   * @param numLevels number of priority levels
+   * @param ns config prefix, so that we can configure multiple schedulers
+   *           in a single instance.
+   * @param conf configuration to use.
+   */
+  public TokenBucketRpcScheduler(int numLevels, String ns,
+      Configuration conf) {
+    this(numLevels, ns, conf, new Timer());
+  }
+
+  @VisibleForTesting
+  TokenBucketRpcScheduler(int numLevels, String ns, Configuration conf,
+      Timer timer) {
+    if (numLevels < 1) {
+      throw new IllegalArgumentException("Number of Priority Levels must be " +
+          "at least 1");
+    }
+    double rate = conf.getDouble(ns + "." + IPC_TOKENBUCKET_SCHEDULER_RATE_KEY,
+        IPC_TOKENBUCKET_SCHEDULER_RATE_DEFAULT);
+    double burst = conf.getDouble(
+        ns + "." + IPC_TOKENBUCKET_SCHEDULER_BURST_KEY,
+        IPC_TOKENBUCKET_SCHEDULER_BURST_DEFAULT);
+    if (rate <= 0) {
+      throw new IllegalArgumentException("Token bucket rate must be > 0");
+    }
+    if (burst < ADMISSION_COST) {
+      throw new IllegalArgumentException("Token bucket burst must be >= "
+          + ADMISSION_COST);
+    }
+    this.numLevels = numLevels;
+    this.nanosPerCost = TimeUnit.SECONDS.toNanos(1) / rate;
+    this.burstNanos = (long) (burst * nanosPerCost);
+    this.maxDebtNanos = 2 * burstNanos;
+    this.identityProvider = parseIdentityProvider(ns, conf);
+    this.costProvider = parseCostProvider(ns, conf);
+    this.serviceUserNames = parseServiceUserNames(ns, conf);
+    this.timer = timer;
+    LOG.info("Token bucket scheduler with {} levels, rate {}/s and burst {}",
+        numLevels, rate, burst);
+  }
+
+  private static CostProvider parseCostProvider(String ns,
+      Configuration conf) {
+    List<CostProvider> providers = conf.getInstances(
+        ns + "." + CommonConfigurationKeys.IPC_COST_PROVIDER_KEY,
+        CostProvider.class);
+
+    if (providers.size() < 1) {
+      String[] nsPort = ns.split("\\.");
+      if (nsPort.length == 2) {
+        // In the absence of "ipc.<port>.cost-provider.impl" property,
+        // we look up "ipc.cost-provider.impl" property.
+        providers = conf.getInstances(
+            nsPort[0] + "." + CommonConfigurationKeys.IPC_COST_PROVIDER_KEY,
+            CostProvider.class);
+      }
+    }
+
+    if (providers.size() < 1) {
+      LOG.info("CostProvider not specified, defaulting to DefaultCostProvider");
+      return new DefaultCostProvider();
+    }
+    CostProvider provider = providers.get(0); // use the first
+    provider.init(ns, conf);
+    return provider;
+  }
+
+  private static IdentityProvider parseIdentityProvider(String ns,
+      Configuration conf) {
+    List<IdentityProvider> providers = conf.getInstances(
+        ns + "." + CommonConfigurationKeys.IPC_IDENTITY_PROVIDER_KEY,
+        IdentityProvider.class);
+
+    if (providers.size() < 1) {
+      String[] nsPort = ns.split("\\.");
+      if (nsPort.length == 2) {
+        // In the absence of "ipc.<port>.identity-provider.impl" property,
+        // we look up "ipc.identity-provider.impl" property.
+        providers = conf.getInstances(
+            nsPort[0] + "." + CommonConfigurationKeys.IPC_IDENTITY_PROVIDER_KEY,
+            IdentityProvider.class);
+      }
+    }
+
+    if (providers.size() < 1) {
+      LOG.info("IdentityProvider not specified, " +
+          "defaulting to UserIdentityProvider");
+      return new UserIdentityProvider();
+    }
+    return providers.get(0); // use the first
+  }
+
+  private static Set<String> parseServiceUserNames(String ns,
+      Configuration conf) {
+    Collection<String> collection = conf.getStringCollection(
+        ns + "." + IPC_TOKENBUCKET_SCHEDULER_SERVICE_USERS_KEY);
+    return new HashSet<>(collection);
+  }
+
+  private String getIdentity(Schedulable obj) {
+    String identity = identityProvider.makeIdentity(obj);
+    if (identity == null) {
+      // Identity provider did not handle this
+      identity = TOKENBUCKET_SCHEDULER_UNKNOWN_IDENTITY;
+    }
+    return identity;
+  }
+
+  private boolean isServiceUser(Schedulable obj) {
+    return !serviceUserNames.isEmpty()
+        && obj.getUserGroupInformation() != null
+        && serviceUserNames.contains(
+            obj.getUserGroupInformation().getUserName());
+  }
+
+  private AtomicLong getBucket(String identity) {
+    AtomicLong bucket = buckets.get(identity);
+    if (bucket == null) {
+      if (buckets.size() >= bucketsToClean) {
+        dropFullBuckets();
+      }
+      bucket = buckets.computeIfAbsent(identity, k -> new AtomicLong());
+    }
+    return bucket;
+  }
+
+  /**
+   * Drop the buckets that are full, so the identities that stopped calling
+   * are forgotten without a periodic sweep.
+   */
+  private synchronized void dropFullBuckets() {
+    if (buckets.size() < bucketsToClean) {
+      return;
+    }
+    long now = timer.monotonicNowNanos();
+    Iterator<AtomicLong> iter = buckets.values().iterator();
+    while (iter.hasNext()) {
+      if (iter.next().get() <= now) {
+        iter.remove();
+      }
+    }
+    bucketsToClean = Math.max(MIN_BUCKETS_TO_CLEAN, 2 * buckets.size());
+  }
+
+  /**
+   * Take cost units from a bucket. The bucket may be overdrawn, by up to
+   * {@link #maxDebtNanos}.
+   * @return the time at which the bucket is full again.
+   */
+  private long take(AtomicLong bucket, long cost, long now) {
+    long costNanos = (long) (cost * nanosPerCost);
+    while (true) {
+      long full = bucket.get();
+      long newFull = Math.min(Math.max(full, now) + costNanos,
+          now + maxDebtNanos);
+      if (newFull <= full || bucket.compareAndSet(full, newFull)) {
+        return Math.max(full, newFull);
+      }
+    }
+  }
+
+  /**
+   * Compute the priority of a call from how empty the bucket of its identity
+   * is, after taking the admission cost of the call from it.
+   * @param obj the schedulable obj to query and remember
+   * @return the level index which we recommend scheduling in
+   */
+  @Override
+  public int getPriorityLevel(Schedulable obj) {
+    numScheduledCalls.increment();
+    if (isServiceUser(obj)) {
+      return 0;
+    }
+    long now = timer.monotonicNowNanos();
+    long full = take(getBucket(getIdentity(obj)), ADMISSION_COST, now);
+    int level = (int) ((double) (full - now) * numLevels / burstNanos);
+    return Math.min(level, numLevels - 1);
+  }
+
+  /**
+   * Back off the calls of identities that overdrew their bucket.
+   */
+  @Override
+  public boolean shouldBackOff(Schedulable obj) {
+    boolean backOff = getRetryAfterNanos(obj) > 0;
+    if (backOff) {
+      numBackedOffCalls.increment();
+    }
+    return backOff;
+  }
+
+  private long getRetryAfterNanos(Schedulable obj) {
+    if (isServiceUser(obj)) {
+      return 0;
+    }
+    AtomicLong bucket = buckets.get(getIdentity(obj));
+    if (bucket == null) {
+      return 0;
+    }
+    return bucket.get() - burstNanos - timer.monotonicNowNanos();
+  }
+
+  /**
+   * @param obj a call that was backed off.
+   * @return how many milliseconds until the bucket of the identity of the
+   * call is no longer overdrawn, at least 1.
+   */
+  @Override
+  public long getRetryAfterMs(Schedulable obj) {
+    long nanos = getRetryAfterNanos(obj);
+    return Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanos));
+  }
+
+  /**
+   * Take the rest of the cost of a completed call from the bucket of its
+   * identity.
+   */
+  @Override
+  public void addResponseTime(String callName, Schedulable schedulable,
+      ProcessingDetails details) {
+    long cost = costProvider.getCost(details) - ADMISSION_COST;
+    if (cost <= 0 || isServiceUser(schedulable)) {
+      return;
+    }
+    take(getBucket(getIdentity(schedulable)), cost,
+        timer.monotonicNowNanos());
+  }
+
+  /**
+   * @return number of cost units left in the bucket of an identity; negative
+   * if the bucket is overdrawn.
+   */
+  @VisibleForTesting
+  double getTokens(String identity) {
+    AtomicLong bucket = buckets.get(identity);
+    long emptyNanos = bucket == null ? 0
+        : Math.max(0, bucket.get() - timer.monotonicNowNanos());
+    return (burstNanos - emptyNanos) / nanosPerCost;
+  }
+
+  @VisibleForTesting
+  int getNumBuckets() {
+    return buckets.size();
+  }
+
+  public long getNumScheduledCalls() {
+    return numScheduledCalls.sum();
+  }
+
+  public long getNumBackedOffCalls() {
+    return numBackedOffCalls.sum();
+  }
+
+  @Override
+  public void stop() {
+    buckets.clear();
+  }
+}
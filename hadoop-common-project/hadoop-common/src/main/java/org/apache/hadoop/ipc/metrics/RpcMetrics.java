@@ -31,6 +31,7 @@
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.hadoop.metrics2.lib.MetricsRegistry;
 import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
 import org.apache.hadoop.metrics2.lib.MutableQuantiles;
 import org.apache.hadoop.metrics2.lib.MutableRate;
 import org.slf4j.Logger;
@@ -49,6 +50,8 @@ public class RpcMetrics {
   final MetricsRegistry registry;
   final String name;
   final boolean rpcQuantileEnable;
+  /** If the quantiles are computed from high-resolution histograms. */
+  private final boolean rpcHistogramEnable;
 
   public static final TimeUnit DEFAULT_METRIC_TIME_UNIT =
       TimeUnit.MILLISECONDS;
@@ -67,6 +70,9 @@ public class RpcMetrics {
     rpcQuantileEnable = (intervals.length > 0) && conf.getBoolean(
         CommonConfigurationKeys.RPC_METRICS_QUANTILE_ENABLE,
         CommonConfigurationKeys.RPC_METRICS_QUANTILE_ENABLE_DEFAULT);
+    rpcHistogramEnable = conf.getBoolean(
+        CommonConfigurationKeys.RPC_METRICS_HISTOGRAM_ENABLE,
+        CommonConfigurationKeys.RPC_METRICS_HISTOGRAM_ENABLE_DEFAULT);
     metricsTimeUnit = getMetricsTimeUnit(conf);
     if (rpcQuantileEnable) {
       rpcEnQueueTimeQuantiles =
@@ -83,25 +89,25 @@ public class RpcMetrics {
           new MutableQuantiles[intervals.length];
       for (int i = 0; i < intervals.length; i++) {
         int interval = intervals[i];
-        rpcEnQueueTimeQuantiles[i] = registry.newQuantiles("rpcEnQueueTime"
+        rpcEnQueueTimeQuantiles[i] = newQuantiles("rpcEnQueueTime"
             + interval + "s", "rpc enqueue time in " + metricsTimeUnit, "ops",
             "latency", interval);
-        rpcQueueTimeQuantiles[i] = registry.newQuantiles("rpcQueueTime"
+        rpcQueueTimeQuantiles[i] = newQuantiles("rpcQueueTime"
             + interval + "s", "rpc queue time in " + metricsTimeUnit, "ops",
             "latency", interval);
-        rpcLockWaitTimeQuantiles[i] = registry.newQuantiles(
+        rpcLockWaitTimeQuantiles[i] = newQuantiles(
             "rpcLockWaitTime" + interval + "s",
             "rpc lock wait time in " + metricsTimeUnit, "ops",
             "latency", interval);
-        rpcProcessingTimeQuantiles[i] = registry.newQuantiles(
+        rpcProcessingTimeQuantiles[i] = newQuantiles(
             "rpcProcessingTime" + interval + "s",
             "rpc processing time in " + metricsTimeUnit, "ops",
             "latency", interval);
-        rpcResponseTimeQuantiles[i] = registry.newQuantiles(
+        rpcResponseTimeQuantiles[i] = newQuantiles(
             "rpcResponseTime" + interval + "s",
             "rpc response time in " + metricsTimeUnit, "ops",
             "latency", interval);
-        deferredRpcProcessingTimeQuantiles[i] = registry.newQuantiles(
+        deferredRpcProcessingTimeQuantiles[i] = newQuantiles(
             "deferredRpcProcessingTime" + interval + "s",
             "deferred rpc processing time in " + metricsTimeUnit, "ops",
             "latency", interval);
@@ -110,6 +116,15 @@ public class RpcMetrics {
     LOG.debug("Initialized " + registry);
   }
 
+  private MutableQuantiles newQuantiles(String metricName, String desc,
+      String sampleName, String valueName, int interval) {
+    return rpcHistogramEnable
+        ? registry.newHistogram(metricName, desc, sampleName, valueName,
+            interval, metricsTimeUnit)
+        : registry.newQuantiles(metricName, desc, sampleName, valueName,
+            interval);
+  }
+
   public String name() { return name; }
 
   public static RpcMetrics create(Server server, Configuration conf) {
@@ -248,6 +263,28 @@ public void shutdown() {
     DefaultMetricsSystem.instance().unregisterSource(name);
   }
 
+  /**
+   * Add the queue depth gauge of a reader or responder thread of the server.
+   * @param reactor prefix of the metric name, e.g. Responder1.
+   * @return the gauge.
+   */
+  public MutableGaugeInt addReactorQueueDepth(String reactor) {
+    return registry.newGauge(reactor + "QueueDepth",
+        "Number of connections waiting for " + reactor, 0);
+  }
+
+  /**
+   * Add the select loop time rate of a reader or responder thread of the
+   * server. The samples are in microseconds.
+   * @param reactor prefix of the metric name, e.g. Responder1.
+   * @return the rate.
+   */
+  public MutableRate addReactorLoopTime(String reactor) {
+    return registry.newRate(reactor + "LoopTime",
+        "Time in microseconds " + reactor
+            + " spends on the ready connections of a select", false);
+  }
+
   /**
    * Increment sent bytes by count
    * @param count to increment
@@ -30,6 +30,7 @@
 import java.util.Collection;
 import java.util.Map;
 import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An optional metrics registry class for creating and maintaining a
@@ -250,6 +251,32 @@ public synchronized MutableQuantiles newInverseQuantiles(String name, String des
     return ret;
   }
 
+  /**
+   * Create a mutable metric that computes the quantiles of a stream of values
+   * from a high-resolution histogram.
+   * @param name of the metric
+   * @param desc metric description
+   * @param sampleName of the metric (e.g., "Ops")
+   * @param valueName of the metric (e.g., "Time" or "Latency")
+   * @param interval rollover interval of the histogram in seconds
+   * @param unit time unit of the values, which sets the bucket bounds
+   * @return a new histogram object
+   * @throws MetricsException if interval is not a positive integer
+   */
+  public synchronized MutableQuantiles newHistogram(String name, String desc,
+      String sampleName, String valueName, int interval, TimeUnit unit) {
+    checkMetricName(name);
+    if (interval <= 0) {
+      throw new MetricsException("Interval should be positive.  Value passed" +
+          " is: " + interval);
+    }
+    MutableQuantiles ret =
+        new MutableHistogram(name, desc, sampleName, valueName, interval,
+            unit);
+    metricsMap.put(name, ret);
+    return ret;
+  }
+
   /**
    * Create a mutable metric with stats
    * @param name  of the metric
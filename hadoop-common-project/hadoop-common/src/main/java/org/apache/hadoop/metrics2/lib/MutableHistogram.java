@@ -0,0 +1,233 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metrics2.lib;
+
+import static org.apache.hadoop.metrics2.lib.Interns.info;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.metrics2.MetricsInfo;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.util.LogLinearHistogram;
+import org.apache.hadoop.metrics2.util.Quantile;
+
+/**
+ * A drop-in replacement of {@link MutableQuantiles} backed by a
+ * {@link LogLinearHistogram}. Values are added without locking, and the
+ * percentiles of every interval are computed from all the values added
+ * during that interval, with a bounded relative error instead of sampling.
+ *
+ * Besides the percentile gauges of {@link MutableQuantiles}, the cumulative
+ * counts of the values at or below a set of bounds, their count and their
+ * sum are exported as counters named <code>&lt;Name&gt;&lt;Value&gt;
+ * HistogramBucketLe&lt;bound&gt;</code>, <code>...BucketLeInf</code>,
+ * <code>...Count</code> and <code>...Sum</code>, which
+ * {@link org.apache.hadoop.metrics2.sink.PrometheusMetricsSink} exposes as a
+ * histogram. The bounds are in the unit of the values. A value is counted
+ * at a bound only when its whole bucket of the {@link LogLinearHistogram}
+ * is at or below the bound, so a value at or just below a bound may only be
+ * counted at the next one.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class MutableHistogram extends MutableQuantiles {
+
+  /**
+   * Upper bounds of the exported buckets, from 10 microseconds to 100
+   * seconds, in nanoseconds.
+   */
+  private static final long[] BUCKET_BOUNDS_NANOS;
+
+  static {
+    List<Long> bounds = new ArrayList<>();
+    for (long decade = 10000; decade < 100000000000L; decade *= 10) {
+      bounds.add(decade);
+      bounds.add(2 * decade);
+      bounds.add(5 * decade);
+    }
+    bounds.add(100000000000L);
+    BUCKET_BOUNDS_NANOS = bounds.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  private final LogLinearHistogram current;
+  private final LogLinearHistogram window;
+  private final long[] bucketBounds;
+  /** Values at or below each bound, over all the intervals. */
+  private final long[] bucketCounts;
+  private long totalCount;
+  private long totalSum;
+  private final MetricsInfo[] bucketInfos;
+  private final MetricsInfo infBucketInfo;
+  private final MetricsInfo countInfo;
+  private final MetricsInfo sumInfo;
+  private ScheduledFuture<?> scheduledTask;
+
+  /**
+   * Instantiates a new {@link MutableHistogram} for a metric that rolls
+   * itself over on the specified time interval, with the buckets of
+   * latencies from 10 microseconds to 100 seconds.
+   *
+   * @param name          of the metric
+   * @param description   long-form textual description of the metric
+   * @param sampleName    type of items in the stream (e.g., "Ops")
+   * @param valueName     type of the values
+   * @param interval      rollover interval (in seconds) of the estimator
+   * @param unit          time unit of the values
+   */
+  public MutableHistogram(String name, String description, String sampleName,
+      String valueName, int interval, TimeUnit unit) {
+    this(name, description, sampleName, valueName, interval,
+        getBucketBounds(unit));
+  }
+
+  /**
+   * Instantiates a new {@link MutableHistogram} for a metric that rolls
+   * itself over on the specified time interval.
+   *
+   * @param name          of the metric
+   * @param description   long-form textual description of the metric
+   * @param sampleName    type of items in the stream (e.g., "Ops")
+   * @param valueName     type of the values
+   * @param interval      rollover interval (in seconds) of the estimator
+   * @param bucketBounds  upper bounds of the exported buckets, ascending
+   */
+  public MutableHistogram(String name, String description, String sampleName,
+      String valueName, int interval, long[] bucketBounds) {
+    String ucName = StringUtils.capitalize(name);
+    String usName = StringUtils.capitalize(sampleName);
+    String uvName = StringUtils.capitalize(valueName);
+    String desc = StringUtils.uncapitalize(description);
+    String lsName = StringUtils.uncapitalize(sampleName);
+    String lvName = StringUtils.uncapitalize(valueName);
+
+    setInterval(interval);
+    setNumInfo(info(ucName + "Num" + usName, String.format(
+        "Number of %s for %s with %ds interval", lsName, desc, interval)));
+    Quantile[] quantilesArray = getQuantiles();
+    setQuantileInfos(quantilesArray.length);
+    setQuantiles(ucName, uvName, desc, lvName, new DecimalFormat("###.####"));
+
+    String baseName = ucName + uvName + "Histogram";
+    this.bucketBounds = bucketBounds.clone();
+    bucketCounts = new long[bucketBounds.length];
+    bucketInfos = new MetricsInfo[bucketBounds.length];
+    for (int i = 0; i < bucketBounds.length; i++) {
+      bucketInfos[i] = info(baseName + "BucketLe" + bucketBounds[i],
+          "Number of " + lsName + " with a " + lvName + " at or below "
+              + bucketBounds[i] + " for " + desc);
+    }
+    infBucketInfo = info(baseName + "BucketLeInf",
+        "Number of " + lsName + " for " + desc);
+    countInfo = info(baseName + "Count", "Number of " + lsName + " for "
+        + desc);
+    sumInfo = info(baseName + "Sum", "Total " + lvName + " of " + lsName
+        + " for " + desc);
+
+    current = new LogLinearHistogram(quantilesArray);
+    window = new LogLinearHistogram(quantilesArray);
+    setEstimator(current);
+    scheduledTask = scheduler.scheduleWithFixedDelay(this::rollover,
+        interval, interval, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Move the values added during the last interval to the published window.
+   */
+  @VisibleForTesting
+  synchronized void rollover() {
+    window.clear();
+    current.drainTo(window);
+    long[] counts = window.getCountsAtOrBelow(bucketBounds);
+    for (int i = 0; i < counts.length; i++) {
+      bucketCounts[i] += counts[i];
+    }
+    totalCount += window.getCount();
+    totalSum += window.getSum();
+    setChanged();
+  }
+
+  /**
+   * @param unit a time unit.
+   * @return the bounds of the buckets of latencies from 10 microseconds to
+   *         100 seconds which are whole numbers in the unit.
+   */
+  @VisibleForTesting
+  static long[] getBucketBounds(TimeUnit unit) {
+    List<Long> bounds = new ArrayList<>();
+    for (long nanos : BUCKET_BOUNDS_NANOS) {
+      long bound = unit.convert(nanos, TimeUnit.NANOSECONDS);
+      if (bound > 0 && unit.toNanos(bound) == nanos) {
+        bounds.add(bound);
+      }
+    }
+    return bounds.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  @Override
+  public void add(long value) {
+    current.insert(value);
+  }
+
+  @Override
+  public synchronized void snapshot(MetricsRecordBuilder builder,
+      boolean all) {
+    if (all || changed()) {
+      Quantile[] quantilesArray = getQuantiles();
+      MetricsInfo[] infos = getQuantileInfos();
+      builder.addGauge(getNumInfo(), window.getCount());
+      for (int i = 0; i < quantilesArray.length; i++) {
+        builder.addGauge(infos[i],
+            window.getValueAtQuantile(quantilesArray[i].quantile));
+      }
+      for (int i = 0; i < bucketBounds.length; i++) {
+        builder.addCounter(bucketInfos[i], bucketCounts[i]);
+      }
+      builder.addCounter(infBucketInfo, totalCount);
+      builder.addCounter(countInfo, totalCount);
+      builder.addCounter(sumInfo, totalSum);
+      if (changed()) {
+        clearChanged();
+      }
+    }
+  }
+
+  /**
+   * @return the values added during the last complete interval.
+   */
+  @VisibleForTesting
+  public LogLinearHistogram getWindow() {
+    return window;
+  }
+
+  @Override
+  public void stop() {
+    if (scheduledTask != null) {
+      scheduledTask.cancel(false);
+    }
+    scheduledTask = null;
+  }
+}
@@ -65,7 +65,7 @@ public class MutableQuantiles extends MutableMetric {
   @VisibleForTesting
   protected Map<Quantile, Long> previousSnapshot = null;
 
-  private static final ScheduledExecutorService scheduler = Executors
+  static final ScheduledExecutorService scheduler = Executors
       .newScheduledThreadPool(1, new ThreadFactoryBuilder().setDaemon(true)
           .setNameFormat("MutableQuantiles-%d").build());
 
@@ -167,6 +167,10 @@ public synchronized void setNumInfo(MetricsInfo pNumInfo) {
     this.numInfo = pNumInfo;
   }
 
+  synchronized MetricsInfo getNumInfo() {
+    return numInfo;
+  }
+
   /**
    * Initialize quantileInfos array.
    *
@@ -186,6 +190,10 @@ public synchronized void addQuantileInfo(int i, MetricsInfo info) {
     this.quantileInfos[i] = info;
   }
 
+  synchronized MetricsInfo[] getQuantileInfos() {
+    return quantileInfos;
+  }
+
   /**
    * Set the rollover interval (in seconds) of the estimator.
    *
@@ -19,6 +19,7 @@
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeMap;
 import java.util.regex.Matcher;
 import org.apache.commons.configuration2.SubsetConfiguration;
 import org.apache.hadoop.metrics2.AbstractMetric;
@@ -30,6 +31,7 @@
 import java.io.IOException;
 import java.io.Writer;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
@@ -62,6 +64,14 @@ public class PrometheusMetricsSink implements MetricsSink {
       Pattern
           .compile("^op=(?<op>\\w+)(.user=(?<user>.*)|)\\.(TotalCount|count)$");
 
+  /**
+   * Counters of a {@link org.apache.hadoop.metrics2.lib.MutableHistogram},
+   * exposed as one histogram.
+   */
+  private static final Pattern HISTOGRAM_PATTERN =
+      Pattern.compile("^(.+_histogram)_(?:bucket_le(\\d+|_inf)|count|sum)$");
+  private static final String INF_BUCKET = "+Inf";
+
   public PrometheusMetricsSink() {
   }
 
@@ -110,8 +120,16 @@ public void init(SubsetConfiguration conf) {
 
   public void writeMetrics(Writer writer) throws IOException {
     List<String> extendMetricsTags = new ArrayList<>();
+    Map<String, Map<String, Map<Collection<MetricsTag>, AbstractMetric>>>
+        histograms = new TreeMap<>();
     for (Map.Entry<String, Map<Collection<MetricsTag>, AbstractMetric>> promMetric :
         promMetrics.entrySet()) {
+      Matcher histogram = HISTOGRAM_PATTERN.matcher(promMetric.getKey());
+      if (histogram.matches()) {
+        histograms.computeIfAbsent(histogram.group(1), any -> new TreeMap<>())
+            .put(promMetric.getKey(), promMetric.getValue());
+        continue;
+      }
       AbstractMetric firstMetric = promMetric.getValue().values().iterator().next();
       String metricKey = getMetricKey(promMetric.getKey(), firstMetric,
           extendMetricsTags);
@@ -130,36 +148,104 @@ public void writeMetrics(Writer writer) throws IOException {
 
       for (Map.Entry<Collection<MetricsTag>, AbstractMetric> metric :
           promMetric.getValue().entrySet()) {
-        builder.append(metricKey)
-            .append("{");
-
-        String sep = "";
-        for (MetricsTag tag : metric.getKey()) {
-          String tagName = tag.name().toLowerCase();
-
-          if (!tagName.equals("numopenconnectionsperuser")) {
-            builder.append(sep)
-                .append(tagName)
-                .append("=\"")
-                .append(tag.value())
-                .append("\"");
-            sep = ",";
-          }
-        }
-        if (!extendMetricsTags.isEmpty()) {
-          //add extend tags
-          for (String tagStr : extendMetricsTags) {
-            builder.append(sep).append(tagStr);
-          }
-          extendMetricsTags.clear();
-        }
-        builder.append("} ");
+        builder.append(metricKey);
+        appendTags(builder, metric.getKey(), extendMetricsTags);
+        extendMetricsTags.clear();
+        builder.append(" ");
         builder.append(metric.getValue().value());
         builder.append("\n");
       }
 
       writer.write(builder.toString());
     }
+    for (Map.Entry<String, Map<String, Map<Collection<MetricsTag>, AbstractMetric>>>
+        histogram : histograms.entrySet()) {
+      writer.write(getHistogram(histogram.getKey(), histogram.getValue()));
+    }
+  }
+
+  /**
+   * Write the counters of a histogram in the prometheus histogram format.
+   *
+   * @param family name of the histogram.
+   * @param series the counters of the histogram by name.
+   * @return the lines of the histogram.
+   */
+  private String getHistogram(String family,
+      Map<String, Map<Collection<MetricsTag>, AbstractMetric>> series) {
+    Map<Collection<MetricsTag>, AbstractMetric> counts =
+        series.get(family + "_count");
+    AbstractMetric firstMetric = (counts != null ? counts
+        : series.values().iterator().next()).values().iterator().next();
+    StringBuilder builder = new StringBuilder();
+    builder.append("# HELP ")
+        .append(family)
+        .append(" ")
+        .append(firstMetric.description())
+        .append("\n")
+        .append("# TYPE ")
+        .append(family)
+        .append(" histogram\n");
+
+    // buckets in increasing order of their bounds, then the count and sum
+    Map<Long, String> buckets = new TreeMap<>();
+    for (String name : series.keySet()) {
+      Matcher matcher = HISTOGRAM_PATTERN.matcher(name);
+      if (matcher.matches() && matcher.group(2) != null) {
+        buckets.put(matcher.group(2).equals("_inf") ? Long.MAX_VALUE
+            : Long.parseLong(matcher.group(2)), name);
+      }
+    }
+    for (Map.Entry<Long, String> bucket : buckets.entrySet()) {
+      String le = bucket.getKey() == Long.MAX_VALUE ? INF_BUCKET
+          : String.valueOf(bucket.getKey());
+      List<String> leTag =
+          Collections.singletonList("le=\"" + le + "\"");
+      for (Map.Entry<Collection<MetricsTag>, AbstractMetric> metric :
+          series.get(bucket.getValue()).entrySet()) {
+        builder.append(family).append("_bucket");
+        appendTags(builder, metric.getKey(), leTag);
+        builder.append(" ").append(metric.getValue().value()).append("\n");
+      }
+    }
+    for (String suffix : new String[] {"_count", "_sum"}) {
+      Map<Collection<MetricsTag>, AbstractMetric> metrics =
+          series.get(family + suffix);
+      if (metrics == null) {
+        continue;
+      }
+      for (Map.Entry<Collection<MetricsTag>, AbstractMetric> metric :
+          metrics.entrySet()) {
+        builder.append(family).append(suffix);
+        appendTags(builder, metric.getKey(), Collections.emptyList());
+        builder.append(" ").append(metric.getValue().value()).append("\n");
+      }
+    }
+    return builder.toString();
+  }
+
+  private static void appendTags(StringBuilder builder,
+      Collection<MetricsTag> tags, List<String> extendTags) {
+    builder.append("{");
+    String sep = "";
+    for (MetricsTag tag : tags) {
+      String tagName = tag.name().toLowerCase();
+
+      if (!tagName.equals("numopenconnectionsperuser")) {
+        builder.append(sep)
+            .append(tagName)
+            .append("=\"")
+            .append(tag.value())
+            .append("\"");
+        sep = ",";
+      }
+    }
+    //add extend tags
+    for (String tagStr : extendTags) {
+      builder.append(sep).append(tagStr);
+      sep = ",";
+    }
+    builder.append("}");
   }
 
   private String getMetricKey(String promMetricKey, AbstractMetric metric,
@@ -0,0 +1,321 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metrics2.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.util.Preconditions;
+
+/**
+ * A fixed-memory histogram of non-negative long values with log-linear
+ * buckets, in the spirit of HdrHistogram.
+ *
+ * Values below 2^precisionBits are counted exactly. Above, every power of
+ * two range is split in 2^(precisionBits-1) buckets of equal width, so the
+ * value reported for a quantile is within a relative error of
+ * 2^(1-precisionBits) of the exact one. Values from 2^maxValueBits on are
+ * counted in the last bucket.
+ *
+ * Inserts are lock-free: the counts are kept in several stripes of atomic
+ * counters, picked by thread, which are merged when they are read.
+ * Histograms with the same layout can be merged with {@link #add}, and
+ * {@link #drainTo} moves the counts to another histogram without losing
+ * concurrent inserts, which makes windowed histograms exact.
+ */
+@InterfaceAudience.Private
+public class LogLinearHistogram implements QuantileEstimator {
+
+  /** Default number of bits of precision, for a 1.6% error. */
+  public static final int DEFAULT_PRECISION_BITS = 7;
+  /** Default bits of the largest value tracked, 2^40 or 18 minutes in ns. */
+  public static final int DEFAULT_MAX_VALUE_BITS = 40;
+  /** Default number of stripes of counters. */
+  public static final int DEFAULT_STRIPES = 4;
+
+  private final Quantile[] quantiles;
+  private final int precisionBits;
+  private final int maxValueBits;
+  private final int subBuckets;
+  private final int halfSubBuckets;
+  private final int numBuckets;
+  private final int stripeMask;
+  /** Counts of the buckets, followed by the sum of the values. */
+  private final AtomicLongArray[] stripes;
+
+  /**
+   * @param quantiles the quantiles returned by {@link #snapshot()}.
+   */
+  public LogLinearHistogram(Quantile[] quantiles) {
+    this(quantiles, DEFAULT_PRECISION_BITS, DEFAULT_MAX_VALUE_BITS,
+        DEFAULT_STRIPES);
+  }
+
+  /**
+   * @param quantiles the quantiles returned by {@link #snapshot()}.
+   * @param precisionBits the number of bits of values counted exactly.
+   * @param maxValueBits the number of bits of the largest value tracked.
+   * @param stripes the number of stripes of counters, a power of two.
+   */
+  public LogLinearHistogram(Quantile[] quantiles, int precisionBits,
+      int maxValueBits, int stripes) {
+    Preconditions.checkArgument(precisionBits >= 2 && precisionBits <= 16,
+        "precisionBits should be in [2, 16]: %s", precisionBits);
+    Preconditions.checkArgument(
+        maxValueBits >= precisionBits && maxValueBits <= 63,
+        "maxValueBits should be in [%s, 63]: %s", precisionBits,
+        maxValueBits);
+    Preconditions.checkArgument(stripes > 0 && (stripes & (stripes - 1)) == 0,
+        "stripes should be a power of two: %s", stripes);
+    this.quantiles = quantiles;
+    this.precisionBits = precisionBits;
+    this.maxValueBits = maxValueBits;
+    this.subBuckets = 1 << precisionBits;
+    this.halfSubBuckets = subBuckets >> 1;
+    this.numBuckets = subBuckets + (maxValueBits - precisionBits)
+        * halfSubBuckets;
+    this.stripeMask = stripes - 1;
+    this.stripes = new AtomicLongArray[stripes];
+    for (int i = 0; i < stripes; i++) {
+      this.stripes[i] = new AtomicLongArray(numBuckets + 1);
+    }
+  }
+
+  /**
+   * @param value a value.
+   * @return the index of the bucket counting the value.
+   */
+  int getIndex(long value) {
+    if (value < subBuckets) {
+      return value < 0 ? 0 : (int) value;
+    }
+    int bits = 64 - Long.numberOfLeadingZeros(value);
+    if (bits > maxValueBits) {
+      return numBuckets - 1;
+    }
+    int shift = bits - precisionBits;
+    return subBuckets + (shift - 1) * halfSubBuckets
+        + (int) (value >>> shift) - halfSubBuckets;
+  }
+
+  /**
+   * @param index the index of a bucket.
+   * @return the lowest value counted in the bucket.
+   */
+  long getLowestValue(int index) {
+    if (index < subBuckets) {
+      return index;
+    }
+    int shift = (index - subBuckets) / halfSubBuckets + 1;
+    long subBucket = (index - subBuckets) % halfSubBuckets + halfSubBuckets;
+    return subBucket << shift;
+  }
+
+  /**
+   * @param index the index of a bucket.
+   * @return the highest value counted in the bucket.
+   */
+  long getHighestValue(int index) {
+    if (index == numBuckets - 1) {
+      return (1L << maxValueBits) - 1;
+    }
+    return getLowestValue(index + 1) - 1;
+  }
+
+  private AtomicLongArray stripe() {
+    return stripes[(int) Thread.currentThread().getId() & stripeMask];
+  }
+
+  @Override
+  public void insert(long value) {
+    AtomicLongArray stripe = stripe();
+    stripe.incrementAndGet(getIndex(value));
+    stripe.addAndGet(numBuckets, value);
+  }
+
+  /**
+   * @return the counts of the buckets, merged over the stripes, followed by
+   *         the sum of the values.
+   */
+  private long[] getCounts() {
+    long[] counts = new long[numBuckets + 1];
+    for (AtomicLongArray stripe : stripes) {
+      for (int i = 0; i <= numBuckets; i++) {
+        counts[i] += stripe.get(i);
+      }
+    }
+    return counts;
+  }
+
+  @Override
+  public long getCount() {
+    long count = 0;
+    for (AtomicLongArray stripe : stripes) {
+      for (int i = 0; i < numBuckets; i++) {
+        count += stripe.get(i);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return the sum of the values.
+   */
+  public long getSum() {
+    long sum = 0;
+    for (AtomicLongArray stripe : stripes) {
+      sum += stripe.get(numBuckets);
+    }
+    return sum;
+  }
+
+  /**
+   * @param value a value.
+   * @return the index of the last bucket which only counts values at or
+   *         below the value, -1 if there is none.
+   */
+  private int getLastIndexAtOrBelow(long value) {
+    if (value < 0) {
+      return -1;
+    }
+    int index = getIndex(value);
+    return getHighestValue(index) <= value ? index : index - 1;
+  }
+
+  /**
+   * @param value a value.
+   * @return the number of values at or below the value. The values of the
+   *         bucket holding the value are only counted if it holds no value
+   *         above it, so this is rounded down to a bucket boundary.
+   */
+  public long getCountAtOrBelow(long value) {
+    return getCountsAtOrBelow(new long[] {value})[0];
+  }
+
+  /**
+   * @param values some values.
+   * @return the number of values at or below each of the values, rounded
+   *         down to a bucket boundary like {@link #getCountAtOrBelow}.
+   */
+  public long[] getCountsAtOrBelow(long[] values) {
+    long[] counts = getCounts();
+    for (int i = 1; i < numBuckets; i++) {
+      counts[i] += counts[i - 1];
+    }
+    long[] result = new long[values.length];
+    for (int i = 0; i < values.length; i++) {
+      int last = getLastIndexAtOrBelow(values[i]);
+      result[i] = last < 0 ? 0 : counts[last];
+    }
+    return result;
+  }
+
+  /**
+   * @param quantile a quantile in [0, 1].
+   * @return the highest value of the bucket holding the value at the given
+   *         quantile, 0 if the histogram is empty.
+   */
+  public long getValueAtQuantile(double quantile) {
+    return getValueAtQuantile(getCounts(), quantile);
+  }
+
+  private long getValueAtQuantile(long[] counts, double quantile) {
+    long total = 0;
+    for (int i = 0; i < numBuckets; i++) {
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int i = 0; i < numBuckets; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return getHighestValue(i);
+      }
+    }
+    return getHighestValue(numBuckets - 1);
+  }
+
+  @Override
+  public Map<Quantile, Long> snapshot() {
+    long[] counts = getCounts();
+    Map<Quantile, Long> values = new TreeMap<>();
+    for (Quantile quantile : quantiles) {
+      values.put(quantile, getValueAtQuantile(counts, quantile.quantile));
+    }
+    return values;
+  }
+
+  @Override
+  public void clear() {
+    for (AtomicLongArray stripe : stripes) {
+      for (int i = 0; i <= numBuckets; i++) {
+        stripe.set(i, 0);
+      }
+    }
+  }
+
+  private void checkLayout(LogLinearHistogram other) {
+    Preconditions.checkArgument(precisionBits == other.precisionBits
+        && maxValueBits == other.maxValueBits,
+        "Histograms with different layouts cannot be merged");
+  }
+
+  /**
+   * Add the counts of another histogram to this one.
+   * @param other a histogram with the same precision and maximum value.
+   */
+  public void add(LogLinearHistogram other) {
+    checkLayout(other);
+    long[] counts = other.getCounts();
+    AtomicLongArray stripe = stripe();
+    for (int i = 0; i <= numBuckets; i++) {
+      if (counts[i] != 0) {
+        stripe.addAndGet(i, counts[i]);
+      }
+    }
+  }
+
+  /**
+   * Move the counts of this histogram to another one. Every value inserted
+   * concurrently is counted either by the target or by this histogram.
+   * @param target a histogram with the same precision and maximum value.
+   */
+  public void drainTo(LogLinearHistogram target) {
+    checkLayout(target);
+    AtomicLongArray targetStripe = target.stripe();
+    for (AtomicLongArray stripe : stripes) {
+      for (int i = 0; i <= numBuckets; i++) {
+        if (stripe.get(i) != 0) {
+          targetStripe.addAndGet(i, stripe.getAndSet(i, 0));
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "LogLinearHistogram(count=" + getCount() + ", precisionBits="
+        + precisionBits + ", maxValueBits=" + maxValueBits + ")";
+  }
+}
@@ -100,17 +100,17 @@ public InstrumentedLock(String name, Logger logger, Lock lock,
 
   @Override
   public void lock() {
-    long waitStart = clock.monotonicNow();
+    long waitStartNanos = clock.monotonicNowNanos();
     lock.lock();
-    check(waitStart, clock.monotonicNow(), false);
+    checkWait(waitStartNanos);
     startLockTiming();
   }
 
   @Override
   public void lockInterruptibly() throws InterruptedException {
-    long waitStart = clock.monotonicNow();
+    long waitStartNanos = clock.monotonicNowNanos();
     lock.lockInterruptibly();
-    check(waitStart, clock.monotonicNow(), false);
+    checkWait(waitStartNanos);
     startLockTiming();
   }
 
@@ -125,13 +125,16 @@ public boolean tryLock() {
 
   @Override
   public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
-    long waitStart = clock.monotonicNow();
+    long waitStartNanos = clock.monotonicNowNanos();
     boolean retval = false;
     if (lock.tryLock(time, unit)) {
       startLockTiming();
       retval = true;
     }
-    check(waitStart, clock.monotonicNow(), false);
+    checkWait(waitStartNanos);
+    if (!retval) {
+      SamplingProfiler.flushLockWaits();
+    }
     return retval;
   }
 
@@ -140,6 +143,7 @@ public void unlock() {
     long localLockReleaseTime = clock.monotonicNow();
     long localLockAcquireTime = lockAcquireTimestamp;
     lock.unlock();
+    SamplingProfiler.flushLockWaits();
     check(localLockAcquireTime, localLockReleaseTime, true);
   }
 
@@ -178,6 +182,19 @@ protected void startLockTiming() {
     lockAcquireTimestamp = clock.monotonicNow();
   }
 
+  /**
+   * Record the wait to acquire the lock, and log a warning if it was too
+   * long.
+   *
+   * @param waitStartNanos timestamp in ns just before waiting for the lock.
+   */
+  private void checkWait(long waitStartNanos) {
+    long waitEndNanos = clock.monotonicNowNanos();
+    SamplingProfiler.recordLockWait(name, waitEndNanos - waitStartNanos);
+    check(TimeUnit.NANOSECONDS.toMillis(waitStartNanos),
+        TimeUnit.NANOSECONDS.toMillis(waitEndNanos), false);
+  }
+
   /**
    * Log a warning if the lock was held for too long.
    *
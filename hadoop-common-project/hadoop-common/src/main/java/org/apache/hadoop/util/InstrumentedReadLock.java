@@ -68,6 +68,7 @@ public void unlock() {
     long localLockReleaseTime = getTimer().monotonicNow();
     long localLockAcquireTime = readLockHeldTimeStamp.get();
     getLock().unlock();
+    SamplingProfiler.flushLockWaits();
     if (needReport) {
       readLockHeldTimeStamp.remove();
       check(localLockAcquireTime, localLockReleaseTime, true);
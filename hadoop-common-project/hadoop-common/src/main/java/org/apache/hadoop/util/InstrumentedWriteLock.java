@@ -62,6 +62,7 @@ public void unlock() {
     long localWriteReleaseTime = getTimer().monotonicNow();
     long localWriteAcquireTime = writeLockHeldTimeStamp;
     getLock().unlock();
+    SamplingProfiler.flushLockWaits();
     if (needReport) {
       writeLockHeldTimeStamp = 0;
       check(localWriteAcquireTime, localWriteReleaseTime, true);
@@ -0,0 +1,454 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import javax.management.ObjectName;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.util.MBeans;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_INTERVAL_MS_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_INTERVAL_MS_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_LOCK_MIN_WAIT_US_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_LOCK_MIN_WAIT_US_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_THREADS_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_THREADS_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_WINDOW_SEC_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_WINDOW_SEC_KEY;
+
+/**
+ * A low overhead profiler built into the daemons, meant to be left running
+ * in production.
+ *
+ * A daemon thread periodically samples the stacks of the threads whose name
+ * matches a pattern, such as the RPC handlers and the DataNode xceivers,
+ * with the {@link ThreadMXBean}. The waits for the instrumented locks are
+ * recorded by the locks themselves, attributed to the lock and to the
+ * first frame outside of the locking code. Both are aggregated over a
+ * rolling window, as collapsed stacks ready for flame graph tools.
+ *
+ * There is one profiler per JVM, shared by the HTTP servers of the JVM and
+ * running while at least one of them is.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public final class SamplingProfiler implements SamplingProfilerMXBean {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(SamplingProfiler.class);
+
+  /** Number of slots the window is split in. */
+  static final int SLOTS = 10;
+  /** Maximum number of frames of a sampled stack. */
+  static final int MAX_DEPTH = 128;
+  /** Maximum number of distinct stacks kept in a slot. */
+  static final int MAX_STACKS = 10000;
+  static final String TRUNCATED = "[truncated]";
+
+  /** Frames of the locking code, skipped to find the lock site. */
+  private static final Pattern LOCK_METHOD =
+      Pattern.compile("(read|write)?([uU]n)?[lL]ock(Interruptibly)?");
+  /** Maximum number of lock waits of a thread waiting for their site. */
+  static final int MAX_PENDING_LOCK_WAITS = 16;
+  /**
+   * Lock waits recorded by the current thread while holding the lock, until
+   * their site is resolved after the lock is released.
+   */
+  private static final ThreadLocal<PendingLockWaits> PENDING_LOCK_WAITS =
+      ThreadLocal.withInitial(PendingLockWaits::new);
+
+  private static SamplingProfiler instance;
+  private static int references;
+  /** The running profiler, read without locking by the locks. */
+  private static volatile SamplingProfiler running;
+
+  private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+  private final Pattern threads;
+  private final long intervalMs;
+  private final long slotMs;
+  private final long minLockWaitNanos;
+  private final Slot[] slots = new Slot[SLOTS];
+  private volatile int current;
+  private long currentEpoch;
+  private Thread sampler;
+  private ObjectName mbeanName;
+
+  /**
+   * Counts of the stacks and lock waits seen during one slot of the window.
+   */
+  private static final class Slot {
+    private final Map<String, LongAdder> stacks = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> runnableStacks =
+        new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> lockWaits =
+        new ConcurrentHashMap<>();
+    private final LongAdder samples = new LongAdder();
+
+    void clear() {
+      stacks.clear();
+      runnableStacks.clear();
+      lockWaits.clear();
+      samples.reset();
+    }
+  }
+
+  /**
+   * Lock waits of a thread whose site is not resolved yet.
+   */
+  private static final class PendingLockWaits {
+    private final String[] lockNames = new String[MAX_PENDING_LOCK_WAITS];
+    private final long[] waitNanos = new long[MAX_PENDING_LOCK_WAITS];
+    private int size;
+  }
+
+  @VisibleForTesting
+  SamplingProfiler(Configuration conf) {
+    threads = Pattern.compile(conf.get(HADOOP_SAMPLING_PROFILER_THREADS_KEY,
+        HADOOP_SAMPLING_PROFILER_THREADS_DEFAULT));
+    intervalMs = Math.max(1, conf.getTimeDuration(
+        HADOOP_SAMPLING_PROFILER_INTERVAL_MS_KEY,
+        HADOOP_SAMPLING_PROFILER_INTERVAL_MS_DEFAULT, TimeUnit.MILLISECONDS));
+    long windowMs = conf.getTimeDuration(
+        HADOOP_SAMPLING_PROFILER_WINDOW_SEC_KEY,
+        HADOOP_SAMPLING_PROFILER_WINDOW_SEC_DEFAULT, TimeUnit.SECONDS,
+        TimeUnit.MILLISECONDS);
+    slotMs = Math.max(intervalMs, windowMs / SLOTS);
+    minLockWaitNanos = TimeUnit.MICROSECONDS.toNanos(conf.getTimeDuration(
+        HADOOP_SAMPLING_PROFILER_LOCK_MIN_WAIT_US_KEY,
+        HADOOP_SAMPLING_PROFILER_LOCK_MIN_WAIT_US_DEFAULT,
+        TimeUnit.MICROSECONDS));
+    for (int i = 0; i < SLOTS; i++) {
+      slots[i] = new Slot();
+    }
+    currentEpoch = Time.monotonicNow() / slotMs;
+  }
+
+  /**
+   * Start the profiler of the JVM if it is not running yet. Every call must
+   * be followed by a call to {@link #release()}.
+   * @param conf the configuration of the profiler, used by the first call.
+   * @return the profiler.
+   */
+  public static synchronized SamplingProfiler acquire(Configuration conf) {
+    if (instance == null) {
+      instance = new SamplingProfiler(conf);
+      instance.start();
+    }
+    references++;
+    return instance;
+  }
+
+  /**
+   * Stop the profiler of the JVM once it is released as often as acquired.
+   */
+  public static synchronized void release() {
+    if (references > 0 && --references == 0) {
+      instance.stop();
+      instance = null;
+    }
+  }
+
+  /**
+   * @return the running profiler of the JVM, or null.
+   */
+  public static SamplingProfiler get() {
+    return running;
+  }
+
+  /**
+   * Record the wait to acquire a lock, if the profiler is running. This is
+   * called while holding the lock, so the site of the wait is only resolved
+   * by the next {@link #flushLockWaits()} of the thread.
+   * @param lockName the name of the lock.
+   * @param waitNanos how long the lock was waited for.
+   */
+  public static void recordLockWait(String lockName, long waitNanos) {
+    SamplingProfiler profiler = running;
+    if (profiler != null && waitNanos >= profiler.minLockWaitNanos
+        && waitNanos > 0) {
+      PendingLockWaits pending = PENDING_LOCK_WAITS.get();
+      if (pending.size < MAX_PENDING_LOCK_WAITS) {
+        pending.lockNames[pending.size] = lockName;
+        pending.waitNanos[pending.size++] = waitNanos;
+      }
+    }
+  }
+
+  /**
+   * Attribute the lock waits recorded by the current thread to the first
+   * frame outside of the locking code. This captures the stack of the
+   * thread, so it is called after releasing a lock rather than while
+   * holding it.
+   */
+  public static void flushLockWaits() {
+    SamplingProfiler profiler = running;
+    if (profiler == null) {
+      return;
+    }
+    PendingLockWaits pending = PENDING_LOCK_WAITS.get();
+    if (pending.size == 0) {
+      return;
+    }
+    String site = getLockSite();
+    for (int i = 0; i < pending.size; i++) {
+      profiler.addLockWait(pending.lockNames[i], site, pending.waitNanos[i]);
+      pending.lockNames[i] = null;
+    }
+    pending.size = 0;
+  }
+
+  /**
+   * @return the first frame of the current thread outside of the locking
+   *         code.
+   */
+  @VisibleForTesting
+  static String getLockSite() {
+    for (StackTraceElement frame : Thread.currentThread().getStackTrace()) {
+      String className = frame.getClassName();
+      if (className.equals(Thread.class.getName())
+          || className.equals(SamplingProfiler.class.getName())
+          || className.startsWith("java.util.concurrent.locks.")
+          || className.endsWith("Lock") || className.contains("Lock$")
+          || LOCK_METHOD.matcher(frame.getMethodName()).matches()) {
+        continue;
+      }
+      return className + "." + frame.getMethodName() + ":"
+          + frame.getLineNumber();
+    }
+    return "unknown";
+  }
+
+  private synchronized void start() {
+    sampler = new Thread(this::run, "SamplingProfiler");
+    sampler.setDaemon(true);
+    sampler.start();
+    mbeanName = MBeans.register("Hadoop", "SamplingProfiler", this);
+    running = this;
+    LOG.info("Sampling threads matching {} every {} ms", threads, intervalMs);
+  }
+
+  private synchronized void stop() {
+    running = null;
+    if (sampler != null) {
+      sampler.interrupt();
+      sampler = null;
+    }
+    if (mbeanName != null) {
+      MBeans.unregister(mbeanName);
+      mbeanName = null;
+    }
+  }
+
+  private void run() {
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        sample();
+        Thread.sleep(intervalMs);
+      } catch (InterruptedException e) {
+        return;
+      } catch (RuntimeException e) {
+        LOG.warn("Failed to sample the threads", e);
+      }
+    }
+  }
+
+  /**
+   * Take one sample of the stacks of the profiled threads.
+   */
+  @VisibleForTesting
+  void sample() {
+    Slot slot = roll();
+    long self = Thread.currentThread().getId();
+    long[] ids = threadBean.getAllThreadIds();
+    ThreadInfo[] names = threadBean.getThreadInfo(ids, 0);
+    List<Long> profiled = new ArrayList<>();
+    for (ThreadInfo info : names) {
+      if (info != null && info.getThreadId() != self
+          && threads.matcher(info.getThreadName()).matches()) {
+        profiled.add(info.getThreadId());
+      }
+    }
+    if (profiled.isEmpty()) {
+      slot.samples.increment();
+      return;
+    }
+    long[] profiledIds = new long[profiled.size()];
+    for (int i = 0; i < profiledIds.length; i++) {
+      profiledIds[i] = profiled.get(i);
+    }
+    for (ThreadInfo info : threadBean.getThreadInfo(profiledIds, MAX_DEPTH)) {
+      if (info == null || info.getStackTrace().length == 0) {
+        // exited, or not started yet
+        continue;
+      }
+      String stack = getCollapsedStack(info);
+      increment(slot.stacks, stack, 1);
+      if (info.getThreadState() == Thread.State.RUNNABLE) {
+        increment(slot.runnableStacks, stack, 1);
+      }
+    }
+    slot.samples.increment();
+  }
+
+  /**
+   * @param info the stack of a thread.
+   * @return the collapsed stack from the root, prefixed by the kind of
+   *         thread and followed by its state if it is not runnable.
+   */
+  private static String getCollapsedStack(ThreadInfo info) {
+    StringBuilder sb = new StringBuilder(getThreadKind(info.getThreadName()));
+    StackTraceElement[] frames = info.getStackTrace();
+    for (int i = frames.length - 1; i >= 0; i--) {
+      sb.append(';').append(frames[i].getClassName()).append('.')
+          .append(frames[i].getMethodName());
+    }
+    if (info.getThreadState() != Thread.State.RUNNABLE) {
+      sb.append(";[").append(info.getThreadState()).append(']');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @param threadName the name of a thread.
+   * @return the name without its numbers and details, which group the
+   *         threads of a pool.
+   */
+  @VisibleForTesting
+  static String getThreadKind(String threadName) {
+    int end = threadName.length();
+    for (int i = 0; i < threadName.length(); i++) {
+      char c = threadName.charAt(i);
+      if (Character.isDigit(c) || c == '[' || c == '(' || c == ':'
+          || c == ';' || threadName.startsWith(" for ", i)) {
+        end = i;
+        break;
+      }
+    }
+    while (end > 0 && (threadName.charAt(end - 1) == '-'
+        || threadName.charAt(end - 1) == '_'
+        || threadName.charAt(end - 1) == '#'
+        || Character.isWhitespace(threadName.charAt(end - 1)))) {
+      end--;
+    }
+    String kind = threadName.substring(0, end);
+    return kind.isEmpty() ? "thread" : kind;
+  }
+
+  private void addLockWait(String lockName, String site, long waitNanos) {
+    increment(slots[current].lockWaits, lockName + ";" + site,
+        TimeUnit.NANOSECONDS.toMicros(waitNanos));
+  }
+
+  private static void increment(Map<String, LongAdder> counts, String key,
+      long value) {
+    LongAdder count = counts.get(key);
+    if (count == null) {
+      if (counts.size() >= MAX_STACKS) {
+        key = TRUNCATED;
+      }
+      count = counts.computeIfAbsent(key, k -> new LongAdder());
+    }
+    count.add(value);
+  }
+
+  /**
+   * Move to the slot of the current time, clearing the slots which fell out
+   * of the window.
+   * @return the current slot.
+   */
+  private synchronized Slot roll() {
+    long epoch = Time.monotonicNow() / slotMs;
+    long elapsed = Math.min(epoch - currentEpoch, SLOTS);
+    for (long i = 1; i <= elapsed; i++) {
+      slots[(int) ((currentEpoch + i) % SLOTS)].clear();
+    }
+    currentEpoch = epoch;
+    current = (int) (epoch % SLOTS);
+    return slots[current];
+  }
+
+  private interface SlotCounts {
+    Map<String, LongAdder> get(Slot slot);
+  }
+
+  private String getCollapsed(SlotCounts counts) {
+    roll();
+    Map<String, Long> merged = new HashMap<>();
+    for (Slot slot : slots) {
+      for (Map.Entry<String, LongAdder> e : counts.get(slot).entrySet()) {
+        merged.merge(e.getKey(), e.getValue().sum(), Long::sum);
+      }
+    }
+    List<Map.Entry<String, Long>> sorted = new ArrayList<>(merged.entrySet());
+    sorted.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, Long> e : sorted) {
+      if (e.getValue() > 0) {
+        sb.append(e.getKey()).append(' ').append(e.getValue()).append('\n');
+      }
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String getWallClockStacks() {
+    return getCollapsed(slot -> slot.stacks);
+  }
+
+  @Override
+  public String getRunnableStacks() {
+    return getCollapsed(slot -> slot.runnableStacks);
+  }
+
+  @Override
+  public String getLockContention() {
+    return getCollapsed(slot -> slot.lockWaits);
+  }
+
+  @Override
+  public long getSampleCount() {
+    roll();
+    long samples = 0;
+    for (Slot slot : slots) {
+      samples += slot.samples.sum();
+    }
+    return samples;
+  }
+
+  @Override
+  public long getWindowSeconds() {
+    return TimeUnit.MILLISECONDS.toSeconds(slotMs * SLOTS);
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.util;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * JMX interface of the {@link SamplingProfiler}. The stacks are in the
+ * collapsed format of flame graph tools: one line per distinct stack, with
+ * the frames from the root separated by semicolons, followed by a space and
+ * the weight of the stack.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public interface SamplingProfilerMXBean {
+
+  /**
+   * @return the sampled stacks of the profiled threads over the window, in
+   *         any state, weighted by number of samples.
+   */
+  String getWallClockStacks();
+
+  /**
+   * @return the sampled stacks of the profiled threads over the window which
+   *         were runnable, weighted by number of samples.
+   */
+  String getRunnableStacks();
+
+  /**
+   * @return the waits for the instrumented locks over the window, as stacks
+   *         of the lock name and lock site, weighted by the wait time in
+   *         microseconds.
+   */
+  String getLockContention();
+
+  /**
+   * @return the number of samples taken over the window.
+   */
+  long getSampleCount();
+
+  /**
+   * @return the length of the window in seconds.
+   */
+  long getWindowSeconds();
+}
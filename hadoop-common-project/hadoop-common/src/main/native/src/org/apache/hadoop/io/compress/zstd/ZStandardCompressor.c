@@ -52,6 +52,14 @@ static size_t (*dlsym_ZSTD_endStream)(ZSTD_CStream*, ZSTD_outBuffer*);
 static size_t (*dlsym_ZSTD_flushStream)(ZSTD_CStream*, ZSTD_outBuffer*);
 static unsigned (*dlsym_ZSTD_isError)(size_t);
 static const char * (*dlsym_ZSTD_getErrorName)(size_t);
+#ifdef HADOOP_ZSTD_DICTIONARY
+static ZSTD_CDict* (*dlsym_ZSTD_createCDict)(const void*, size_t, int);
+static size_t (*dlsym_ZSTD_freeCDict)(ZSTD_CDict*);
+static size_t (*dlsym_ZSTD_initCStream_usingCDict)(ZSTD_CStream*, const ZSTD_CDict*);
+static size_t (*dlsym_ZDICT_trainFromBuffer)(void*, size_t, const void*, const size_t*, unsigned);
+static unsigned (*dlsym_ZDICT_isError)(size_t);
+static const char * (*dlsym_ZDICT_getErrorName)(size_t);
+#endif
 #endif
 
 #ifdef WINDOWS
@@ -65,6 +73,14 @@ typedef size_t (__cdecl *__dlsym_ZSTD_endStream)(ZSTD_CStream*, ZSTD_outBuffer*)
 typedef size_t (__cdecl *__dlsym_ZSTD_flushStream)(ZSTD_CStream*, ZSTD_outBuffer*);
 typedef unsigned (__cdecl *__dlsym_ZSTD_isError)(size_t);
 typedef const char * (__cdecl *__dlsym_ZSTD_getErrorName)(size_t);
+#ifdef HADOOP_ZSTD_DICTIONARY
+typedef ZSTD_CDict* (__cdecl *__dlsym_ZSTD_createCDict)(const void*, size_t, int);
+typedef size_t (__cdecl *__dlsym_ZSTD_freeCDict)(ZSTD_CDict*);
+typedef size_t (__cdecl *__dlsym_ZSTD_initCStream_usingCDict)(ZSTD_CStream*, const ZSTD_CDict*);
+typedef size_t (__cdecl *__dlsym_ZDICT_trainFromBuffer)(void*, size_t, const void*, const size_t*, unsigned);
+typedef unsigned (__cdecl *__dlsym_ZDICT_isError)(size_t);
+typedef const char * (__cdecl *__dlsym_ZDICT_getErrorName)(size_t);
+#endif
 
 static __dlsym_ZSTD_CStreamInSize dlsym_ZSTD_CStreamInSize;
 static __dlsym_ZSTD_CStreamOutSize dlsym_ZSTD_CStreamOutSize;
@@ -76,6 +92,14 @@ static __dlsym_ZSTD_endStream dlsym_ZSTD_endStream;
 static __dlsym_ZSTD_flushStream dlsym_ZSTD_flushStream;
 static __dlsym_ZSTD_isError dlsym_ZSTD_isError;
 static __dlsym_ZSTD_getErrorName dlsym_ZSTD_getErrorName;
+#ifdef HADOOP_ZSTD_DICTIONARY
+static __dlsym_ZSTD_createCDict dlsym_ZSTD_createCDict;
+static __dlsym_ZSTD_freeCDict dlsym_ZSTD_freeCDict;
+static __dlsym_ZSTD_initCStream_usingCDict dlsym_ZSTD_initCStream_usingCDict;
+static __dlsym_ZDICT_trainFromBuffer dlsym_ZDICT_trainFromBuffer;
+static __dlsym_ZDICT_isError dlsym_ZDICT_isError;
+static __dlsym_ZDICT_getErrorName dlsym_ZDICT_getErrorName;
+#endif
 #endif
 
 // Load the libzstd.so from disk
@@ -112,6 +136,16 @@ JNIEXPORT void JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardCompress
     LOAD_DYNAMIC_SYMBOL(dlsym_ZSTD_flushStream, env, libzstd, "ZSTD_flushStream");
     LOAD_DYNAMIC_SYMBOL(dlsym_ZSTD_isError, env, libzstd, "ZSTD_isError");
     LOAD_DYNAMIC_SYMBOL(dlsym_ZSTD_getErrorName, env, libzstd, "ZSTD_getErrorName");
+#ifdef HADOOP_ZSTD_DICTIONARY
+    // dictionary support is optional, older or trimmed builds of libzstd
+    // may not export these symbols
+    dlsym_ZSTD_createCDict = dlsym(libzstd, "ZSTD_createCDict");
+    dlsym_ZSTD_freeCDict = dlsym(libzstd, "ZSTD_freeCDict");
+    dlsym_ZSTD_initCStream_usingCDict = dlsym(libzstd, "ZSTD_initCStream_usingCDict");
+    dlsym_ZDICT_trainFromBuffer = dlsym(libzstd, "ZDICT_trainFromBuffer");
+    dlsym_ZDICT_isError = dlsym(libzstd, "ZDICT_isError");
+    dlsym_ZDICT_getErrorName = dlsym(libzstd, "ZDICT_getErrorName");
+#endif
 #endif
 
 #ifdef WINDOWS
@@ -125,6 +159,14 @@ JNIEXPORT void JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardCompress
     LOAD_DYNAMIC_SYMBOL(__dlsym_ZSTD_flushStream, dlsym_ZSTD_flushStream, env, libzstd, "ZSTD_flushStream");
     LOAD_DYNAMIC_SYMBOL(__dlsym_ZSTD_isError, dlsym_ZSTD_isError, env, libzstd, "ZSTD_isError");
     LOAD_DYNAMIC_SYMBOL(__dlsym_ZSTD_getErrorName, dlsym_ZSTD_getErrorName, env, libzstd, "ZSTD_getErrorName");
+#ifdef HADOOP_ZSTD_DICTIONARY
+    dlsym_ZSTD_createCDict = (__dlsym_ZSTD_createCDict) GetProcAddress(libzstd, "ZSTD_createCDict");
+    dlsym_ZSTD_freeCDict = (__dlsym_ZSTD_freeCDict) GetProcAddress(libzstd, "ZSTD_freeCDict");
+    dlsym_ZSTD_initCStream_usingCDict = (__dlsym_ZSTD_initCStream_usingCDict) GetProcAddress(libzstd, "ZSTD_initCStream_usingCDict");
+    dlsym_ZDICT_trainFromBuffer = (__dlsym_ZDICT_trainFromBuffer) GetProcAddress(libzstd, "ZDICT_trainFromBuffer");
+    dlsym_ZDICT_isError = (__dlsym_ZDICT_isError) GetProcAddress(libzstd, "ZDICT_isError");
+    dlsym_ZDICT_getErrorName = (__dlsym_ZDICT_getErrorName) GetProcAddress(libzstd, "ZDICT_getErrorName");
+#endif
 #endif
 
     // load fields
@@ -157,6 +199,98 @@ JNIEXPORT void JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardCompress
     }
 }
 
+#ifdef HADOOP_ZSTD_DICTIONARY
+// Digest a dictionary once so it can be shared by every frame of the stream
+JNIEXPORT jlong JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardCompressor_createCDict (JNIEnv *env, jclass clazz, jbyteArray dictionary, jint level) {
+    if (!dlsym_ZSTD_createCDict || !dlsym_ZSTD_initCStream_usingCDict) {
+        THROW(env, "java/lang/UnsupportedOperationException", "libzstd does not support dictionaries");
+        return (jlong)0;
+    }
+    jsize dict_len = (*env)->GetArrayLength(env, dictionary);
+    jbyte *dict = (*env)->GetByteArrayElements(env, dictionary, NULL);
+    if (!dict) {
+        THROW(env, "java/lang/OutOfMemoryError", NULL);
+        return (jlong)0;
+    }
+    // ZSTD_createCDict copies the dictionary content
+    ZSTD_CDict* const cdict = dlsym_ZSTD_createCDict(dict, dict_len, level);
+    (*env)->ReleaseByteArrayElements(env, dictionary, dict, JNI_ABORT);
+    if (cdict == NULL) {
+        THROW(env, "java/lang/InternalError", "Error creating the dictionary");
+        return (jlong)0;
+    }
+    return (jlong) cdict;
+}
+
+// Initialize the compression stream with a digested dictionary
+JNIEXPORT void JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardCompressor_initWithCDict (JNIEnv *env, jclass clazz, jlong stream, jlong cdict) {
+    size_t result = dlsym_ZSTD_initCStream_usingCDict((ZSTD_CStream *) stream, (const ZSTD_CDict *) cdict);
+    if (dlsym_ZSTD_isError(result)) {
+        THROW(env, "java/lang/InternalError", dlsym_ZSTD_getErrorName(result));
+        return;
+    }
+}
+
+// free the digested dictionary
+JNIEXPORT void JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardCompressor_freeCDict (JNIEnv *env, jclass clazz, jlong cdict) {
+    size_t result = dlsym_ZSTD_freeCDict((ZSTD_CDict *) cdict);
+    if (dlsym_ZSTD_isError(result)) {
+        THROW(env, "java/lang/InternalError", dlsym_ZSTD_getErrorName(result));
+        return;
+    }
+}
+
+// Train a dictionary from the concatenated samples, returns its size
+JNIEXPORT jint JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardCompressor_trainDictionary (JNIEnv *env, jclass clazz, jbyteArray samples, jintArray sample_sizes, jbyteArray dictionary) {
+    if (!dlsym_ZDICT_trainFromBuffer || !dlsym_ZDICT_isError || !dlsym_ZDICT_getErrorName) {
+        THROW(env, "java/lang/UnsupportedOperationException", "libzstd does not support dictionary training");
+        return (jint)0;
+    }
+    jsize nb_samples = (*env)->GetArrayLength(env, sample_sizes);
+    size_t *sizes = (size_t *) malloc(sizeof(size_t) * (nb_samples > 0 ? nb_samples : 1));
+    if (!sizes) {
+        THROW(env, "java/lang/OutOfMemoryError", NULL);
+        return (jint)0;
+    }
+    jint *int_sizes = (*env)->GetIntArrayElements(env, sample_sizes, NULL);
+    if (!int_sizes) {
+        free(sizes);
+        THROW(env, "java/lang/OutOfMemoryError", NULL);
+        return (jint)0;
+    }
+    jsize i;
+    for (i = 0; i < nb_samples; i++) {
+        sizes[i] = (size_t) int_sizes[i];
+    }
+    (*env)->ReleaseIntArrayElements(env, sample_sizes, int_sizes, JNI_ABORT);
+
+    jbyte *samples_bytes = (*env)->GetByteArrayElements(env, samples, NULL);
+    jbyte *dict_bytes = (*env)->GetByteArrayElements(env, dictionary, NULL);
+    if (!samples_bytes || !dict_bytes) {
+        if (samples_bytes) {
+            (*env)->ReleaseByteArrayElements(env, samples, samples_bytes, JNI_ABORT);
+        }
+        if (dict_bytes) {
+            (*env)->ReleaseByteArrayElements(env, dictionary, dict_bytes, JNI_ABORT);
+        }
+        free(sizes);
+        THROW(env, "java/lang/OutOfMemoryError", NULL);
+        return (jint)0;
+    }
+    size_t size = dlsym_ZDICT_trainFromBuffer(dict_bytes,
+        (*env)->GetArrayLength(env, dictionary), samples_bytes, sizes,
+        (unsigned) nb_samples);
+    (*env)->ReleaseByteArrayElements(env, samples, samples_bytes, JNI_ABORT);
+    (*env)->ReleaseByteArrayElements(env, dictionary, dict_bytes, 0);
+    free(sizes);
+    if (dlsym_ZDICT_isError(size)) {
+        THROW(env, "java/lang/IllegalArgumentException", dlsym_ZDICT_getErrorName(size));
+        return (jint)0;
+    }
+    return (jint) size;
+}
+#endif
+
 // free the compression stream
 JNIEXPORT void JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardCompressor_end (JNIEnv *env, jclass clazz, jlong stream) {
     size_t result = dlsym_ZSTD_freeCStream((ZSTD_CStream *) stream);
@@ -37,6 +37,9 @@ static jfieldID ZStandardDecompressor_bytesInCompressedBuffer;
 static jfieldID ZStandardDecompressor_directBufferSize;
 static jfieldID ZStandardDecompressor_finished;
 static jfieldID ZStandardDecompressor_remaining;
+#ifdef HADOOP_ZSTD_DICTIONARY
+static jfieldID ZStandardDecompressor_ddict;
+#endif
 
 #ifdef UNIX
 static size_t (*dlsym_ZSTD_DStreamOutSize)(void);
@@ -49,6 +52,11 @@ static size_t (*dlsym_ZSTD_decompressStream)(ZSTD_DStream*, ZSTD_outBuffer*, ZST
 static size_t (*dlsym_ZSTD_flushStream)(ZSTD_CStream*, ZSTD_outBuffer*);
 static unsigned (*dlsym_ZSTD_isError)(size_t);
 static const char * (*dlsym_ZSTD_getErrorName)(size_t);
+#ifdef HADOOP_ZSTD_DICTIONARY
+static ZSTD_DDict* (*dlsym_ZSTD_createDDict)(const void*, size_t);
+static size_t (*dlsym_ZSTD_freeDDict)(ZSTD_DDict*);
+static size_t (*dlsym_ZSTD_initDStream_usingDDict)(ZSTD_DStream*, const ZSTD_DDict*);
+#endif
 #endif
 
 #ifdef WINDOWS
@@ -62,6 +70,11 @@ typedef size_t (__cdecl *__dlsym_ZSTD_decompressStream)(ZSTD_DStream*, ZSTD_outB
 typedef size_t (__cdecl *__dlsym_ZSTD_flushStream)(ZSTD_CStream*, ZSTD_outBuffer*);
 typedef unsigned (__cdecl *__dlsym_ZSTD_isError)(size_t);
 typedef const char * (__cdecl *__dlsym_ZSTD_getErrorName)(size_t);
+#ifdef HADOOP_ZSTD_DICTIONARY
+typedef ZSTD_DDict* (__cdecl *__dlsym_ZSTD_createDDict)(const void*, size_t);
+typedef size_t (__cdecl *__dlsym_ZSTD_freeDDict)(ZSTD_DDict*);
+typedef size_t (__cdecl *__dlsym_ZSTD_initDStream_usingDDict)(ZSTD_DStream*, const ZSTD_DDict*);
+#endif
 
 static __dlsym_ZSTD_DStreamOutSize dlsym_ZSTD_DStreamOutSize;
 static __dlsym_ZSTD_DStreamInSize dlsym_ZSTD_DStreamInSize;
@@ -73,6 +86,11 @@ static __dlsym_ZSTD_decompressStream dlsym_ZSTD_decompressStream;
 static __dlsym_ZSTD_isError dlsym_ZSTD_isError;
 static __dlsym_ZSTD_getErrorName dlsym_ZSTD_getErrorName;
 static __dlsym_ZSTD_flushStream dlsym_ZSTD_flushStream;
+#ifdef HADOOP_ZSTD_DICTIONARY
+static __dlsym_ZSTD_createDDict dlsym_ZSTD_createDDict;
+static __dlsym_ZSTD_freeDDict dlsym_ZSTD_freeDDict;
+static __dlsym_ZSTD_initDStream_usingDDict dlsym_ZSTD_initDStream_usingDDict;
+#endif
 #endif
 
 JNIEXPORT void JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardDecompressor_initIDs (JNIEnv *env, jclass clazz) {
@@ -107,6 +125,12 @@ JNIEXPORT void JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardDecompre
     LOAD_DYNAMIC_SYMBOL(dlsym_ZSTD_isError, env, libzstd, "ZSTD_isError");
     LOAD_DYNAMIC_SYMBOL(dlsym_ZSTD_getErrorName, env, libzstd, "ZSTD_getErrorName");
     LOAD_DYNAMIC_SYMBOL(dlsym_ZSTD_flushStream, env, libzstd, "ZSTD_flushStream");
+#ifdef HADOOP_ZSTD_DICTIONARY
+    // dictionary support is optional
+    dlsym_ZSTD_createDDict = dlsym(libzstd, "ZSTD_createDDict");
+    dlsym_ZSTD_freeDDict = dlsym(libzstd, "ZSTD_freeDDict");
+    dlsym_ZSTD_initDStream_usingDDict = dlsym(libzstd, "ZSTD_initDStream_usingDDict");
+#endif
 #endif
 
 #ifdef WINDOWS
@@ -120,6 +144,11 @@ JNIEXPORT void JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardDecompre
     LOAD_DYNAMIC_SYMBOL(__dlsym_ZSTD_isError, dlsym_ZSTD_isError, env, libzstd, "ZSTD_isError");
     LOAD_DYNAMIC_SYMBOL(__dlsym_ZSTD_getErrorName, dlsym_ZSTD_getErrorName, env, libzstd, "ZSTD_getErrorName");
     LOAD_DYNAMIC_SYMBOL(__dlsym_ZSTD_flushStream, dlsym_ZSTD_flushStream, env, libzstd, "ZSTD_flushStream");
+#ifdef HADOOP_ZSTD_DICTIONARY
+    dlsym_ZSTD_createDDict = (__dlsym_ZSTD_createDDict) GetProcAddress(libzstd, "ZSTD_createDDict");
+    dlsym_ZSTD_freeDDict = (__dlsym_ZSTD_freeDDict) GetProcAddress(libzstd, "ZSTD_freeDDict");
+    dlsym_ZSTD_initDStream_usingDDict = (__dlsym_ZSTD_initDStream_usingDDict) GetProcAddress(libzstd, "ZSTD_initDStream_usingDDict");
+#endif
 #endif
 
     ZStandardDecompressor_stream = (*env)->GetFieldID(env, clazz, "stream", "J");
@@ -128,6 +157,9 @@ JNIEXPORT void JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardDecompre
     ZStandardDecompressor_bytesInCompressedBuffer = (*env)->GetFieldID(env, clazz, "bytesInCompressedBuffer", "I");
     ZStandardDecompressor_directBufferSize = (*env)->GetFieldID(env, clazz, "directBufferSize", "I");
     ZStandardDecompressor_remaining = (*env)->GetFieldID(env, clazz, "remaining", "I");
+#ifdef HADOOP_ZSTD_DICTIONARY
+    ZStandardDecompressor_ddict = (*env)->GetFieldID(env, clazz, "ddict", "J");
+#endif
 }
 
 JNIEXPORT jlong JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardDecompressor_create(JNIEnv *env, jclass clazz) {
@@ -147,6 +179,45 @@ JNIEXPORT void JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardDecompre
     }
 }
 
+#ifdef HADOOP_ZSTD_DICTIONARY
+// Digest a dictionary once so it can be shared by every frame of the stream
+JNIEXPORT jlong JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardDecompressor_createDDict(JNIEnv *env, jclass clazz, jbyteArray dictionary) {
+    if (!dlsym_ZSTD_createDDict || !dlsym_ZSTD_initDStream_usingDDict) {
+        THROW(env, "java/lang/UnsupportedOperationException", "libzstd does not support dictionaries");
+        return (jlong) 0;
+    }
+    jsize dict_len = (*env)->GetArrayLength(env, dictionary);
+    jbyte *dict = (*env)->GetByteArrayElements(env, dictionary, NULL);
+    if (!dict) {
+        THROW(env, "java/lang/OutOfMemoryError", NULL);
+        return (jlong) 0;
+    }
+    // ZSTD_createDDict copies the dictionary content
+    ZSTD_DDict * ddict = dlsym_ZSTD_createDDict(dict, dict_len);
+    (*env)->ReleaseByteArrayElements(env, dictionary, dict, JNI_ABORT);
+    if (ddict == NULL) {
+        THROW(env, "java/lang/InternalError", "Error creating the dictionary");
+        return (jlong) 0;
+    }
+    return (jlong) ddict;
+}
+
+JNIEXPORT void JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardDecompressor_initWithDDict(JNIEnv *env, jclass clazz, jlong stream, jlong ddict) {
+    size_t result = dlsym_ZSTD_initDStream_usingDDict((ZSTD_DStream *) stream, (const ZSTD_DDict *) ddict);
+    if (dlsym_ZSTD_isError(result)) {
+        THROW(env, "java/lang/InternalError", dlsym_ZSTD_getErrorName(result));
+        return;
+    }
+}
+
+JNIEXPORT void JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardDecompressor_freeDDict(JNIEnv *env, jclass clazz, jlong ddict) {
+    size_t result = dlsym_ZSTD_freeDDict((ZSTD_DDict *) ddict);
+    if (dlsym_ZSTD_isError(result)) {
+        THROW(env, "java/lang/InternalError", dlsym_ZSTD_getErrorName(result));
+        return;
+    }
+}
+#endif
 
 JNIEXPORT void JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardDecompressor_free(JNIEnv *env, jclass clazz, jlong stream) {
     size_t result = dlsym_ZSTD_freeDStream((ZSTD_DStream *) stream);
@@ -196,7 +267,15 @@ JNIEXPORT jint JNICALL Java_org_apache_hadoop_io_compress_zstd_ZStandardDecompre
     // the entire frame has been decoded
     if (size == 0) {
         (*env)->SetBooleanField(env, this, ZStandardDecompressor_finished, JNI_TRUE);
+#ifdef HADOOP_ZSTD_DICTIONARY
+        // keep the dictionary, if any, for the next frame
+        jlong ddict = (*env)->GetLongField(env, this, ZStandardDecompressor_ddict);
+        size_t result = ddict
+            ? dlsym_ZSTD_initDStream_usingDDict(stream, (const ZSTD_DDict *) ddict)
+            : dlsym_ZSTD_initDStream(stream);
+#else
         size_t result = dlsym_ZSTD_initDStream(stream);
+#endif
         if (dlsym_ZSTD_isError(result)) {
             THROW(env, "java/lang/InternalError", dlsym_ZSTD_getErrorName(result));
             return (jint) 0;
@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.conf;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestConfigurationResourceCache {
+
+  private File testDir;
+  private File cacheDir;
+  private File resource;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    testDir = GenericTestUtils.getRandomizedTestDir();
+    cacheDir = new File(testDir, "cache");
+    assertTrue(cacheDir.mkdirs());
+    resource = new File(testDir, "test-site.xml");
+    ConfigurationResourceCache.clear();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    System.clearProperty(ConfigurationResourceCache.CACHE_DIR_PROPERTY);
+    ConfigurationResourceCache.clear();
+    FileUtil.fullyDelete(testDir);
+  }
+
+  private void writeResource(String... properties) throws IOException {
+    StringBuilder xml = new StringBuilder("<configuration>\n");
+    for (String property : properties) {
+      xml.append(property).append('\n');
+    }
+    xml.append("</configuration>\n");
+    Files.write(resource.toPath(), xml.toString()
+        .getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String property(String name, String value) {
+    return "<property><name>" + name + "</name><value>" + value
+        + "</value></property>";
+  }
+
+  private Configuration load() {
+    Configuration conf = new Configuration(false);
+    conf.addResource(new Path(resource.getAbsolutePath()));
+    conf.size();
+    return conf;
+  }
+
+  @Test
+  public void testResourceIsParsedOnce() throws IOException {
+    writeResource(property("test.cache.a", "1"),
+        "<property><name>test.cache.b</name><value>2</value>"
+            + "<final>true</final><tag>DEBUG</tag></property>");
+    long misses = ConfigurationResourceCache.getMisses();
+    long hits = ConfigurationResourceCache.getMemoryHits();
+    Configuration conf = load();
+    assertEquals(misses + 1, ConfigurationResourceCache.getMisses());
+
+    Configuration cached = load();
+    assertEquals(hits + 1, ConfigurationResourceCache.getMemoryHits());
+    assertEquals(misses + 1, ConfigurationResourceCache.getMisses());
+    assertEquals("1", cached.get("test.cache.a"));
+    assertEquals("2", cached.get("test.cache.b"));
+    assertEquals(conf.getFinalParameters(), cached.getFinalParameters());
+    assertTrue(cached.getFinalParameters().contains("test.cache.b"));
+    assertArrayEquals(conf.getPropertySources("test.cache.a"),
+        cached.getPropertySources("test.cache.a"));
+    Properties tagged = cached.getAllPropertiesByTag("DEBUG");
+    assertEquals("2", tagged.getProperty("test.cache.b"));
+
+    // a change of the resource invalidates the cache
+    writeResource(property("test.cache.a", "3"));
+    Configuration changed = load();
+    assertEquals(misses + 2, ConfigurationResourceCache.getMisses());
+    assertEquals("3", changed.get("test.cache.a"));
+  }
+
+  @Test
+  public void testDeprecationsAppliedToCachedResource() throws IOException {
+    writeResource(property("test.cache.old", "value"));
+    load();
+    Configuration.addDeprecation("test.cache.old", "test.cache.new");
+    Configuration conf = load();
+    assertEquals("value", conf.get("test.cache.new"));
+    assertEquals("value", conf.get("test.cache.old"));
+  }
+
+  @Test
+  public void testBinaryCache() throws IOException {
+    System.setProperty(ConfigurationResourceCache.CACHE_DIR_PROPERTY,
+        cacheDir.getAbsolutePath());
+    writeResource(property("test.cache.a", "1"),
+        property("test.cache.empty", ""),
+        property("test.cache.unicode", "été"));
+    Configuration conf = load();
+    File[] files = cacheDir.listFiles();
+    assertEquals(1, files.length);
+
+    // another JVM maps the cached properties
+    ConfigurationResourceCache.clear();
+    long fileHits = ConfigurationResourceCache.getFileHits();
+    Configuration cached = load();
+    assertEquals(fileHits + 1, ConfigurationResourceCache.getFileHits());
+    assertEquals("1", cached.get("test.cache.a"));
+    assertEquals("été", cached.get("test.cache.unicode"));
+    assertEquals(conf.size(), cached.size());
+    assertArrayEquals(conf.getPropertySources("test.cache.a"),
+        cached.getPropertySources("test.cache.a"));
+
+    // a corrupt file is ignored
+    Files.write(files[0].toPath(), new byte[] {1, 2, 3});
+    ConfigurationResourceCache.clear();
+    long misses = ConfigurationResourceCache.getMisses();
+    assertEquals("1", load().get("test.cache.a"));
+    assertEquals(misses + 1, ConfigurationResourceCache.getMisses());
+  }
+
+  @Test
+  public void testBinaryCacheWithInvalidSizes() throws IOException {
+    System.setProperty(ConfigurationResourceCache.CACHE_DIR_PROPERTY,
+        cacheDir.getAbsolutePath());
+    writeResource(property("test.cache.a", "1"));
+    load();
+    File file = cacheDir.listFiles()[0];
+    byte[] valid = Files.readAllBytes(file.toPath());
+
+    // the number of properties follows the magic and version, and the
+    // length of the first key follows it
+    assertCacheMiss(file, valid, 8, Integer.MAX_VALUE);
+    assertCacheMiss(file, valid, 8, -1);
+    assertCacheMiss(file, valid, 12, Integer.MAX_VALUE);
+    assertCacheMiss(file, valid, 12, -2);
+  }
+
+  /**
+   * Check that a cache file with an int overwritten is ignored.
+   */
+  private void assertCacheMiss(File file, byte[] valid, int offset,
+      int value) throws IOException {
+    byte[] corrupt = valid.clone();
+    ByteBuffer.wrap(corrupt).putInt(offset, value);
+    Files.write(file.toPath(), corrupt);
+    ConfigurationResourceCache.clear();
+    long misses = ConfigurationResourceCache.getMisses();
+    assertEquals("1", load().get("test.cache.a"));
+    assertEquals(misses + 1, ConfigurationResourceCache.getMisses());
+  }
+}
@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.conf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestFrozenConfiguration {
+
+  private Configuration conf;
+
+  @BeforeEach
+  public void setUp() {
+    conf = new Configuration(false);
+  }
+
+  @Test
+  public void testValuesAreResolved() {
+    Configuration.addDeprecation("test.frozen.old.key", "test.frozen.new.key");
+    conf.set("test.frozen.base", "/base");
+    conf.set("test.frozen.dir", "${test.frozen.base}/dir");
+    conf.set("test.frozen.old.key", "old");
+    Configuration frozen = conf.freeze();
+
+    assertEquals("/base/dir", frozen.get("test.frozen.dir"));
+    assertEquals("old", frozen.get("test.frozen.new.key"));
+    assertEquals("old", frozen.get("test.frozen.old.key"));
+    assertNull(frozen.get("test.frozen.unset"));
+    assertEquals("default", frozen.get("test.frozen.unset", "default"));
+    assertEquals("/base/default",
+        frozen.get("test.frozen.unset", "${test.frozen.base}/default"));
+    assertEquals("/base/dir", frozen.get("test.frozen.dir", "default"));
+    assertEquals(conf.size(), frozen.size());
+
+    // the snapshot does not see later changes
+    conf.set("test.frozen.base", "/other");
+    conf.set("test.frozen.unset", "set");
+    assertEquals("/base/dir", frozen.get("test.frozen.dir"));
+    assertNull(frozen.get("test.frozen.unset"));
+  }
+
+  @Test
+  public void testTypedValues() {
+    conf.set("test.frozen.int", " 0x10 ");
+    conf.setLong("test.frozen.long", Long.MAX_VALUE);
+    conf.set("test.frozen.bool", "TRUE");
+    conf.set("test.frozen.bad.int", "ten");
+    conf.set("test.frozen.bad.bool", "yes");
+    Configuration frozen = conf.freeze();
+
+    for (int i = 0; i < 2; i++) {
+      assertEquals(16, frozen.getInt("test.frozen.int", 1));
+      assertEquals(1, frozen.getInt("test.frozen.unset", 1));
+      assertEquals(Long.MAX_VALUE, frozen.getLong("test.frozen.long", 1));
+      assertEquals(16, frozen.getLong("test.frozen.int", 1));
+      assertEquals(2, frozen.getLong("test.frozen.unset", 2));
+      assertTrue(frozen.getBoolean("test.frozen.bool", false));
+      assertFalse(frozen.getBoolean("test.frozen.unset", false));
+      assertTrue(frozen.getBoolean("test.frozen.bad.bool", true));
+      assertFalse(frozen.getBoolean("test.frozen.bad.bool", false));
+      assertThrows(NumberFormatException.class,
+          () -> frozen.getInt("test.frozen.bad.int", 1));
+    }
+  }
+
+  @Test
+  public void testTimeDurations() {
+    conf.set("test.frozen.duration", "90s");
+    conf.set("test.frozen.plain", "1500");
+    conf.set("test.frozen.bad", "1.5s");
+    Configuration frozen = conf.freeze();
+
+    for (int i = 0; i < 2; i++) {
+      assertEquals(90, frozen.getTimeDuration("test.frozen.duration", 1,
+          TimeUnit.SECONDS));
+      assertEquals(1, frozen.getTimeDuration("test.frozen.duration", 1,
+          TimeUnit.MINUTES));
+      assertEquals(90000, frozen.getTimeDuration("test.frozen.duration", 1,
+          TimeUnit.SECONDS, TimeUnit.MILLISECONDS));
+      assertEquals(1500, frozen.getTimeDuration("test.frozen.plain", 1,
+          TimeUnit.MILLISECONDS));
+      assertEquals(1, frozen.getTimeDuration("test.frozen.plain", 1,
+          TimeUnit.MILLISECONDS, TimeUnit.SECONDS));
+      assertEquals(1500000, frozen.getTimeDuration("test.frozen.plain", 1,
+          TimeUnit.SECONDS, TimeUnit.MILLISECONDS));
+      assertEquals(2000, frozen.getTimeDuration("test.frozen.unset", 2,
+          TimeUnit.SECONDS, TimeUnit.MILLISECONDS));
+      assertEquals(3000, frozen.getTimeDuration("test.frozen.unset", "3s",
+          TimeUnit.MILLISECONDS));
+      assertThrows(NumberFormatException.class,
+          () -> frozen.getTimeDuration("test.frozen.bad", 1,
+              TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testFrozenConfigurationIsImmutable() {
+    conf.set("test.frozen.key", "value");
+    Configuration frozen = conf.freeze();
+    assertSame(frozen, frozen.freeze());
+
+    assertThrows(UnsupportedOperationException.class,
+        () -> frozen.set("test.frozen.key", "other"));
+    assertThrows(UnsupportedOperationException.class,
+        () -> frozen.setInt("test.frozen.int", 1));
+    assertThrows(UnsupportedOperationException.class,
+        () -> frozen.unset("test.frozen.key"));
+    assertThrows(UnsupportedOperationException.class, frozen::clear);
+    assertThrows(UnsupportedOperationException.class,
+        () -> frozen.addResource("core-site.xml"));
+    assertEquals("value", frozen.get("test.frozen.key"));
+
+    // a copy can be modified
+    Configuration copy = new Configuration(frozen);
+    copy.set("test.frozen.key", "other");
+    assertEquals("other", copy.get("test.frozen.key"));
+    assertEquals("value", frozen.get("test.frozen.key"));
+  }
+}
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.http;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.util.SamplingProfiler;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the sampling profiler endpoint.
+ */
+public class TestSamplingProfilerServlet extends HttpServerFunctionalTest {
+
+  private static HttpServer2 server;
+  private static URL baseUrl;
+
+  @BeforeAll
+  public static void setup() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean(
+        CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_ENABLED_KEY,
+        true);
+    conf.set(CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_THREADS_KEY,
+        "qtp.*");
+    conf.set(
+        CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_INTERVAL_MS_KEY,
+        "10");
+    server = createTestServer(conf);
+    server.start();
+    baseUrl = getServerURL(server);
+  }
+
+  @AfterAll
+  public static void cleanup() throws Exception {
+    server.stop();
+    assertNull(SamplingProfiler.get());
+  }
+
+  @Test
+  public void testQuery() throws Exception {
+    assertNotNull(SamplingProfiler.get());
+    // the jetty threads serving the requests are sampled
+    GenericTestUtils.waitFor(() -> {
+      try {
+        return readOutput(new URL(baseUrl, "/sampler")).contains("qtp");
+      } catch (Exception e) {
+        throw new AssertionError(e);
+      }
+    }, 10, 10000);
+    String stacks = readOutput(new URL(baseUrl, "/sampler?view=wall"));
+    assertTrue(stacks.matches("(?s)(qtp;[^\n]* \\d+\n)+"), stacks);
+    readOutput(new URL(baseUrl, "/sampler?view=runnable"));
+    readOutput(new URL(baseUrl, "/sampler?view=lock"));
+
+    HttpURLConnection conn = (HttpURLConnection)
+        new URL(baseUrl, "/sampler?view=cpu").openConnection();
+    assertEquals(HttpServletResponse.SC_BAD_REQUEST, conn.getResponseCode());
+    conn.disconnect();
+  }
+}
@@ -24,13 +24,18 @@
 import org.apache.hadoop.fs.*;
 import org.apache.hadoop.io.SequenceFile.CompressionType;
 import org.apache.hadoop.io.SequenceFile.Metadata;
+import org.apache.hadoop.io.compress.CodecPool;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.io.compress.Lz4Codec;
+import org.apache.hadoop.io.compress.SnappyCodec;
+import org.apache.hadoop.io.compress.ZStandardCodec;
 import org.apache.hadoop.io.serializer.Deserializer;
 import org.apache.hadoop.io.serializer.Serialization;
 import org.apache.hadoop.io.serializer.Serializer;
 import org.apache.hadoop.io.serializer.avro.AvroReflectSerialization;
 import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.test.LambdaTestUtils;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.conf.*;
 import org.assertj.core.api.Assertions;
@@ -41,6 +46,9 @@
 import static org.junit.Assert.fail;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assume.assumeTrue;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -759,6 +767,128 @@ public void testSequenceFileWriter() throws Exception {
     }
   }
 
+  @Test
+  public void testCompressionDictionary() throws Exception {
+    Configuration conf = new Configuration();
+    Path path = new Path(GenericTestUtils
+        .getTempPath("testCompressionDictionary.seq"));
+    byte[] dictionary = "key-value-dictionary".getBytes("UTF-8");
+    LambdaTestUtils.intercept(IllegalArgumentException.class,
+        () -> SequenceFile.createWriter(conf,
+            SequenceFile.Writer.file(path),
+            SequenceFile.Writer.keyClass(IntWritable.class),
+            SequenceFile.Writer.valueClass(Text.class),
+            SequenceFile.Writer.compression(CompressionType.NONE),
+            SequenceFile.Writer.compressionDictionary(dictionary)));
+
+    // zlib would write a file its readers cannot decompress, lz4 and snappy
+    // would ignore the dictionary
+    for (CompressionCodec codec : new CompressionCodec[] {
+        new DefaultCodec(), new Lz4Codec(), new SnappyCodec()}) {
+      ReflectionUtils.setConf(codec, conf);
+      LambdaTestUtils.intercept(IllegalArgumentException.class,
+          "does not support compression dictionaries",
+          () -> SequenceFile.createWriter(conf,
+              SequenceFile.Writer.file(path),
+              SequenceFile.Writer.keyClass(IntWritable.class),
+              SequenceFile.Writer.valueClass(Text.class),
+              SequenceFile.Writer.compression(CompressionType.BLOCK, codec),
+              SequenceFile.Writer.compressionDictionary(dictionary)));
+    }
+  }
+
+  @Test
+  public void testReadCompressionDictionaryNotSupported() throws Exception {
+    Configuration conf = new Configuration();
+    FileSystem fs = FileSystem.getLocal(conf).getRaw();
+    Path path = new Path(GenericTestUtils
+        .getTempPath("testReadCompressionDictionaryNotSupported.seq"));
+    DefaultCodec codec = new DefaultCodec();
+    codec.setConf(conf);
+    // write a zlib file, then rename a metadata entry to the dictionary key
+    String key = SequenceFile.COMPRESSION_DICTIONARY_KEY;
+    String otherKey = key.substring(0, key.length() - 1) + "_";
+    Metadata metadata = new Metadata();
+    metadata.set(new Text(otherKey), new Text("AAEC"));
+    try (SequenceFile.Writer writer = SequenceFile.createWriter(conf,
+        SequenceFile.Writer.file(fs.makeQualified(path)),
+        SequenceFile.Writer.keyClass(IntWritable.class),
+        SequenceFile.Writer.valueClass(Text.class),
+        SequenceFile.Writer.metadata(metadata),
+        SequenceFile.Writer.compression(CompressionType.RECORD, codec))) {
+      writer.append(new IntWritable(1), new Text("value"));
+    }
+    File file = new File(path.toUri().getPath());
+    byte[] content = java.nio.file.Files.readAllBytes(file.toPath());
+    byte[] other = otherKey.getBytes("UTF-8");
+    int pos = -1;
+    for (int i = 0; pos < 0 && i <= content.length - other.length; i++) {
+      if (Arrays.equals(other, Arrays.copyOfRange(content, i,
+          i + other.length))) {
+        pos = i;
+      }
+    }
+    assertTrue(pos >= 0);
+    content[pos + other.length - 1] = (byte) key.charAt(key.length() - 1);
+    java.nio.file.Files.write(file.toPath(), content);
+
+    int leased = CodecPool.getLeasedDecompressorsCount(codec);
+    LambdaTestUtils.intercept(IOException.class,
+        "does not support in this build",
+        () -> new SequenceFile.Reader(fs, fs.makeQualified(path), conf));
+    assertEquals(leased, CodecPool.getLeasedDecompressorsCount(codec));
+  }
+
+  @Test
+  public void testZStandardCompressionDictionary() throws Exception {
+    assumeTrue(ZStandardCodec.isDictionarySupported());
+    Configuration conf = new Configuration();
+    Path path = new Path(GenericTestUtils
+        .getTempPath("testZStandardCompressionDictionary.seq"));
+    byte[] dictionary = "key-value-dictionary".getBytes("UTF-8");
+    ZStandardCodec codec = new ZStandardCodec();
+    codec.setConf(conf);
+    Metadata metadata = new Metadata();
+    metadata.set(new Text("owner"), new Text("test"));
+    for (CompressionType type :
+        new CompressionType[] {CompressionType.RECORD, CompressionType.BLOCK}) {
+      try (SequenceFile.Writer writer = SequenceFile.createWriter(conf,
+          SequenceFile.Writer.file(path),
+          SequenceFile.Writer.keyClass(IntWritable.class),
+          SequenceFile.Writer.valueClass(Text.class),
+          SequenceFile.Writer.metadata(metadata),
+          SequenceFile.Writer.compression(type, codec),
+          SequenceFile.Writer.compressionDictionary(dictionary))) {
+        for (int i = 0; i < 100; i++) {
+          writer.append(new IntWritable(i), new Text("value" + i));
+        }
+      }
+      // the caller's metadata is left alone
+      assertNull(metadata.get(
+          new Text(SequenceFile.COMPRESSION_DICTIONARY_KEY)));
+
+      try (SequenceFile.Reader reader = new SequenceFile.Reader(conf,
+          SequenceFile.Reader.file(path))) {
+        assertEquals(type, reader.getCompressionType());
+        assertEquals(new Text("test"),
+            reader.getMetadata().get(new Text("owner")));
+        // readers share a copy of the writer's dictionary, so codecs are
+        // pooled with it and the caller cannot change it
+        assertArrayEquals(dictionary, reader.getCompressionDictionary());
+        assertNotSame(dictionary, reader.getCompressionDictionary());
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        int count = 0;
+        while (reader.next(key, value)) {
+          assertEquals(count, key.get());
+          assertEquals("value" + count, value.toString());
+          count++;
+        }
+        assertEquals(100, count);
+      }
+    }
+  }
+
   @Test
   public void testSerializationUsingWritableNameAlias() throws IOException {
     Configuration config = new Configuration();
@@ -18,6 +18,8 @@
 package org.apache.hadoop.io.compress;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -283,4 +285,46 @@ public void testDoNotPoolDecompressorNotUseableAfterReturn() throws Exception {
                     "useable after returning to CodecPool",
         () -> inputStream.read());
   }
+
+  @Test(timeout = 10000)
+  public void testDictionaryPools() {
+    Lz4Codec lz4 = new Lz4Codec();
+    lz4.setConf(new Configuration());
+    byte[] dict1 = new byte[] {1, 2, 3};
+    byte[] dict2 = new byte[] {1, 2, 3};
+
+    Compressor comp1 = CodecPool.getCompressor(lz4, null, dict1);
+    Decompressor decomp1 = CodecPool.getDecompressor(lz4, dict1);
+    assertEquals(LEASE_COUNT_ERR, 1,
+        CodecPool.getLeasedCompressorsCount(lz4));
+    assertEquals(LEASE_COUNT_ERR, 1,
+        CodecPool.getLeasedDecompressorsCount(lz4));
+    CodecPool.returnCompressor(comp1);
+    CodecPool.returnDecompressor(decomp1);
+    assertEquals(LEASE_COUNT_ERR, 0,
+        CodecPool.getLeasedCompressorsCount(lz4));
+    assertEquals(LEASE_COUNT_ERR, 0,
+        CodecPool.getLeasedDecompressorsCount(lz4));
+
+    // dictionaries are matched by reference, not by content
+    Compressor comp2 = CodecPool.getCompressor(lz4, null, dict2);
+    Decompressor decomp2 = CodecPool.getDecompressor(lz4, dict2);
+    assertNotSame(comp1, comp2);
+    assertNotSame(decomp1, decomp2);
+    // codecs with a dictionary are not handed out without one
+    Compressor plain = CodecPool.getCompressor(lz4);
+    assertNotSame(comp1, plain);
+    assertSame(comp1, CodecPool.getCompressor(lz4, null, dict1));
+    assertSame(decomp1, CodecPool.getDecompressor(lz4, dict1));
+
+    CodecPool.returnCompressor(comp1);
+    CodecPool.returnCompressor(comp2);
+    CodecPool.returnCompressor(plain);
+    CodecPool.returnDecompressor(decomp1);
+    CodecPool.returnDecompressor(decomp2);
+    assertEquals(LEASE_COUNT_ERR, 0,
+        CodecPool.getLeasedCompressorsCount(lz4));
+    assertEquals(LEASE_COUNT_ERR, 0,
+        CodecPool.getLeasedDecompressorsCount(lz4));
+  }
 }
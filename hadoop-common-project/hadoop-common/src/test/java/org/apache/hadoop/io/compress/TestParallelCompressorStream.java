@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.io.compress;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.test.LambdaTestUtils;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestParallelCompressorStream {
+
+  private static final int BLOCK_SIZE = 4096;
+
+  private Configuration conf;
+  private byte[] data;
+
+  @Before
+  public void setUp() {
+    conf = new Configuration();
+    Random r = new Random(42);
+    data = new byte[10 * BLOCK_SIZE + 123];
+    // compressible but not trivial data
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) ('a' + r.nextInt(8));
+    }
+  }
+
+  private byte[] compress(CompressionCodec codec, byte[] input)
+      throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (ParallelCompressorStream out = new ParallelCompressorStream(codec,
+        conf, compressed, 4, BLOCK_SIZE)) {
+      // odd sized writes straddle the block boundaries
+      for (int off = 0; off < input.length; off += 1000) {
+        out.write(input, off, Math.min(1000, input.length - off));
+      }
+    }
+    return compressed.toByteArray();
+  }
+
+  private byte[] decompress(CompressionCodec codec, byte[] compressed)
+      throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    try (InputStream in =
+        codec.createInputStream(new ByteArrayInputStream(compressed))) {
+      IOUtils.copyBytes(in, result, 4096);
+    }
+    return result.toByteArray();
+  }
+
+  private void testRoundTrip(Class<? extends CompressionCodec> codecClass)
+      throws IOException {
+    CompressionCodec codec = ReflectionUtils.newInstance(codecClass, conf);
+    byte[] compressed = compress(codec, data);
+    assertTrue(compressed.length < data.length);
+    assertArrayEquals(data, decompress(codec, compressed));
+  }
+
+  @Test
+  public void testGzipRoundTrip() throws IOException {
+    testRoundTrip(GzipCodec.class);
+
+    // the members are readable by a standard gzip reader
+    CompressionCodec codec = ReflectionUtils.newInstance(GzipCodec.class,
+        conf);
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(
+        new ByteArrayInputStream(compress(codec, data)))) {
+      IOUtils.copyBytes(in, result, 4096);
+    }
+    assertArrayEquals(data, result.toByteArray());
+  }
+
+  @Test
+  public void testZStandardRoundTrip() throws IOException {
+    assumeTrue(ZStandardCodec.isNativeCodeLoaded());
+    testRoundTrip(ZStandardCodec.class);
+  }
+
+  @Test
+  public void testLz4RoundTrip() throws IOException {
+    testRoundTrip(Lz4Codec.class);
+  }
+
+  @Test
+  public void testSnappyRoundTrip() throws IOException {
+    testRoundTrip(SnappyCodec.class);
+  }
+
+  @Test
+  public void testEmptyOutput() throws IOException {
+    CompressionCodec codec = ReflectionUtils.newInstance(GzipCodec.class,
+        conf);
+    byte[] compressed = compress(codec, new byte[0]);
+    assertTrue(compressed.length > 0);
+    assertEquals(0, decompress(codec, compressed).length);
+  }
+
+  @Test
+  public void testCreatedByCodec() throws IOException {
+    CompressionCodec codec = ReflectionUtils.newInstance(GzipCodec.class,
+        conf);
+    try (CompressionOutputStream out =
+        codec.createOutputStream(new ByteArrayOutputStream())) {
+      assertFalse(out instanceof ParallelCompressorStream);
+    }
+
+    conf.setInt(CommonConfigurationKeys.IO_COMPRESSION_PARALLEL_THREADS_KEY,
+        4);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (CompressionOutputStream out = codec.createOutputStream(compressed)) {
+      assertTrue(out instanceof ParallelCompressorStream);
+      out.write(data);
+    }
+    assertArrayEquals(data, decompress(codec, compressed.toByteArray()));
+
+    // codecs whose streams cannot be concatenated are not parallelized
+    CompressionCodec bzip2 = ReflectionUtils.newInstance(BZip2Codec.class,
+        conf);
+    try (CompressionOutputStream out =
+        bzip2.createOutputStream(new ByteArrayOutputStream())) {
+      assertFalse(out instanceof ParallelCompressorStream);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testWriteAfterClose() throws IOException {
+    CompressionCodec codec = ReflectionUtils.newInstance(GzipCodec.class,
+        conf);
+    ParallelCompressorStream out = new ParallelCompressorStream(codec, conf,
+        new ByteArrayOutputStream(), 2, BLOCK_SIZE);
+    out.close();
+    out.close();
+    out.write(1);
+  }
+
+  /** A codec failing to compress any block. */
+  private static class FailingCodec extends DefaultCodec {
+    @Override
+    public CompressionOutputStream createOutputStream(OutputStream out,
+        Compressor compressor) throws IOException {
+      throw new IOException("Injected compression failure");
+    }
+  }
+
+  @Test
+  public void testCompressionFailure() throws Exception {
+    CompressionCodec codec = ReflectionUtils.newInstance(FailingCodec.class,
+        conf);
+    ParallelCompressorStream out = new ParallelCompressorStream(codec, conf,
+        new ByteArrayOutputStream(), 2, BLOCK_SIZE);
+    // the failure of a block reaches the writer
+    LambdaTestUtils.intercept(IOException.class,
+        "Injected compression failure", () -> out.write(data));
+
+    // and fails the rest of the stream, which is missing that block
+    LambdaTestUtils.intercept(IOException.class,
+        "Injected compression failure", () -> out.write(data, 0, 10));
+    LambdaTestUtils.intercept(IOException.class,
+        "Injected compression failure", () -> out.flush());
+    LambdaTestUtils.intercept(IOException.class,
+        "Injected compression failure", () -> out.finish());
+    LambdaTestUtils.intercept(IOException.class,
+        "Injected compression failure", () -> out.close());
+    LambdaTestUtils.intercept(IOException.class, "Stream closed",
+        () -> out.write(1));
+  }
+}
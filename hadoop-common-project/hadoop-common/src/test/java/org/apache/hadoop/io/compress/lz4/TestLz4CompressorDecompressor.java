@@ -25,6 +25,7 @@
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 import org.apache.hadoop.conf.Configuration;
@@ -38,6 +39,9 @@
 import org.apache.hadoop.io.compress.BlockDecompressorStream;
 import org.apache.hadoop.io.compress.CompressionInputStream;
 import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.DirectCompressor;
+import org.apache.hadoop.io.compress.DirectDecompressor;
+import org.apache.hadoop.io.compress.Lz4Codec;
 import org.apache.hadoop.io.compress.lz4.Lz4Compressor;
 import org.apache.hadoop.io.compress.lz4.Lz4Decompressor;
 import org.apache.hadoop.test.MultithreadedTestUtil;
@@ -360,4 +364,31 @@ public void testLz4Compatibility() throws Exception {
     }
     assertEquals(lines, lc);
   }
+
+  @Test
+  public void testLz4DirectCompressDecompress() throws Exception {
+    Lz4Codec codec = new Lz4Codec();
+    codec.setConf(new Configuration());
+    DirectCompressor compressor = codec.createDirectCompressor();
+    DirectDecompressor decompressor = codec.createDirectDecompressor();
+    for (int size : new int[] {0, 1, 1000, 256 * 1024}) {
+      byte[] rawData = generate(size);
+      ByteBuffer raw = ByteBuffer.allocateDirect(size);
+      raw.put(rawData).flip();
+      ByteBuffer compressed = ByteBuffer.allocateDirect(
+          compressor.maxCompressedLength(size));
+      compressor.compress(raw, compressed);
+      assertFalse(raw.hasRemaining());
+      compressed.flip();
+
+      ByteBuffer uncompressed = ByteBuffer.allocateDirect(size + 1);
+      decompressor.decompress(compressed, uncompressed);
+      assertFalse(compressed.hasRemaining());
+      assertEquals(size, uncompressed.position());
+      byte[] result = new byte[size];
+      uncompressed.flip();
+      uncompressed.get(result);
+      assertArrayEquals(rawData, result);
+    }
+  }
 }
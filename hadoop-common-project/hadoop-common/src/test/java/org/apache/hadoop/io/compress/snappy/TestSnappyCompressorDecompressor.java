@@ -18,7 +18,9 @@
 package org.apache.hadoop.io.compress.snappy;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -40,6 +42,7 @@
 import org.apache.hadoop.io.compress.BlockDecompressorStream;
 import org.apache.hadoop.io.compress.CompressionInputStream;
 import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.snappy.SnappyCompressor.SnappyDirectCompressor;
 import org.apache.hadoop.io.compress.snappy.SnappyDecompressor.SnappyDirectDecompressor;
 import org.apache.hadoop.test.MultithreadedTestUtil;
 import org.junit.Assert;
@@ -492,4 +495,32 @@ public void testSnappyCompatibility() throws Exception {
     outBuf.clear();
     assertEquals(0, expected.remaining());
   }
+
+  @Test
+  public void testSnappyDirectCompressDecompress() throws Exception {
+    SnappyDirectCompressor compressor = new SnappyDirectCompressor();
+    int size = 100 * 1024;
+    byte[] rawData = BytesGenerator.get(size);
+    // a position in the middle of dst must be honoured
+    ByteBuffer raw = ByteBuffer.allocateDirect(size);
+    raw.put(rawData).flip();
+    ByteBuffer compressed = ByteBuffer.allocateDirect(
+        10 + compressor.maxCompressedLength(size));
+    compressed.position(10);
+    compressor.compress(raw, compressed);
+    assertFalse(raw.hasRemaining());
+    assertEquals(compressed.capacity(), compressed.limit());
+    assertEquals(compressed.position() - 10, compressor.getBytesWritten());
+    assertEquals(size, compressor.getBytesRead());
+    compressed.limit(compressed.position()).position(10);
+
+    SnappyDirectDecompressor decompressor = new SnappyDirectDecompressor();
+    ByteBuffer uncompressed = ByteBuffer.allocateDirect(size);
+    decompressor.decompress(compressed, uncompressed);
+    assertFalse(compressed.hasRemaining());
+    byte[] result = new byte[size];
+    uncompressed.flip();
+    uncompressed.get(result);
+    assertArrayEquals(rawData, result);
+  }
 }
@@ -20,12 +20,15 @@
 import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.compress.CodecPool;
 import org.apache.hadoop.io.compress.CompressionInputStream;
 import org.apache.hadoop.io.compress.CompressionOutputStream;
 import org.apache.hadoop.io.compress.Compressor;
 import org.apache.hadoop.io.compress.CompressorStream;
 import org.apache.hadoop.io.compress.Decompressor;
 import org.apache.hadoop.io.compress.DecompressorStream;
+import org.apache.hadoop.io.compress.DirectCompressor;
+import org.apache.hadoop.io.compress.DirectDecompressor;
 import org.apache.hadoop.io.compress.ZStandardCodec;
 import org.apache.hadoop.test.MultithreadedTestUtil;
 import org.junit.Before;
@@ -42,6 +45,9 @@
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IO_FILE_BUFFER_SIZE_DEFAULT;
@@ -49,6 +55,7 @@
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 
@@ -403,6 +410,100 @@ public void testZStandardCompressDecompress() throws Exception {
     decompressor.reset();
   }
 
+  @Test
+  public void testZStandardDirectCompressor() throws Exception {
+    ZStandardCodec codec = new ZStandardCodec();
+    codec.setConf(CONFIGURATION);
+    DirectCompressor compressor = codec.createDirectCompressor();
+    DirectDecompressor decompressor = codec.createDirectDecompressor();
+    for (int size : new int[] {0, 1000, 512 * 1024}) {
+      byte[] rawData = generate(size);
+      ByteBuffer raw = ByteBuffer.allocateDirect(size);
+      raw.put(rawData).flip();
+      ByteBuffer compressed = ByteBuffer.allocateDirect(
+          compressor.maxCompressedLength(size));
+      compressor.compress(raw, compressed);
+      assertFalse(raw.hasRemaining());
+      compressed.flip();
+
+      ByteBuffer uncompressed = ByteBuffer.allocateDirect(size + 1);
+      decompressor.decompress(compressed, uncompressed);
+      assertEquals(size, uncompressed.position());
+      byte[] result = new byte[size];
+      uncompressed.flip();
+      uncompressed.get(result);
+      assertArrayEquals(rawData, result);
+    }
+  }
+
+  @Test
+  public void testCompressDecompressWithDictionary() throws Exception {
+    assumeTrue(ZStandardCodec.isDictionarySupported());
+    List<byte[]> samples = new ArrayList<>();
+    Random random = new Random(12345L);
+    for (int i = 0; i < 2000; i++) {
+      samples.add(String.format("{\"user\":\"user%d\",\"event\":\"%s\","
+          + "\"page\":\"/catalog/item/%d\",\"latencyMs\":%d}", i,
+          random.nextBoolean() ? "click" : "view", random.nextInt(100),
+          random.nextInt(1000)).getBytes(StandardCharsets.UTF_8));
+    }
+    byte[] dictionary = ZStandardCodec.trainDictionary(samples, 4096);
+    assertTrue(dictionary.length > 0 && dictionary.length <= 4096);
+
+    ZStandardCodec codec = new ZStandardCodec();
+    codec.setConf(CONFIGURATION);
+    byte[] record = samples.get(7);
+    Compressor plain = codec.createCompressor();
+    Compressor compressor =
+        CodecPool.getCompressor(codec, CONFIGURATION, dictionary);
+    Decompressor decompressor = CodecPool.getDecompressor(codec, dictionary);
+    try {
+      byte[] withoutDictionary = compress(codec, plain, record);
+      byte[] withDictionary = compress(codec, compressor, record);
+      assertTrue(withDictionary.length < withoutDictionary.length);
+      assertArrayEquals(record, decompress(codec, decompressor,
+          withDictionary, record.length));
+
+      // the dictionary is kept across reset()
+      compressor.reset();
+      decompressor.reset();
+      assertArrayEquals(withDictionary, compress(codec, compressor, record));
+      assertArrayEquals(record, decompress(codec, decompressor,
+          withDictionary, record.length));
+    } finally {
+      plain.end();
+      CodecPool.returnCompressor(compressor);
+      CodecPool.returnDecompressor(decompressor);
+    }
+
+    // the pooled codecs are handed out again for the same dictionary
+    Compressor recycled =
+        CodecPool.getCompressor(codec, CONFIGURATION, dictionary);
+    assertSame(compressor, recycled);
+    CodecPool.returnCompressor(recycled);
+  }
+
+  private static byte[] compress(ZStandardCodec codec, Compressor compressor,
+      byte[] data) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (CompressionOutputStream out =
+        codec.createOutputStream(baos, compressor)) {
+      out.write(data);
+    }
+    return baos.toByteArray();
+  }
+
+  private static byte[] decompress(ZStandardCodec codec,
+      Decompressor decompressor, byte[] data, int length) throws IOException {
+    byte[] result = new byte[length];
+    try (CompressionInputStream in = codec.createInputStream(
+        new ByteArrayInputStream(data), decompressor)) {
+      IOUtils.readFully(in, result, 0, length);
+      assertEquals(-1, in.read());
+    }
+    return result;
+  }
+
   @Test
   public void testDecompressingOutput() throws Exception {
     byte[] expectedDecompressedResult =
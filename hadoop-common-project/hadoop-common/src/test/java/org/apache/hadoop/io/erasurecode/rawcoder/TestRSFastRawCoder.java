@@ -0,0 +1,36 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder;
+
+import org.apache.hadoop.io.erasurecode.rawcoder.util.RSFastUtil;
+import org.junit.Before;
+
+/**
+ * Test the raw Reed-solomon coder in Java with the chunked coding loops.
+ */
+public class TestRSFastRawCoder extends TestRSRawCoderBase {
+
+  @Before
+  public void setup() {
+    this.encoderFactoryClass = RSFastRawErasureCoderFactory.class;
+    this.decoderFactoryClass = RSFastRawErasureCoderFactory.class;
+    // Code several chunks of the coding loops in each call
+    this.baseChunkSize = 2 * RSFastUtil.CHUNK_SIZE + 1024;
+    setAllowDump(false);
+  }
+}
@@ -53,6 +53,15 @@ public void testRSCoder() throws Exception {
         RawErasureCoderBenchmark.CODER.RS_CODER, 4, 135, 20);
   }
 
+  @Test
+  public void testRSFastCoder() throws Exception {
+    // RS Java coder with chunked coding loops
+    RawErasureCoderBenchmark.performBench("encode",
+        RawErasureCoderBenchmark.CODER.RS_FAST_CODER, 3, 200, 200);
+    RawErasureCoderBenchmark.performBench("decode",
+        RawErasureCoderBenchmark.CODER.RS_FAST_CODER, 4, 135, 20);
+  }
+
   @Test
   public void testISALCoder() throws Exception {
     Assume.assumeTrue(ErasureCodeNative.isNativeCodeLoaded());
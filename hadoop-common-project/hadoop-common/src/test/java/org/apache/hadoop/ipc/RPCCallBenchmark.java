@@ -44,6 +44,8 @@
 import java.lang.management.ThreadMXBean;
 import java.net.InetSocketAddress;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -65,6 +67,7 @@ private static class MyOptions {
     private int port = 0;
     public int secondsToRun = 15;
     private int msgSize = 1024;
+    private String bufferPool = "none";
     public Class<? extends RpcEngine> rpcEngine =
         ProtobufRpcEngine2.class;
     
@@ -154,6 +157,14 @@ private Options buildOptions() {
           .desc("engine to use")
           .build());
       
+      opts.addOption(
+          Option.builder("b")
+          .longOpt("bufferPool")
+          .hasArg(true)
+          .argName("none|heap|direct")
+          .desc("buffers pooled by the server")
+          .build());
+
       opts.addOption(
           Option.builder("?")
           .longOpt("help")
@@ -205,6 +216,13 @@ private void processOptions(CommandLine line, Options opts)
           throw new ParseException("invalid engine: " + eng);
         }
       }
+      if (line.hasOption('b')) {
+        bufferPool = line.getOptionValue('b');
+        if (!"none".equals(bufferPool) && !"heap".equals(bufferPool)
+            && !"direct".equals(bufferPool)) {
+          throw new ParseException("invalid buffer pool: " + bufferPool);
+        }
+      }
       
       String[] remainingArgs = line.getArgs();
       if (remainingArgs.length != 0) {
@@ -228,7 +246,8 @@ public String toString() {
       return "rpcEngine=" + rpcEngine + "\nserverThreads=" + serverThreads
           + "\nserverReaderThreads=" + serverReaderThreads + "\nclientThreads="
           + clientThreads + "\nhost=" + host + "\nport=" + getPort()
-          + "\nsecondsToRun=" + secondsToRun + "\nmsgSize=" + msgSize;
+          + "\nsecondsToRun=" + secondsToRun + "\nmsgSize=" + msgSize
+          + "\nbufferPool=" + bufferPool;
     }
   }
 
@@ -240,6 +259,10 @@ private Server startServer(MyOptions opts) throws IOException {
     }
     conf.setInt(CommonConfigurationKeys.IPC_SERVER_RPC_READ_THREADS_KEY,
         opts.serverReaderThreads);
+    conf.setBoolean(CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_KEY,
+        !"none".equals(opts.bufferPool));
+    conf.setBoolean(CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_DIRECT_KEY,
+        "direct".equals(opts.bufferPool));
     
     RPC.Server server;
     // Get RPC server for server side implementation
@@ -267,6 +290,42 @@ private long getTotalCpuTime(Iterable<? extends Thread> threads) {
     }
     return total;
   }
+
+  /**
+   * @return the bytes allocated by the threads, or -1 if the JVM does not
+   * measure it.
+   */
+  private long getTotalAllocatedBytes(Iterable<? extends Thread> threads) {
+    if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    com.sun.management.ThreadMXBean bean =
+        (com.sun.management.ThreadMXBean) threadBean;
+    long total = 0;
+    for (Thread t : threads) {
+      long allocated = bean.getThreadAllocatedBytes(t.getId());
+      if (allocated < 0) {
+        return -1;
+      }
+      total += allocated;
+    }
+    return total;
+  }
+
+  /**
+   * @return the listener, reader, handler and responder threads of the
+   * server.
+   */
+  private static List<Thread> getServerThreads() {
+    List<Thread> threads = new ArrayList<>();
+    for (Thread t : Thread.getAllStackTraces().keySet()) {
+      if (t.getName().startsWith("IPC Server")
+          || t.getName().startsWith("Socket Reader")) {
+        threads.add(t);
+      }
+    }
+    return threads;
+  }
   
   @Override
   public int run(String[] args) throws Exception {
@@ -286,6 +345,8 @@ public int run(String[] args) throws Exception {
         long totalCalls = 0;
         ctx.startThreads();
         long veryStart = System.nanoTime();
+        List<Thread> serverThreads = getServerThreads();
+        long allocatedServerStart = getTotalAllocatedBytes(serverThreads);
 
         // Loop printing results every second until the specified
         // time has elapsed
@@ -307,8 +368,13 @@ public int run(String[] args) throws Exception {
             (totalCalls * 1000000000)/(veryEnd - veryStart);
           long cpuNanosClient = getTotalCpuTime(ctx.getTestThreads());
           long cpuNanosServer = -1;
+          long allocatedServer = -1;
           if (server != null) {
             cpuNanosServer = getTotalCpuTime(server.getHandlers());
+            long allocatedServerEnd = getTotalAllocatedBytes(serverThreads);
+            if (allocatedServerStart >= 0 && allocatedServerEnd >= 0) {
+              allocatedServer = allocatedServerEnd - allocatedServerStart;
+            }
           }
           System.out.println("====== Results ======");
           System.out.println("Options:\n" + opts);
@@ -318,6 +384,14 @@ public int run(String[] args) throws Exception {
           if (server != null) {
             System.out.println("CPU time per call on server: " +
                 (cpuNanosServer / totalCalls) + " ns");
+            if (allocatedServer >= 0) {
+              long seconds = Math.max(1,
+                  (veryEnd - veryStart) / 1000000000L);
+              System.out.println("Bytes allocated per call on server: " +
+                  (allocatedServer / totalCalls));
+              System.out.println("Bytes allocated per second on server: " +
+                  (allocatedServer / seconds));
+            }
           }
         } else {
           System.out.println("No calls!");
@@ -38,6 +38,7 @@
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -294,6 +295,39 @@ public void testCallGetReturnRpcResponseMultipleTimes() throws IOException,
     }
   }
 
+  @Test
+  @Timeout(value = 60)
+  public void testCompletableFuture() throws Exception {
+    int handlerCount = 10, callCount = 100;
+    Server server = new TestIPC.TestServer(handlerCount, false, conf);
+    InetSocketAddress addr = NetUtils.getConnectAddress(server);
+    server.start();
+    final Client client = new Client(LongWritable.class, conf);
+    int asyncCallCount = client.getAsyncCallCount();
+
+    try {
+      List<CompletableFuture<Long>> futures = new ArrayList<>();
+      List<Long> expected = new ArrayList<>();
+      for (int i = 0; i < callCount; i++) {
+        final long param = TestIPC.RANDOM.nextLong();
+        TestIPC.call(client, param, addr, conf);
+        CompletableFuture<LongWritable> future =
+            Client.getAsyncRpcResponseFuture();
+        futures.add(future.thenApply(LongWritable::get));
+        expected.add(param);
+      }
+      for (int i = 0; i < callCount; i++) {
+        assertEquals(expected.get(i), futures.get(i).get(),
+            "call" + i + " failed.");
+      }
+      // The calls are released when complete, without an explicit get.
+      assertEquals(asyncCallCount, client.getAsyncCallCount());
+    } finally {
+      client.stop();
+      server.stop();
+    }
+  }
+
   @Test
   @Timeout(value = 60)
   public void testFutureGetWithTimeout() throws IOException,
@@ -520,6 +520,27 @@ public void testCallQueueOverflowExceptions() throws Exception {
     }
     verify(queue, times(0)).put(call);
     verify(queue, times(0)).add(call);
+
+    // a scheduler telling when to retry keeps the connection of the client.
+    reset(queue);
+    doReturn(250L).when(scheduler).getRetryAfterMs(call);
+    try {
+      cqm.put(call);
+      fail("didn't fail");
+    } catch (CallQueueOverflowException cqe) {
+      assertTrue(cqe.getCause().getMessage().endsWith("retry after 250ms"),
+          cqe.getCause().getMessage());
+    }
+    verify(queue, times(0)).put(call);
+
+    // unless the overflow triggers a failover.
+    try {
+      cqmTriggerFailover.put(call);
+      fail("didn't fail");
+    } catch (Exception ex) {
+      assertEquals(CallQueueOverflowException.FAILOVER.getCause().getMessage(),
+          ex.getCause().getMessage());
+    }
   }
 
   @Test
@@ -45,8 +45,10 @@
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
@@ -70,6 +72,7 @@
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -95,6 +98,7 @@
 import org.apache.hadoop.ipc.protobuf.RpcHeaderProtos.RpcResponseHeaderProto;
 import org.apache.hadoop.net.ConnectTimeoutException;
 import org.apache.hadoop.net.NetUtils;
+import org.apache.hadoop.net.StandardSocketFactory;
 import org.apache.hadoop.security.KerberosInfo;
 import org.apache.hadoop.security.SecurityUtil;
 import org.apache.hadoop.security.UserGroupInformation;
@@ -350,6 +354,127 @@ public void testSerial() throws IOException, InterruptedException {
     internalTestSerial(3, true, 2, 5, 10);
   }
 
+  /**
+   * Socket factory whose sockets count the flushes of their output stream,
+   * and fail the writes while {@link #failWrites} is set. A flush takes a
+   * millisecond, so that the requests of concurrent callers pile up.
+   */
+  public static class FlushCountingSocketFactory
+      extends StandardSocketFactory {
+    static final AtomicInteger FLUSHES = new AtomicInteger();
+    /** When set, writes wait for the latch and then fail. */
+    static volatile CountDownLatch failWrites;
+
+    @Override
+    public Socket createSocket() {
+      return new Socket() {
+        private OutputStream countingOut;
+
+        @Override
+        public synchronized OutputStream getOutputStream()
+            throws IOException {
+          if (countingOut == null) {
+            countingOut = new FilterOutputStream(super.getOutputStream()) {
+              @Override
+              public void write(byte[] b, int off, int len)
+                  throws IOException {
+                CountDownLatch latch = failWrites;
+                if (latch != null) {
+                  try {
+                    latch.await();
+                  } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                  }
+                  throw new IOException("Injected write failure");
+                }
+                out.write(b, off, len);
+              }
+
+              @Override
+              public void flush() throws IOException {
+                FLUSHES.incrementAndGet();
+                try {
+                  Thread.sleep(1);
+                } catch (InterruptedException e) {
+                  throw new InterruptedIOException();
+                }
+                out.flush();
+              }
+            };
+          }
+          return countingOut;
+        }
+      };
+    }
+  }
+
+  @Test
+  @Timeout(value = 60)
+  public void testSerialWithSendBatching()
+      throws IOException, InterruptedException {
+    conf.setInt(CommonConfigurationKeys.IPC_CLIENT_SEND_BATCH_SIZE_KEY, 8);
+    conf.setClass(
+        CommonConfigurationKeysPublic.HADOOP_RPC_SOCKET_FACTORY_CLASS_DEFAULT_KEY,
+        FlushCountingSocketFactory.class, SocketFactory.class);
+    FlushCountingSocketFactory.FLUSHES.set(0);
+    // many callers share the connection of a single client, so that their
+    // requests are queued and sent together
+    internalTestSerial(3, false, 1, 20, 100);
+    int calls = 20 * 100;
+    assertTrue(FlushCountingSocketFactory.FLUSHES.get() < calls,
+        "Expected fewer flushes than the " + calls + " calls, got "
+        + FlushCountingSocketFactory.FLUSHES.get());
+    internalTestSerial(5, true, 1, 10, 3);
+  }
+
+  /**
+   * Test that when writing a batch fails, every call queued on the
+   * connection fails rather than waiting forever for its response.
+   */
+  @Test
+  @Timeout(value = 60)
+  public void testSendBatchingWriteFailure() throws Exception {
+    conf.setInt(CommonConfigurationKeys.IPC_CLIENT_SEND_BATCH_SIZE_KEY, 8);
+    Server server = new TestServer(1, false);
+    InetSocketAddress addr = NetUtils.getConnectAddress(server);
+    server.start();
+    Client client = new Client(LongWritable.class, conf,
+        new FlushCountingSocketFactory());
+    ExecutorService executor = Executors.newCachedThreadPool();
+    CountDownLatch latch = new CountDownLatch(1);
+    try {
+      // set up the connection
+      call(client, RANDOM.nextLong(), addr, conf);
+
+      FlushCountingSocketFactory.failWrites = latch;
+      List<Thread> callers = Collections.synchronizedList(new ArrayList<>());
+      List<Future<LongWritable>> futures = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        futures.add(executor.submit(() -> {
+          callers.add(Thread.currentThread());
+          return call(client, RANDOM.nextLong(), addr, conf);
+        }));
+      }
+      // the first request blocks the sending thread, the others queue up
+      // behind it, and every caller waits for its response
+      GenericTestUtils.waitFor(() -> callers.size() == 5 && callers.stream()
+          .allMatch(t -> t.getState() == Thread.State.WAITING
+              || t.getState() == Thread.State.TIMED_WAITING), 10, 10000);
+      latch.countDown();
+      for (Future<LongWritable> f : futures) {
+        Exception e = assertThrows(Exception.class, f::get);
+        assertTrue(StringUtils.stringifyException(e).contains(
+            "Injected write failure"), StringUtils.stringifyException(e));
+      }
+    } finally {
+      FlushCountingSocketFactory.failWrites = null;
+      latch.countDown();
+      executor.shutdownNow();
+      client.stop();
+      server.stop();
+    }
+  }
+
   public void internalTestSerial(int handlerCount, boolean handlerSleep,
                          int clientCount, int callerCount, int callCount)
     throws IOException, InterruptedException {
@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.ipc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.ipc.CallQueueManager.CallQueueOverflowException;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestLockFreeCallQueue {
+  private LockFreeCallQueue<Schedulable> queue;
+
+  private Schedulable mockCall(String id, int priority) {
+    Schedulable mockCall = mock(Schedulable.class);
+    UserGroupInformation ugi = mock(UserGroupInformation.class);
+
+    when(ugi.getUserName()).thenReturn(id);
+    when(mockCall.getUserGroupInformation()).thenReturn(ugi);
+    when(mockCall.getPriorityLevel()).thenReturn(priority);
+    when(mockCall.toString()).thenReturn("id=" + id + " priority=" + priority);
+
+    return mockCall;
+  }
+
+  @BeforeEach
+  public void setUp() {
+    queue = new LockFreeCallQueue<>(2, 10, "ns", new Configuration());
+  }
+
+  @Test
+  public void testTotalCapacityOfSubQueues() {
+    Configuration conf = new Configuration();
+    assertThat(new LockFreeCallQueue<Schedulable>(1, 1000, "ns", conf)
+        .remainingCapacity()).isEqualTo(1000);
+    assertThat(new LockFreeCallQueue<Schedulable>(4, 1025, "ns", conf)
+        .remainingCapacity()).isEqualTo(1025);
+    assertThat(new LockFreeCallQueue<Schedulable>(7, 1025, "ns",
+        new int[]{7, 6, 5, 4, 3, 2, 1}, false, conf)
+        .remainingCapacity()).isEqualTo(1025);
+  }
+
+  @Test
+  public void testPrioritization() {
+    int numQueues = 4;
+    queue = new LockFreeCallQueue<>(numQueues, 100, "ns", new Configuration());
+    // always start from the highest priority
+    queue.setMultiplexer(() -> 0);
+    List<Schedulable> calls = new ArrayList<>();
+    for (int i = numQueues - 1; i >= 0; i--) {
+      Schedulable call = mockCall("u", i);
+      calls.add(0, call);
+      assertTrue(queue.offer(call));
+    }
+    assertEquals(numQueues, queue.size());
+    assertSame(calls.get(0), queue.peek());
+    for (Schedulable call : calls) {
+      assertSame(call, queue.poll());
+    }
+    assertNull(queue.poll());
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void testOfferAndAddOverflow() {
+    for (int i = 0; i < 5; i++) {
+      assertTrue(queue.offer(mockCall("a", 0)));
+    }
+    // offer does not move on to the next queue
+    assertFalse(queue.offer(mockCall("a", 0)));
+    // add does, and throws when all the queues are full
+    for (int i = 0; i < 5; i++) {
+      assertTrue(queue.add(mockCall("a", 0)));
+    }
+    assertThat(queue.getQueueSizes()).containsExactly(5, 5);
+    try {
+      queue.add(mockCall("a", 0));
+      fail("Expected an overflow");
+    } catch (CallQueueOverflowException e) {
+      assertSame(CallQueueOverflowException.KEEPALIVE, e);
+    }
+    try {
+      queue.add(mockCall("b", 1));
+      fail("Expected an overflow");
+    } catch (CallQueueOverflowException e) {
+      assertSame(CallQueueOverflowException.DISCONNECT, e);
+    }
+    assertThat(queue.getOverflowedCalls()).containsExactly(6, 2);
+    assertEquals(0, queue.remainingCapacity());
+
+    List<Schedulable> drained = new ArrayList<>();
+    assertEquals(10, queue.drainTo(drained));
+    assertEquals(0, queue.size());
+    assertEquals(10, queue.remainingCapacity());
+  }
+
+  @Test
+  @Timeout(value = 30)
+  public void testPutBlocksUntilRoom() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      queue.put(mockCall("a", i % 2));
+    }
+    final CountDownLatch done = new CountDownLatch(1);
+    Thread producer = new Thread(() -> {
+      try {
+        queue.put(mockCall("a", 0));
+        done.countDown();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    producer.start();
+    assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+    assertFalse(queue.offer(mockCall("a", 1), 10, TimeUnit.MILLISECONDS));
+    // a blocked put waits for room in the last queue
+    queue.setMultiplexer(() -> 1);
+    queue.take();
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertEquals(10, queue.size());
+  }
+
+  @Test
+  @Timeout(value = 30)
+  public void testTakeBlocksUntilElement() throws Exception {
+    assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    final Schedulable call = mockCall("a", 1);
+    Thread producer = new Thread(() -> {
+      try {
+        Thread.sleep(100);
+        queue.put(call);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    producer.start();
+    assertSame(call, queue.take());
+
+    Thread.currentThread().interrupt();
+    try {
+      queue.take();
+      fail("Expected an interrupt");
+    } catch (InterruptedException e) {
+      // expected
+    }
+  }
+
+  @Test
+  @Timeout(value = 60)
+  public void testConcurrentProducersAndConsumers() throws Exception {
+    final int numThreads = 4;
+    final int numCalls = 20000;
+    queue = new LockFreeCallQueue<>(4, 16, "ns", new Configuration());
+    final AtomicInteger taken = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < numThreads; t++) {
+      final Schedulable[] calls = new Schedulable[4];
+      for (int i = 0; i < calls.length; i++) {
+        calls[i] = mockCall("u" + t, i);
+      }
+      threads.add(new Thread(() -> {
+        try {
+          for (int i = 0; i < numCalls; i++) {
+            queue.put(calls[i % calls.length]);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }));
+      threads.add(new Thread(() -> {
+        try {
+          for (int i = 0; i < numCalls; i++) {
+            if (queue.take() != null) {
+              taken.incrementAndGet();
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(numThreads * numCalls, taken.get());
+    assertEquals(0, queue.size());
+    assertThat(queue.getQueueSizes()).containsExactly(0, 0, 0, 0);
+  }
+}
@@ -500,6 +500,129 @@ public void testCalls() throws Exception {
     testCallsInternal(conf);
   }
 
+  @Test
+  public void testCallsWithBufferPool() throws Exception {
+    Configuration myConf = new Configuration(conf);
+    myConf.setBoolean(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_KEY, true);
+    testCallsInternal(myConf);
+    testBufferPoolInternal(myConf);
+  }
+
+  @Test
+  public void testCallsWithDirectBufferPool() throws Exception {
+    Configuration myConf = new Configuration(conf);
+    myConf.setBoolean(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_KEY, true);
+    myConf.setBoolean(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_DIRECT_KEY, true);
+    testCallsInternal(myConf);
+    testBufferPoolInternal(myConf);
+  }
+
+  private void testBufferPoolInternal(Configuration myConf) throws Exception {
+    Server server = setupTestServer(myConf, 1);
+    TestRpcService proxy = null;
+    try {
+      proxy = getClient(addr, myConf);
+      RpcBufferPool bufferPool = server.getBufferPool();
+      assertEquals(myConf.getBoolean(
+          CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_DIRECT_KEY, false),
+          bufferPool.isDirect());
+
+      // echo messages of several size classes, and larger than the largest
+      for (int size : new int[] {0, 1000, 5000, 100 * 1024, 2 * 1024 * 1024}) {
+        char[] chars = new char[size];
+        Arrays.fill(chars, (char) ('a' + size % 26));
+        String message = new String(chars);
+        for (int i = 0; i < 10; i++) {
+          assertEquals(message,
+              proxy.echo(null, newEchoRequest(message)).getMessage());
+        }
+      }
+      try {
+        proxy.error(null, newEmptyRequest());
+        fail("Expected an exception");
+      } catch (ServiceException e) {
+        assertTrue(e.getCause() instanceof RemoteException);
+      }
+      assertTrue(bufferPool.getNumReused() > 0);
+    } finally {
+      stop(server, proxy);
+    }
+  }
+
+  @Test
+  @Timeout(value = 60)
+  public void testCallsWithMultipleResponders() throws Exception {
+    final int numConnections = 4;
+    Configuration myConf = new Configuration(conf);
+    myConf.setInt(CommonConfigurationKeys.IPC_SERVER_RPC_READ_THREADS_KEY,
+        numConnections);
+    myConf.setInt(CommonConfigurationKeys.IPC_SERVER_RESPONDER_COUNT_KEY, 2);
+    myConf.setInt(CommonConfigurationKeys.IPC_SERVER_RPC_READ_BATCH_SIZE_KEY,
+        8);
+
+    Server server = setupTestServer(myConf, 4);
+    final TestRpcService[] proxies = new TestRpcService[numConnections];
+    ExecutorService executor = Executors.newFixedThreadPool(numConnections);
+    try {
+      // a proxy per user, so that each gets its own connection and reader
+      for (int i = 0; i < numConnections; i++) {
+        proxies[i] = UserGroupInformation.createRemoteUser("user" + i).doAs(
+            (PrivilegedExceptionAction<TestRpcService>) () ->
+                getClient(addr, myConf));
+      }
+      char[] chars = new char[1024 * 1024];
+      Arrays.fill(chars, 'x');
+      final String largeMessage = new String(chars);
+      List<Future<Void>> futures = new ArrayList<>();
+      for (TestRpcService proxy : proxies) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10; i++) {
+            String message = i % 5 == 0 ? largeMessage : "message" + i;
+            assertEquals(message,
+                proxy.echo(null, newEchoRequest(message)).getMessage());
+          }
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+
+      boolean foundSecondResponder = false;
+      for (Thread thread : Thread.getAllStackTraces().keySet()) {
+        if (thread.getName().equals("IPC Server Responder #2")) {
+          foundSecondResponder = true;
+        }
+      }
+      assertTrue(foundSecondResponder);
+
+      // the metrics of a call are updated after its response is sent
+      GenericTestUtils.waitFor(() -> {
+        MetricsRecordBuilder rb = getMetrics(server.rpcMetrics.name());
+        for (int i = 1; i <= numConnections; i++) {
+          if (MetricsAsserts.getLongCounter(
+              "SocketReader" + i + "LoopTimeNumOps", rb) == 0) {
+            return false;
+          }
+        }
+        return MetricsAsserts.getLongCounter("RpcProcessingTimeNumOps", rb)
+            == 10L * numConnections;
+      }, 100, 10000);
+      MetricsRecordBuilder rb = getMetrics(server.rpcMetrics.name());
+      for (int i = 1; i <= numConnections; i++) {
+        assertGauge("SocketReader" + i + "QueueDepth", 0, rb);
+      }
+      assertGauge("Responder1QueueDepth", 0, rb);
+      assertGauge("Responder2QueueDepth", 0, rb);
+    } finally {
+      executor.shutdownNow();
+      stop(server, proxies);
+    }
+  }
+
   private void testCallsInternal(Configuration myConf) throws Exception {
     Server server;
     TestRpcService proxy = null;
@@ -39,4 +39,19 @@ public void testBenchmarkWithProto() throws Exception {
       "--engine", "protobuf"});
     assertEquals(0, rc);
   }
+
+  @Test
+  @Timeout(value = 20)
+  public void testBenchmarkWithBufferPool() throws Exception {
+    int rc = ToolRunner.run(new RPCCallBenchmark(),
+        new String[] {
+      "--clientThreads", "30",
+      "--serverThreads", "30",
+      "--time", "5",
+      "--serverReaderThreads", "4",
+      "--messageSize", "1024",
+      "--engine", "protobuf",
+      "--bufferPool", "direct"});
+    assertEquals(0, rc);
+  }
 }
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.ipc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for RpcBufferPool. */
+public class TestRpcBufferPool {
+
+  @Test
+  public void testSizeClasses() {
+    RpcBufferPool pool = new RpcBufferPool(false, 1 << 20, 64 << 20);
+    checkBuffer(pool.get(0), 0, 1024);
+    checkBuffer(pool.get(1), 1, 1024);
+    checkBuffer(pool.get(1024), 1024, 1024);
+    checkBuffer(pool.get(1025), 1025, 2048);
+    checkBuffer(pool.get(100000), 100000, 128 * 1024);
+    checkBuffer(pool.get(1 << 20), 1 << 20, 1 << 20);
+    // larger buffers are not pooled
+    checkBuffer(pool.get((1 << 20) + 1), (1 << 20) + 1, (1 << 20) + 1);
+    assertEquals(7, pool.getNumAllocated());
+    assertEquals(0, pool.getNumReused());
+  }
+
+  @Test
+  public void testReuse() {
+    RpcBufferPool pool = new RpcBufferPool(false, 1 << 20, 64 << 20);
+    ByteBuffer buffer = pool.get(3000);
+    buffer.put((byte) 1);
+    pool.put(buffer);
+
+    ByteBuffer other = pool.get(1500);
+    assertNotSame(buffer, other);
+    ByteBuffer reused = pool.get(2500);
+    assertSame(buffer, reused);
+    checkBuffer(reused, 2500, 4096);
+    assertEquals(1, pool.getNumReused());
+
+    // buffers which don't fit in a size class are dropped
+    pool.put(ByteBuffer.allocate(3000));
+    pool.put(ByteBuffer.allocate(1 << 21));
+    pool.put(ByteBuffer.allocateDirect(4096));
+    pool.put(null);
+    assertNotSame(buffer, pool.get(4096));
+    assertEquals(1, pool.getNumReused());
+  }
+
+  @Test
+  public void testDirect() {
+    RpcBufferPool pool = new RpcBufferPool(true, 1 << 20, 64 << 20);
+    ByteBuffer buffer = pool.get(100);
+    assertTrue(buffer.isDirect());
+    pool.put(buffer);
+    assertSame(buffer, pool.get(200));
+    assertFalse(pool.get((1 << 20) + 1).isDirect());
+  }
+
+  @Test
+  public void testCapacity() {
+    // one size class of 1 KB buffers, which keeps up to 2 buffers
+    RpcBufferPool pool = new RpcBufferPool(false, 1024, 2048);
+    ByteBuffer[] buffers = new ByteBuffer[3];
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = pool.get(1024);
+    }
+    for (ByteBuffer buffer : buffers) {
+      pool.put(buffer);
+    }
+    assertSame(buffers[0], pool.get(1));
+    assertSame(buffers[1], pool.get(1));
+    assertNotSame(buffers[2], pool.get(1));
+  }
+
+  private static void checkBuffer(ByteBuffer buffer, int limit,
+      int capacity) {
+    assertEquals(0, buffer.position());
+    assertEquals(limit, buffer.limit());
+    assertEquals(capacity, buffer.capacity());
+  }
+}
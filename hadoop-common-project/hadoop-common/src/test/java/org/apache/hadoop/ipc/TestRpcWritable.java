@@ -96,6 +96,30 @@ public void testBufferWrapper() throws IOException {
     assertEquals(0, buf.remaining());
   }
 
+  @Test
+  public void testBufferWrapperDirect() throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(baos);
+    message1.writeDelimitedTo(dos);
+    writable.write(dos);
+    message2.writeDelimitedTo(dos);
+
+    // a direct buffer is decoded in place.
+    ByteBuffer bb = ByteBuffer.allocateDirect(baos.size());
+    bb.put(baos.toByteArray());
+    bb.flip();
+    RpcWritable.Buffer buf = RpcWritable.Buffer.wrap(bb);
+
+    Object actual = buf.getValue(EchoRequestProto.getDefaultInstance());
+    assertEquals(message1, actual);
+    actual = buf.newInstance(LongWritable.class, null);
+    assertEquals(writable, actual);
+    assertTrue(buf.remaining() > 0);
+    actual = buf.getValue(EchoRequestProto.getDefaultInstance());
+    assertEquals(message2, actual);
+    assertEquals(0, bb.remaining());
+  }
+
   @Test
   public void testBufferWrapperNested() throws IOException {
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -42,6 +42,7 @@
 import org.slf4j.LoggerFactory;
 import org.slf4j.event.Level;
 
+import javax.net.SocketFactory;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.NameCallback;
@@ -61,6 +62,7 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -318,6 +320,62 @@ private void doDigestRpc(Server server, TestTokenSecretManager sm)
     }
   }
 
+  @ParameterizedTest
+  @MethodSource("data")
+  @Timeout(value = 60)
+  public void testSendBatching(QualityOfProtection[] pQop,
+      QualityOfProtection pExpectedQop, String pSaslPropertiesResolver)
+      throws Exception {
+    initTestSaslRPC(pQop, pExpectedQop, pSaslPropertiesResolver);
+    // a batch of requests is wrapped as a single SASL packet, which the
+    // server must split back into the calls
+    conf.setInt(CommonConfigurationKeys.IPC_CLIENT_SEND_BATCH_SIZE_KEY, 8);
+    conf.setClass(
+        CommonConfigurationKeysPublic.HADOOP_RPC_SOCKET_FACTORY_CLASS_DEFAULT_KEY,
+        TestIPC.FlushCountingSocketFactory.class, SocketFactory.class);
+    TestTokenSecretManager sm = new TestTokenSecretManager();
+    final Server server = setupTestServer(conf, 5, sm);
+
+    final UserGroupInformation current = UserGroupInformation.getCurrentUser();
+    addr = NetUtils.getConnectAddress(server);
+    TestTokenIdentifier tokenId = new TestTokenIdentifier(new Text(current
+        .getUserName()));
+    Token<TestTokenIdentifier> token = new Token<>(tokenId, sm);
+    SecurityUtil.setTokenService(token, addr);
+    current.addToken(token);
+
+    TestRpcService proxy = null;
+    ExecutorService executor = Executors.newFixedThreadPool(10);
+    try {
+      proxy = getClient(addr, conf);
+      assertEquals(expectedQop.saslQop,
+          RPC.getConnectionIdForProxy(proxy).getSaslQop());
+      TestIPC.FlushCountingSocketFactory.FLUSHES.set(0);
+      final TestRpcService client = proxy;
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        final int caller = i;
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < 50; j++) {
+            String expect = "echo" + caller + "-" + j;
+            assertEquals(expect,
+                convert(client.echo(null, newEchoRequest(expect))));
+          }
+          return null;
+        }));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+      int flushes = TestIPC.FlushCountingSocketFactory.FLUSHES.get();
+      assertTrue(flushes < 500,
+          "Expected fewer flushes than the 500 calls, got " + flushes);
+    } finally {
+      executor.shutdownNow();
+      stop(server, proxy);
+    }
+  }
+
   @ParameterizedTest
   @MethodSource("data")
   public void testPingInterval(QualityOfProtection[] pQop,
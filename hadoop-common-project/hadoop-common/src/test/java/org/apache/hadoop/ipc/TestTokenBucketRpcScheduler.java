@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.ipc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.ipc.CallQueueManager.CallQueueOverflowException;
+import org.apache.hadoop.ipc.protobuf.RpcHeaderProtos.RpcResponseHeaderProto.RpcStatusProto;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.util.FakeTimer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestTokenBucketRpcScheduler {
+  private static final String NS = "ipc.8020";
+  private static final double DELTA = 0.001;
+
+  private Configuration conf;
+  private FakeTimer timer;
+  private TokenBucketRpcScheduler scheduler;
+
+  private Schedulable mockCall(String id) {
+    Schedulable mockCall = mock(Schedulable.class);
+    UserGroupInformation ugi = UserGroupInformation.createRemoteUser(id);
+
+    when(mockCall.getUserGroupInformation()).thenReturn(ugi);
+
+    return mockCall;
+  }
+
+  /** Cost provider charging 11 per call. */
+  public static class TestCostProvider implements CostProvider {
+    @Override
+    public void init(String namespace, Configuration conf) {
+      // No-op
+    }
+
+    @Override
+    public long getCost(ProcessingDetails details) {
+      return 11;
+    }
+  }
+
+  @BeforeEach
+  public void setUp() {
+    conf = new Configuration();
+    // a bucket of 20 tokens refilling 10 tokens per second
+    conf.setDouble(NS + "." +
+        TokenBucketRpcScheduler.IPC_TOKENBUCKET_SCHEDULER_RATE_KEY, 10);
+    conf.setDouble(NS + "." +
+        TokenBucketRpcScheduler.IPC_TOKENBUCKET_SCHEDULER_BURST_KEY, 20);
+    timer = new FakeTimer();
+    scheduler = new TokenBucketRpcScheduler(4, NS, conf, timer);
+  }
+
+  @Test
+  public void testParseRateAndBurst() {
+    Configuration badConf = new Configuration();
+    badConf.setDouble(NS + "." +
+        TokenBucketRpcScheduler.IPC_TOKENBUCKET_SCHEDULER_RATE_KEY, 0);
+    assertThrows(IllegalArgumentException.class,
+        () -> new TokenBucketRpcScheduler(4, NS, badConf));
+    Configuration badBurstConf = new Configuration();
+    badBurstConf.setDouble(NS + "." +
+        TokenBucketRpcScheduler.IPC_TOKENBUCKET_SCHEDULER_BURST_KEY, 0.5);
+    assertThrows(IllegalArgumentException.class,
+        () -> new TokenBucketRpcScheduler(4, NS, badBurstConf));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TokenBucketRpcScheduler(0, NS, conf));
+  }
+
+  @Test
+  public void testPriorityFollowsBucket() {
+    Schedulable callA = mockCall("A");
+    Schedulable callB = mockCall("B");
+    assertEquals(20, scheduler.getTokens("A"), DELTA);
+
+    assertEquals(0, scheduler.getPriorityLevel(callA));
+    assertEquals(19, scheduler.getTokens("A"), DELTA);
+    for (int i = 1; i < 10; i++) {
+      scheduler.getPriorityLevel(callA);
+    }
+    // half of the bucket is used
+    assertEquals(2, scheduler.getPriorityLevel(callA));
+    for (int i = 11; i < 20; i++) {
+      scheduler.getPriorityLevel(callA);
+    }
+    assertEquals(0, scheduler.getTokens("A"), DELTA);
+    assertEquals(3, scheduler.getPriorityLevel(mockCall("A")));
+    // other identities are not affected
+    assertEquals(0, scheduler.getPriorityLevel(callB));
+    assertFalse(scheduler.shouldBackOff(callB));
+
+    // the bucket refills continuously
+    timer.advance(1000);
+    assertEquals(9, scheduler.getTokens("A"), DELTA);
+    assertEquals(2, scheduler.getPriorityLevel(callA));
+    timer.advance(10000);
+    assertEquals(20, scheduler.getTokens("A"), DELTA);
+    assertEquals(0, scheduler.getPriorityLevel(callA));
+    assertEquals(24, scheduler.getNumScheduledCalls());
+  }
+
+  @Test
+  public void testBackOffWithRetryHint() {
+    Schedulable call = mockCall("A");
+    for (int i = 0; i < 20; i++) {
+      scheduler.getPriorityLevel(call);
+      assertFalse(scheduler.shouldBackOff(call));
+    }
+    // overdraw the bucket by 1 token
+    scheduler.getPriorityLevel(call);
+    assertTrue(scheduler.shouldBackOff(call));
+    assertEquals(100, scheduler.getRetryAfterMs(call));
+    timer.advance(50);
+    assertTrue(scheduler.shouldBackOff(call));
+    assertEquals(50, scheduler.getRetryAfterMs(call));
+    timer.advance(50);
+    assertFalse(scheduler.shouldBackOff(call));
+    assertEquals(2, scheduler.getNumBackedOffCalls());
+
+    // an identity calling on regardless is throttled, up to another burst
+    for (int i = 0; i < 100; i++) {
+      scheduler.getPriorityLevel(call);
+    }
+    assertEquals(-20, scheduler.getTokens("A"), DELTA);
+    assertEquals(2000, scheduler.getRetryAfterMs(call));
+  }
+
+  @Test
+  public void testCostOfCompletedCalls() {
+    conf.set(NS + "." + CommonConfigurationKeys.IPC_COST_PROVIDER_KEY,
+        TestCostProvider.class.getName());
+    scheduler = new TokenBucketRpcScheduler(4, NS, conf, timer);
+    Schedulable call = mockCall("A");
+    scheduler.getPriorityLevel(call);
+    scheduler.addResponseTime("test", call, new ProcessingDetails(
+        TimeUnit.NANOSECONDS));
+    assertEquals(9, scheduler.getTokens("A"), DELTA);
+    scheduler.getPriorityLevel(call);
+    scheduler.addResponseTime("test", call, new ProcessingDetails(
+        TimeUnit.NANOSECONDS));
+    assertTrue(scheduler.shouldBackOff(call));
+    assertEquals(200, scheduler.getRetryAfterMs(call));
+  }
+
+  @Test
+  public void testServiceUsers() {
+    conf.set(NS + "." +
+        TokenBucketRpcScheduler.IPC_TOKENBUCKET_SCHEDULER_SERVICE_USERS_KEY,
+        "service");
+    scheduler = new TokenBucketRpcScheduler(4, NS, conf, timer);
+    Schedulable call = mockCall("service");
+    for (int i = 0; i < 100; i++) {
+      assertEquals(0, scheduler.getPriorityLevel(call));
+      assertFalse(scheduler.shouldBackOff(call));
+    }
+    assertEquals(0, scheduler.getNumBuckets());
+  }
+
+  @Test
+  public void testFullBucketsAreDropped() {
+    for (int i = 0; i < 1024; i++) {
+      scheduler.getPriorityLevel(mockCall("user" + i));
+    }
+    assertEquals(1024, scheduler.getNumBuckets());
+    // the buckets are full again
+    timer.advance(1000);
+    scheduler.getPriorityLevel(mockCall("new"));
+    assertEquals(1, scheduler.getNumBuckets());
+  }
+
+  @Test
+  public void testCallQueueManagerRetryHint() throws Exception {
+    CallQueueManager<Schedulable> manager = new CallQueueManager<>(
+        new LockFreeCallQueue<>(4, 100, NS, conf), scheduler, true, false);
+    Schedulable call = mockCall("A");
+    for (int i = 0; i < 25; i++) {
+      scheduler.getPriorityLevel(call);
+    }
+    try {
+      manager.put(call);
+      fail("Expected the call to be backed off");
+    } catch (CallQueueOverflowException e) {
+      RpcServerException cause = (RpcServerException) e.getCause();
+      assertEquals(RpcStatusProto.ERROR, cause.getRpcStatusProto());
+      assertTrue(cause.getCause() instanceof RetriableException);
+      assertEquals("Server too busy - retry after 500ms",
+          cause.getCause().getMessage());
+    }
+    assertEquals(0, manager.size());
+
+    timer.advance(500);
+    manager.put(call);
+    assertEquals(1, manager.size());
+  }
+}
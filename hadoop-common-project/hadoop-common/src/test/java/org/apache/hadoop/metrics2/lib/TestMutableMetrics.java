@@ -21,6 +21,7 @@
 import static org.apache.hadoop.metrics2.impl.MsInfo.Context;
 import static org.apache.hadoop.metrics2.lib.Interns.info;
 import static org.apache.hadoop.test.MetricsAsserts.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.AdditionalMatchers.eq;
 import static org.mockito.AdditionalMatchers.geq;
@@ -36,6 +37,7 @@
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.metrics2.MetricsRecordBuilder;
 import org.apache.hadoop.metrics2.util.Quantile;
@@ -632,6 +634,87 @@ public void testMutableInverseQuantilesEmptyRollover() throws Exception {
         info("FooNumOps", "Number of ops for stat with 5s interval"), 0L);
   }
 
+  /**
+   * Test that {@link MutableHistogram} publishes the exact percentiles of
+   * the last interval and the cumulative buckets of all the intervals.
+   */
+  @Test
+  @Timeout(value = 30)
+  public void testMutableHistogram() throws Exception {
+    MetricsRecordBuilder mb = mockMetricsRecordBuilder();
+    MetricsRegistry registry = new MetricsRegistry("test");
+    MutableHistogram histogram = (MutableHistogram) registry.newHistogram(
+        "foo", "stat", "Ops", "Latency", 3600, TimeUnit.MILLISECONDS);
+    try {
+      for (long i = 1; i <= SAMPLE_COUNT; i++) {
+        histogram.add(i);
+      }
+      // the values are only published after the first rollover
+      registry.snapshot(mb, false);
+      verify(mb).addGauge(
+          info("FooNumOps", "Number of ops for stat with 3600s interval"), 0L);
+
+      histogram.rollover();
+      mb = mockMetricsRecordBuilder();
+      registry.snapshot(mb, false);
+      verify(mb).addGauge(
+          info("FooNumOps", "Number of ops for stat with 3600s interval"),
+          (long) SAMPLE_COUNT);
+      String name = "Foo%dthPercentileLatency";
+      String desc = "%d percentile latency with 3600 second interval for stat";
+      for (Quantile q : MutableQuantiles.QUANTILES) {
+        int percentile = (int) (100 * q.quantile);
+        long expected = (long) (q.quantile * SAMPLE_COUNT);
+        verify(mb).addGauge(eq(info(String.format(name, percentile),
+            String.format(desc, percentile))), leq(expected + (expected >> 6)));
+        verify(mb).addGauge(eq(info(String.format(name, percentile),
+            String.format(desc, percentile))), geq(expected));
+      }
+      verify(mb).addCounter(info("FooLatencyHistogramBucketLe100",
+          "Number of ops with a latency at or below 100 for stat"), 100L);
+      // 1000 is counted in the bucket [1000, 1007], above the bound
+      verify(mb).addCounter(info("FooLatencyHistogramBucketLe1000",
+          "Number of ops with a latency at or below 1000 for stat"), 999L);
+      verify(mb).addCounter(info("FooLatencyHistogramCount",
+          "Number of ops for stat"), (long) SAMPLE_COUNT);
+      verify(mb).addCounter(info("FooLatencyHistogramSum",
+          "Total latency of ops for stat"),
+          (long) SAMPLE_COUNT * (SAMPLE_COUNT + 1) / 2);
+
+      // the window only holds the last interval, the buckets hold them all
+      histogram.add(5);
+      histogram.rollover();
+      assertEquals(1, histogram.getWindow().getCount());
+      mb = mockMetricsRecordBuilder();
+      registry.snapshot(mb, false);
+      verify(mb).addGauge(
+          info("FooNumOps", "Number of ops for stat with 3600s interval"), 1L);
+      verify(mb).addCounter(info("FooLatencyHistogramCount",
+          "Number of ops for stat"), SAMPLE_COUNT + 1L);
+    } finally {
+      histogram.stop();
+    }
+  }
+
+  /**
+   * Test that the bucket bounds of {@link MutableHistogram} follow the time
+   * unit of the values.
+   */
+  @Test
+  public void testMutableHistogramBucketBounds() {
+    long[] nanos = MutableHistogram.getBucketBounds(TimeUnit.NANOSECONDS);
+    assertEquals(22, nanos.length);
+    assertEquals(10000L, nanos[0]);
+    assertEquals(100000000000L, nanos[nanos.length - 1]);
+    long[] millis = MutableHistogram.getBucketBounds(TimeUnit.MILLISECONDS);
+    assertEquals(16, millis.length);
+    assertEquals(1L, millis[0]);
+    assertEquals(200L, millis[7]);
+    assertEquals(100000L, millis[millis.length - 1]);
+    assertArrayEquals(new long[] {1, 2, 5, 10, 20, 50, 100},
+        MutableHistogram.getBucketBounds(TimeUnit.SECONDS));
+  }
+
   /**
    * Test {@link MutableGaugeFloat#incr()}.
    */
@@ -79,6 +79,54 @@ public void testPublish() throws IOException {
     metrics.shutdown();
   }
 
+  @Test
+  public void testPublishHistogram() throws IOException {
+    //GIVEN
+    MetricsSystem metrics = DefaultMetricsSystem.instance();
+
+    metrics.init("test");
+    PrometheusMetricsSink sink = new PrometheusMetricsSink();
+    metrics.register("Prometheus", "Prometheus", sink);
+    metrics.register("TestHistogram", "Testing histograms",
+        new TestHistogramMetrics());
+    metrics.publishMetricsNow();
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    OutputStreamWriter writer = new OutputStreamWriter(stream, UTF_8);
+
+    //WHEN
+    sink.writeMetrics(writer);
+    writer.flush();
+
+    //THEN
+    String writtenMetrics = stream.toString(UTF_8.name());
+    System.out.println(writtenMetrics);
+    String family = "test_histogram_metrics_op_latency_histogram";
+    assertTrue(writtenMetrics.contains("# TYPE " + family + " histogram\n"),
+        "The histogram type is missing from prometheus metrics output");
+    assertFalse(writtenMetrics.contains(family + "_bucket_le"),
+        "The histogram buckets should not be exported as counters");
+    assertTrue(writtenMetrics.contains(family
+        + "_bucket{context=\"test\","),
+        "The histogram bucket is missing from prometheus metrics output");
+    assertTrue(writtenMetrics.contains(",le=\"50\"} 50\n"),
+        "The bucket of 50 is missing from prometheus metrics output");
+    assertTrue(writtenMetrics.contains(",le=\"+Inf\"} 100\n"),
+        "The +Inf bucket is missing from prometheus metrics output");
+    assertTrue(writtenMetrics.indexOf("le=\"2\"}")
+        < writtenMetrics.indexOf("le=\"10\"}"),
+        "The buckets should be in increasing order");
+    assertTrue(writtenMetrics.contains(family + "_count{"),
+        "The histogram count is missing from prometheus metrics output");
+    assertTrue(writtenMetrics.contains(family + "_sum{"),
+        "The histogram sum is missing from prometheus metrics output");
+    assertEquals(1, StringUtils.countMatches(writtenMetrics,
+        "# TYPE " + family + " "));
+
+    metrics.unregisterSource("TestHistogram");
+    metrics.stop();
+    metrics.shutdown();
+  }
+
   /**
    * Fix for HADOOP-17804, make sure Prometheus metrics get deduped based on metric
    * and tags, not just the metric.
@@ -289,6 +337,29 @@ String testTag1() {
     private MutableCounterLong numBucketCreateFails;
   }
 
+  /**
+   * Example metric source with the counters of a histogram of the values
+   * from 1 to 100.
+   */
+  private static class TestHistogramMetrics implements MetricsSource {
+    @Override
+    public void getMetrics(MetricsCollector collector, boolean all) {
+      MetricsRecordBuilder rb = collector
+          .addRecord("TestHistogramMetrics")
+          .setContext("test");
+      for (long bound : new long[] {50, 10, 2}) {
+        rb.addCounter(Interns.info("OpLatencyHistogramBucketLe" + bound,
+            "Number of ops with a latency at or below " + bound), bound);
+      }
+      rb.addCounter(Interns.info("OpLatencyHistogramBucketLeInf",
+          "Number of ops"), 100L);
+      rb.addCounter(Interns.info("OpLatencyHistogramCount",
+          "Number of ops"), 100L);
+      rb.addCounter(Interns.info("OpLatencyHistogramSum",
+          "Total latency of ops"), 5050L);
+    }
+  }
+
   /**
    * Example metric TopMetrics.
    */
@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metrics2.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestLogLinearHistogram {
+
+  static final Quantile[] QUANTILES = {new Quantile(0.50, 0.050),
+      new Quantile(0.75, 0.025), new Quantile(0.90, 0.010),
+      new Quantile(0.95, 0.005), new Quantile(0.99, 0.001)};
+
+  private LogLinearHistogram histogram;
+
+  @BeforeEach
+  public void init() {
+    histogram = new LogLinearHistogram(QUANTILES);
+  }
+
+  /**
+   * Check that every value falls in a bucket whose bounds hold it, and that
+   * the buckets are contiguous.
+   */
+  @Test
+  public void testBuckets() {
+    int last = histogram.getIndex(Long.MAX_VALUE);
+    assertThat(histogram.getIndex(-1)).isZero();
+    assertThat(histogram.getLowestValue(0)).isZero();
+    for (int i = 1; i <= last; i++) {
+      assertThat(histogram.getLowestValue(i))
+          .isEqualTo(histogram.getHighestValue(i - 1) + 1);
+    }
+    Random rnd = new Random(0xDEADBEEF);
+    for (int i = 0; i < 100000; i++) {
+      long value = rnd.nextLong() >>> (24 + rnd.nextInt(40));
+      int index = histogram.getIndex(value);
+      assertThat(histogram.getLowestValue(index)).isLessThanOrEqualTo(value);
+      assertThat(histogram.getHighestValue(index))
+          .isGreaterThanOrEqualTo(value);
+      // the width of a bucket is within the precision of the histogram
+      assertThat(histogram.getHighestValue(index)
+          - histogram.getLowestValue(index))
+          .isLessThanOrEqualTo(Math.max(0, value >> 6));
+    }
+  }
+
+  /**
+   * Check that the quantiles are within the relative error of the histogram.
+   */
+  @Test
+  public void testQuantiles() {
+    assertThat(histogram.getValueAtQuantile(0.99)).isZero();
+    Random rnd = new Random(0xDEADBEEF);
+    long[] values = new long[100000];
+    long sum = 0;
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (long) Math.exp(rnd.nextDouble() * 20);
+      sum += values[i];
+      histogram.insert(values[i]);
+    }
+    Arrays.sort(values);
+    assertThat(histogram.getCount()).isEqualTo(values.length);
+    assertThat(histogram.getSum()).isEqualTo(sum);
+
+    Map<Quantile, Long> snapshot = histogram.snapshot();
+    assertThat(snapshot).hasSize(QUANTILES.length);
+    for (Quantile q : QUANTILES) {
+      long exact = values[(int) Math.ceil(q.quantile * values.length) - 1];
+      assertThat(snapshot.get(q))
+          .isBetween(exact, exact + (exact >> 6));
+    }
+    assertThat(histogram.getValueAtQuantile(1)).isGreaterThanOrEqualTo(
+        values[values.length - 1]);
+    assertThat(histogram.getCountAtOrBelow(100))
+        .isEqualTo(Arrays.stream(values).filter(v -> v <= 100).count());
+
+    histogram.clear();
+    assertThat(histogram.getCount()).isZero();
+    assertThat(histogram.getSum()).isZero();
+  }
+
+  /**
+   * Check that the counts at or below a value are rounded down to the
+   * boundary of the bucket holding the value.
+   */
+  @Test
+  public void testCountAtOrBelow() {
+    // 199 is in the bucket [198, 199], 200 and 201 in [200, 201]
+    histogram.insert(199);
+    histogram.insert(200);
+    histogram.insert(201);
+    assertThat(histogram.getCountAtOrBelow(199)).isEqualTo(1);
+    assertThat(histogram.getCountAtOrBelow(200)).isEqualTo(1);
+    assertThat(histogram.getCountAtOrBelow(201)).isEqualTo(3);
+    assertThat(histogram.getCountAtOrBelow(-1)).isZero();
+    assertThat(histogram.getCountsAtOrBelow(new long[] {100, 200, 1000}))
+        .containsExactly(0, 1, 3);
+  }
+
+  /**
+   * Check that histograms merge, and that draining one loses no value
+   * inserted concurrently.
+   */
+  @Test
+  public void testMergeAndDrain() throws Exception {
+    LogLinearHistogram other = new LogLinearHistogram(QUANTILES);
+    for (long i = 1; i <= 1000; i++) {
+      histogram.insert(i);
+      other.insert(1000 + i);
+    }
+    histogram.add(other);
+    assertThat(histogram.getCount()).isEqualTo(2000);
+    assertThat(histogram.getValueAtQuantile(0.5)).isBetween(1000L, 1015L);
+    assertThatThrownBy(() -> histogram.add(
+        new LogLinearHistogram(QUANTILES, 5, 40, 1)))
+        .isInstanceOf(IllegalArgumentException.class);
+
+    histogram.clear();
+    LogLinearHistogram drained = new LogLinearHistogram(QUANTILES);
+    final int threads = 4;
+    final int inserts = 100000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < inserts; i++) {
+            histogram.insert(i);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        while (!future.isDone()) {
+          histogram.drainTo(drained);
+        }
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    histogram.drainTo(drained);
+    assertThat(histogram.getCount()).isZero();
+    assertThat(drained.getCount()).isEqualTo((long) threads * inserts);
+    assertThat(drained.getSum())
+        .isEqualTo((long) threads * inserts * (inserts - 1) / 2);
+  }
+}
@@ -18,6 +18,7 @@
 package org.apache.hadoop.util;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
@@ -118,6 +119,11 @@ public void testLockLongHoldingReport(TestInfo testInfo) throws Exception {
       public long monotonicNow() {
         return time.get();
       }
+
+      @Override
+      public long monotonicNowNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(time.get());
+      }
     };
     Lock mlock = mock(Lock.class);
 
@@ -186,6 +192,11 @@ public void testLockLongWaitReport(TestInfo testInfo) throws Exception {
       public long monotonicNow() {
         return time.get();
       }
+
+      @Override
+      public long monotonicNowNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(time.get());
+      }
     };
     Lock mlock = new ReentrantLock(true); //mock(Lock.class);
 
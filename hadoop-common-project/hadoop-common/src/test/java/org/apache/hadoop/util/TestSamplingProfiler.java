@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.util;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_INTERVAL_MS_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_LOCK_MIN_WAIT_US_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_SAMPLING_PROFILER_THREADS_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TestSamplingProfiler {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(TestSamplingProfiler.class);
+
+  private Configuration conf;
+  private volatile boolean done;
+
+  @BeforeEach
+  public void setUp() {
+    conf = new Configuration(false);
+    conf.set(HADOOP_SAMPLING_PROFILER_THREADS_KEY, "TestSampled.*");
+    conf.set(HADOOP_SAMPLING_PROFILER_INTERVAL_MS_KEY, "10");
+    conf.set(HADOOP_SAMPLING_PROFILER_LOCK_MIN_WAIT_US_KEY, "0");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    done = true;
+    while (SamplingProfiler.get() != null) {
+      SamplingProfiler.release();
+    }
+  }
+
+  private void spin() {
+    while (!done) {
+      Math.sqrt(System.nanoTime());
+    }
+  }
+
+  @Test
+  public void testThreadKind() {
+    assertEquals("IPC Server handler",
+        SamplingProfiler.getThreadKind("IPC Server handler 3 on default port 8020"));
+    assertEquals("DataXceiver", SamplingProfiler.getThreadKind(
+        "DataXceiver for client DFSClient_1 at /127.0.0.1:1234"));
+    assertEquals("qtp", SamplingProfiler.getThreadKind("qtp1234-56"));
+    assertEquals("thread", SamplingProfiler.getThreadKind("1"));
+  }
+
+  @Test
+  @Timeout(value = 30)
+  public void testSampledStacks() throws Exception {
+    SamplingProfiler profiler = SamplingProfiler.acquire(conf);
+    assertSame(profiler, SamplingProfiler.acquire(conf));
+    Thread spinner = new Thread(this::spin, "TestSampledSpinner-1");
+    Thread other = new Thread(this::spin, "TestOther-1");
+    spinner.start();
+    other.start();
+    try {
+      GenericTestUtils.waitFor(() -> profiler.getRunnableStacks()
+          .contains(TestSamplingProfiler.class.getName() + ".spin"), 10,
+          10000);
+    } finally {
+      done = true;
+      spinner.join();
+      other.join();
+    }
+    String stacks = profiler.getWallClockStacks();
+    LOG.info("Sampled stacks:\n{}", stacks);
+    for (String line : stacks.split("\n")) {
+      assertTrue(line.startsWith("TestSampledSpinner;java.lang.Thread.run;"),
+          line);
+      assertTrue(Long.parseLong(line.substring(line.lastIndexOf(' ') + 1))
+          > 0, line);
+    }
+    assertTrue(profiler.getSampleCount() > 0);
+    assertEquals(300, profiler.getWindowSeconds());
+
+    // the profiler is also an MBean
+    MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name =
+        new ObjectName("Hadoop:service=Hadoop,name=SamplingProfiler");
+    assertTrue(((String) mbs.getAttribute(name, "WallClockStacks"))
+        .contains("TestSampledSpinner"));
+
+    SamplingProfiler.release();
+    assertSame(profiler, SamplingProfiler.get());
+    SamplingProfiler.release();
+    assertNull(SamplingProfiler.get());
+    assertFalse(mbs.isRegistered(name));
+  }
+
+  @Test
+  @Timeout(value = 30)
+  public void testLockContention() throws Exception {
+    SamplingProfiler profiler = SamplingProfiler.acquire(conf);
+    InstrumentedLock lock = new InstrumentedLock("testLock", LOG, 0, 10000);
+    AutoCloseableLock autoLock = new AutoCloseableLock(lock);
+    CountDownLatch locked = new CountDownLatch(1);
+    Thread holder = new Thread(() -> {
+      try (AutoCloseableLock l = autoLock.acquire()) {
+        locked.countDown();
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    holder.start();
+    assertTrue(locked.await(10, TimeUnit.SECONDS));
+    waitForTestLock(autoLock);
+    holder.join();
+
+    String contention = profiler.getLockContention();
+    LOG.info("Lock contention:\n{}", contention);
+    String site = "testLock;" + TestSamplingProfiler.class.getName()
+        + ".waitForTestLock:";
+    assertTrue(contention.startsWith(site), contention);
+    String longest = contention.split("\n")[0];
+    long waitMicros = Long.parseLong(
+        longest.substring(longest.lastIndexOf(' ') + 1).trim());
+    assertTrue(waitMicros >= 1000, contention);
+  }
+
+  /**
+   * Check that the wait for a lock is measured in nanoseconds, and that its
+   * site is only resolved once the lock is released.
+   */
+  @Test
+  @Timeout(value = 30)
+  public void testLockWaitResolvedAfterRelease() throws Exception {
+    SamplingProfiler profiler = SamplingProfiler.acquire(conf);
+    FakeTimer timer = new FakeTimer() {
+      @Override
+      public long monotonicNowNanos() {
+        // every wait for the lock takes 300us
+        advanceNanos(TimeUnit.MICROSECONDS.toNanos(300));
+        return super.monotonicNowNanos();
+      }
+    };
+    InstrumentedLock lock = new InstrumentedLock("testNanosLock", LOG,
+        new ReentrantLock(), 0, 10000, timer);
+    lock.lock();
+    try {
+      assertFalse(profiler.getLockContention().contains("testNanosLock"));
+    } finally {
+      lock.unlock();
+    }
+
+    String contention = profiler.getLockContention();
+    LOG.info("Lock contention:\n{}", contention);
+    assertTrue(contention.startsWith("testNanosLock;"
+        + TestSamplingProfiler.class.getName()
+        + ".testLockWaitResolvedAfterRelease:"), contention);
+    assertTrue(contention.trim().endsWith(" 300"), contention);
+  }
+
+  private void waitForTestLock(AutoCloseableLock autoLock) {
+    try (AutoCloseableLock l = autoLock.acquire()) {
+      LOG.info("Acquired the test lock");
+    }
+  }
+}
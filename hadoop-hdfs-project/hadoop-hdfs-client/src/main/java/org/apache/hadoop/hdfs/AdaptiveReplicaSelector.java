@@ -0,0 +1,353 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.util.Preconditions;
+import org.apache.hadoop.util.Timer;
+
+/**
+ * Tracks the read performance of DataNodes, as observed by all the input
+ * streams sharing a {@link ClientContext}, and uses it to choose the replica
+ * to read from.
+ *
+ * For each DataNode, exponentially weighted moving averages of the time to
+ * set up a block reader, of the transfer time per byte, of the error rate
+ * and of the rate of reads which had to be hedged are kept. The transfer
+ * time is only sampled by positional reads, which read a whole range with
+ * one block reader; stateful reads are paced by the application and would
+ * measure it rather than the DataNode. Replicas are normally read in the order returned by the
+ * NameNode, which sorts them by network distance. A read only moves to
+ * another replica when the expected cost of the first one is more than
+ * {@link #SWITCH_RATIO} times the cost of the alternative, so that short
+ * lived noise does not defeat locality. When the first replica is that much
+ * slower than the typical DataNode and nothing is known about the others,
+ * one of them is probed. Samples older than the expiry interval are
+ * forgotten, so a DataNode which was slow in the past gets another chance.
+ *
+ * When disabled, replicas are used in the NameNode order and nothing is
+ * recorded.
+ */
+@InterfaceAudience.Private
+public class AdaptiveReplicaSelector {
+  /** A replica has to be this much cheaper to be preferred. */
+  static final double SWITCH_RATIO = 2.0;
+  /** Cost multiplier per unit of error rate. */
+  static final double ERROR_PENALTY = 10.0;
+  /** Cost multiplier per unit of rate of reads that had to be hedged. */
+  static final double SLOW_PENALTY = 2.0;
+  /** Transfers smaller than this are not used to estimate throughput. */
+  static final long MIN_THROUGHPUT_SAMPLE_BYTES = 64 * 1024;
+  /** Read size assumed when comparing replicas. */
+  static final long NOMINAL_READ_BYTES = 1024 * 1024;
+  /** How often the typical cost over all DataNodes is recomputed. */
+  private static final long TYPICAL_COST_REFRESH_MS = 1000;
+
+  private final boolean enabled;
+  private final double weight;
+  private final long expiryMs;
+  private final double hedgedReadThresholdMultiplier;
+  private final Timer timer;
+  private final ConcurrentHashMap<String, NodeStats> stats =
+      new ConcurrentHashMap<>();
+
+  private volatile double typicalCost = -1;
+  private volatile long typicalCostTime = Long.MIN_VALUE;
+
+  public AdaptiveReplicaSelector(DfsClientConf conf) {
+    this(conf.isAdaptiveReplicaSelectionEnabled(),
+        conf.getAdaptiveReplicaSelectionEwmaWeight(),
+        conf.getAdaptiveReplicaSelectionStatsExpiryMs(),
+        conf.getAdaptiveReplicaSelectionHedgedReadThresholdMultiplier(),
+        new Timer());
+  }
+
+  @VisibleForTesting
+  AdaptiveReplicaSelector(boolean enabled, double weight, long expiryMs,
+      double hedgedReadThresholdMultiplier, Timer timer) {
+    Preconditions.checkArgument(weight > 0 && weight <= 1,
+        "EWMA weight should be in (0, 1], got " + weight);
+    this.enabled = enabled;
+    this.weight = weight;
+    this.expiryMs = expiryMs;
+    this.hedgedReadThresholdMultiplier = hedgedReadThresholdMultiplier;
+    this.timer = timer;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Record a successful block reader setup.
+   *
+   * @param dn the DataNode.
+   * @param millis the time it took to get a block reader.
+   */
+  void recordConnect(DatanodeInfo dn, long millis) {
+    if (enabled) {
+      getStats(dn).update(millis, -1, false);
+    }
+  }
+
+  /**
+   * Record a successful transfer. Only positional reads are measured.
+   *
+   * @param dn the DataNode.
+   * @param bytes the number of bytes read.
+   * @param millis the time it took to read them.
+   */
+  void recordTransfer(DatanodeInfo dn, long bytes, long millis) {
+    if (enabled && bytes >= MIN_THROUGHPUT_SAMPLE_BYTES) {
+      getStats(dn).update(-1, (double) millis / bytes, false);
+    }
+  }
+
+  /**
+   * Record a failed read.
+   *
+   * @param dn the DataNode.
+   * @param millis the time spent before the read failed.
+   */
+  void recordError(DatanodeInfo dn, long millis) {
+    if (enabled) {
+      getStats(dn).update(millis, -1, true);
+    }
+  }
+
+  /**
+   * Record that a read from the DataNode did not complete in time, so that
+   * a hedged read was started. This is a penalty on the cost of the
+   * DataNode, not a latency sample: the time waited is the threshold
+   * derived from the samples, and feeding it back would skew them. The
+   * actual time of the read is recorded when it completes.
+   *
+   * @param dn the DataNode.
+   */
+  void recordSlow(DatanodeInfo dn) {
+    if (enabled) {
+      getStats(dn).updateSlow();
+    }
+  }
+
+  /**
+   * @return the expected time in milliseconds to read len bytes from the
+   *         DataNode, or -1 if there are no recent samples for it. Unlike
+   *         the cost used to choose replicas, this does not include the
+   *         penalties for errors and slow reads.
+   */
+  double getExpectedReadMillis(DatanodeInfo dn, long len) {
+    NodeStats s = stats.get(dn.getXferAddr());
+    return s == null ? -1 : s.expectedMillis(len, timer.monotonicNow());
+  }
+
+  /**
+   * Choose the replica to read from.
+   *
+   * @param nodes the replicas, in the order returned by the NameNode.
+   * @param isValid whether a replica may be read from.
+   * @return the index of the chosen replica, or -1 if none is valid.
+   */
+  int chooseReplica(DatanodeInfo[] nodes, Predicate<DatanodeInfo> isValid) {
+    int first = -1;
+    if (!enabled) {
+      for (int i = 0; i < nodes.length; i++) {
+        if (isValid.test(nodes[i])) {
+          return i;
+        }
+      }
+      return first;
+    }
+    final long now = timer.monotonicNow();
+    double firstCost = -1;
+    int best = -1;
+    double bestCost = Double.MAX_VALUE;
+    int firstUnknown = -1;
+    for (int i = 0; i < nodes.length; i++) {
+      if (!isValid.test(nodes[i])) {
+        continue;
+      }
+      NodeStats s = stats.get(nodes[i].getXferAddr());
+      double cost = s == null ? -1 : s.cost(NOMINAL_READ_BYTES, now);
+      if (first < 0) {
+        first = i;
+        firstCost = cost;
+      } else if (cost < 0) {
+        if (firstUnknown < 0) {
+          firstUnknown = i;
+        }
+      } else if (cost < bestCost) {
+        best = i;
+        bestCost = cost;
+      }
+    }
+    if (first < 0 || firstCost < 0) {
+      return first;
+    }
+    if (best >= 0 && firstCost > SWITCH_RATIO * bestCost) {
+      return best;
+    }
+    if (firstUnknown >= 0) {
+      double typical = getTypicalCost(now);
+      if (typical >= 0 && firstCost > SWITCH_RATIO * typical) {
+        return firstUnknown;
+      }
+    }
+    return first;
+  }
+
+  /**
+   * @return how long to wait for a read of len bytes from the DataNode
+   *         before starting a hedged read. This is the configured threshold,
+   *         lowered to a multiple of the expected read time of the DataNode
+   *         when it is known.
+   */
+  long getHedgedReadThresholdMillis(DatanodeInfo dn, long len,
+      long configured) {
+    if (!enabled || hedgedReadThresholdMultiplier <= 0) {
+      return configured;
+    }
+    double expected = getExpectedReadMillis(dn, len);
+    if (expected < 0) {
+      return configured;
+    }
+    long adaptive = (long) Math.ceil(hedgedReadThresholdMultiplier * expected);
+    return Math.max(1, Math.min(configured, adaptive));
+  }
+
+  @VisibleForTesting
+  int getNumTrackedNodes() {
+    return stats.size();
+  }
+
+  private NodeStats getStats(DatanodeInfo dn) {
+    String key = dn.getXferAddr();
+    NodeStats s = stats.get(key);
+    if (s == null) {
+      s = stats.computeIfAbsent(key, k -> new NodeStats());
+    }
+    return s;
+  }
+
+  /**
+   * @return the median cost of a read over the DataNodes with recent
+   *         samples, or -1 if there are none. Expired entries are dropped
+   *         as a side effect.
+   */
+  private double getTypicalCost(long now) {
+    long last = typicalCostTime;
+    if (last != Long.MIN_VALUE && now - last < TYPICAL_COST_REFRESH_MS) {
+      return typicalCost;
+    }
+    double[] costs = new double[stats.size()];
+    int n = 0;
+    for (Iterator<NodeStats> it = stats.values().iterator(); it.hasNext();) {
+      double cost = it.next().cost(NOMINAL_READ_BYTES, now);
+      if (cost < 0) {
+        it.remove();
+      } else if (n < costs.length) {
+        costs[n++] = cost;
+      }
+    }
+    double typical = -1;
+    if (n > 0) {
+      Arrays.sort(costs, 0, n);
+      typical = costs[n / 2];
+    }
+    typicalCost = typical;
+    typicalCostTime = now;
+    return typical;
+  }
+
+  private double ewma(double average, double sample) {
+    return average < 0 ? sample : average + weight * (sample - average);
+  }
+
+  /**
+   * The moving averages of a single DataNode.
+   */
+  private final class NodeStats {
+    /** Time to set up a block reader, or -1 if unknown. */
+    private double latencyMs = -1;
+    /** Transfer time per byte, or -1 if unknown. */
+    private double msPerByte = -1;
+    private double errorRate = 0;
+    /** Rate of reads which had to be hedged. */
+    private double slowRate = 0;
+    private long lastUpdate;
+
+    private synchronized void update(double latency, double perByte,
+        boolean error) {
+      long now = expire();
+      if (latency >= 0) {
+        latencyMs = ewma(latencyMs, latency);
+        errorRate = ewma(errorRate, error ? 1 : 0);
+        if (!error) {
+          slowRate = ewma(slowRate, 0);
+        }
+      }
+      if (perByte >= 0) {
+        msPerByte = ewma(msPerByte, perByte);
+      }
+      lastUpdate = now;
+    }
+
+    private synchronized void updateSlow() {
+      long now = expire();
+      slowRate = ewma(slowRate, 1);
+      lastUpdate = now;
+    }
+
+    /** @return the current time, after forgetting expired samples. */
+    private long expire() {
+      long now = timer.monotonicNow();
+      if (now - lastUpdate > expiryMs) {
+        latencyMs = -1;
+        msPerByte = -1;
+        errorRate = 0;
+        slowRate = 0;
+      }
+      return now;
+    }
+
+    private synchronized double expectedMillis(long len, long now) {
+      if (latencyMs < 0 || now - lastUpdate > expiryMs) {
+        return -1;
+      }
+      double transfer = msPerByte < 0 ? 0 : msPerByte * len;
+      return latencyMs + transfer;
+    }
+
+    private synchronized double cost(long len, long now) {
+      double expected = expectedMillis(len, now);
+      if (expected < 0) {
+        return -1;
+      }
+      return expected
+          * (1 + ERROR_PENALTY * errorRate + SLOW_PENALTY * slowRate);
+    }
+  }
+}
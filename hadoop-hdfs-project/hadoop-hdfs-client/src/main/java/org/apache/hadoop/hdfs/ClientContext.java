@@ -115,6 +115,12 @@ public class ClientContext {
   /** Creating byte[] for {@link DFSOutputStream}. */
   private final ByteArrayManager byteArrayManager;
 
+  /**
+   * Chooses replicas based on the read performance of the DataNodes seen by
+   * all the streams of this context.
+   */
+  private final AdaptiveReplicaSelector adaptiveReplicaSelector;
+
   /**
    * Whether or not we complained about a DFSClient fetching a CacheContext that
    * didn't match its config values yet.
@@ -180,6 +186,7 @@ private ClientContext(String name, DfsClientConf conf,
 
     this.byteArrayManager = ByteArrayManager.newInstance(
         conf.getWriteByteArrayManagerConf());
+    this.adaptiveReplicaSelector = new AdaptiveReplicaSelector(conf);
     this.deadNodeDetectionEnabled = conf.isDeadNodeDetectionEnabled();
     this.locatedBlocksRefresherEnabled = conf.isLocatedBlocksRefresherEnabled();
     initTopologyResolution(config);
@@ -292,6 +299,10 @@ public ByteArrayManager getByteArrayManager() {
     return byteArrayManager;
   }
 
+  public AdaptiveReplicaSelector getAdaptiveReplicaSelector() {
+    return adaptiveReplicaSelector;
+  }
+
   public int getNetworkDistance(DatanodeInfo datanodeInfo) throws IOException {
     // If applications disable the feature or the client machine can't
     // resolve its network location, clientNode will be set to null.
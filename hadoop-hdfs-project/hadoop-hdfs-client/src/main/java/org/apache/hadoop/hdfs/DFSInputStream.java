@@ -33,17 +33,21 @@
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.fs.ByteBufferPositionedReadable;
@@ -56,10 +60,12 @@
 import org.apache.hadoop.fs.FSExceptionMessages;
 import org.apache.hadoop.fs.FSInputStream;
 import org.apache.hadoop.fs.FileEncryptionInfo;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.HasEnhancedByteBufferAccess;
 import org.apache.hadoop.fs.ReadOption;
 import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.fs.StreamCapabilities;
+import org.apache.hadoop.fs.impl.CombinedFileRange;
 import org.apache.hadoop.hdfs.DFSUtilClient.CorruptedBlocks;
 import org.apache.hadoop.hdfs.client.impl.BlockReaderFactory;
 import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
@@ -93,6 +99,8 @@
 
 import javax.annotation.Nonnull;
 
+import static org.apache.hadoop.fs.VectoredReadUtils.sliceTo;
+import static org.apache.hadoop.fs.VectoredReadUtils.validateAndSortRanges;
 import static org.apache.hadoop.hdfs.util.IOUtilsClient.updateReadStatistics;
 
 /****************************************************************
@@ -648,11 +656,14 @@ private synchronized DatanodeInfo blockSeekTo(long target)
       // Latest block if refreshed by chooseDatanode()
       targetBlock = retval.block;
 
+      final long connectStart = Time.monotonicNow();
       try {
         DFSClientFaultInjector.get().failCreateBlockReader();
         blockReader = getBlockReader(targetBlock, offsetIntoBlock,
             targetBlock.getBlockSize() - offsetIntoBlock, targetAddr,
             storageType, chosenNode);
+        getReplicaSelector().recordConnect(chosenNode,
+            Time.monotonicNow() - connectStart);
         if(connectFailedOnce) {
           DFSClient.LOG.info("Successfully connected to " + targetAddr +
                              " for " + targetBlock.getBlock());
@@ -675,6 +686,8 @@ private synchronized DatanodeInfo blockSeekTo(long target)
           DFSClient.LOG.warn("Failed to connect to {} for file {} for block {}. Error is {}. "
               + "Add to deadNodes and continue with other datanodes. ", targetAddr, src,
               targetBlock.getBlock(), ex.getMessage());
+          getReplicaSelector().recordError(chosenNode,
+              Time.monotonicNow() - connectStart);
           // Put chosen node into dead list, continue
           addToLocalDeadNodes(chosenNode);
           dfsClient.addNodeToDeadNodeDetector(this, chosenNode);
@@ -1093,15 +1106,14 @@ protected DNAddrPair getBestNodeDNAddrPair(LocatedBlock block,
     }
 
     if (chosenNode == null && nodes != null) {
-      for (int i = 0; i < nodes.length; i++) {
-        if (isValidNode(nodes[i], ignoredNodes)) {
-          chosenNode = nodes[i];
-          // Storage types are ordered to correspond with nodes, so use the same
-          // index to get storage type.
-          if (storageTypes != null && i < storageTypes.length) {
-            storageType = storageTypes[i];
-          }
-          break;
+      int i = getReplicaSelector().chooseReplica(nodes,
+          node -> isValidNode(node, ignoredNodes));
+      if (i >= 0) {
+        chosenNode = nodes[i];
+        // Storage types are ordered to correspond with nodes, so use the same
+        // index to get storage type.
+        if (storageTypes != null && i < storageTypes.length) {
+          storageType = storageTypes[i];
         }
       }
     }
@@ -1129,6 +1141,10 @@ protected void reportLostBlock(LocatedBlock lostBlock,
         ", ignoredNodes = " + ignoredNodes);
   }
 
+  private AdaptiveReplicaSelector getReplicaSelector() {
+    return dfsClient.getClientContext().getAdaptiveReplicaSelector();
+  }
+
   private boolean isValidNode(DatanodeInfo node,
       Collection<DatanodeInfo> ignoredNodes) {
     if (!dfsClient.getDeadNodes(this).containsKey(node)
@@ -1216,12 +1232,16 @@ void actualGetFromOneDataNode(final DNAddrPair datanode, final long startInBlk,
     int refetchEncryptionKey = 1; // only need to get a new encryption key once
     final int len = (int) (endInBlk - startInBlk + 1);
     LocatedBlock block = datanode.block;
+    final AdaptiveReplicaSelector replicaSelector = getReplicaSelector();
     while (true) {
       BlockReader reader = null;
+      final long connectStart = Time.monotonicNow();
       try {
         DFSClientFaultInjector.get().fetchFromDatanodeException();
         reader = getBlockReader(block, startInBlk, len, datanode.addr,
             datanode.storageType, datanode.info);
+        replicaSelector.recordConnect(datanode.info,
+            Time.monotonicNow() - connectStart);
 
         //Behave exactly as the readAll() call
         ByteBuffer tmp = buf.duplicate();
@@ -1239,6 +1259,7 @@ void actualGetFromOneDataNode(final DNAddrPair datanode, final long startInBlk,
         }
         long readTimeMS = Time.monotonicNow() - beginReadMS;
         buf.position(buf.position() + nread);
+        replicaSelector.recordTransfer(datanode.info, nread, readTimeMS);
 
         IOUtilsClient.updateReadStatistics(readStatistics, nread, reader);
         dfsClient.updateFileSystemReadStats(
@@ -1256,6 +1277,8 @@ void actualGetFromOneDataNode(final DNAddrPair datanode, final long startInBlk,
         DFSClient.LOG.warn(msg);
         // we want to remember what we have tried
         corruptedBlocks.addCorruptedBlock(block.getBlock(), datanode.info);
+        replicaSelector.recordError(datanode.info,
+            Time.monotonicNow() - connectStart);
         addToLocalDeadNodes(datanode.info);
         throw new IOException(msg);
       } catch (IOException e) {
@@ -1285,6 +1308,8 @@ void actualGetFromOneDataNode(final DNAddrPair datanode, final long startInBlk,
             exceptionMap.put(datanode.addr, new LinkedList<IOException>());
           }
           exceptionMap.get(datanode.addr).add(e);
+          replicaSelector.recordError(datanode.info,
+              Time.monotonicNow() - connectStart);
           addToLocalDeadNodes(datanode.info);
           dfsClient.addNodeToDeadNodeDetector(this, datanode.info);
           throw new IOException(msg);
@@ -1344,9 +1369,10 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start, long end,
             .submit(getFromDataNodeCallable);
         futures.add(firstRequest);
         Future<ByteBuffer> future = null;
+        long thresholdMillis = getReplicaSelector().getHedgedReadThresholdMillis(
+            chosenNode.info, len, conf.getHedgedReadThresholdMillis());
         try {
-          future = hedgedService.poll(
-              conf.getHedgedReadThresholdMillis(), TimeUnit.MILLISECONDS);
+          future = hedgedService.poll(thresholdMillis, TimeUnit.MILLISECONDS);
           if (future != null) {
             ByteBuffer result = future.get();
             result.flip();
@@ -1354,7 +1380,8 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start, long end,
             return;
           }
           DFSClient.LOG.debug("Waited {}ms to read from {}; spawning hedged "
-              + "read", conf.getHedgedReadThresholdMillis(), chosenNode.info);
+              + "read", thresholdMillis, chosenNode.info);
+          getReplicaSelector().recordSlow(chosenNode.info);
           dfsClient.getHedgedReadMetrics().incHedgedReadOps();
           // continue; no need to refresh block locations
         } catch (ExecutionException e) {
@@ -1777,6 +1804,95 @@ public void readFully(long position, final ByteBuffer buf)
     }
   }
 
+  @Override
+  public int minSeekForVectorReads() {
+    return dfsClient.getConf().getVectoredReadMinSeekSize();
+  }
+
+  @Override
+  public int maxReadSizeForVectorReads() {
+    return dfsClient.getConf().getVectoredReadMaxMergedSize();
+  }
+
+  /**
+   * Read a list of file ranges.
+   *
+   * Close ranges within the same block are merged, so that each merged range
+   * is served by a single block reader from a single DataNode. The merged
+   * ranges are read in parallel on the vectored read thread pool, whatever
+   * the hedged read settings, and in the calling thread if the pool is
+   * disabled or saturated. The futures of the ranges are completed as soon as
+   * the merged range containing them has been read.
+   */
+  @Override
+  public void readVectored(List<? extends FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws IOException {
+    dfsClient.checkOpen();
+    if (closed.get()) {
+      throw new IOException("Stream closed");
+    }
+    List<? extends FileRange> sortedRanges = validateAndSortRanges(ranges,
+        Optional.of(getFileLength()));
+    for (FileRange range : sortedRanges) {
+      range.setData(new CompletableFuture<>());
+    }
+    final ThreadPoolExecutor pool = dfsClient.getVectoredReadsThreadPool();
+    for (CombinedFileRange combined : mergeRangesByBlock(sortedRanges)) {
+      if (pool != null) {
+        pool.execute(() -> readCombinedRange(combined, allocate));
+      } else {
+        readCombinedRange(combined, allocate);
+      }
+    }
+  }
+
+  /**
+   * Merge sorted ranges which are within the same block and close enough to
+   * each other.
+   */
+  private List<CombinedFileRange> mergeRangesByBlock(
+      List<? extends FileRange> sortedRanges) throws IOException {
+    final int minSeek = minSeekForVectorReads();
+    final int maxSize = maxReadSizeForVectorReads();
+    List<CombinedFileRange> result = new ArrayList<>(sortedRanges.size());
+    CombinedFileRange current = null;
+    long currentBlockEnd = -1;
+    for (FileRange range : sortedRanges) {
+      long start = range.getOffset();
+      long end = start + range.getLength();
+      if (current == null || start >= currentBlockEnd ||
+          !current.merge(start, end, range, minSeek, maxSize)) {
+        current = new CombinedFileRange(start, end, range);
+        result.add(current);
+        if (range.getLength() > 0) {
+          LocatedBlock blk = getBlockAt(start);
+          currentBlockEnd = blk.getStartOffset() + blk.getBlockSize();
+        } else {
+          currentBlockEnd = -1;
+        }
+      }
+    }
+    return result;
+  }
+
+  private void readCombinedRange(CombinedFileRange combined,
+      IntFunction<ByteBuffer> allocate) {
+    try {
+      ByteBuffer buffer = allocate.apply(combined.getLength());
+      readFully(combined.getOffset(), buffer);
+      buffer.flip();
+      for (FileRange range : combined.getUnderlying()) {
+        range.getData().complete(
+            sliceTo(buffer, combined.getOffset(), range));
+      }
+    } catch (Throwable t) {
+      DFSClient.LOG.debug("Failed to read {} of {}", combined, src, t);
+      for (FileRange range : combined.getUnderlying()) {
+        range.getData().completeExceptionally(t);
+      }
+    }
+  }
+
   /** Utility class to encapsulate data node info and its address. */
   static final class DNAddrPair {
     final DatanodeInfo info;
@@ -1997,6 +2113,7 @@ public boolean hasCapability(String capability) {
     case StreamCapabilities.UNBUFFER:
     case StreamCapabilities.READBYTEBUFFER:
     case StreamCapabilities.PREADBYTEBUFFER:
+    case StreamCapabilities.VECTOREDIO:
       return true;
     default:
       return false;
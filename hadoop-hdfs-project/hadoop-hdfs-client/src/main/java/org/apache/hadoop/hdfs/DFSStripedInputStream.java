@@ -22,6 +22,9 @@
 import org.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.fs.ReadOption;
+import org.apache.hadoop.fs.statistics.IOStatistics;
+import org.apache.hadoop.fs.statistics.IOStatisticsSource;
+import org.apache.hadoop.fs.statistics.impl.IOStatisticsStore;
 import org.apache.hadoop.hdfs.protocol.BlockType;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
@@ -56,13 +59,19 @@
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadPoolExecutor;
 
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_EC_DECODE;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_EC_SPECULATIVE_READS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_EC_STRIPES;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_EC_STRIPE_CACHE_HITS;
+import static org.apache.hadoop.fs.statistics.impl.IOStatisticsBinding.iostatisticsStore;
 import static org.apache.hadoop.hdfs.util.IOUtilsClient.updateReadStatistics;
 
 /**
  * DFSStripedInputStream reads from striped block groups.
  */
 @InterfaceAudience.Private
-public class DFSStripedInputStream extends DFSInputStream {
+public class DFSStripedInputStream extends DFSInputStream
+    implements IOStatisticsSource {
 
   private static final ByteBufferPool BUFFER_POOL = new ElasticByteBufferPool();
   private final BlockReaderInfo[] blockReaders;
@@ -70,8 +79,14 @@ public class DFSStripedInputStream extends DFSInputStream {
   private final short dataBlkNum;
   private final short parityBlkNum;
   private final int groupSize;
-  /** the buffer for a complete stripe. */
+  /** Number of stripes read at once by the stateful read. */
+  private final int readAheadStripes;
+  /** Time to wait for a data cell before reading a parity cell instead. */
+  private final long speculativeThresholdMillis;
+  /** the buffer for the complete stripes read ahead. */
   private ByteBuffer curStripeBuf;
+  /** The offset in the block group of the start of {@link #curStripeBuf}. */
+  private long curStripeBufStart;
   @VisibleForTesting
   protected ByteBuffer parityBuf;
   private final ErasureCodingPolicy ecPolicy;
@@ -94,6 +109,14 @@ public class DFSStripedInputStream extends DFSInputStream {
   private final Set<String> warnedNodes =
       Collections.newSetFromMap(new ConcurrentHashMap<>());
 
+  private final IOStatisticsStore ioStatistics = iostatisticsStore()
+      .withCounters(
+          STREAM_READ_EC_STRIPES,
+          STREAM_READ_EC_SPECULATIVE_READS,
+          STREAM_READ_EC_STRIPE_CACHE_HITS)
+      .withDurationTracking(STREAM_READ_EC_DECODE)
+      .build();
+
   DFSStripedInputStream(DFSClient dfsClient, String src,
       boolean verifyChecksum, ErasureCodingPolicy ecPolicy,
       LocatedBlocks locatedBlocks) throws IOException {
@@ -108,6 +131,9 @@ public class DFSStripedInputStream extends DFSInputStream {
     groupSize = dataBlkNum + parityBlkNum;
     blockReaders = new BlockReaderInfo[groupSize];
     curStripeRange = new StripeRange(0, 0);
+    readAheadStripes = dfsClient.getConf().getStripedReadAheadStripes();
+    speculativeThresholdMillis =
+        dfsClient.getConf().getStripedReadSpeculativeThresholdMillis();
     ErasureCoderOptions coderOptions = new ErasureCoderOptions(
         dataBlkNum, parityBlkNum);
     decoder = CodecUtil.createRawDecoder(dfsClient.getConfiguration(),
@@ -122,7 +148,7 @@ private boolean useDirectBuffer() {
   private void resetCurStripeBuffer(boolean shouldAllocateBuf) {
     if (shouldAllocateBuf && curStripeBuf == null) {
       curStripeBuf = BUFFER_POOL.getBuffer(useDirectBuffer(),
-          cellSize * dataBlkNum);
+          cellSize * dataBlkNum * readAheadStripes);
     }
     if (curStripeBuf != null) {
       curStripeBuf.clear();
@@ -150,6 +176,25 @@ protected ByteBufferPool getBufferPool() {
   protected ThreadPoolExecutor getStripedReadsThreadPool(){
     return dfsClient.getStripedReadsThreadPool();
   }
+
+  long getSpeculativeThresholdMillis() {
+    return speculativeThresholdMillis;
+  }
+
+  void addDecodingTime(long millis) {
+    ioStatistics.incrementCounter(STREAM_READ_EC_DECODE);
+    ioStatistics.addTimedOperation(STREAM_READ_EC_DECODE, millis);
+  }
+
+  void incrSpeculativeReads() {
+    ioStatistics.incrementCounter(STREAM_READ_EC_SPECULATIVE_READS);
+  }
+
+  @Override
+  public IOStatistics getIOStatistics() {
+    return ioStatistics;
+  }
+
   /**
    * When seeking into a new block group, create blockReader for each internal
    * block in the group.
@@ -291,8 +336,9 @@ boolean createBlockReader(LocatedBlock block, long offsetInBlock,
   }
 
   /**
-   * Read a new stripe covering the current position, and store the data in the
-   * {@link #curStripeBuf}.
+   * Read a new stripe covering the current position, and the next
+   * {@link #readAheadStripes} - 1 stripes of the block group, and store the
+   * data in the {@link #curStripeBuf}.
    */
   private void readOneStripe(CorruptedBlocks corruptedBlocks)
       throws IOException {
@@ -304,26 +350,47 @@ private void readOneStripe(CorruptedBlocks corruptedBlocks)
     final int stripeIndex = (int) (offsetInBlockGroup / stripeLen);
     final int stripeBufOffset = (int) (offsetInBlockGroup % stripeLen);
     final int stripeLimit = (int) Math.min(currentLocatedBlock.getBlockSize()
-        - (stripeIndex * stripeLen), stripeLen);
+        - (stripeIndex * stripeLen), stripeLen * readAheadStripes);
     StripeRange stripeRange =
         new StripeRange(offsetInBlockGroup, stripeLimit - stripeBufOffset);
 
     LocatedStripedBlock blockGroup = (LocatedStripedBlock) currentLocatedBlock;
-    AlignedStripe[] stripes = StripedBlockUtil.divideOneStripe(ecPolicy,
-        cellSize, blockGroup, offsetInBlockGroup,
-        offsetInBlockGroup + stripeRange.getLength() - 1, curStripeBuf);
     final LocatedBlock[] blks = StripedBlockUtil.parseStripedBlockGroup(
         blockGroup, cellSize, dataBlkNum, parityBlkNum);
-    // read the whole stripe
-    for (AlignedStripe stripe : stripes) {
-      // Parse group to get chosen DN location
-      StripeReader sreader = new StatefulStripeReader(stripe, ecPolicy, blks,
-          blockReaders, corruptedBlocks, decoder, this);
-      sreader.readStripe();
+    if (stripeLimit <= stripeLen) {
+      AlignedStripe[] stripes = StripedBlockUtil.divideOneStripe(ecPolicy,
+          cellSize, blockGroup, offsetInBlockGroup,
+          offsetInBlockGroup + stripeRange.getLength() - 1, curStripeBuf);
+      // read the whole stripe
+      for (AlignedStripe stripe : stripes) {
+        // Parse group to get chosen DN location
+        StripeReader sreader = new StatefulStripeReader(stripe, ecPolicy, blks,
+            blockReaders, corruptedBlocks, decoder, this);
+        sreader.readStripe();
+      }
+    } else {
+      // read the stripes ahead with one request per internal block, like a
+      // pread of the range but with the block readers of the stream
+      curStripeBuf.position(stripeBufOffset);
+      AlignedStripe[] stripes = StripedBlockUtil.divideByteRangeIntoStripes(
+          ecPolicy, cellSize, blockGroup, offsetInBlockGroup,
+          offsetInBlockGroup + stripeRange.getLength() - 1, curStripeBuf);
+      for (AlignedStripe stripe : stripes) {
+        StripeReader sreader = new PositionStripeReader(stripe, ecPolicy,
+            blks, blockReaders, corruptedBlocks, decoder, this);
+        try {
+          sreader.readStripe();
+        } finally {
+          sreader.close();
+        }
+      }
     }
     curStripeBuf.position(stripeBufOffset);
     curStripeBuf.limit(stripeLimit);
+    curStripeBufStart = stripeIndex * stripeLen;
     curStripeRange = stripeRange;
+    ioStatistics.incrementCounter(STREAM_READ_EC_STRIPES,
+        (stripeLimit + stripeLen - 1) / stripeLen);
   }
 
   /**
@@ -368,6 +435,7 @@ public synchronized void seek(long targetPos) throws IOException {
         int bufOffset = getStripedBufOffset(targetOffsetInBlk);
         curStripeBuf.position(bufOffset);
         pos = targetPos;
+        ioStatistics.incrementCounter(STREAM_READ_EC_STRIPE_CACHE_HITS);
         return;
       }
     }
@@ -376,9 +444,8 @@ public synchronized void seek(long targetPos) throws IOException {
   }
 
   private int getStripedBufOffset(long offsetInBlockGroup) {
-    final long stripeLen = cellSize * dataBlkNum;
     // compute the position in the curStripeBuf based on "pos"
-    return (int) (offsetInBlockGroup % stripeLen);
+    return (int) (offsetInBlockGroup - curStripeBufStart);
   }
 
   @Override
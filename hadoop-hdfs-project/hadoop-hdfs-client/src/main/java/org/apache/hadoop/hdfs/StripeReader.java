@@ -90,6 +90,13 @@ static class BlockReaderInfo {
      * using it for the next stripe.
      */
     boolean shouldSkip = false;
+    /** Whether a read task is using the reader. */
+    private boolean reading = false;
+    /**
+     * Whether the reader was given up on while a read task might still be
+     * using it. The reader is then closed by whoever uses it last.
+     */
+    private boolean abandoned = false;
 
     BlockReaderInfo(BlockReader reader, DatanodeInfo dn, long offset) {
       this.reader = reader;
@@ -104,6 +111,49 @@ void setOffset(long offset) {
     void skip() {
       this.shouldSkip = true;
     }
+
+    /**
+     * Called by a read task before using the reader.
+     * @return false if the reader was abandoned and must not be used.
+     */
+    synchronized boolean startRead() {
+      if (abandoned) {
+        return false;
+      }
+      reading = true;
+      return true;
+    }
+
+    /**
+     * Called by a read task when done with the reader.
+     */
+    synchronized void endRead() {
+      reading = false;
+      if (abandoned) {
+        closeReader();
+      }
+    }
+
+    /**
+     * Give up on the reader. It is closed now if no read task is using it,
+     * or by the read task when it is done otherwise.
+     */
+    synchronized void abandon() {
+      abandoned = true;
+      skip();
+      if (!reading) {
+        closeReader();
+      }
+    }
+
+    private void closeReader() {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (Throwable ignored) {
+        }
+      }
+    }
   }
 
   private final Map<Future<BlockReadStats>, Integer> futures =
@@ -120,6 +170,12 @@ void skip() {
   protected final RawErasureDecoder decoder;
   protected final DFSStripedInputStream dfsStripedInputStream;
   private long readTo = -1;
+  /**
+   * When the slow data cells are read speculatively, the cells are read into
+   * these buffers and copied to the chunks once read, so that a read which
+   * was given up on does not write into the chunks later.
+   */
+  private final ByteBuffer[] speculativeBuffers;
 
   protected ECChunk[] decodeInputs;
 
@@ -141,6 +197,12 @@ void skip() {
 
     service = new ExecutorCompletionService<>(
             dfsStripedInputStream.getStripedReadsThreadPool());
+    speculativeBuffers = isSpeculative() ?
+        new ByteBuffer[dataBlkNum + parityBlkNum] : null;
+  }
+
+  private boolean isSpeculative() {
+    return dfsStripedInputStream.getSpeculativeThresholdMillis() > 0;
   }
 
   /**
@@ -270,10 +332,12 @@ private int readToBuffer(BlockReader blockReader,
     }
   }
 
-  private Callable<BlockReadStats> readCells(final BlockReader reader,
-      final DatanodeInfo datanode, final long currentReaderOffset,
+  private Callable<BlockReadStats> readCells(final BlockReaderInfo readerInfo,
+      final long currentReaderOffset,
       final long targetReaderOffset, final ByteBufferStrategy[] strategies,
       final ExtendedBlock currentBlock) {
+    final BlockReader reader = readerInfo.reader;
+    final DatanodeInfo datanode = readerInfo.datanode;
     return () -> {
       // reader can be null if getBlockReaderWithRetry failed or
       // the reader hit exception before
@@ -281,20 +345,29 @@ private Callable<BlockReadStats> readCells(final BlockReader reader,
         throw new IOException("The BlockReader is null. " +
             "The BlockReader creation failed or the reader hit exception.");
       }
-      Preconditions.checkState(currentReaderOffset <= targetReaderOffset);
-      if (currentReaderOffset < targetReaderOffset) {
-        long skipped = reader.skip(targetReaderOffset - currentReaderOffset);
-        Preconditions.checkState(
-            skipped == targetReaderOffset - currentReaderOffset);
+      if (!readerInfo.startRead()) {
+        throw new IOException("The BlockReader was abandoned.");
       }
+      try {
+        DFSClientFaultInjector.get().delayStripedChunkRead(datanode);
+        Preconditions.checkState(currentReaderOffset <= targetReaderOffset);
+        if (currentReaderOffset < targetReaderOffset) {
+          long skipped = reader.skip(targetReaderOffset - currentReaderOffset);
+          Preconditions.checkState(
+              skipped == targetReaderOffset - currentReaderOffset);
+        }
 
-      int ret = 0;
-      for (ByteBufferStrategy strategy : strategies) {
-        int bytesReead = readToBuffer(reader, datanode, strategy, currentBlock);
-        ret += bytesReead;
+        int ret = 0;
+        for (ByteBufferStrategy strategy : strategies) {
+          int bytesReead =
+              readToBuffer(reader, datanode, strategy, currentBlock);
+          ret += bytesReead;
+        }
+        return new BlockReadStats(ret, reader.isShortCircuit(),
+            reader.getNetworkDistance());
+      } finally {
+        readerInfo.endRead();
       }
-      return new BlockReadStats(ret, reader.isShortCircuit(),
-          reader.getNetworkDistance());
     };
   }
 
@@ -319,11 +392,22 @@ boolean readChunk(final LocatedBlock block, int chunkIndex)
     }
 
     chunk.state = StripingChunk.PENDING;
+    ByteBufferStrategy[] strategies;
+    if (speculativeBuffers != null) {
+      ByteBuffer buffer = dfsStripedInputStream.getBufferPool().getBuffer(
+          useDirectBuffer(), getChunkLength(chunk));
+      buffer.limit(getChunkLength(chunk));
+      speculativeBuffers[chunkIndex] = buffer;
+      strategies = new ByteBufferStrategy[]{new ByteBufferStrategy(buffer,
+          dfsStripedInputStream.getReadStatistics(),
+          dfsStripedInputStream.getDFSClient())};
+    } else {
+      strategies = getReadStrategies(chunk);
+    }
     Callable<BlockReadStats> readCallable =
-        readCells(readerInfos[chunkIndex].reader,
-        readerInfos[chunkIndex].datanode,
+        readCells(readerInfos[chunkIndex],
         readerInfos[chunkIndex].blockReaderOffset,
-        alignedStripe.getOffsetInBlock(), getReadStrategies(chunk),
+        alignedStripe.getOffsetInBlock(), strategies,
         block.getBlock());
 
     Future<BlockReadStats> request = service.submit(readCallable);
@@ -331,6 +415,89 @@ boolean readChunk(final LocatedBlock block, int chunkIndex)
     return true;
   }
 
+  private static int getChunkLength(StripingChunk chunk) {
+    if (chunk.useByteBuffer()) {
+      return chunk.getByteBuffer().remaining();
+    }
+    int length = 0;
+    for (ByteBuffer slice : chunk.getChunkBuffer().getSlices()) {
+      length += slice.remaining();
+    }
+    return length;
+  }
+
+  /**
+   * Copy a cell read speculatively into its chunk, or drop it if the read
+   * failed.
+   */
+  private void releaseSpeculativeBuffer(int index, boolean fetched) {
+    if (speculativeBuffers == null || speculativeBuffers[index] == null) {
+      return;
+    }
+    ByteBuffer buffer = speculativeBuffers[index];
+    speculativeBuffers[index] = null;
+    if (fetched) {
+      buffer.flip();
+      StripingChunk chunk = alignedStripe.chunks[index];
+      if (chunk.useByteBuffer()) {
+        chunk.getByteBuffer().put(buffer);
+      } else {
+        chunk.getChunkBuffer().copyFrom(buffer);
+      }
+    }
+    dfsStripedInputStream.getBufferPool().putBuffer(buffer);
+  }
+
+  private boolean hasPendingDataChunk() {
+    for (int i = 0; i < dataBlkNum; i++) {
+      if (alignedStripe.chunks[i] != null &&
+          alignedStripe.chunks[i].state == StripingChunk.PENDING) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A data cell is slow to read: read one more parity cell so that it can be
+   * decoded instead.
+   */
+  private void readParityForSlowChunk() throws IOException {
+    if (!hasPendingDataChunk()) {
+      return;
+    }
+    readDataForDecoding();
+    int pending = futures.size();
+    readParityChunks(1);
+    if (futures.size() > pending) {
+      dfsStripedInputStream.incrSpeculativeReads();
+    }
+  }
+
+  /**
+   * Give up on the reads still pending once enough cells were read. The data
+   * cells among them are decoded, and their readers are closed once the
+   * reads are done.
+   */
+  private void abandonPendingReads() {
+    for (int index : futures.values()) {
+      if (index < dataBlkNum) {
+        alignedStripe.chunks[index].state = StripingChunk.MISSING;
+        alignedStripe.missingChunksNum++;
+      } else if (decodeInputs != null) {
+        decodeInputs[index] = null;
+      }
+      if (speculativeBuffers != null) {
+        // the read may still write into it
+        speculativeBuffers[index] = null;
+      }
+      if (readerInfos[index] != null) {
+        readerInfos[index].abandon();
+        readerInfos[index] = null;
+      }
+    }
+  }
+
   /**
    * read the whole stripe. do decoding if necessary
    */
@@ -364,8 +531,13 @@ void readStripe() throws IOException {
       try {
         long beginReadMS = Time.monotonicNow();
         StripingChunkReadResult r = StripedBlockUtil
-            .getNextCompletedStripedRead(service, futures, 0);
+            .getNextCompletedStripedRead(service, futures,
+                dfsStripedInputStream.getSpeculativeThresholdMillis());
         long readTimeMS = Time.monotonicNow() - beginReadMS;
+        if (r.state == StripingChunkReadResult.TIMEOUT) {
+          readParityForSlowChunk();
+          continue;
+        }
 
         dfsStripedInputStream.updateReadStats(r.getReadStats(), readTimeMS);
         DFSClient.LOG.debug("Read task returned: {}, for stripe {}",
@@ -374,11 +546,14 @@ void readStripe() throws IOException {
         Preconditions.checkNotNull(returnedChunk);
         Preconditions.checkState(returnedChunk.state == StripingChunk.PENDING);
 
+        releaseSpeculativeBuffer(r.index,
+            r.state == StripingChunkReadResult.SUCCESSFUL);
         if (r.state == StripingChunkReadResult.SUCCESSFUL) {
           returnedChunk.state = StripingChunk.FETCHED;
           alignedStripe.fetchedChunksNum++;
           updateState4SuccessRead(r);
           if (alignedStripe.fetchedChunksNum == dataBlkNum) {
+            abandonPendingReads();
             clearFutures();
             break;
           }
@@ -465,6 +640,7 @@ void decodeAndFillBuffer(boolean fillBuffer) throws IOException {
     // decoded data.
     dfsStripedInputStream.readStatistics.addErasureCodingDecodingTime(
         end - start);
+    dfsStripedInputStream.addDecodingTime(end - start);
   }
 
   /**
@@ -468,6 +468,13 @@ interface Read {
     String URI_CACHE_KEY = PREFIX + "uri.cache.enabled";
     boolean URI_CACHE_DEFAULT = false;
 
+    String  VECTORED_MIN_SEEK_SIZE_KEY = PREFIX + "vectored.min.seek.size";
+    int     VECTORED_MIN_SEEK_SIZE_DEFAULT = 128 * 1024;
+    String  VECTORED_MAX_MERGED_SIZE_KEY = PREFIX + "vectored.max.merged.size";
+    int     VECTORED_MAX_MERGED_SIZE_DEFAULT = 4 * 1024 * 1024;
+    String  VECTORED_THREADPOOL_SIZE_KEY = PREFIX + "vectored.threadpool.size";
+    int     VECTORED_THREADPOOL_SIZE_DEFAULT = 16;
+
     interface ShortCircuit {
       String PREFIX = Read.PREFIX + "shortcircuit.";
 
@@ -475,6 +482,8 @@ interface ShortCircuit {
       boolean DEFAULT = false;
       String  SKIP_CHECKSUM_KEY = PREFIX + "skip.checksum";
       boolean SKIP_CHECKSUM_DEFAULT = false;
+      String  TRUST_VERIFIED_CHECKSUM_KEY = PREFIX + "trust.verified.checksum";
+      boolean TRUST_VERIFIED_CHECKSUM_DEFAULT = false;
       String  BUFFER_SIZE_KEY = PREFIX + "buffer.size";
       int     BUFFER_SIZE_DEFAULT = 1024 * 1024;
 
@@ -522,6 +531,21 @@ interface HedgedRead {
     int     THREADPOOL_SIZE_DEFAULT = 0;
   }
 
+  /** dfs.client.read.adaptive.replica.selection configuration properties */
+  interface AdaptiveReplicaSelection {
+    String PREFIX = Read.PREFIX + "adaptive.replica.selection.";
+
+    String  ENABLED_KEY = PREFIX + "enabled";
+    boolean ENABLED_DEFAULT = false;
+    String  EWMA_WEIGHT_KEY = PREFIX + "ewma.weight";
+    float   EWMA_WEIGHT_DEFAULT = 0.3f;
+    String  STATS_EXPIRY_MS_KEY = PREFIX + "stats.expiry.ms";
+    long    STATS_EXPIRY_MS_DEFAULT = MINUTE;
+    String  HEDGED_READ_THRESHOLD_MULTIPLIER_KEY =
+        PREFIX + "hedged.read.threshold.multiplier";
+    float   HEDGED_READ_THRESHOLD_MULTIPLIER_DEFAULT = 3.0f;
+  }
+
   /** dfs.client.read.striped configuration properties */
   interface StripedRead {
     String PREFIX = Read.PREFIX + "striped.";
@@ -532,6 +556,20 @@ interface StripedRead {
      * span 6 DNs, so this default value accommodates 3 read streams
      */
     int     THREADPOOL_SIZE_DEFAULT = 18;
+    /**
+     * Number of stripes read at once by the stateful read of a striped file.
+     * Each internal block is then read with one request covering a cell of
+     * every stripe, and the stripes are kept in a buffer for the next reads.
+     */
+    String  READAHEAD_STRIPES_KEY = PREFIX + "readahead.stripes";
+    int     READAHEAD_STRIPES_DEFAULT = 1;
+    /**
+     * If a data cell has not been read after this time, an extra parity cell
+     * is read so that the data cell can be decoded instead. 0 disables it.
+     */
+    String  SPECULATIVE_THRESHOLD_MILLIS_KEY =
+        PREFIX + "speculative.threshold.millis";
+    long    SPECULATIVE_THRESHOLD_MILLIS_DEFAULT = 0;
   }
 
   /** dfs.http.client configuration properties */
@@ -169,6 +169,17 @@ public BlockReaderLocal build() {
    */
   private final boolean verifyChecksum;
 
+  /**
+   * If true, we skip checksums for replicas whose checksums have already been
+   * verified in full, and record it when we verify them in full ourselves.
+   */
+  private final boolean trustVerifiedChecksum;
+
+  /**
+   * The end of the prefix of the block whose checksums we have verified.
+   */
+  private long verifiedEnd = 0;
+
   /**
    * Name of the block, for logging purposes.
    */
@@ -243,8 +254,11 @@ private BlockReaderLocal(Builder builder) {
     this.checksumIn = replica.getMetaStream().getChannel();
     BlockMetadataHeader header = builder.replica.getMetaHeader();
     this.checksum = header.getChecksum();
+    this.trustVerifiedChecksum =
+        builder.shortCircuitConf.isTrustVerifiedShortCircuitChecksums();
     this.verifyChecksum = builder.verifyChecksum &&
-        (this.checksum.getChecksumType().id != DataChecksum.CHECKSUM_NULL);
+        (this.checksum.getChecksumType().id != DataChecksum.CHECKSUM_NULL) &&
+        !(trustVerifiedChecksum && replica.isChecksumVerified());
     this.filename = builder.filename;
     this.block = builder.block;
     this.bytesPerChecksum = checksum.getBytesPerChecksum();
@@ -384,6 +398,12 @@ private synchronized int fillBuffer(ByteBuffer buf, boolean canSkipChecksum)
         checksumBuf.flip();
 
         checksum.verifyChunkedSums(buf, checksumBuf, filename, startDataPos);
+        if (trustVerifiedChecksum && startDataPos <= verifiedEnd) {
+          verifiedEnd = Math.max(verifiedEnd, startDataPos + total);
+          if (verifiedEnd >= dataIn.size()) {
+            replica.markChecksumVerified(verifiedEnd);
+          }
+        }
       } finally {
         buf.position(buf.limit());
       }
@@ -676,7 +696,8 @@ public boolean isShortCircuit() {
   @Override
   public ClientMmap getClientMmap(EnumSet<ReadOption> opts) {
     boolean anchor = verifyChecksum &&
-        !opts.contains(ReadOption.SKIP_CHECKSUMS);
+        !opts.contains(ReadOption.SKIP_CHECKSUMS) &&
+        !(trustVerifiedChecksum && replica.isChecksumVerified());
     if (anchor) {
       if (!createNoChecksumContext()) {
         LOG.trace("can't get an mmap for {} of {} since SKIP_CHECKSUMS was not "
@@ -724,6 +745,11 @@ void forceUnanchorable() {
     replica.getSlot().makeUnanchorable();
   }
 
+  @VisibleForTesting
+  ShortCircuitReplica getReplica() {
+    return replica;
+  }
+
   @Override
   public DataChecksum getDataChecksum() {
     return checksum;
@@ -93,6 +93,7 @@
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_SHORT_CIRCUIT_SHARED_MEMORY_WATCHER_INTERRUPT_CHECK_MS;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_SHORT_CIRCUIT_SHARED_MEMORY_WATCHER_INTERRUPT_CHECK_MS_DEFAULT;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.Failover;
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.AdaptiveReplicaSelection;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.HedgedRead;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.Mmap;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.Read;
@@ -155,10 +156,20 @@ public class DfsClientConf {
 
   private final long hedgedReadThresholdMillis;
   private final int hedgedReadThreadpoolSize;
+  private final boolean adaptiveReplicaSelectionEnabled;
+  private final float adaptiveReplicaSelectionEwmaWeight;
+  private final long adaptiveReplicaSelectionStatsExpiryMs;
+  private final float adaptiveReplicaSelectionHedgedReadThresholdMultiplier;
   private final List<Class<? extends ReplicaAccessorBuilder>>
       replicaAccessorBuilderClasses;
 
   private final int stripedReadThreadpoolSize;
+  private final int stripedReadAheadStripes;
+  private final long stripedReadSpeculativeThresholdMillis;
+
+  private final int vectoredReadMinSeekSize;
+  private final int vectoredReadMaxMergedSize;
+  private final int vectoredReadThreadpoolSize;
 
   private final boolean dataTransferTcpNoDelay;
 
@@ -286,6 +297,23 @@ public DfsClientConf(Configuration conf) {
         HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY,
         HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_DEFAULT);
 
+    adaptiveReplicaSelectionEnabled = conf.getBoolean(
+        AdaptiveReplicaSelection.ENABLED_KEY,
+        AdaptiveReplicaSelection.ENABLED_DEFAULT);
+    adaptiveReplicaSelectionEwmaWeight = conf.getFloat(
+        AdaptiveReplicaSelection.EWMA_WEIGHT_KEY,
+        AdaptiveReplicaSelection.EWMA_WEIGHT_DEFAULT);
+    Preconditions.checkArgument(adaptiveReplicaSelectionEwmaWeight > 0
+        && adaptiveReplicaSelectionEwmaWeight <= 1, "The value of " +
+        AdaptiveReplicaSelection.EWMA_WEIGHT_KEY + " must be in (0, 1].");
+    adaptiveReplicaSelectionStatsExpiryMs = conf.getTimeDuration(
+        AdaptiveReplicaSelection.STATS_EXPIRY_MS_KEY,
+        AdaptiveReplicaSelection.STATS_EXPIRY_MS_DEFAULT,
+        TimeUnit.MILLISECONDS);
+    adaptiveReplicaSelectionHedgedReadThresholdMultiplier = conf.getFloat(
+        AdaptiveReplicaSelection.HEDGED_READ_THRESHOLD_MULTIPLIER_KEY,
+        AdaptiveReplicaSelection.HEDGED_READ_THRESHOLD_MULTIPLIER_DEFAULT);
+
     deadNodeDetectionEnabled =
         conf.getBoolean(DFS_CLIENT_DEAD_NODE_DETECTION_ENABLED_KEY,
             DFS_CLIENT_DEAD_NODE_DETECTION_ENABLED_DEFAULT);
@@ -296,6 +324,34 @@ public DfsClientConf(Configuration conf) {
     Preconditions.checkArgument(stripedReadThreadpoolSize > 0, "The value of " +
         HdfsClientConfigKeys.StripedRead.THREADPOOL_SIZE_KEY +
         " must be greater than 0.");
+    stripedReadAheadStripes = conf.getInt(
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY,
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_DEFAULT);
+    Preconditions.checkArgument(stripedReadAheadStripes > 0, "The value of " +
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY +
+        " must be greater than 0.");
+    stripedReadSpeculativeThresholdMillis = conf.getLong(
+        HdfsClientConfigKeys.StripedRead.SPECULATIVE_THRESHOLD_MILLIS_KEY,
+        HdfsClientConfigKeys.StripedRead.SPECULATIVE_THRESHOLD_MILLIS_DEFAULT);
+    Preconditions.checkArgument(stripedReadSpeculativeThresholdMillis >= 0,
+        "The value of " +
+        HdfsClientConfigKeys.StripedRead.SPECULATIVE_THRESHOLD_MILLIS_KEY +
+        " must not be negative.");
+    vectoredReadMinSeekSize = conf.getInt(
+        Read.VECTORED_MIN_SEEK_SIZE_KEY,
+        Read.VECTORED_MIN_SEEK_SIZE_DEFAULT);
+    Preconditions.checkArgument(vectoredReadMinSeekSize >= 0, "The value of " +
+        Read.VECTORED_MIN_SEEK_SIZE_KEY + " must not be negative.");
+    vectoredReadMaxMergedSize = conf.getInt(
+        Read.VECTORED_MAX_MERGED_SIZE_KEY,
+        Read.VECTORED_MAX_MERGED_SIZE_DEFAULT);
+    Preconditions.checkArgument(vectoredReadMaxMergedSize >= 0, "The value of " +
+        Read.VECTORED_MAX_MERGED_SIZE_KEY + " must not be negative.");
+    vectoredReadThreadpoolSize = conf.getInt(
+        Read.VECTORED_THREADPOOL_SIZE_KEY,
+        Read.VECTORED_THREADPOOL_SIZE_DEFAULT);
+    Preconditions.checkArgument(vectoredReadThreadpoolSize >= 0, "The value " +
+        "of " + Read.VECTORED_THREADPOOL_SIZE_KEY + " must not be negative.");
     replicaAccessorBuilderClasses = loadReplicaAccessorBuilderClasses(conf);
 
     leaseHardLimitPeriod =
@@ -689,6 +745,34 @@ public int getHedgedReadThreadpoolSize() {
     return hedgedReadThreadpoolSize;
   }
 
+  /**
+   * @return the adaptiveReplicaSelectionEnabled
+   */
+  public boolean isAdaptiveReplicaSelectionEnabled() {
+    return adaptiveReplicaSelectionEnabled;
+  }
+
+  /**
+   * @return the adaptiveReplicaSelectionEwmaWeight
+   */
+  public float getAdaptiveReplicaSelectionEwmaWeight() {
+    return adaptiveReplicaSelectionEwmaWeight;
+  }
+
+  /**
+   * @return the adaptiveReplicaSelectionStatsExpiryMs
+   */
+  public long getAdaptiveReplicaSelectionStatsExpiryMs() {
+    return adaptiveReplicaSelectionStatsExpiryMs;
+  }
+
+  /**
+   * @return the adaptiveReplicaSelectionHedgedReadThresholdMultiplier
+   */
+  public float getAdaptiveReplicaSelectionHedgedReadThresholdMultiplier() {
+    return adaptiveReplicaSelectionHedgedReadThresholdMultiplier;
+  }
+
   /**
    * @return the stripedReadThreadpoolSize
    */
@@ -696,6 +780,41 @@ public int getStripedReadThreadpoolSize() {
     return stripedReadThreadpoolSize;
   }
 
+  /**
+   * @return the stripedReadAheadStripes
+   */
+  public int getStripedReadAheadStripes() {
+    return stripedReadAheadStripes;
+  }
+
+  /**
+   * @return the stripedReadSpeculativeThresholdMillis
+   */
+  public long getStripedReadSpeculativeThresholdMillis() {
+    return stripedReadSpeculativeThresholdMillis;
+  }
+
+  /**
+   * @return the vectoredReadMinSeekSize
+   */
+  public int getVectoredReadMinSeekSize() {
+    return vectoredReadMinSeekSize;
+  }
+
+  /**
+   * @return the vectoredReadMaxMergedSize
+   */
+  public int getVectoredReadMaxMergedSize() {
+    return vectoredReadMaxMergedSize;
+  }
+
+  /**
+   * @return the vectoredReadThreadpoolSize
+   */
+  public int getVectoredReadThreadpoolSize() {
+    return vectoredReadThreadpoolSize;
+  }
+
   /**
    * @return the deadNodeDetectionEnabled
    */
@@ -767,6 +886,7 @@ public static class ShortCircuitConf {
     private final boolean useLegacyBlockReaderLocal;
     private final String domainSocketPath;
     private final boolean skipShortCircuitChecksums;
+    private final boolean trustVerifiedShortCircuitChecksums;
 
     private final int shortCircuitBufferSize;
     private final boolean shortCircuitLocalReads;
@@ -835,6 +955,9 @@ public ShortCircuitConf(Configuration conf) {
       skipShortCircuitChecksums = conf.getBoolean(
           Read.ShortCircuit.SKIP_CHECKSUM_KEY,
           Read.ShortCircuit.SKIP_CHECKSUM_DEFAULT);
+      trustVerifiedShortCircuitChecksums = conf.getBoolean(
+          Read.ShortCircuit.TRUST_VERIFIED_CHECKSUM_KEY,
+          Read.ShortCircuit.TRUST_VERIFIED_CHECKSUM_DEFAULT);
       shortCircuitBufferSize = conf.getInt(
           Read.ShortCircuit.BUFFER_SIZE_KEY,
           Read.ShortCircuit.BUFFER_SIZE_DEFAULT);
@@ -918,6 +1041,13 @@ public boolean isSkipShortCircuitChecksums() {
       return skipShortCircuitChecksums;
     }
 
+    /**
+     * @return the trustVerifiedShortCircuitChecksums
+     */
+    public boolean isTrustVerifiedShortCircuitChecksums() {
+      return trustVerifiedShortCircuitChecksums;
+    }
+
     /**
      * @return the shortCircuitBufferSize
      */
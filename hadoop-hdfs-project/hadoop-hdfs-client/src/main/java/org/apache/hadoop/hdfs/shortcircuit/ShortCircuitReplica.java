@@ -87,6 +87,11 @@ public class ShortCircuitReplica {
    */
   private final Slot slot;
 
+  /**
+   * Length of the replica whose checksums were verified in full, or -1.
+   */
+  private volatile long checksumVerifiedLength = -1;
+
   /**
    * Current mmap state.
    *
@@ -203,6 +208,44 @@ public void removeNoChecksumAnchor() {
     }
   }
 
+  /**
+   * Check if a previous reader has verified the checksums of the whole
+   * replica, as recorded in our shared memory slot, and the replica has not
+   * changed length since then, as it does when it is appended to.
+   *
+   * This method does not require any synchronization.
+   */
+  public boolean isChecksumVerified() {
+    if ((slot == null) || !slot.isValid() || !slot.isChecksumVerified()) {
+      return false;
+    }
+    long verifiedLength = checksumVerifiedLength;
+    try {
+      return (verifiedLength >= 0) &&
+          (verifiedLength == dataStream.getChannel().size());
+    } catch (IOException e) {
+      LOG.debug("{}: failed to get the length of the replica", this, e);
+      return false;
+    }
+  }
+
+  /**
+   * Record in our shared memory slot that the checksums of the whole replica
+   * have been verified.
+   *
+   * This method does not require any synchronization.
+   *
+   * @param length the length of the replica that was verified.
+   */
+  public void markChecksumVerified(long length) {
+    if (slot != null) {
+      checksumVerifiedLength = length;
+      slot.makeChecksumVerified();
+      LOG.trace("{}: marked slot {} as checksum verified up to {}", this,
+          slot, length);
+    }
+  }
+
   /**
    * Check if the replica has an associated mmap that has been fully loaded.
    *
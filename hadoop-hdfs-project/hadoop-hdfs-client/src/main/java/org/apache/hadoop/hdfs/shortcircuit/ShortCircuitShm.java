@@ -258,6 +258,17 @@ public class Slot {
      */
     private static final long ANCHORABLE_FLAG =     1L<<62;
 
+    /**
+     * Flag indicating that the client has verified the checksums of the
+     * whole replica.
+     *
+     * The DFSClient sets this flag once a reader has checksummed every chunk
+     * of the replica.  Since short-circuit reads are only done on finalized
+     * replicas, it remains true until the slot is invalidated or freed.  The
+     * DataNode invalidates the slot when the replica is reopened for append.
+     */
+    private static final long CHECKSUM_VERIFIED_FLAG = 1L<<61;
+
     /**
      * The slot address in memory.
      */
@@ -368,6 +379,14 @@ public void makeUnanchorable() {
       clearFlag(ANCHORABLE_FLAG);
     }
 
+    public boolean isChecksumVerified() {
+      return isSet(CHECKSUM_VERIFIED_FLAG);
+    }
+
+    public void makeChecksumVerified() {
+      setFlag(CHECKSUM_VERIFIED_FLAG);
+    }
+
     public boolean isAnchored() {
       long prev = unsafe.getLongVolatile(null, this.slotAddress);
       // Slot is no longer valid.
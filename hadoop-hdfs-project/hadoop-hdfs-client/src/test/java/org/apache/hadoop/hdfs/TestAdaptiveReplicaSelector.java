@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo.DatanodeInfoBuilder;
+import org.apache.hadoop.util.FakeTimer;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AdaptiveReplicaSelector}.
+ */
+public class TestAdaptiveReplicaSelector {
+  private static final long EXPIRY_MS = 60000;
+
+  private FakeTimer timer;
+  private DatanodeInfo[] nodes;
+
+  @Before
+  public void setUp() {
+    timer = new FakeTimer();
+    nodes = new DatanodeInfo[3];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = new DatanodeInfoBuilder().setNodeID(new DatanodeID(
+          "192.168.0." + (i + 1), "host" + i, "uuid" + i,
+          9866, 9864, 9865, 9867)).build();
+    }
+  }
+
+  private AdaptiveReplicaSelector newSelector(boolean enabled) {
+    return new AdaptiveReplicaSelector(enabled, 1.0, EXPIRY_MS, 3, timer);
+  }
+
+  private int choose(AdaptiveReplicaSelector selector) {
+    return selector.chooseReplica(nodes, node -> true);
+  }
+
+  @Test
+  public void testDisabled() {
+    AdaptiveReplicaSelector selector = newSelector(false);
+    selector.recordConnect(nodes[0], 1000);
+    selector.recordConnect(nodes[1], 1);
+    assertEquals(0, choose(selector));
+    assertEquals(0, selector.getNumTrackedNodes());
+    assertEquals(500,
+        selector.getHedgedReadThresholdMillis(nodes[0], 4096, 500));
+    assertEquals(1, selector.chooseReplica(nodes, node -> node != nodes[0]));
+  }
+
+  @Test
+  public void testKeepsClosestReplicaUnlessMuchSlower() {
+    AdaptiveReplicaSelector selector = newSelector(true);
+    selector.recordConnect(nodes[0], 15);
+    selector.recordConnect(nodes[1], 10);
+    selector.recordConnect(nodes[2], 12);
+    assertEquals(0, choose(selector));
+
+    selector.recordConnect(nodes[0], 100);
+    assertEquals(1, choose(selector));
+    // Invalid replicas are never chosen.
+    assertEquals(2, selector.chooseReplica(nodes, node -> node != nodes[1]));
+  }
+
+  @Test
+  public void testErrorsAndThroughput() {
+    AdaptiveReplicaSelector selector = newSelector(true);
+    selector.recordConnect(nodes[0], 10);
+    selector.recordConnect(nodes[1], 10);
+    assertEquals(0, choose(selector));
+    selector.recordError(nodes[0], 10);
+    assertEquals(1, choose(selector));
+
+    selector = newSelector(true);
+    selector.recordConnect(nodes[0], 10);
+    selector.recordConnect(nodes[1], 10);
+    // 1MB in 1s against 1MB in 10ms.
+    selector.recordTransfer(nodes[0], 1024 * 1024, 1000);
+    selector.recordTransfer(nodes[1], 1024 * 1024, 10);
+    assertEquals(1, choose(selector));
+  }
+
+  @Test
+  public void testProbeUnknownReplica() {
+    AdaptiveReplicaSelector selector = newSelector(true);
+    selector.recordConnect(nodes[0], 100);
+    assertEquals(0, choose(selector));
+
+    // Other DataNodes are typically much faster, try another replica.
+    AdaptiveReplicaSelector other = newSelector(true);
+    other.recordConnect(nodes[0], 100);
+    for (int i = 0; i < 3; i++) {
+      DatanodeInfo dn = new DatanodeInfoBuilder().setNodeID(new DatanodeID(
+          "10.0.0." + i, "other" + i, "other" + i, 9866, 9864, 9865, 9867))
+          .build();
+      other.recordConnect(dn, 5);
+    }
+    assertEquals(1, choose(other));
+  }
+
+  @Test
+  public void testExpiry() {
+    AdaptiveReplicaSelector selector = newSelector(true);
+    selector.recordConnect(nodes[0], 100);
+    selector.recordConnect(nodes[1], 10);
+    assertEquals(1, choose(selector));
+    timer.advance(EXPIRY_MS + 1);
+    assertEquals(0, choose(selector));
+    assertEquals(-1, selector.getExpectedReadMillis(nodes[1], 0), 0);
+  }
+
+  @Test
+  public void testHedgedReadThreshold() {
+    AdaptiveReplicaSelector selector = newSelector(true);
+    assertEquals(500,
+        selector.getHedgedReadThresholdMillis(nodes[0], 4096, 500));
+    selector.recordConnect(nodes[0], 20);
+    assertEquals(60,
+        selector.getHedgedReadThresholdMillis(nodes[0], 4096, 500));
+    // Never above the configured threshold.
+    selector.recordConnect(nodes[0], 1000);
+    assertEquals(500,
+        selector.getHedgedReadThresholdMillis(nodes[0], 4096, 500));
+  }
+
+  @Test
+  public void testSlowReadPenalty() {
+    AdaptiveReplicaSelector selector = newSelector(true);
+    selector.recordConnect(nodes[0], 20);
+    selector.recordConnect(nodes[1], 20);
+    assertEquals(0, choose(selector));
+
+    // A hedged read makes the replica less attractive, but is not taken as
+    // a latency sample, so the hedged read threshold does not feed back
+    // into itself.
+    selector.recordSlow(nodes[0]);
+    assertEquals(1, choose(selector));
+    assertEquals(20, selector.getExpectedReadMillis(nodes[0], 4096), 0);
+    assertEquals(60,
+        selector.getHedgedReadThresholdMillis(nodes[0], 4096, 500));
+
+    // Reads completing in time clear the penalty.
+    selector.recordConnect(nodes[0], 20);
+    assertEquals(0, choose(selector));
+  }
+}
@@ -106,4 +106,37 @@ public void testAllocateSlots() throws Exception {
     stream.close();
     FileUtil.fullyDelete(path);
   }
+
+  @Test(timeout=60000)
+  public void testChecksumVerifiedFlag() throws Exception {
+    File path = new File(TEST_BASE, "testChecksumVerifiedFlag");
+    path.mkdirs();
+    SharedFileDescriptorFactory factory =
+        SharedFileDescriptorFactory.create("shm_",
+            new String[] { path.getAbsolutePath() });
+    FileInputStream stream =
+        factory.createDescriptor("testChecksumVerifiedFlag", 4096);
+    ShortCircuitShm shm = new ShortCircuitShm(ShmId.createRandom(), stream);
+    Slot slot = shm.allocAndRegisterSlot(new ExtendedBlockId(123L, "test_bp1"));
+    Assert.assertFalse(slot.isChecksumVerified());
+    slot.makeChecksumVerified();
+    Assert.assertTrue(slot.isChecksumVerified());
+    Assert.assertTrue(slot.isValid());
+    // The flag doesn't interfere with anchoring.
+    Assert.assertFalse(slot.addAnchor());
+    slot.makeAnchorable();
+    Assert.assertTrue(slot.addAnchor());
+    Assert.assertTrue(slot.isAnchored());
+    slot.removeAnchor();
+    Assert.assertFalse(slot.isAnchored());
+    Assert.assertTrue(slot.isChecksumVerified());
+    // A reused slot starts out unverified.
+    shm.unregisterSlot(slot.getSlotIdx());
+    slot = shm.allocAndRegisterSlot(new ExtendedBlockId(456L, "test_bp1"));
+    Assert.assertFalse(slot.isChecksumVerified());
+    shm.unregisterSlot(slot.getSlotIdx());
+    shm.free();
+    stream.close();
+    FileUtil.fullyDelete(path);
+  }
 }
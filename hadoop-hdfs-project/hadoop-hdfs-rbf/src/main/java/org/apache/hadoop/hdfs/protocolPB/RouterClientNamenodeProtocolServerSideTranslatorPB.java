@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.protocolPB;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.HdfsLocatedFileStatus;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBlockLocationsRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBlockLocationsResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfoRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfoResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetLocatedFileInfoRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetLocatedFileInfoResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.IsFileClosedRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.IsFileClosedResponseProto;
+import org.apache.hadoop.hdfs.server.federation.router.RouterRpcServer;
+import org.apache.hadoop.ipc.ProtobufRpcEngine2;
+import org.apache.hadoop.ipc.ProtobufRpcEngineCallback2;
+import org.apache.hadoop.thirdparty.protobuf.Message;
+import org.apache.hadoop.thirdparty.protobuf.RpcController;
+import org.apache.hadoop.thirdparty.protobuf.ServiceException;
+
+/**
+ * Server side translator of the Router for the ClientNamenodeProtocol. When
+ * asynchronous RPC is enabled in the Router, the calls it can forward
+ * asynchronously release their handler while the namenodes are called, and
+ * their response is sent once the call to the namenodes completes.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+public class RouterClientNamenodeProtocolServerSideTranslatorPB
+    extends ClientNamenodeProtocolServerSideTranslatorPB {
+
+  private static final GetFileInfoResponseProto VOID_GETFILEINFO_RESPONSE =
+      GetFileInfoResponseProto.newBuilder().build();
+
+  private static final GetLocatedFileInfoResponseProto
+      VOID_GETLOCATEDFILEINFO_RESPONSE =
+          GetLocatedFileInfoResponseProto.newBuilder().build();
+
+  private final RouterRpcServer server;
+
+  /**
+   * Constructor.
+   *
+   * @param server - the Router RPC server
+   * @throws IOException
+   */
+  public RouterClientNamenodeProtocolServerSideTranslatorPB(
+      RouterRpcServer server) throws IOException {
+    super(server);
+    this.server = server;
+  }
+
+  /** Starts an asynchronous call. */
+  @FunctionalInterface
+  private interface AsyncCall<T> {
+    CompletableFuture<T> call() throws IOException;
+  }
+
+  /**
+   * Respond to a call once its future completes. If the future is not done
+   * yet, the response of the RPC is deferred and the handler released.
+   *
+   * @param call Starts the call.
+   * @param response Converts the result to the response.
+   * @return The response, or null if it is deferred.
+   * @throws ServiceException If the call fails right away.
+   */
+  private <T, M extends Message> M respond(AsyncCall<T> call,
+      Function<T, M> response) throws ServiceException {
+    final CompletableFuture<T> future;
+    try {
+      future = call.call();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+    if (future.isDone()) {
+      try {
+        return response.apply(future.join());
+      } catch (CompletionException e) {
+        throw new ServiceException(unwrap(e));
+      }
+    }
+    final ProtobufRpcEngineCallback2 callback =
+        ProtobufRpcEngine2.Server.registerForDeferredResponse2();
+    future.whenComplete((result, error) -> {
+      if (error != null) {
+        callback.error(unwrap(error));
+        return;
+      }
+      try {
+        callback.setResponse(response.apply(result));
+      } catch (RuntimeException e) {
+        callback.error(e);
+      }
+    });
+    return null;
+  }
+
+  private static Throwable unwrap(Throwable t) {
+    while ((t instanceof CompletionException ||
+        t instanceof ExecutionException) && t.getCause() != null) {
+      t = t.getCause();
+    }
+    return t;
+  }
+
+  @Override
+  public GetBlockLocationsResponseProto getBlockLocations(
+      RpcController controller, GetBlockLocationsRequestProto req)
+      throws ServiceException {
+    if (!server.getRPCClient().isAsyncRpcEnabled()) {
+      return super.getBlockLocations(controller, req);
+    }
+    return respond(() -> server.getBlockLocationsAsync(
+        req.getSrc(), req.getOffset(), req.getLength()),
+        (LocatedBlocks b) -> {
+          GetBlockLocationsResponseProto.Builder builder =
+              GetBlockLocationsResponseProto.newBuilder();
+          if (b != null) {
+            builder.setLocations(PBHelperClient.convert(b));
+          }
+          return builder.build();
+        });
+  }
+
+  @Override
+  public GetFileInfoResponseProto getFileInfo(RpcController controller,
+      GetFileInfoRequestProto req) throws ServiceException {
+    if (!server.getRPCClient().isAsyncRpcEnabled()) {
+      return super.getFileInfo(controller, req);
+    }
+    return respond(() -> server.getFileInfoAsync(req.getSrc()),
+        (HdfsFileStatus result) -> {
+          if (result != null) {
+            return GetFileInfoResponseProto.newBuilder().setFs(
+                PBHelperClient.convert(result)).build();
+          }
+          return VOID_GETFILEINFO_RESPONSE;
+        });
+  }
+
+  @Override
+  public GetLocatedFileInfoResponseProto getLocatedFileInfo(
+      RpcController controller, GetLocatedFileInfoRequestProto req)
+      throws ServiceException {
+    if (!server.getRPCClient().isAsyncRpcEnabled()) {
+      return super.getLocatedFileInfo(controller, req);
+    }
+    return respond(() -> server.getLocatedFileInfoAsync(req.getSrc(),
+        req.getNeedBlockToken()),
+        (HdfsLocatedFileStatus result) -> {
+          if (result != null) {
+            return GetLocatedFileInfoResponseProto.newBuilder().setFs(
+                PBHelperClient.convert(result)).build();
+          }
+          return VOID_GETLOCATEDFILEINFO_RESPONSE;
+        });
+  }
+
+  @Override
+  public IsFileClosedResponseProto isFileClosed(
+      RpcController controller, IsFileClosedRequestProto request)
+      throws ServiceException {
+    if (!server.getRPCClient().isAsyncRpcEnabled()) {
+      return super.isFileClosed(controller, request);
+    }
+    return respond(() -> server.isFileClosedAsync(request.getSrc()),
+        (Boolean result) -> IsFileClosedResponseProto.newBuilder()
+            .setResult(result).build());
+  }
+}
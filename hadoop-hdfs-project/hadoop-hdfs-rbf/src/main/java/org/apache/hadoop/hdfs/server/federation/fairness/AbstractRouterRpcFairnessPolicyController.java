@@ -71,6 +71,12 @@ public boolean acquirePermit(String nsId) {
     return false;
   }
 
+  @Override
+  public boolean tryAcquirePermit(String nsId) {
+    LOG.debug("Trying lock for nameservice {}", nsId);
+    return this.permits.get(nsId).tryAcquire();
+  }
+
   @Override
   public void releasePermit(String nsId) {
     this.permits.get(nsId).release();
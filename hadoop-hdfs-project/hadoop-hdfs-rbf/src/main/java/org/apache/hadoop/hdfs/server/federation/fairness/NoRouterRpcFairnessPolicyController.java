@@ -37,6 +37,11 @@ public boolean acquirePermit(String nsId) {
     return true;
   }
 
+  @Override
+  public boolean tryAcquirePermit(String nsId) {
+    return true;
+  }
+
   @Override
   public void releasePermit(String nsId) {
     // Dummy, pass through.
@@ -89,6 +89,14 @@ public boolean acquirePermit(String nsId) {
     return super.acquirePermit(DEFAULT_NS);
   }
 
+  @Override
+  public boolean tryAcquirePermit(String nsId) {
+    if (contains(nsId)) {
+      return super.tryAcquirePermit(nsId);
+    }
+    return super.tryAcquirePermit(DEFAULT_NS);
+  }
+
   @Override
   public void releasePermit(String nsId) {
     if (contains(nsId)) {
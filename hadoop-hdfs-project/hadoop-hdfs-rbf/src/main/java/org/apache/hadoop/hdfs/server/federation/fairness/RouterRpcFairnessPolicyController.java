@@ -48,6 +48,17 @@ public interface RouterRpcFairnessPolicyController {
    */
   boolean acquirePermit(String nsId);
 
+  /**
+   * Request permission for a specific name service like
+   * {@link #acquirePermit(String)}, but without waiting for a permit to be
+   * released. Callers that must not block, like the threads completing
+   * asynchronous calls, use this method.
+   *
+   * @param nsId NS id for which a permission to continue is requested.
+   * @return true if a permit was available and given, false otherwise.
+   */
+  boolean tryAcquirePermit(String nsId);
+
   /**
    * Handler threads are expected to invoke this method that signals
    * controller to release the resources allocated to the thread for the
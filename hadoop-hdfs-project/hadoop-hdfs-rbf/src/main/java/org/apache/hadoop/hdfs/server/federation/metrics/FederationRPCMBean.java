@@ -107,6 +107,43 @@ public interface FederationRPCMBean {
    */
   int getRpcClientNumConnectionPools();
 
+  /**
+   * Get the number of requests that got a usable connection from the pools.
+   * @return Number of connection pool hits.
+   */
+  long getRpcClientConnectionPoolHits();
+
+  /**
+   * Get the number of requests that could not get a usable connection from
+   * the pools.
+   * @return Number of connection pool misses.
+   */
+  long getRpcClientConnectionPoolMisses();
+
+  /**
+   * Get the average time to get a connection to the NNs.
+   * @return Average time in milliseconds to get a connection.
+   */
+  double getRpcClientConnectionWaitTimeAvg();
+
+  /**
+   * Get the number of read calls served from the metadata cache.
+   * @return Number of metadata cache hits.
+   */
+  long getMetadataCacheHits();
+
+  /**
+   * Get the number of cacheable read calls forwarded to the NNs.
+   * @return Number of metadata cache misses.
+   */
+  long getMetadataCacheMisses();
+
+  /**
+   * Get the ratio of the cacheable read calls served from the metadata cache.
+   * @return Hit ratio between 0 and 1.
+   */
+  double getMetadataCacheHitRatio();
+
   /**
    * JSON representation of the RPC connections from the Router to the NNs.
    * @return JSON string representation.
@@ -142,4 +179,16 @@ public interface FederationRPCMBean {
    * @return Number of operations accepted of each namespace.
    */
   String getProxyOpPermitAcceptedPerNs();
+
+  /**
+   * Get the number of asynchronous calls in flight to each namespace.
+   * @return JSON with the number of calls in flight to each namespace.
+   */
+  String getAsyncInFlightPerNs();
+
+  /**
+   * Get the number of asynchronous calls queued for each namespace.
+   * @return JSON with the number of calls queued for each namespace.
+   */
+  String getAsyncQueuedPerNs();
 }
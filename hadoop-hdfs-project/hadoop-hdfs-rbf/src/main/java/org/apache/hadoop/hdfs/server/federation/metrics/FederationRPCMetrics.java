@@ -240,6 +240,42 @@ public int getRpcClientNumConnectionPools() {
     return rpcServer.getRPCClient().getNumConnectionPools();
   }
 
+  @Override
+  @Metric({"RpcClientConnectionPoolHits", "Number of the rpc client requests with a usable pooled connection"})
+  public long getRpcClientConnectionPoolHits() {
+    return rpcServer.getRPCClient().getNumConnectionPoolHits();
+  }
+
+  @Override
+  @Metric({"RpcClientConnectionPoolMisses", "Number of the rpc client requests without a usable pooled connection"})
+  public long getRpcClientConnectionPoolMisses() {
+    return rpcServer.getRPCClient().getNumConnectionPoolMisses();
+  }
+
+  @Override
+  @Metric({"RpcClientConnectionWaitTimeAvg", "Average time in milliseconds to get a rpc client connection"})
+  public double getRpcClientConnectionWaitTimeAvg() {
+    return rpcServer.getRPCClient().getConnectionWaitTimeAvg();
+  }
+
+  @Override
+  @Metric({"MetadataCacheHits", "Number of read calls served from the metadata cache"})
+  public long getMetadataCacheHits() {
+    return rpcServer.getRPCClient().getMetadataCache().getNumHits();
+  }
+
+  @Override
+  @Metric({"MetadataCacheMisses", "Number of cacheable read calls forwarded to the namenodes"})
+  public long getMetadataCacheMisses() {
+    return rpcServer.getRPCClient().getMetadataCache().getNumMisses();
+  }
+
+  @Override
+  @Metric({"MetadataCacheHitRatio", "Ratio of the cacheable read calls served from the metadata cache"})
+  public double getMetadataCacheHitRatio() {
+    return rpcServer.getRPCClient().getMetadataCache().getHitRatio();
+  }
+
   @Override
   public String getRpcClientConnections() {
     return rpcServer.getRPCClient().getJSON();
@@ -330,4 +366,14 @@ public String getProxyOpPermitRejectedPerNs() {
   public String getProxyOpPermitAcceptedPerNs() {
     return rpcServer.getRPCClient().getAcceptedPermitsPerNsJSON();
   }
+
+  @Override
+  public String getAsyncInFlightPerNs() {
+    return rpcServer.getRPCClient().getAsyncInFlightPerNsJSON();
+  }
+
+  @Override
+  public String getAsyncQueuedPerNs() {
+    return rpcServer.getRPCClient().getAsyncQueuedPerNsJSON();
+  }
 }
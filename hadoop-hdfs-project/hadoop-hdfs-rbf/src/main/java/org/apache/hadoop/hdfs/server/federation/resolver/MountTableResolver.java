@@ -24,28 +24,22 @@
 import static org.apache.hadoop.hdfs.server.federation.router.RBFConfigKeys.FEDERATION_MOUNT_TABLE_MAX_CACHE_SIZE_DEFAULT;
 import static org.apache.hadoop.hdfs.server.federation.router.RBFConfigKeys.FEDERATION_MOUNT_TABLE_CACHE_ENABLE;
 import static org.apache.hadoop.hdfs.server.federation.router.RBFConfigKeys.FEDERATION_MOUNT_TABLE_CACHE_ENABLE_DEFAULT;
-import static org.apache.hadoop.hdfs.DFSUtil.isParentEntry;
 
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
-import java.util.TreeSet;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.LongAdder;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
 import java.util.ArrayList;
 
@@ -76,7 +70,8 @@
  * {@link org.apache.hadoop.hdfs.server.federation.router.Router Router} to map
  * the global HDFS view to the remote namespaces. This is similar to
  * {@link org.apache.hadoop.fs.viewfs.ViewFs ViewFs}.
- * This is implemented as a tree.
+ * This is implemented as an immutable trie of the path components, which is
+ * replaced on every update. The lookups do not take any lock.
  */
 public class MountTableResolver
     implements FileSubclusterResolver, StateStoreCache {
@@ -92,11 +87,11 @@
   private MountTableStore mountTableStore;
 
   /** If the tree has been initialized. */
-  private boolean init = false;
+  private volatile boolean init = false;
   /** If the mount table is manually disabled*/
-  private boolean disabled = false;
+  private volatile boolean disabled = false;
   /** Path -> Remote HDFS location. */
-  private final TreeMap<String, MountTable> tree = new TreeMap<>();
+  private volatile MountTableTrie tree = MountTableTrie.EMPTY;
   /** Path -> Remote location. */
   private final Cache<String, PathLocation> locationCache;
   private final LongAdder locCacheMiss = new LongAdder();
@@ -107,10 +102,8 @@
   /** If use default nameservice to read and write files. */
   private boolean defaultNSEnable = true;
 
-  /** Synchronization for both the tree and the cache. */
-  private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
-  private final Lock readLock = readWriteLock.readLock();
-  private final Lock writeLock = readWriteLock.writeLock();
+  /** Synchronization for the updates of the tree and the cache. */
+  private final Object updateLock = new Object();
 
   /** Trash Current matching pattern. */
   private static final String TRASH_PATTERN = "/(Current|[0-9]+)";
@@ -224,13 +217,10 @@ protected MountTableStore getMountTableStore() throws IOException {
    * @param entry The mount table record to add from the state store.
    */
   public void addEntry(final MountTable entry) {
-    writeLock.lock();
-    try {
+    synchronized (updateLock) {
       String srcPath = entry.getSourcePath();
-      this.tree.put(srcPath, entry);
-      invalidateLocationCache(srcPath);
-    } finally {
-      writeLock.unlock();
+      this.tree = this.tree.toBuilder().put(entry).build();
+      invalidateLocationCache(Collections.singleton(srcPath));
     }
     this.init = true;
   }
@@ -241,27 +231,26 @@ public void addEntry(final MountTable entry) {
    * @param srcPath Source path for the entry to remove.
    */
   public void removeEntry(final String srcPath) {
-    writeLock.lock();
-    try {
-      this.tree.remove(srcPath);
-      invalidateLocationCache(srcPath);
-    } finally {
-      writeLock.unlock();
+    synchronized (updateLock) {
+      this.tree = this.tree.toBuilder().remove(srcPath).build();
+      invalidateLocationCache(Collections.singleton(srcPath));
     }
   }
 
   /**
-   * Invalidates all cache entries below this path. It requires the write lock.
+   * Invalidates all cache entries below these paths, going once through the
+   * cache. It must be called after updating the tree, holding the update lock.
    *
-   * @param path Source path.
+   * @param paths Source paths.
    */
-  private void invalidateLocationCache(final String path) {
-    LOG.debug("Invalidating {} from {}", path, locationCache);
+  private void invalidateLocationCache(final Collection<String> paths) {
+    LOG.debug("Invalidating {} from {}", paths, locationCache);
     if (locationCache == null || locationCache.size() == 0) {
       return;
     }
+    Set<String> pathSet = new HashSet<>(paths);
 
-    // Go through the entries and remove the ones from the path to invalidate
+    // Go through the entries and remove the ones from the paths to invalidate
     ConcurrentMap<String, PathLocation> map = locationCache.asMap();
     Set<Entry<String, PathLocation>> entries = map.entrySet();
     Iterator<Entry<String, PathLocation>> it = entries.iterator();
@@ -271,15 +260,18 @@ private void invalidateLocationCache(final String path) {
       PathLocation loc = entry.getValue();
       String src = loc.getSourcePath();
       if (src != null) {
-        if (isParentEntry(key, path)) {
+        if (isBelowAny(key, pathSet)) {
           LOG.debug("Removing {}", src);
           it.remove();
         }
       } else {
         String dest = loc.getDefaultLocation().getDest();
-        if (dest.startsWith(path)) {
-          LOG.debug("Removing default cache {}", dest);
-          it.remove();
+        for (String path : paths) {
+          if (dest.startsWith(path)) {
+            LOG.debug("Removing default cache {}", dest);
+            it.remove();
+            break;
+          }
         }
       }
     }
@@ -287,6 +279,28 @@ private void invalidateLocationCache(final String path) {
     LOG.debug("Location cache after invalidation: {}", locationCache);
   }
 
+  /**
+   * Check if a path is one of the parents or below any of them.
+   *
+   * @param path Path to check.
+   * @param parents Parent paths.
+   * @return If the path is at or below one of the parents.
+   */
+  private static boolean isBelowAny(final String path,
+      final Set<String> parents) {
+    if (parents.contains(path) || parents.contains(Path.SEPARATOR)) {
+      return true;
+    }
+    int index = path.lastIndexOf(Path.SEPARATOR_CHAR);
+    while (index > 0) {
+      if (parents.contains(path.substring(0, index))) {
+        return true;
+      }
+      index = path.lastIndexOf(Path.SEPARATOR_CHAR, index - 1);
+    }
+    return false;
+  }
+
   /**
    * Updates the mount path tree with a new set of mount table entries. It also
    * updates the needed caches.
@@ -295,28 +309,25 @@ private void invalidateLocationCache(final String path) {
    */
   @VisibleForTesting
   public void refreshEntries(final Collection<MountTable> entries) {
-    // The tree read/write must be atomic
-    writeLock.lock();
-    try {
+    // The tree updates must be atomic
+    synchronized (updateLock) {
       // New entries
-      Map<String, MountTable> newEntries = new ConcurrentHashMap<>();
+      Map<String, MountTable> newEntries = new HashMap<>();
       for (MountTable entry : entries) {
         String srcPath = entry.getSourcePath();
         newEntries.put(srcPath, entry);
       }
 
-      // Old entries (reversed to sort from the leaves to the root)
-      Set<String> oldEntries = new TreeSet<>(Collections.reverseOrder());
-      for (MountTable entry : getTreeValues("/")) {
-        String srcPath = entry.getSourcePath();
-        oldEntries.add(srcPath);
-      }
+      // Build the new tree from the differences with the old one
+      MountTableTrie oldTree = this.tree;
+      MountTableTrie.Builder builder = oldTree.toBuilder();
+      List<String> changedPaths = new ArrayList<>();
 
       // Entries that need to be removed
-      for (String srcPath : oldEntries) {
+      for (String srcPath : oldTree.getEntries().keySet()) {
         if (!newEntries.containsKey(srcPath)) {
-          this.tree.remove(srcPath);
-          invalidateLocationCache(srcPath);
+          builder.remove(srcPath);
+          changedPaths.add(srcPath);
           LOG.info("Removed stale mount point {} from resolver", srcPath);
         }
       }
@@ -324,25 +335,27 @@ public void refreshEntries(final Collection<MountTable> entries) {
       // Entries that need to be added
       for (MountTable entry : entries) {
         String srcPath = entry.getSourcePath();
-        if (!oldEntries.contains(srcPath)) {
+        MountTable existingEntry = oldTree.get(srcPath);
+        if (existingEntry == null) {
           // Add node, it does not exist
-          this.tree.put(srcPath, entry);
-          invalidateLocationCache(srcPath);
+          builder.put(entry);
+          changedPaths.add(srcPath);
           LOG.info("Added new mount point {} to resolver", srcPath);
-        } else {
+        } else if (!existingEntry.equals(entry)) {
           // Node exists, check for updates
-          MountTable existingEntry = this.tree.get(srcPath);
-          if (existingEntry != null && !existingEntry.equals(entry)) {
-            LOG.info("Entry has changed from \"{}\" to \"{}\"",
-                existingEntry, entry);
-            this.tree.put(srcPath, entry);
-            invalidateLocationCache(srcPath);
-            LOG.info("Updated mount point {} in resolver", srcPath);
-          }
+          LOG.info("Entry has changed from \"{}\" to \"{}\"",
+              existingEntry, entry);
+          builder.put(entry);
+          changedPaths.add(srcPath);
+          LOG.info("Updated mount point {} in resolver", srcPath);
         }
       }
-    } finally {
-      writeLock.unlock();
+
+      // Publish the new tree before invalidating the affected locations
+      if (!changedPaths.isEmpty()) {
+        this.tree = builder.build();
+        invalidateLocationCache(changedPaths);
+      }
     }
     this.init = true;
   }
@@ -356,6 +369,10 @@ public void refreshEntries(final Collection<MountTable> entries) {
    */
   @VisibleForTesting
   public static boolean isTrashPath(String path) throws IOException {
+    // Skip building the pattern for the paths outside of the home directories
+    if (!path.startsWith(FileSystem.USER_HOME_PREFIX + "/")) {
+      return false;
+    }
     Pattern pattern = Pattern.compile(
         "^" + getTrashRoot() + TRASH_PATTERN);
     return pattern.matcher(path).find();
@@ -383,20 +400,6 @@ public static String subtractTrashCurrentPath(String path)
         getTrashRoot() + TRASH_PATTERN, "");
   }
 
-  /**
-   * If path is a path related to the trash can,
-   * subtract TrashCurrent to return a new path.
-   *
-   * @param path A path.
-   */
-  private static String processTrashPath(String path) throws IOException {
-    if (isTrashPath(path)) {
-      return subtractTrashCurrentPath(path);
-    } else {
-      return path;
-    }
-  }
-
   /**
    * Replaces the current in-memory cached of the mount table with a new
    * version fetched from the data store.
@@ -431,14 +434,11 @@ public boolean loadCache(boolean force) {
    */
   public void clear() {
     LOG.info("Clearing all mount location caches");
-    writeLock.lock();
-    try {
+    synchronized (updateLock) {
+      this.tree = MountTableTrie.EMPTY;
       if (this.locationCache != null) {
         this.locationCache.invalidateAll();
       }
-      this.tree.clear();
-    } finally {
-      writeLock.unlock();
     }
   }
 
@@ -447,19 +447,27 @@ public PathLocation getDestinationForPath(final String path)
       throws IOException {
     verifyMountTable();
     PathLocation res;
-    readLock.lock();
     try {
+      final boolean trashPath = isTrashPath(path);
+      final String lookupPath =
+          trashPath ? subtractTrashCurrentPath(path) : path;
       if (this.locationCache == null) {
-        res = lookupLocation(processTrashPath(path));
+        res = lookupLocation(lookupPath);
       } else {
+        final MountTableTrie current = this.tree;
         Callable<? extends PathLocation> meh = (Callable<PathLocation>) () -> {
           this.getLocCacheMiss().increment();
-          return lookupLocation(processTrashPath(path));
+          return lookupLocation(current, lookupPath);
         };
-        res = this.locationCache.get(processTrashPath(path), meh);
+        res = this.locationCache.get(lookupPath, meh);
         this.getLocCacheAccess().increment();
+        if (this.tree != current) {
+          // The tree changed during the lookup, do not keep a stale location
+          this.locationCache.asMap().remove(lookupPath, res);
+          res = lookupLocation(lookupPath);
+        }
       }
-      if (isTrashPath(path)) {
+      if (trashPath) {
         List<RemoteLocation> remoteLocations = new ArrayList<>();
         for (RemoteLocation remoteLocation : res.getDestinations()) {
           remoteLocations.add(new RemoteLocation(remoteLocation, path));
@@ -478,22 +486,31 @@ public PathLocation getDestinationForPath(final String path)
         ioe = new IOException(cause);
       }
       throw ioe;
-    } finally {
-      readLock.unlock();
     }
   }
 
   /**
-   * Build the path location to insert into the cache atomically. It must hold
-   * the read lock.
+   * Build the path location to insert into the cache.
    * @param str Path to check/insert.
    * @return New remote location.
    * @throws IOException If it cannot find the location.
    */
   public PathLocation lookupLocation(final String str) throws IOException {
+    return lookupLocation(this.tree, str);
+  }
+
+  /**
+   * Build the path location from a version of the tree.
+   * @param current Version of the tree to look into.
+   * @param str Path to check/insert.
+   * @return New remote location.
+   * @throws IOException If it cannot find the location.
+   */
+  private PathLocation lookupLocation(final MountTableTrie current,
+      final String str) throws IOException {
     PathLocation ret = null;
     final String path = RouterAdmin.normalizeFileSystemPath(str);
-    MountTable entry = findDeepest(path);
+    MountTable entry = current.findDeepest(path);
     if (entry != null) {
       ret = buildLocation(path, entry);
     } else {
@@ -520,7 +537,7 @@ public PathLocation lookupLocation(final String str) throws IOException {
    */
   public MountTable getMountPoint(final String path) throws IOException {
     verifyMountTable();
-    return findDeepest(RouterAdmin.normalizeFileSystemPath(path));
+    return this.tree.findDeepest(RouterAdmin.normalizeFileSystemPath(path));
   }
 
   @Override
@@ -530,15 +547,7 @@ public List<String> getMountPoints(final String str) throws IOException {
     if (isTrashPath(path)) {
       path = subtractTrashCurrentPath(path);
     }
-    readLock.lock();
-    try {
-      String from = path;
-      String to = path + Character.MAX_VALUE;
-      SortedMap<String, MountTable> subMap = this.tree.subMap(from, to);
-      return FileSubclusterResolver.getMountPoints(path, subMap.keySet());
-    } finally {
-      readLock.unlock();
-    }
+    return this.tree.getMountPoints(path);
   }
 
   /**
@@ -565,12 +574,7 @@ private void verifyMountTable() throws StateStoreUnavailableException {
 
   @Override
   public String toString() {
-    readLock.lock();
-    try {
-      return this.tree.toString();
-    } finally {
-      readLock.unlock();
-    }
+    return this.tree.toString();
   }
 
   /**
@@ -621,36 +625,6 @@ public String getDefaultNamespace() {
     return this.defaultNameService;
   }
 
-  /**
-   * Find the deepest mount point for a path.
-   * @param path Path to look for.
-   * @return Mount table entry.
-   */
-  private MountTable findDeepest(final String path) {
-    readLock.lock();
-    try {
-      Entry<String, MountTable> entry = this.tree.floorEntry(path);
-      while (entry != null && !isParentEntry(path, entry.getKey())) {
-        entry = this.tree.lowerEntry(entry.getKey());
-      }
-      if (entry == null) {
-        return null;
-      }
-      return entry.getValue();
-    } finally {
-      readLock.unlock();
-    }
-  }
-
-  /**
-   * Get the mount table entries under a path.
-   * @param path Path to search from.
-   * @return Mount Table entries.
-   */
-  private List<MountTable> getTreeValues(final String path) {
-    return getTreeValues(path, false);
-  }
-
   /**
    * Get the mount table entries under a path.
    * @param path Path to search from.
@@ -659,20 +633,16 @@ private List<MountTable> getTreeValues(final String path) {
    */
   private List<MountTable> getTreeValues(final String path, boolean reverse) {
     LinkedList<MountTable> ret = new LinkedList<>();
-    readLock.lock();
-    try {
-      String from = path;
-      String to = path + Character.MAX_VALUE;
-      SortedMap<String, MountTable> subMap = this.tree.subMap(from, to);
-      for (MountTable entry : subMap.values()) {
-        if (!reverse) {
-          ret.add(entry);
-        } else {
-          ret.addFirst(entry);
-        }
+    String from = path;
+    String to = path + Character.MAX_VALUE;
+    Map<String, MountTable> subMap =
+        this.tree.getEntries().subMap(from, to);
+    for (MountTable entry : subMap.values()) {
+      if (!reverse) {
+        ret.add(entry);
+      } else {
+        ret.addFirst(entry);
       }
-    } finally {
-      readLock.unlock();
     }
     return ret;
   }
@@ -683,15 +653,10 @@ private List<MountTable> getTreeValues(final String path, boolean reverse) {
    * @throws IOException If the cache is not initialized.
    */
   protected long getCacheSize() throws IOException {
-    this.readLock.lock();
-    try {
-      if (this.locationCache != null) {
-        return this.locationCache.size();
-      }
-      throw new IOException("localCache is null");
-    } finally {
-      this.readLock.unlock();
+    if (this.locationCache != null) {
+      return this.locationCache.size();
     }
+    throw new IOException("localCache is null");
   }
 
   @VisibleForTesting
@@ -0,0 +1,333 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.federation.resolver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.server.federation.store.records.MountTable;
+
+/**
+ * Immutable view of the mount table. The mount points are indexed in a trie
+ * by the components of their source path, so the deepest mount point for a
+ * path is found in O(path depth). They are also kept sorted by source path
+ * for the range queries.
+ * <p>
+ * Updates go through a {@link Builder}, which copies only the nodes on the
+ * paths of the modified mount points and shares the rest with the previous
+ * version. Readers of a version never see the updates, so a new version can be
+ * published by swapping a single reference.
+ */
+final class MountTableTrie {
+
+  /** Mount table without entries. */
+  static final MountTableTrie EMPTY = new MountTableTrie(
+      new Node(null, Collections.emptyMap()),
+      Collections.unmodifiableNavigableMap(new TreeMap<>()));
+
+  /** Root of the trie, the node of "/". */
+  private final Node root;
+  /** Mount points sorted by source path. */
+  private final NavigableMap<String, MountTable> entries;
+
+  private MountTableTrie(Node root, NavigableMap<String, MountTable> entries) {
+    this.root = root;
+    this.entries = entries;
+  }
+
+  /** Node of the trie. It is only modified by the builder that created it. */
+  private static final class Node {
+    /** Mount point for the path of this node, if any. */
+    private MountTable entry;
+    /** Nodes of the children path components. */
+    private Map<String, Node> children;
+
+    Node(MountTable entry, Map<String, Node> children) {
+      this.entry = entry;
+      this.children = children;
+    }
+
+    boolean isEmpty() {
+      return entry == null && children.isEmpty();
+    }
+  }
+
+  /**
+   * Split a normalized path into its components.
+   *
+   * @param path Absolute path.
+   * @return Components of the path, empty for the root.
+   */
+  private static List<String> getComponents(String path) {
+    List<String> components = new ArrayList<>();
+    int start = 1;
+    int length = path.length();
+    while (start < length) {
+      int end = path.indexOf(Path.SEPARATOR_CHAR, start);
+      if (end < 0) {
+        end = length;
+      }
+      if (end > start) {
+        components.add(path.substring(start, end));
+      }
+      start = end + 1;
+    }
+    return components;
+  }
+
+  /**
+   * Find the node of a path.
+   *
+   * @param path Absolute path.
+   * @return Node of the path or null if no mount point is at or below it.
+   */
+  private Node getNode(String path) {
+    Node node = root;
+    for (String component : getComponents(path)) {
+      node = node.children.get(component);
+      if (node == null) {
+        return null;
+      }
+    }
+    return node;
+  }
+
+  /**
+   * Find the deepest mount point for a path.
+   *
+   * @param path Normalized absolute path.
+   * @return Mount point the path belongs to or null if there is none.
+   */
+  MountTable findDeepest(String path) {
+    Node node = root;
+    MountTable deepest = node.entry;
+    int start = 1;
+    int length = path.length();
+    while (start < length) {
+      int end = path.indexOf(Path.SEPARATOR_CHAR, start);
+      if (end < 0) {
+        end = length;
+      }
+      if (end > start) {
+        node = node.children.get(path.substring(start, end));
+        if (node == null) {
+          break;
+        }
+        if (node.entry != null) {
+          deepest = node.entry;
+        }
+      }
+      start = end + 1;
+    }
+    return deepest;
+  }
+
+  /**
+   * Get the mount point with a source path.
+   *
+   * @param srcPath Source path of the mount point.
+   * @return Mount point or null if it does not exist.
+   */
+  MountTable get(String srcPath) {
+    return entries.get(srcPath);
+  }
+
+  /**
+   * Get the names of the immediate children of a path that lead to mount
+   * points.
+   *
+   * @param path Normalized absolute path.
+   * @return Sorted names of the children or null if no mount point is at or
+   *         below the path.
+   */
+  List<String> getMountPoints(String path) {
+    Node node = getNode(path);
+    if (node == null || node.isEmpty()) {
+      return null;
+    }
+    return new LinkedList<>(new TreeSet<>(node.children.keySet()));
+  }
+
+  /**
+   * Get the mount points sorted by source path.
+   *
+   * @return Unmodifiable map from the source path to the mount point.
+   */
+  NavigableMap<String, MountTable> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Get the number of mount points.
+   *
+   * @return Number of mount points.
+   */
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * Start a new version of the mount table from this one.
+   *
+   * @return Builder for the new version.
+   */
+  Builder toBuilder() {
+    return new Builder(this);
+  }
+
+  @Override
+  public String toString() {
+    return entries.toString();
+  }
+
+  /**
+   * Builds a new version of a mount table. Nodes are copied the first time
+   * the builder modifies them, later modifications reuse the copy.
+   */
+  static final class Builder {
+    /** Version this builder started from. */
+    private final MountTableTrie base;
+    /** Nodes created by this builder, which can be modified in place. */
+    private final Set<Node> owned =
+        Collections.newSetFromMap(new IdentityHashMap<>());
+    /** Root of the new version. */
+    private Node root;
+    /** Sorted mount points of the new version, copied on the first update. */
+    private TreeMap<String, MountTable> entries;
+
+    private Builder(MountTableTrie base) {
+      this.base = base;
+      this.root = base.root;
+    }
+
+    private Node own(Node node) {
+      if (owned.contains(node)) {
+        return node;
+      }
+      Node copy = new Node(node.entry, new HashMap<>(node.children));
+      owned.add(copy);
+      return copy;
+    }
+
+    private TreeMap<String, MountTable> getEntries() {
+      if (entries == null) {
+        entries = new TreeMap<>(base.entries);
+      }
+      return entries;
+    }
+
+    /**
+     * Add or replace a mount point.
+     *
+     * @param entry Mount point to add.
+     * @return This builder.
+     */
+    Builder put(MountTable entry) {
+      String srcPath = entry.getSourcePath();
+      root = own(root);
+      Node node = root;
+      for (String component : getComponents(srcPath)) {
+        Node child = node.children.get(component);
+        child = child == null ?
+            new Node(null, new HashMap<>()) : own(child);
+        owned.add(child);
+        node.children.put(component, child);
+        node = child;
+      }
+      node.entry = entry;
+      getEntries().put(srcPath, entry);
+      return this;
+    }
+
+    /**
+     * Add or replace mount points.
+     *
+     * @param newEntries Mount points to add.
+     * @return This builder.
+     */
+    Builder putAll(Collection<MountTable> newEntries) {
+      for (MountTable entry : newEntries) {
+        put(entry);
+      }
+      return this;
+    }
+
+    /**
+     * Remove a mount point. The nodes left without mount points are pruned.
+     *
+     * @param srcPath Source path of the mount point.
+     * @return This builder.
+     */
+    Builder remove(String srcPath) {
+      List<String> components = getComponents(srcPath);
+      List<Node> nodes = new ArrayList<>(components.size() + 1);
+      Node node = root;
+      nodes.add(node);
+      for (String component : components) {
+        node = node.children.get(component);
+        if (node == null) {
+          return this;
+        }
+        nodes.add(node);
+      }
+      if (node.entry == null) {
+        return this;
+      }
+
+      // Copy the path to the node and prune it from the bottom
+      root = own(root);
+      nodes.set(0, root);
+      for (int i = 1; i < nodes.size(); i++) {
+        Node child = own(nodes.get(i));
+        nodes.get(i - 1).children.put(components.get(i - 1), child);
+        nodes.set(i, child);
+      }
+      nodes.get(nodes.size() - 1).entry = null;
+      for (int i = nodes.size() - 1; i > 0 && nodes.get(i).isEmpty(); i--) {
+        nodes.get(i - 1).children.remove(components.get(i - 1));
+      }
+      getEntries().remove(srcPath);
+      return this;
+    }
+
+    /**
+     * Build the new version. The builder cannot be used afterwards.
+     *
+     * @return New version of the mount table.
+     */
+    MountTableTrie build() {
+      if (entries == null) {
+        return base;
+      }
+      owned.clear();
+      return new MountTableTrie(root,
+          Collections.unmodifiableNavigableMap(entries));
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.federation.router;
+
+import java.util.ArrayDeque;
+
+/**
+ * Bounds the asynchronous calls a Router has in flight to one nameservice.
+ * Calls over the limit wait in a FIFO queue and are sent as earlier calls
+ * complete, so a slow nameservice only delays its own calls. Calls over the
+ * queue limit are rejected.
+ */
+class AsyncCallQueue {
+
+  /** Maximum number of calls in flight. */
+  private final int maxInFlight;
+  /** Maximum number of calls waiting to be sent. */
+  private final int maxQueued;
+  /** Calls waiting to be sent. */
+  private final ArrayDeque<Runnable> queued = new ArrayDeque<>();
+  /** Number of calls in flight. */
+  private int inFlight = 0;
+
+  AsyncCallQueue(int maxInFlight, int maxQueued) {
+    this.maxInFlight = maxInFlight;
+    this.maxQueued = maxQueued;
+  }
+
+  /**
+   * Submit a call. It is run right away if there is room for another call
+   * in flight, and queued otherwise. Each call that was run must be followed
+   * by a call to {@link #complete()} once it is done.
+   *
+   * @param call Sends the call.
+   * @return False if the call was rejected because the queue is full.
+   */
+  boolean submit(Runnable call) {
+    synchronized (this) {
+      if (inFlight >= maxInFlight) {
+        if (queued.size() >= maxQueued) {
+          return false;
+        }
+        queued.add(call);
+        return true;
+      }
+      inFlight++;
+    }
+    call.run();
+    return true;
+  }
+
+  /**
+   * Mark a call as done.
+   *
+   * @return The next queued call, which takes the place of the completed
+   *         one and must be run by the caller, or null if none is queued.
+   */
+  synchronized Runnable complete() {
+    Runnable next = queued.poll();
+    if (next == null && inFlight > 0) {
+      inFlight--;
+    }
+    return next;
+  }
+
+  synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  synchronized int getQueued() {
+    return queued.size();
+  }
+}
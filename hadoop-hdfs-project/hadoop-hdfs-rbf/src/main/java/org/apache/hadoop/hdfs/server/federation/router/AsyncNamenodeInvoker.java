@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.federation.router;
+
+import static org.apache.hadoop.ipc.internal.ShadedProtobufHelper.getRemoteException;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBlockLocationsRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBlockLocationsResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfoRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfoResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetLocatedFileInfoRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetLocatedFileInfoResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.IsFileClosedRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.IsFileClosedResponseProto;
+import org.apache.hadoop.hdfs.protocolPB.ClientNamenodeProtocolPB;
+import org.apache.hadoop.hdfs.protocolPB.PBHelperClient;
+import org.apache.hadoop.ipc.AsyncCallLimitExceededException;
+import org.apache.hadoop.ipc.Client;
+import org.apache.hadoop.ipc.ProtobufRpcEngine2;
+import org.apache.hadoop.ipc.ProtocolTranslator;
+import org.apache.hadoop.thirdparty.protobuf.Message;
+import org.apache.hadoop.thirdparty.protobuf.ServiceException;
+import org.apache.hadoop.util.concurrent.AsyncGet;
+
+/**
+ * Invokes {@link ClientProtocol} methods on a NameNode without blocking the
+ * calling thread, using the asynchronous mode of the IPC client. The request
+ * is built and the response converted like
+ * {@link org.apache.hadoop.hdfs.protocolPB.ClientNamenodeProtocolTranslatorPB}
+ * does. Only the methods the Router forwards asynchronously are supported.
+ */
+final class AsyncNamenodeInvoker {
+
+  /** Sends the request of a method to the NameNode. */
+  @FunctionalInterface
+  private interface Request {
+    Message send(ClientNamenodeProtocolPB proxy, Object[] params)
+        throws ServiceException;
+  }
+
+  /** How to send a method and convert its response. */
+  private static final class AsyncMethod {
+    private final Request request;
+    private final Function<Message, Object> response;
+
+    private AsyncMethod(Request request, Function<Message, Object> response) {
+      this.request = request;
+      this.response = response;
+    }
+  }
+
+  /** ClientProtocol method name -> asynchronous implementation. */
+  private static final Map<String, AsyncMethod> METHODS = new HashMap<>();
+
+  static {
+    METHODS.put("getBlockLocations", new AsyncMethod(
+        (proxy, params) -> proxy.getBlockLocations(null,
+            GetBlockLocationsRequestProto.newBuilder()
+                .setSrc((String) params[0])
+                .setOffset((long) params[1])
+                .setLength((long) params[2])
+                .build()),
+        message -> {
+          GetBlockLocationsResponseProto resp =
+              (GetBlockLocationsResponseProto) message;
+          return resp.hasLocations() ?
+              PBHelperClient.convert(resp.getLocations()) : null;
+        }));
+    METHODS.put("getFileInfo", new AsyncMethod(
+        (proxy, params) -> proxy.getFileInfo(null,
+            GetFileInfoRequestProto.newBuilder()
+                .setSrc((String) params[0])
+                .build()),
+        message -> {
+          GetFileInfoResponseProto res = (GetFileInfoResponseProto) message;
+          return res.hasFs() ? PBHelperClient.convert(res.getFs()) : null;
+        }));
+    METHODS.put("getLocatedFileInfo", new AsyncMethod(
+        (proxy, params) -> proxy.getLocatedFileInfo(null,
+            GetLocatedFileInfoRequestProto.newBuilder()
+                .setSrc((String) params[0])
+                .setNeedBlockToken((boolean) params[1])
+                .build()),
+        message -> {
+          GetLocatedFileInfoResponseProto res =
+              (GetLocatedFileInfoResponseProto) message;
+          return res.hasFs() ? PBHelperClient.convert(res.getFs()) : null;
+        }));
+    METHODS.put("isFileClosed", new AsyncMethod(
+        (proxy, params) -> proxy.isFileClosed(null,
+            IsFileClosedRequestProto.newBuilder()
+                .setSrc((String) params[0])
+                .build()),
+        message -> ((IsFileClosedResponseProto) message).getResult()));
+  }
+
+  private AsyncNamenodeInvoker() {
+  }
+
+  /**
+   * Check if a method can be invoked asynchronously.
+   *
+   * @param method Remote method.
+   * @return If the method has an asynchronous implementation.
+   */
+  static boolean isSupported(Method method) {
+    return method.getDeclaringClass() == ClientProtocol.class &&
+        METHODS.containsKey(method.getName());
+  }
+
+  /**
+   * Check if a method can be invoked asynchronously through a proxy.
+   *
+   * @param proxy Proxy of a connection to the NameNode.
+   * @param method Remote method.
+   * @return If the method can be invoked asynchronously.
+   */
+  static boolean isSupported(Object proxy, Method method) {
+    return isSupported(method) && proxy instanceof ProtocolTranslator &&
+        ((ProtocolTranslator) proxy).getUnderlyingProxyObject()
+            instanceof ClientNamenodeProtocolPB;
+  }
+
+  /**
+   * Invoke a method asynchronously. The returned future is completed by the
+   * IPC client thread receiving the response, with the IOException of the
+   * call if it fails. If the IPC client has too many asynchronous calls
+   * outstanding, the call is not sent and
+   * {@link AsyncCallLimitExceededException} is thrown, so the caller can
+   * invoke the method synchronously without blocking its own thread.
+   *
+   * @param proxy Proxy of a connection to the NameNode.
+   * @param method Remote method, as checked by
+   *               {@link #isSupported(Object, Method)}.
+   * @param params Parameters of the method.
+   * @return Future for the result of the method.
+   * @throws AsyncCallLimitExceededException If the IPC client has too many
+   *         asynchronous calls outstanding.
+   * @throws IOException If the request cannot be sent.
+   */
+  static CompletableFuture<Object> invoke(Object proxy, Method method,
+      Object[] params) throws IOException {
+    final ClientNamenodeProtocolPB pb = (ClientNamenodeProtocolPB)
+        ((ProtocolTranslator) proxy).getUnderlyingProxyObject();
+    final AsyncMethod asyncMethod = METHODS.get(method.getName());
+    final AsyncGet<Message, Exception> previous =
+        ProtobufRpcEngine2.getAsyncReturnMessage();
+    Client.setAsynchronousMode(true);
+    try {
+      asyncMethod.request.send(pb, params);
+      CompletableFuture<Message> future =
+          ProtobufRpcEngine2.getAsyncReturnMessageFuture();
+      if (future == null ||
+          ProtobufRpcEngine2.getAsyncReturnMessage() == previous) {
+        // The proxy did not go through the asynchronous protobuf engine, do
+        // not use the response of a previous call of this thread
+        throw new IOException("No asynchronous response for "
+            + method.getName());
+      }
+      return future.thenApply(asyncMethod.response);
+    } catch (ServiceException e) {
+      throw getRemoteException(e);
+    } finally {
+      Client.setAsynchronousMode(false);
+    }
+  }
+}
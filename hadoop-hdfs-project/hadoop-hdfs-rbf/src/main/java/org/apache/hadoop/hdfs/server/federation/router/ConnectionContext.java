@@ -19,6 +19,7 @@
 
 import java.net.InetSocketAddress;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.NameNodeProxiesClient.ProxyAndInfo;
@@ -31,7 +32,8 @@
  * Context to track a connection in a {@link ConnectionPool}. When a client uses
  * a connection, it increments a counter to mark it as active. Once the client
  * is done with the connection, it decreases the counter. It also takes care of
- * closing the connection once is not active.
+ * closing the connection once is not active. The counter is updated without
+ * locking, so many handlers can pick a connection concurrently.
  *
  * The protocols currently used are:
  * <ul>
@@ -46,12 +48,16 @@ public class ConnectionContext {
 
   /** Client for the connection. */
   private final ProxyAndInfo<?> client;
-  /** How many threads are using this connection. */
-  private int numThreads = 0;
+  /** How many threads are using this connection, or RETIRED. */
+  private final AtomicInteger numThreads = new AtomicInteger(0);
+  /** Value of numThreads once the connection was retired by its pool. */
+  private static final int RETIRED = -1;
   /** If the connection is closed. */
-  private boolean closed = false;
+  private volatile boolean closed = false;
   /** Last timestamp the connection was active. */
-  private long lastActiveTs = 0;
+  private volatile long lastActiveTs = 0;
+  /** Last timestamp the connection was released. */
+  private volatile long lastReleaseTs = Time.monotonicNow();
   /** The connection's active status would expire after this window. */
   private final static long ACTIVE_WINDOW_TIME = TimeUnit.SECONDS.toMillis(30);
   /** The maximum number of requests that this connection can handle concurrently. **/
@@ -69,8 +75,8 @@ public ConnectionContext(ProxyAndInfo<?> connection, Configuration conf) {
    *
    * @return True if the connection is active.
    */
-  public synchronized boolean isActive() {
-    return this.numThreads > 0;
+  public boolean isActive() {
+    return this.numThreads.get() > 0;
   }
 
   /**
@@ -79,7 +85,7 @@ public synchronized boolean isActive() {
    * @return True if the connection is active or
    * was active in the past period of time.
    */
-  public synchronized boolean isActiveRecently() {
+  public boolean isActiveRecently() {
     return Time.monotonicNow() - this.lastActiveTs <= ACTIVE_WINDOW_TIME;
   }
 
@@ -88,7 +94,7 @@ public synchronized boolean isActiveRecently() {
    *
    * @return If the connection is closed.
    */
-  public synchronized boolean isClosed() {
+  public boolean isClosed() {
     return this.closed;
   }
 
@@ -98,7 +104,7 @@ public synchronized boolean isClosed() {
    *
    * @return True if the connection can be used.
    */
-  public synchronized boolean isUsable() {
+  public boolean isUsable() {
     return hasAvailableConcurrency() && !isClosed();
   }
 
@@ -106,8 +112,8 @@ public synchronized boolean isUsable() {
    * Return true if this connection context still has available concurrency,
    * else return false.
    */
-  private synchronized boolean hasAvailableConcurrency() {
-    return this.numThreads < maxConcurrencyPerConn;
+  private boolean hasAvailableConcurrency() {
+    return this.numThreads.get() < maxConcurrencyPerConn;
   }
 
   /**
@@ -115,17 +121,35 @@ private synchronized boolean hasAvailableConcurrency() {
    *  by another thread.
    * @return True if the connection is not used by another thread.
    */
-  public synchronized boolean isIdle() {
+  public boolean isIdle() {
     return !isActive() && !isClosed();
   }
 
   /**
-   * Get the connection client.
+   * Get the time since the connection was last used.
    *
-   * @return Connection client.
+   * @return Time in milliseconds since the connection was released, 0 if it
+   *         is in use.
    */
-  public synchronized ProxyAndInfo<?> getClient() {
-    this.numThreads++;
+  public long getIdleTime() {
+    if (isActive()) {
+      return 0;
+    }
+    return Time.monotonicNow() - this.lastReleaseTs;
+  }
+
+  /**
+   * Get the connection client and mark the connection as used until it is
+   * released. A connection picked from its pool may have been retired by the
+   * cleanup of the pool in the meantime, in which case it cannot be used.
+   *
+   * @return Connection client, null if the connection was retired.
+   */
+  public ProxyAndInfo<?> getClient() {
+    if (this.numThreads.getAndUpdate(n -> n == RETIRED ? n : n + 1)
+        == RETIRED) {
+      return null;
+    }
     this.lastActiveTs = Time.monotonicNow();
     return this.client;
   }
@@ -133,10 +157,19 @@ public synchronized ProxyAndInfo<?> getClient() {
   /**
    * Release this connection.
    */
-  public synchronized void release() {
-    if (this.numThreads > 0) {
-      this.numThreads--;
-    }
+  public void release() {
+    this.lastReleaseTs = Time.monotonicNow();
+    this.numThreads.updateAndGet(n -> n > 0 ? n - 1 : n);
+  }
+
+  /**
+   * Retire the connection if no thread uses it, so it can be closed. Once
+   * retired, {@link #getClient()} does not hand out the connection anymore.
+   *
+   * @return If the connection was retired.
+   */
+  public boolean retire() {
+    return this.numThreads.compareAndSet(0, RETIRED);
   }
 
   /**
@@ -146,7 +179,7 @@ public synchronized void release() {
    * @param force whether the connection should be closed anyway.
    */
   public synchronized void close(boolean force) {
-    if (!force && this.numThreads > 0) {
+    if (!force && this.numThreads.get() > 0) {
       // this is an erroneous case, but we have to close the connection
       // anyway since there will be connection leak if we don't do so
       // the connection has been moved out of the pool
@@ -18,19 +18,16 @@
 package org.apache.hadoop.hdfs.server.federation.router;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.conf.Configuration;
@@ -42,7 +39,10 @@
 
 /**
  * Implements a pool of connections for the {@link Router} to be able to open
- * many connections to many Namenodes.
+ * many connections to many Namenodes. The pools are looked up without locking.
+ * When multiplexing is enabled, the {@link RouterRpcClient} gets all the
+ * connections as the Router user, so all the users share a few connections to
+ * each Namenode, which are closed after being idle for a while.
  */
 public class ConnectionManager {
 
@@ -64,12 +64,22 @@ public class ConnectionManager {
   /** How often we close a connection in a pool. */
   private final long connectionCleanupPeriodMs;
 
+  /** If the connections are shared by all the users. */
+  private final boolean multiplexEnabled;
+  /** How long a shared connection can be unused before closing it. */
+  private final long multiplexIdleTimeMs;
+
   /** Map of connection pools, one pool per user + NN. */
   private final Map<ConnectionPoolId, ConnectionPool> pools;
-  /** Lock for accessing pools. */
-  private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
-  private final Lock readLock = readWriteLock.readLock();
-  private final Lock writeLock = readWriteLock.writeLock();
+  /** Lock for creating pools. */
+  private final Object createPoolLock = new Object();
+
+  /** Number of requests that got a usable connection from a pool. */
+  private final LongAdder poolHits = new LongAdder();
+  /** Number of requests that did not get a usable connection from a pool. */
+  private final LongAdder poolMisses = new LongAdder();
+  /** Total time in nanoseconds spent getting connections. */
+  private final LongAdder waitTimeNanos = new LongAdder();
 
   /** Queue for creating new connections. */
   private final BlockingQueue<ConnectionPool> creatorQueue;
@@ -102,16 +112,31 @@ public ConnectionManager(Configuration config) {
   public ConnectionManager(Configuration config, RouterStateIdContext routerStateIdContext) {
     this.conf = config;
     this.routerStateIdContext = routerStateIdContext;
+    this.multiplexEnabled = this.conf.getBoolean(
+        RBFConfigKeys.DFS_ROUTER_CONNECTION_MULTIPLEX_ENABLE_KEY,
+        RBFConfigKeys.DFS_ROUTER_CONNECTION_MULTIPLEX_ENABLE_DEFAULT);
+    this.multiplexIdleTimeMs = this.conf.getTimeDuration(
+        RBFConfigKeys.DFS_ROUTER_CONNECTION_MULTIPLEX_IDLE_MS_KEY,
+        RBFConfigKeys.DFS_ROUTER_CONNECTION_MULTIPLEX_IDLE_MS_DEFAULT,
+        TimeUnit.MILLISECONDS);
     // Configure minimum, maximum and active connection pools
-    this.maxSize = this.conf.getInt(
-        RBFConfigKeys.DFS_ROUTER_NAMENODE_CONNECTION_POOL_SIZE,
-        RBFConfigKeys.DFS_ROUTER_NAMENODE_CONNECTION_POOL_SIZE_DEFAULT);
+    if (this.multiplexEnabled) {
+      this.maxSize = this.conf.getInt(
+          RBFConfigKeys.DFS_ROUTER_CONNECTION_MULTIPLEX_SIZE_KEY,
+          RBFConfigKeys.DFS_ROUTER_CONNECTION_MULTIPLEX_SIZE_DEFAULT);
+      LOG.info("Multiplexing the calls over {} connections per namenode",
+          this.maxSize);
+    } else {
+      this.maxSize = this.conf.getInt(
+          RBFConfigKeys.DFS_ROUTER_NAMENODE_CONNECTION_POOL_SIZE,
+          RBFConfigKeys.DFS_ROUTER_NAMENODE_CONNECTION_POOL_SIZE_DEFAULT);
+    }
     this.minActiveRatio = this.conf.getFloat(
         RBFConfigKeys.DFS_ROUTER_NAMENODE_CONNECTION_MIN_ACTIVE_RATIO,
         RBFConfigKeys.DFS_ROUTER_NAMENODE_CONNECTION_MIN_ACTIVE_RATIO_DEFAULT);
 
     // Map with the connections indexed by UGI and Namenode
-    this.pools = new HashMap<>();
+    this.pools = new ConcurrentHashMap<>();
 
     // Create connections in a thread asynchronously
     this.creatorQueueMaxSize = this.conf.getInt(
@@ -162,17 +187,23 @@ public void close() {
     this.cleaner.shutdown();
     this.running = false;
 
-    writeLock.lock();
-    try {
+    synchronized (createPoolLock) {
       for (ConnectionPool pool : this.pools.values()) {
         pool.close();
       }
       this.pools.clear();
-    } finally {
-      writeLock.unlock();
     }
   }
 
+  /**
+   * Check if the connections are shared by all the users.
+   *
+   * @return If the connections are multiplexed.
+   */
+  public boolean isMultiplexEnabled() {
+    return this.multiplexEnabled;
+  }
+
   @VisibleForTesting
   public void closeConnectionCreator(){
     this.creator.shutdown();
@@ -199,21 +230,17 @@ public ConnectionContext getConnection(UserGroupInformation ugi,
       return null;
     }
 
+    long startTime = Time.monotonicNowNanos();
+
     // Try to get the pool if created
     ConnectionPoolId connectionId =
         new ConnectionPoolId(ugi, nnAddress, protocol);
-    ConnectionPool pool = null;
-    readLock.lock();
-    try {
-      pool = this.pools.get(connectionId);
-    } finally {
-      readLock.unlock();
-    }
+    ConnectionPool pool = this.pools.get(connectionId);
+    boolean hit = pool != null;
 
     // Create the pool if not created before
     if (pool == null) {
-      writeLock.lock();
-      try {
+      synchronized (createPoolLock) {
         pool = this.pools.get(connectionId);
         if (pool == null) {
           pool = new ConnectionPool(
@@ -222,8 +249,6 @@ public ConnectionContext getConnection(UserGroupInformation ugi,
               new PoolAlignmentContext(this.routerStateIdContext, nsId));
           this.pools.put(connectionId, pool);
         }
-      } finally {
-        writeLock.unlock();
       }
     }
 
@@ -234,11 +259,18 @@ public ConnectionContext getConnection(UserGroupInformation ugi,
 
     // Add a new connection to the pool if it wasn't usable
     if (conn == null || !conn.isUsable()) {
+      hit = false;
       if (!this.creatorQueue.contains(pool) && !this.creatorQueue.offer(pool)) {
         LOG.error("Cannot add more than {} connections at the same time",
             this.creatorQueueMaxSize);
       }
     }
+    if (hit) {
+      this.poolHits.increment();
+    } else {
+      this.poolMisses.increment();
+    }
+    this.waitTimeNanos.add(Time.monotonicNowNanos() - startTime);
 
     if (conn != null && conn.isClosed()) {
       LOG.error("We got a closed connection from {}", pool);
@@ -254,12 +286,7 @@ public ConnectionContext getConnection(UserGroupInformation ugi,
    * @return Number of connection pools.
    */
   public int getNumConnectionPools() {
-    readLock.lock();
-    try {
-      return pools.size();
-    } finally {
-      readLock.unlock();
-    }
+    return pools.size();
   }
 
   /**
@@ -269,13 +296,8 @@ public int getNumConnectionPools() {
    */
   public int getNumConnections() {
     int total = 0;
-    readLock.lock();
-    try {
-      for (ConnectionPool pool : this.pools.values()) {
-        total += pool.getNumConnections();
-      }
-    } finally {
-      readLock.unlock();
+    for (ConnectionPool pool : this.pools.values()) {
+      total += pool.getNumConnections();
     }
     return total;
   }
@@ -287,13 +309,8 @@ public int getNumConnections() {
    */
   public int getNumActiveConnections() {
     int total = 0;
-    readLock.lock();
-    try {
-      for (ConnectionPool pool : this.pools.values()) {
-        total += pool.getNumActiveConnections();
-      }
-    } finally {
-      readLock.unlock();
+    for (ConnectionPool pool : this.pools.values()) {
+      total += pool.getNumActiveConnections();
     }
     return total;
   }
@@ -305,13 +322,8 @@ public int getNumActiveConnections() {
    */
   public int getNumIdleConnections() {
     int total = 0;
-    readLock.lock();
-    try {
-      for (ConnectionPool pool : this.pools.values()) {
-        total += pool.getNumIdleConnections();
-      }
-    } finally {
-      readLock.unlock();
+    for (ConnectionPool pool : this.pools.values()) {
+      total += pool.getNumIdleConnections();
     }
     return total;
   }
@@ -323,13 +335,8 @@ public int getNumIdleConnections() {
    */
   public int getNumActiveConnectionsRecently() {
     int total = 0;
-    readLock.lock();
-    try {
-      for (ConnectionPool pool : this.pools.values()) {
-        total += pool.getNumActiveConnectionsRecently();
-      }
-    } finally {
-      readLock.unlock();
+    for (ConnectionPool pool : this.pools.values()) {
+      total += pool.getNumActiveConnectionsRecently();
     }
     return total;
   }
@@ -343,6 +350,39 @@ public int getNumCreatingConnections() {
     return this.creatorQueue.size();
   }
 
+  /**
+   * Get the number of requests that got a usable connection from the pools.
+   *
+   * @return Number of connection pool hits.
+   */
+  public long getNumConnectionPoolHits() {
+    return this.poolHits.sum();
+  }
+
+  /**
+   * Get the number of requests that had to create a pool or could not get a
+   * usable connection from it.
+   *
+   * @return Number of connection pool misses.
+   */
+  public long getNumConnectionPoolMisses() {
+    return this.poolMisses.sum();
+  }
+
+  /**
+   * Get the average time spent getting a connection.
+   *
+   * @return Average time in milliseconds to get a connection.
+   */
+  public double getConnectionWaitTimeAvg() {
+    long requests = this.poolHits.sum() + this.poolMisses.sum();
+    if (requests == 0) {
+      return 0;
+    }
+    return this.waitTimeNanos.sum() / (double) requests /
+        TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
   /**
    * Get a JSON representation of the connection pool.
    *
@@ -350,16 +390,11 @@ public int getNumCreatingConnections() {
    */
   public String getJSON() {
     final Map<String, String> info = new TreeMap<>();
-    readLock.lock();
-    try {
-      for (Entry<ConnectionPoolId, ConnectionPool> entry :
-          this.pools.entrySet()) {
-        ConnectionPoolId connectionPoolId = entry.getKey();
-        ConnectionPool pool = entry.getValue();
-        info.put(connectionPoolId.toString(), pool.getJSON());
-      }
-    } finally {
-      readLock.unlock();
+    for (Entry<ConnectionPoolId, ConnectionPool> entry :
+        this.pools.entrySet()) {
+      ConnectionPoolId connectionPoolId = entry.getKey();
+      ConnectionPool pool = entry.getValue();
+      info.put(connectionPoolId.toString(), pool.getJSON());
     }
     return JSON.toString(info);
   }
@@ -376,6 +411,13 @@ Map<ConnectionPoolId, ConnectionPool> getPools() {
    */
   @VisibleForTesting
   void cleanup(ConnectionPool pool) {
+    if (this.multiplexEnabled) {
+      // Shared connections are closed once they are idle for a while
+      List<ConnectionContext> connections =
+          pool.removeIdleConnections(this.multiplexIdleTimeMs);
+      closeConnections(pool, connections);
+      return;
+    }
     if (pool.getNumConnections() > pool.getMinSize()) {
       // Check if the pool hasn't been active in a while or not 50% are used
       long timeSinceLastActive = Time.now() - pool.getLastActiveTime();
@@ -395,9 +437,7 @@ void cleanup(ConnectionPool pool) {
             (int)(poolMinActiveRatio * total) - active);
         List<ConnectionContext> connections =
             pool.removeConnections(targetConnectionsCount);
-        for (ConnectionContext conn : connections) {
-          conn.close();
-        }
+        closeConnections(pool, connections);
         LOG.debug("Removed connection {} used {} seconds ago. " +
                 "Pool has {}/{} connections", pool.getConnectionPoolId(),
             TimeUnit.MILLISECONDS.toSeconds(timeSinceLastActive),
@@ -406,6 +446,25 @@ void cleanup(ConnectionPool pool) {
     }
   }
 
+  /**
+   * Close the connections removed from a pool. A handler may have picked a
+   * connection before it was removed; such a connection is put back into the
+   * pool instead.
+   *
+   * @param pool Connection pool the connections were removed from.
+   * @param connections Connections removed from the pool.
+   */
+  private static void closeConnections(ConnectionPool pool,
+      List<ConnectionContext> connections) {
+    for (ConnectionContext conn : connections) {
+      if (conn.retire()) {
+        conn.close();
+      } else {
+        pool.addConnection(conn);
+      }
+    }
+  }
+
   /**
    * Removes stale connections not accessed recently from the pool. This is
    * invoked periodically.
@@ -415,41 +474,22 @@ private class CleanupTask implements Runnable {
     @Override
     public void run() {
       long currentTime = Time.now();
-      List<ConnectionPoolId> toRemove = new LinkedList<>();
 
       // Look for stale pools
-      readLock.lock();
-      try {
-        for (Entry<ConnectionPoolId, ConnectionPool> entry : pools.entrySet()) {
-          ConnectionPool pool = entry.getValue();
-          long lastTimeActive = pool.getLastActiveTime();
-          boolean isStale =
-              currentTime > (lastTimeActive + poolCleanupPeriodMs);
-          if (lastTimeActive > 0 && isStale) {
-            // Remove this pool
-            LOG.debug("Closing and removing stale pool {}", pool);
-            pool.close();
-            ConnectionPoolId poolId = entry.getKey();
-            toRemove.add(poolId);
-          } else {
-            // Keep this pool but clean connections inside
-            LOG.debug("Cleaning up {}", pool);
-            cleanup(pool);
-          }
-        }
-      } finally {
-        readLock.unlock();
-      }
-
-      // Remove stale pools
-      if (!toRemove.isEmpty()) {
-        writeLock.lock();
-        try {
-          for (ConnectionPoolId poolId : toRemove) {
-            pools.remove(poolId);
-          }
-        } finally {
-          writeLock.unlock();
+      for (Entry<ConnectionPoolId, ConnectionPool> entry : pools.entrySet()) {
+        ConnectionPool pool = entry.getValue();
+        long lastTimeActive = pool.getLastActiveTime();
+        boolean isStale =
+            currentTime > (lastTimeActive + poolCleanupPeriodMs);
+        if (lastTimeActive > 0 && isStale) {
+          // Remove this pool
+          LOG.debug("Closing and removing stale pool {}", pool);
+          pools.remove(entry.getKey(), pool);
+          pool.close();
+        } else {
+          // Keep this pool but clean connections inside
+          LOG.debug("Cleaning up {}", pool);
+          cleanup(pool);
         }
       }
     }
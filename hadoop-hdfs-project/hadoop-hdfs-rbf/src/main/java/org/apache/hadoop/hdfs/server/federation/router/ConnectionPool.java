@@ -157,9 +157,13 @@ protected ConnectionPool(Configuration config, String address,
     this.minSize = minPoolSize;
     this.maxSize = maxPoolSize;
     this.minActiveRatio = minActiveRatio;
+    // Connections shared by many users need their own sockets
     this.enableMultiSocket = conf.getBoolean(
         RBFConfigKeys.DFS_ROUTER_NAMENODE_ENABLE_MULTIPLE_SOCKET_KEY,
-        RBFConfigKeys.DFS_ROUTER_NAMENODE_ENABLE_MULTIPLE_SOCKET_DEFAULT);
+        RBFConfigKeys.DFS_ROUTER_NAMENODE_ENABLE_MULTIPLE_SOCKET_DEFAULT) ||
+        conf.getBoolean(
+            RBFConfigKeys.DFS_ROUTER_CONNECTION_MULTIPLEX_ENABLE_KEY,
+            RBFConfigKeys.DFS_ROUTER_CONNECTION_MULTIPLEX_ENABLE_DEFAULT);
 
     this.alignmentContext = alignmentContext;
 
@@ -291,6 +295,34 @@ public synchronized List<ConnectionContext> removeConnections(int num) {
     return removed;
   }
 
+  /**
+   * Remove the connections that have not been used for a while from the
+   * current pool, keeping the minimum number of connections.
+   *
+   * @param idleTimeMs Time in milliseconds a connection has to be unused.
+   * @return Removed connections.
+   */
+  public synchronized List<ConnectionContext> removeIdleConnections(
+      long idleTimeMs) {
+    List<ConnectionContext> removed = new LinkedList<>();
+    int targetCount = this.connections.size() - this.minSize;
+    if (targetCount > 0) {
+      List<ConnectionContext> tmpConnections = new ArrayList<>();
+      for (ConnectionContext conn : this.connections) {
+        if (removed.size() < targetCount && conn.isIdle() &&
+            conn.getIdleTime() > idleTimeMs) {
+          removed.add(conn);
+        } else {
+          tmpConnections.add(conn);
+        }
+      }
+      this.connections = tmpConnections;
+    }
+    LOG.debug("Removed {} idle connections for connectionPool: {}",
+        removed.size(), connectionPoolId);
+    return removed;
+  }
+
   /**
    * Close the connection pool.
    */
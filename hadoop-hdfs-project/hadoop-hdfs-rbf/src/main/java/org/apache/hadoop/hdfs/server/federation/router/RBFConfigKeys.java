@@ -148,6 +148,17 @@ public class RBFConfigKeys extends CommonConfigurationKeysPublic {
   public static final String DFS_ROUTER_MAX_CONCURRENCY_PER_CONNECTION_KEY =
       FEDERATION_ROUTER_PREFIX + "max.concurrency.per.connection";
   public static final int DFS_ROUTER_MAX_CONCURRENCY_PER_CONNECTION_DEFAULT = 1;
+  public static final String DFS_ROUTER_CONNECTION_MULTIPLEX_ENABLE_KEY =
+      FEDERATION_ROUTER_PREFIX + "connection.multiplex.enable";
+  public static final boolean DFS_ROUTER_CONNECTION_MULTIPLEX_ENABLE_DEFAULT =
+      false;
+  public static final String DFS_ROUTER_CONNECTION_MULTIPLEX_SIZE_KEY =
+      FEDERATION_ROUTER_PREFIX + "connection.multiplex.size";
+  public static final int DFS_ROUTER_CONNECTION_MULTIPLEX_SIZE_DEFAULT = 4;
+  public static final String DFS_ROUTER_CONNECTION_MULTIPLEX_IDLE_MS_KEY =
+      FEDERATION_ROUTER_PREFIX + "connection.multiplex.idle.ms";
+  public static final long DFS_ROUTER_CONNECTION_MULTIPLEX_IDLE_MS_DEFAULT =
+      TimeUnit.MINUTES.toMillis(1);
 
   // HDFS Router RPC client
   public static final String DFS_ROUTER_CLIENT_THREADS_SIZE =
@@ -162,6 +173,9 @@ public class RBFConfigKeys extends CommonConfigurationKeysPublic {
   public static final String DFS_ROUTER_ALLOW_PARTIAL_LIST =
       FEDERATION_ROUTER_PREFIX + "client.allow-partial-listing";
   public static final boolean DFS_ROUTER_ALLOW_PARTIAL_LIST_DEFAULT = true;
+  public static final String DFS_ROUTER_LISTING_MAX_ENTRIES =
+      FEDERATION_ROUTER_PREFIX + "client.listing.max-entries";
+  public static final int DFS_ROUTER_LISTING_MAX_ENTRIES_DEFAULT = 0;
   public static final String DFS_ROUTER_CLIENT_MOUNT_TIME_OUT =
       FEDERATION_ROUTER_PREFIX + "client.mount-status.time-out";
   public static final long DFS_ROUTER_CLIENT_MOUNT_TIME_OUT_DEFAULT =
@@ -174,6 +188,37 @@ public class RBFConfigKeys extends CommonConfigurationKeysPublic {
   public static final long DFS_ROUTER_CLIENT_CONNECT_TIMEOUT_DEFAULT =
       TimeUnit.SECONDS.toMillis(2);
 
+  // HDFS Router asynchronous RPC forwarding
+  public static final String DFS_ROUTER_ASYNC_RPC_ENABLE_KEY =
+      FEDERATION_ROUTER_PREFIX + "async.rpc.enable";
+  public static final boolean DFS_ROUTER_ASYNC_RPC_ENABLE_DEFAULT = false;
+  public static final String DFS_ROUTER_ASYNC_RPC_RESPONDER_COUNT_KEY =
+      FEDERATION_ROUTER_PREFIX + "async.rpc.responder.count";
+  public static final int DFS_ROUTER_ASYNC_RPC_RESPONDER_COUNT_DEFAULT = 10;
+  public static final String DFS_ROUTER_ASYNC_RPC_FALLBACK_COUNT_KEY =
+      FEDERATION_ROUTER_PREFIX + "async.rpc.fallback.count";
+  public static final int DFS_ROUTER_ASYNC_RPC_FALLBACK_COUNT_DEFAULT = 10;
+  public static final String DFS_ROUTER_ASYNC_RPC_MAX_IN_FLIGHT_PER_NS_KEY =
+      FEDERATION_ROUTER_PREFIX + "async.rpc.max-in-flight-per-ns";
+  public static final int DFS_ROUTER_ASYNC_RPC_MAX_IN_FLIGHT_PER_NS_DEFAULT =
+      1000;
+  public static final String DFS_ROUTER_ASYNC_RPC_MAX_QUEUED_PER_NS_KEY =
+      FEDERATION_ROUTER_PREFIX + "async.rpc.max-queued-per-ns";
+  public static final int DFS_ROUTER_ASYNC_RPC_MAX_QUEUED_PER_NS_DEFAULT =
+      10000;
+  public static final String DFS_ROUTER_METADATA_CACHE_ENABLE_KEY =
+      FEDERATION_ROUTER_PREFIX + "metadata-cache.enable";
+  public static final boolean DFS_ROUTER_METADATA_CACHE_ENABLE_DEFAULT = false;
+  public static final String DFS_ROUTER_METADATA_CACHE_MOUNT_POINTS_KEY =
+      FEDERATION_ROUTER_PREFIX + "metadata-cache.mount-points";
+  public static final String DFS_ROUTER_METADATA_CACHE_MAX_STALENESS_KEY =
+      FEDERATION_ROUTER_PREFIX + "metadata-cache.max-staleness";
+  public static final long DFS_ROUTER_METADATA_CACHE_MAX_STALENESS_DEFAULT =
+      TimeUnit.SECONDS.toMillis(1);
+  public static final String DFS_ROUTER_METADATA_CACHE_MAX_SIZE_KEY =
+      FEDERATION_ROUTER_PREFIX + "metadata-cache.max-size";
+  public static final int DFS_ROUTER_METADATA_CACHE_MAX_SIZE_DEFAULT = 10000;
+
   // HDFS Router State Store connection
   public static final String FEDERATION_FILE_RESOLVER_CLIENT_CLASS =
       FEDERATION_ROUTER_PREFIX + "file.resolver.client.class";
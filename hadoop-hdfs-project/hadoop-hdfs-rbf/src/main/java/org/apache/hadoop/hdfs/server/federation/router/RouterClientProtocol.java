@@ -83,6 +83,7 @@
 import org.apache.hadoop.hdfs.server.federation.resolver.FederationNamespaceInfo;
 import org.apache.hadoop.hdfs.server.federation.resolver.FileSubclusterResolver;
 import org.apache.hadoop.hdfs.server.federation.resolver.MountTableResolver;
+import org.apache.hadoop.hdfs.server.federation.resolver.PathLocation;
 import org.apache.hadoop.hdfs.server.federation.resolver.RemoteLocation;
 import org.apache.hadoop.hdfs.server.federation.resolver.RouterResolveException;
 import org.apache.hadoop.hdfs.server.federation.router.security.RouterSecurityManager;
@@ -91,6 +92,7 @@
 import org.apache.hadoop.hdfs.server.protocol.DatanodeStorageReport;
 import org.apache.hadoop.io.EnumSetWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.ipc.Server;
 import org.apache.hadoop.net.ConnectTimeoutException;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.security.token.Token;
@@ -105,6 +107,7 @@
 import java.io.Serializable;
 import java.net.ConnectException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -115,8 +118,11 @@
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -145,6 +151,8 @@ public class RouterClientProtocol implements ClientProtocol {
 
   /** If it requires response from all subclusters. */
   private final boolean allowPartialList;
+  /** Maximum number of entries in a listing, no limit if not positive. */
+  private final int maxListingEntries;
   /** Time out when getting the mount statistics. */
   private long mountStatusTimeOut;
 
@@ -165,16 +173,22 @@ public class RouterClientProtocol implements ClientProtocol {
   private final RouterSnapshot snapshotProto;
   /** Router security manager to handle token operations. */
   private RouterSecurityManager securityManager = null;
+  /** Cache of the results of the read calls. */
+  private final RouterMetadataCache metadataCache;
 
   RouterClientProtocol(Configuration conf, RouterRpcServer rpcServer) {
     this.rpcServer = rpcServer;
     this.rpcClient = rpcServer.getRPCClient();
+    this.metadataCache = this.rpcClient.getMetadataCache();
     this.subclusterResolver = rpcServer.getSubclusterResolver();
     this.namenodeResolver = rpcServer.getNamenodeResolver();
 
     this.allowPartialList = conf.getBoolean(
         RBFConfigKeys.DFS_ROUTER_ALLOW_PARTIAL_LIST,
         RBFConfigKeys.DFS_ROUTER_ALLOW_PARTIAL_LIST_DEFAULT);
+    this.maxListingEntries = conf.getInt(
+        RBFConfigKeys.DFS_ROUTER_LISTING_MAX_ENTRIES,
+        RBFConfigKeys.DFS_ROUTER_LISTING_MAX_ENTRIES_DEFAULT);
     this.mountStatusTimeOut = conf.getTimeDuration(
         RBFConfigKeys.DFS_ROUTER_CLIENT_MOUNT_TIME_OUT,
         RBFConfigKeys.DFS_ROUTER_CLIENT_MOUNT_TIME_OUT_DEFAULT,
@@ -245,6 +259,19 @@ public LocatedBlocks getBlockLocations(String src, final long offset,
       final long length) throws IOException {
     rpcServer.checkOperation(NameNode.OperationCategory.READ);
 
+    PathLocation cachedLocation = getCachedLocation(src);
+    if (cachedLocation != null) {
+      // The namenodes sort the replicas by distance to the client
+      return metadataCache.get(cachedLocation,
+          () -> getBlockLocationsUncached(src, offset, length),
+          "getBlockLocations", src, offset, length,
+          Server.getRemoteAddress());
+    }
+    return getBlockLocationsUncached(src, offset, length);
+  }
+
+  private LocatedBlocks getBlockLocationsUncached(String src,
+      final long offset, final long length) throws IOException {
     List<RemoteLocation> locations =
         rpcServer.getLocationsForPath(src, false, false);
     RemoteMethod remoteMethod = new RemoteMethod("getBlockLocations",
@@ -254,6 +281,41 @@ public LocatedBlocks getBlockLocations(String src, final long offset,
         LocatedBlocks.class, null);
   }
 
+  /**
+   * Get the block locations of a file without blocking the handler, see
+   * {@link #getBlockLocations(String, long, long)}.
+   *
+   * @param src File name.
+   * @param offset Range start offset.
+   * @param length Range length.
+   * @return Future for the file locations.
+   * @throws IOException If the call cannot be started.
+   */
+  public CompletableFuture<LocatedBlocks> getBlockLocationsAsync(String src,
+      final long offset, final long length) throws IOException {
+    rpcServer.checkOperation(NameNode.OperationCategory.READ);
+
+    PathLocation cachedLocation = getCachedLocation(src);
+    if (cachedLocation != null) {
+      return metadataCache.getAsync(cachedLocation,
+          () -> getBlockLocationsAsyncUncached(src, offset, length),
+          "getBlockLocations", src, offset, length,
+          Server.getRemoteAddress());
+    }
+    return getBlockLocationsAsyncUncached(src, offset, length);
+  }
+
+  private CompletableFuture<LocatedBlocks> getBlockLocationsAsyncUncached(
+      String src, final long offset, final long length) throws IOException {
+    List<RemoteLocation> locations =
+        rpcServer.getLocationsForPath(src, false, false);
+    RemoteMethod remoteMethod = new RemoteMethod("getBlockLocations",
+        new Class<?>[] {String.class, long.class, long.class},
+        new RemoteParam(), offset, length);
+    return rpcClient.invokeSequentialAsync(locations, remoteMethod,
+        LocatedBlocks.class, null);
+  }
+
   @Override
   public FsServerDefaults getServerDefaults() throws IOException {
     rpcServer.checkOperation(NameNode.OperationCategory.READ);
@@ -836,9 +898,20 @@ public DirectoryListing getListing(String src, byte[] startAfter,
       boolean needLocation) throws IOException {
     rpcServer.checkOperation(NameNode.OperationCategory.READ);
 
+    PathLocation cachedLocation = getCachedLocation(src);
+    if (cachedLocation != null) {
+      return metadataCache.get(cachedLocation,
+          () -> getListingUncached(src, startAfter, needLocation),
+          "getListing", src, DFSUtil.bytes2String(startAfter), needLocation);
+    }
+    return getListingUncached(src, startAfter, needLocation);
+  }
+
+  private DirectoryListing getListingUncached(String src, byte[] startAfter,
+      boolean needLocation) throws IOException {
     List<RemoteResult<RemoteLocation, DirectoryListing>> listings =
         getListingInt(src, startAfter, needLocation);
-    TreeMap<byte[], HdfsFileStatus> nnListing = new TreeMap<>(comparator);
+    List<HdfsFileStatus[]> partialListings = new ArrayList<>();
     int totalRemainingEntries = 0;
     int remainingEntries = 0;
     boolean namenodeListingExists = false;
@@ -876,21 +949,17 @@ public DirectoryListing getListing(String src, byte[] startAfter,
         DirectoryListing listing = result.getResult();
         if (listing != null) {
           namenodeListingExists = true;
-          for (HdfsFileStatus file : listing.getPartialListing()) {
-            byte[] filename = file.getLocalNameInBytes();
-            if (totalRemainingEntries > 0 &&
-                comparator.compare(filename, lastName) > 0) {
-              // Discarding entries further than the lastName
-              remainingEntries++;
-            } else {
-              nnListing.put(filename, file);
-            }
-          }
+          partialListings.add(listing.getPartialListing());
           remainingEntries += listing.getRemainingEntries();
         }
       }
     }
 
+    // Merge the sorted listings, discarding entries further than the lastName
+    List<HdfsFileStatus> nnListing = new ArrayList<>();
+    remainingEntries += mergeListings(partialListings,
+        totalRemainingEntries > 0 ? lastName : null, nnListing);
+
     // Add mount points at this level in the tree
     final List<String> children = subclusterResolver.getMountPoints(src);
     if (children != null) {
@@ -898,36 +967,40 @@ public DirectoryListing getListing(String src, byte[] startAfter,
       Map<String, Long> dates = getMountPointDates(src);
 
       // Create virtual folder with the mount name
+      TreeMap<byte[], HdfsFileStatus> mountPoints = new TreeMap<>(comparator);
       for (String child : children) {
         long date = 0;
         if (dates != null && dates.containsKey(child)) {
           date = dates.get(child);
         }
-        Path childPath = new Path(src, child);
-        HdfsFileStatus dirStatus =
-            getMountPointStatus(childPath.toString(), 0, date);
 
         // if there is no subcluster path, always add mount point
         byte[] bChild = DFSUtil.string2Bytes(child);
-        if (lastName == null) {
-          nnListing.put(bChild, dirStatus);
-        } else {
-          if (shouldAddMountPoint(bChild,
-                lastName, startAfter, remainingEntries)) {
-            // This may overwrite existing listing entries with the mount point
-            // TODO don't add if already there?
-            nnListing.put(bChild, dirStatus);
-          }
+        if (lastName == null || shouldAddMountPoint(bChild,
+            lastName, startAfter, remainingEntries)) {
+          Path childPath = new Path(src, child);
+          HdfsFileStatus dirStatus =
+              getMountPointStatus(childPath.toString(), 0, date);
+          mountPoints.put(bChild, dirStatus);
         }
       }
+      // The mount points replace the entries with the same name
+      List<HdfsFileStatus> subclusterListing = nnListing;
+      nnListing = new ArrayList<>(
+          subclusterListing.size() + mountPoints.size());
+      mergeListings(Arrays.asList(
+          subclusterListing.toArray(new HdfsFileStatus[0]),
+          mountPoints.values().toArray(new HdfsFileStatus[0])),
+          null, nnListing);
+
       // Update the remaining count to include left mount points
       if (nnListing.size() > 0) {
-        byte[] lastListing = nnListing.lastKey();
-        for (int i = 0; i < children.size(); i++) {
-          byte[] bChild = DFSUtil.string2Bytes(children.get(i));
+        byte[] lastListing =
+            nnListing.get(nnListing.size() - 1).getLocalNameInBytes();
+        for (String child : children) {
+          byte[] bChild = DFSUtil.string2Bytes(child);
           if (comparator.compare(bChild, lastListing) > 0) {
-            remainingEntries += (children.size() - i);
-            break;
+            remainingEntries++;
           }
         }
       }
@@ -940,12 +1013,69 @@ public DirectoryListing getListing(String src, byte[] startAfter,
       return null;
     }
 
+    // Cap the page, the client continues after the last returned entry
+    if (maxListingEntries > 0 && nnListing.size() > maxListingEntries) {
+      remainingEntries += nnListing.size() - maxListingEntries;
+      nnListing = nnListing.subList(0, maxListingEntries);
+    }
+
     // Generate combined listing
     HdfsFileStatus[] combinedData = new HdfsFileStatus[nnListing.size()];
-    combinedData = nnListing.values().toArray(combinedData);
+    combinedData = nnListing.toArray(combinedData);
     return new DirectoryListing(combinedData, remainingEntries);
   }
 
+  /**
+   * Merge listings sorted by name into a single sorted listing without
+   * copying them into an intermediate map. When the same name is in more
+   * than one listing, the entry from the last listing is kept.
+   *
+   * @param listings Partial listings sorted by local name.
+   * @param cutoff Last name to merge, null to merge all the entries.
+   * @param merged Output for the merged entries.
+   * @return Number of entries discarded for being further than the cutoff.
+   */
+  @VisibleForTesting
+  static int mergeListings(List<HdfsFileStatus[]> listings, byte[] cutoff,
+      List<HdfsFileStatus> merged) {
+    // Each cursor is the index of a listing and the position in it
+    PriorityQueue<int[]> cursors = new PriorityQueue<>(
+        Math.max(1, listings.size()), (c1, c2) -> {
+          int cmp = comparator.compare(
+              listings.get(c1[0])[c1[1]].getLocalNameInBytes(),
+              listings.get(c2[0])[c2[1]].getLocalNameInBytes());
+          return cmp != 0 ? cmp : Integer.compare(c2[0], c1[0]);
+        });
+    for (int i = 0; i < listings.size(); i++) {
+      if (listings.get(i).length > 0) {
+        cursors.add(new int[] {i, 0});
+      }
+    }
+
+    byte[] previous = null;
+    while (!cursors.isEmpty()) {
+      int[] cursor = cursors.poll();
+      HdfsFileStatus[] listing = listings.get(cursor[0]);
+      byte[] name = listing[cursor[1]].getLocalNameInBytes();
+      if (cutoff != null && comparator.compare(name, cutoff) > 0) {
+        // All the entries left are further than the cutoff
+        int discarded = listing.length - cursor[1];
+        for (int[] other : cursors) {
+          discarded += listings.get(other[0]).length - other[1];
+        }
+        return discarded;
+      }
+      if (previous == null || comparator.compare(previous, name) != 0) {
+        merged.add(listing[cursor[1]]);
+        previous = name;
+      }
+      if (++cursor[1] < listing.length) {
+        cursors.add(cursor);
+      }
+    }
+    return 0;
+  }
+
   @Override
   public BatchedDirectoryListing getBatchedListing(String[] srcs,
       byte[] startAfter, boolean needLocation) throws IOException {
@@ -956,6 +1086,15 @@ public BatchedDirectoryListing getBatchedListing(String[] srcs,
   public HdfsFileStatus getFileInfo(String src) throws IOException {
     rpcServer.checkOperation(NameNode.OperationCategory.READ);
 
+    PathLocation cachedLocation = getCachedLocation(src);
+    if (cachedLocation != null) {
+      return metadataCache.get(cachedLocation,
+          () -> getFileInfoUncached(src), "getFileInfo", src);
+    }
+    return getFileInfoUncached(src);
+  }
+
+  private HdfsFileStatus getFileInfoUncached(String src) throws IOException {
     HdfsFileStatus ret = null;
     IOException noLocationException = null;
     try {
@@ -976,18 +1115,7 @@ public HdfsFileStatus getFileInfo(String src) throws IOException {
 
     // If there is no real path, check mount points
     if (ret == null) {
-      List<String> children = subclusterResolver.getMountPoints(src);
-      if (children != null && !children.isEmpty()) {
-        Map<String, Long> dates = getMountPointDates(src);
-        long date = 0;
-        if (dates != null && dates.containsKey(src)) {
-          date = dates.get(src);
-        }
-        ret = getMountPointStatus(src, children.size(), date, false);
-      } else if (children != null) {
-        // The src is a mount point, but there are no files or directories
-        ret = getMountPointStatus(src, 0, 0, false);
-      }
+      ret = getMountPointFileInfo(src);
     }
 
     // Can't find mount point for path and the path didn't contain any sub monit points,
@@ -999,6 +1127,107 @@ public HdfsFileStatus getFileInfo(String src) throws IOException {
     return ret;
   }
 
+  /**
+   * Get the file info of a path without blocking the handler, see
+   * {@link #getFileInfo(String)}. Paths spread over all locations and paths
+   * without a location are handled synchronously.
+   *
+   * @param src The string representation of the path to the file.
+   * @return Future for the file info, null if not found.
+   * @throws IOException If the call cannot be started.
+   */
+  public CompletableFuture<HdfsFileStatus> getFileInfoAsync(final String src)
+      throws IOException {
+    rpcServer.checkOperation(NameNode.OperationCategory.READ);
+
+    PathLocation cachedLocation = getCachedLocation(src);
+    if (cachedLocation != null) {
+      return metadataCache.getAsync(cachedLocation,
+          () -> getFileInfoAsyncUncached(src), "getFileInfo", src);
+    }
+    return getFileInfoAsyncUncached(src);
+  }
+
+  private CompletableFuture<HdfsFileStatus> getFileInfoAsyncUncached(
+      final String src) throws IOException {
+    HdfsFileStatus ret = null;
+    try {
+      final List<RemoteLocation> locations =
+          rpcServer.getLocationsForPath(src, false, false);
+      RemoteMethod method = new RemoteMethod("getFileInfo",
+          new Class<?>[] {String.class}, new RemoteParam());
+
+      if (!rpcServer.isPathAll(src)) {
+        return rpcClient.invokeSequentialAsync(
+            locations, method, HdfsFileStatus.class, null)
+            .thenApply(status -> {
+              if (status != null) {
+                return status;
+              }
+              // If there is no real path, check mount points
+              try {
+                return getMountPointFileInfo(src);
+              } catch (IOException e) {
+                throw new CompletionException(e);
+              }
+            });
+      }
+      ret = getFileInfoAll(locations, method);
+    } catch (NoLocationException | RouterResolveException e) {
+      ret = getMountPointFileInfo(src);
+      if (ret == null) {
+        throw e;
+      }
+    }
+    if (ret == null) {
+      ret = getMountPointFileInfo(src);
+    }
+    return CompletableFuture.completedFuture(ret);
+  }
+
+  /**
+   * Get the location of a path if the results of its read calls are cached.
+   *
+   * @param src The path.
+   * @return The location of the path, null if its results are not cached.
+   */
+  private PathLocation getCachedLocation(String src) {
+    if (!metadataCache.isEnabled()) {
+      return null;
+    }
+    try {
+      PathLocation location = subclusterResolver.getDestinationForPath(src);
+      return metadataCache.isCached(location) ? location : null;
+    } catch (IOException e) {
+      // The call reports why the path cannot be resolved
+      return null;
+    }
+  }
+
+  /**
+   * Get the file info of a path which is a mount point or contains mount
+   * points.
+   *
+   * @param src The path.
+   * @return The file info of the mount point, null if src is not one.
+   * @throws IOException If the mount points cannot be checked.
+   */
+  private HdfsFileStatus getMountPointFileInfo(String src) throws IOException {
+    List<String> children = subclusterResolver.getMountPoints(src);
+    if (children != null && !children.isEmpty()) {
+      Map<String, Long> dates = getMountPointDates(src);
+      long date = 0;
+      if (dates != null && dates.containsKey(src)) {
+        date = dates.get(src);
+      }
+      return getMountPointStatus(src, children.size(), date, false);
+    } else if (children != null) {
+      // The src is a mount point, but there are no files or directories
+      return getMountPointStatus(src, 0, 0, false);
+    }
+    return null;
+  }
+
   public RemoteLocation getFileRemoteLocation(String path) throws IOException {
     rpcServer.checkOperation(NameNode.OperationCategory.READ);
 
@@ -1033,6 +1262,26 @@ public boolean isFileClosed(String src) throws IOException {
         null);
   }
 
+  /**
+   * Check if a file is closed without blocking the handler, see
+   * {@link #isFileClosed(String)}.
+   *
+   * @param src The string representation of the path to the file.
+   * @return Future for whether the file is closed.
+   * @throws IOException If the call cannot be started.
+   */
+  public CompletableFuture<Boolean> isFileClosedAsync(String src)
+      throws IOException {
+    rpcServer.checkOperation(NameNode.OperationCategory.READ);
+
+    final List<RemoteLocation> locations =
+        rpcServer.getLocationsForPath(src, false, false);
+    RemoteMethod method = new RemoteMethod("isFileClosed",
+        new Class<?>[] {String.class}, new RemoteParam());
+    return rpcClient.invokeSequentialAsync(locations, method, Boolean.class,
+        null);
+  }
+
   @Override
   public HdfsFileStatus getFileLinkInfo(String src) throws IOException {
     rpcServer.checkOperation(NameNode.OperationCategory.READ);
@@ -1058,6 +1307,28 @@ public HdfsLocatedFileStatus getLocatedFileInfo(String src,
         locations, method, HdfsFileStatus.class, null);
   }
 
+  /**
+   * Get the located file info of a path without blocking the handler, see
+   * {@link #getLocatedFileInfo(String, boolean)}.
+   *
+   * @param src The string representation of the path to the file.
+   * @param needBlockToken Generate block tokens for the locations.
+   * @return Future for the located file info, null if not found.
+   * @throws IOException If the call cannot be started.
+   */
+  public CompletableFuture<HdfsLocatedFileStatus> getLocatedFileInfoAsync(
+      String src, boolean needBlockToken) throws IOException {
+    rpcServer.checkOperation(NameNode.OperationCategory.READ);
+    final List<RemoteLocation> locations =
+        rpcServer.getLocationsForPath(src, false, false);
+    RemoteMethod method = new RemoteMethod("getLocatedFileInfo",
+        new Class<?>[] {String.class, boolean.class}, new RemoteParam(),
+        needBlockToken);
+    return rpcClient.invokeSequentialAsync(
+        locations, method, HdfsFileStatus.class, null)
+        .thenApply(status -> (HdfsLocatedFileStatus) status);
+  }
+
   @Override
   public long[] getStats() throws IOException {
     rpcServer.checkOperation(NameNode.OperationCategory.UNCHECKED);
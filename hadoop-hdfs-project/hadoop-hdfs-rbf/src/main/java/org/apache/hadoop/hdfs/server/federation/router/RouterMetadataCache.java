@@ -0,0 +1,327 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.federation.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.server.federation.resolver.PathLocation;
+import org.apache.hadoop.hdfs.server.federation.resolver.RemoteLocation;
+import org.apache.hadoop.thirdparty.com.google.common.cache.Cache;
+import org.apache.hadoop.thirdparty.com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of the results of read-only calls, such as getFileInfo, in the
+ * Router. A result is only served while none of the namespaces it was read
+ * from changed:
+ * <ul>
+ * <li>the state ID of the namespace, which the Router gets from the
+ * responses of the Namenodes, did not move;
+ * <li>no write call went through this Router to the namespace;
+ * <li>the mount point still resolves to the same locations.
+ * </ul>
+ * The Namenodes only send their state ID if
+ * dfs.namenode.state.context.enabled is set. Writes from other clients are
+ * seen with the next response from the namespace, so a result is never
+ * older than the maximum staleness.
+ * <p>
+ * The results are cached per user, so a user only gets results the
+ * Namenodes returned to the same user.
+ */
+public class RouterMetadataCache {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(RouterMetadataCache.class);
+
+  /** Value cached for the calls that returned null. */
+  private static final Object NULL_VALUE = new Object();
+
+  /** If the cache is enabled. */
+  private final boolean enabled;
+  /** Mount points using the cache, all if empty. */
+  private final Set<String> mountPoints;
+  /** Results of the calls. */
+  private final Cache<List<Object>, CachedResult> cache;
+  /** Last state IDs the Namenodes returned. */
+  private final RouterStateIdContext stateIdContext;
+  /** Number of write calls through this Router for each namespace. */
+  private final ConcurrentHashMap<String, AtomicLong> writeCounts =
+      new ConcurrentHashMap<>();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /** Result of a call and the versions of the namespaces it came from. */
+  private static final class CachedResult {
+    private final Object value;
+    private final Set<RemoteLocation> locations;
+    private final long[] versions;
+
+    CachedResult(Object value, Set<RemoteLocation> locations,
+        long[] versions) {
+      this.value = value;
+      this.locations = locations;
+      this.versions = versions;
+    }
+  }
+
+  RouterMetadataCache(Configuration conf,
+      RouterStateIdContext stateIdContext) {
+    this.enabled = conf.getBoolean(
+        RBFConfigKeys.DFS_ROUTER_METADATA_CACHE_ENABLE_KEY,
+        RBFConfigKeys.DFS_ROUTER_METADATA_CACHE_ENABLE_DEFAULT);
+    this.mountPoints = new HashSet<>(conf.getTrimmedStringCollection(
+        RBFConfigKeys.DFS_ROUTER_METADATA_CACHE_MOUNT_POINTS_KEY));
+    long maxStaleness = conf.getTimeDuration(
+        RBFConfigKeys.DFS_ROUTER_METADATA_CACHE_MAX_STALENESS_KEY,
+        RBFConfigKeys.DFS_ROUTER_METADATA_CACHE_MAX_STALENESS_DEFAULT,
+        TimeUnit.MILLISECONDS);
+    int maxSize = conf.getInt(
+        RBFConfigKeys.DFS_ROUTER_METADATA_CACHE_MAX_SIZE_KEY,
+        RBFConfigKeys.DFS_ROUTER_METADATA_CACHE_MAX_SIZE_DEFAULT);
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(maxStaleness, TimeUnit.MILLISECONDS)
+        .build();
+    this.stateIdContext = stateIdContext;
+    if (this.enabled) {
+      LOG.info("Metadata cache is enabled for {} with {} ms of staleness",
+          mountPoints.isEmpty() ? "all mount points" : mountPoints,
+          maxStaleness);
+    }
+  }
+
+  /**
+   * Check if the cache is enabled.
+   *
+   * @return If the cache is enabled.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Check if the results for a location can be cached.
+   *
+   * @param location Location of the path.
+   * @return If the cache is enabled for the mount point of the location.
+   */
+  public boolean isCached(PathLocation location) {
+    if (!enabled || location == null) {
+      return false;
+    }
+    return mountPoints.isEmpty() ||
+        mountPoints.contains(location.getSourcePath());
+  }
+
+  /**
+   * Get the result of a call from the cache or invoke it.
+   *
+   * @param location Location of the path of the call.
+   * @param loader Call to invoke on a miss.
+   * @param key Method and parameters of the call.
+   * @param <T> Type of the result.
+   * @return Result of the call.
+   * @throws IOException If the call fails.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(PathLocation location, Callable<T> loader, Object... key)
+      throws IOException {
+    List<Object> cacheKey = getKey(key);
+    Set<RemoteLocation> locations = new HashSet<>(location.getDestinations());
+    long[] versions = getVersions(locations);
+    Object value = getValidValue(cacheKey, locations, versions);
+    if (value != null) {
+      return value == NULL_VALUE ? null : (T) value;
+    }
+    T result;
+    try {
+      result = loader.call();
+    } catch (IOException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+    put(cacheKey, result, locations, versions);
+    return result;
+  }
+
+  /**
+   * Get the result of a call from the cache or invoke it asynchronously.
+   *
+   * @param location Location of the path of the call.
+   * @param loader Call to invoke on a miss.
+   * @param key Method and parameters of the call.
+   * @param <T> Type of the result.
+   * @return Future for the result of the call.
+   * @throws IOException If the call cannot be started.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> CompletableFuture<T> getAsync(PathLocation location,
+      Callable<CompletableFuture<T>> loader, Object... key)
+      throws IOException {
+    List<Object> cacheKey = getKey(key);
+    Set<RemoteLocation> locations = new HashSet<>(location.getDestinations());
+    long[] versions = getVersions(locations);
+    Object value = getValidValue(cacheKey, locations, versions);
+    if (value != null) {
+      return CompletableFuture.completedFuture(
+          value == NULL_VALUE ? null : (T) value);
+    }
+    CompletableFuture<T> future;
+    try {
+      future = loader.call();
+    } catch (IOException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+    return future.thenApply(result -> {
+      put(cacheKey, result, locations, versions);
+      return result;
+    });
+  }
+
+  /**
+   * Record that a write call went to a namespace. The results read from it
+   * before are not served anymore.
+   *
+   * @param nsId Identifier of the namespace.
+   */
+  public void namespaceModified(String nsId) {
+    if (enabled) {
+      writeCounts.computeIfAbsent(nsId, k -> new AtomicLong())
+          .incrementAndGet();
+    }
+  }
+
+  /**
+   * Build the key of a call for the current user.
+   *
+   * @param key Method and parameters of the call.
+   * @return Key in the cache.
+   * @throws IOException If the user cannot be determined.
+   */
+  private static List<Object> getKey(Object... key) throws IOException {
+    List<Object> ret = new ArrayList<>(key.length + 1);
+    ret.add(RouterRpcServer.getRemoteUser().getUserName());
+    ret.addAll(Arrays.asList(key));
+    return ret;
+  }
+
+  /**
+   * Get the current versions of the namespaces of some locations. Each
+   * namespace has its state ID and its number of writes.
+   *
+   * @param locations Remote locations.
+   * @return Versions of the namespaces of the locations.
+   */
+  private long[] getVersions(Set<RemoteLocation> locations) {
+    List<String> nsIds = new ArrayList<>(locations.size());
+    for (RemoteLocation loc : locations) {
+      nsIds.add(loc.getNameserviceId());
+    }
+    nsIds.sort(null);
+    long[] versions = new long[2 * nsIds.size()];
+    for (int i = 0; i < nsIds.size(); i++) {
+      String nsId = nsIds.get(i);
+      versions[2 * i] = stateIdContext.getNamespaceStateId(nsId).get();
+      AtomicLong writes = writeCounts.get(nsId);
+      versions[2 * i + 1] = writes == null ? 0 : writes.get();
+    }
+    return versions;
+  }
+
+  private Object getValidValue(List<Object> key,
+      Set<RemoteLocation> locations, long[] versions) {
+    CachedResult cached = cache.getIfPresent(key);
+    if (cached != null && cached.locations.equals(locations) &&
+        Arrays.equals(cached.versions, versions)) {
+      hits.increment();
+      return cached.value;
+    }
+    misses.increment();
+    return null;
+  }
+
+  /**
+   * Cache the result of a call unless a namespace changed during the call.
+   */
+  private void put(List<Object> key, Object result,
+      Set<RemoteLocation> locations, long[] versions) {
+    if (Arrays.equals(versions, getVersions(locations))) {
+      Object value = result == null ? NULL_VALUE : result;
+      cache.put(key, new CachedResult(value, locations, versions));
+    }
+  }
+
+  /**
+   * Remove all the cached results.
+   */
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Get the number of calls served from the cache.
+   *
+   * @return Number of cache hits.
+   */
+  public long getNumHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Get the number of cacheable calls not served from the cache.
+   *
+   * @return Number of cache misses.
+   */
+  public long getNumMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Get the ratio of the cacheable calls served from the cache.
+   *
+   * @return Hit ratio between 0 and 1.
+   */
+  public double getHitRatio() {
+    long numHits = hits.sum();
+    long total = numHits + misses.sum();
+    return total == 0 ? 0 : (double) numHits / total;
+  }
+
+  @VisibleForTesting
+  long size() {
+    return cache.size();
+  }
+}
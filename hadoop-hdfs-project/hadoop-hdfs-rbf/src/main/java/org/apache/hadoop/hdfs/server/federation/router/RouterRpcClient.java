@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.hdfs.server.federation.router;
 
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IPC_CLIENT_ASYNC_CALLS_MAX_KEY;
 import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_SEPARATOR_DEFAULT;
 import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_SEPARATOR_KEY;
 import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IPC_CLIENT_CONNECT_MAX_RETRIES_ON_SOCKET_TIMEOUTS_KEY;
@@ -50,6 +51,8 @@
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -77,6 +80,7 @@
 import org.apache.hadoop.io.retry.RetryPolicies;
 import org.apache.hadoop.io.retry.RetryPolicy;
 import org.apache.hadoop.io.retry.RetryPolicy.RetryAction.RetryDecision;
+import org.apache.hadoop.ipc.AsyncCallLimitExceededException;
 import org.apache.hadoop.ipc.CallerContext;
 import org.apache.hadoop.ipc.ObserverRetryOnActiveException;
 import org.apache.hadoop.ipc.RemoteException;
@@ -127,6 +131,8 @@ public class RouterRpcClient {
 
   /** Connection pool to the Namenodes per user for performance. */
   private final ConnectionManager connectionManager;
+  /** Cache of the results of the read calls. */
+  private final RouterMetadataCache metadataCache;
   /** Service to run asynchronous calls. */
   private final ThreadPoolExecutor executorService;
   /** Retry policy for router -> NN communication. */
@@ -159,6 +165,20 @@ public class RouterRpcClient {
 
   private final boolean enableProxyUser;
 
+  /** If supported calls are forwarded to the NNs without blocking handlers. */
+  private final boolean asyncRpcEnabled;
+  /** Service to complete asynchronous calls. */
+  private final ThreadPoolExecutor asyncResponderService;
+  /** Service to make the synchronous calls of asynchronous invocations. */
+  private final ThreadPoolExecutor asyncFallbackService;
+  /** Maximum number of asynchronous calls in flight per nameservice. */
+  private final int asyncMaxInFlightPerNs;
+  /** Maximum number of asynchronous calls queued per nameservice. */
+  private final int asyncMaxQueuedPerNs;
+  /** Asynchronous calls to each nameservice. */
+  private final Map<String, AsyncCallQueue> asyncCallQueues =
+      new ConcurrentHashMap<>();
+
   /**
    * Create a router RPC client to manage remote procedure calls to NNs.
    *
@@ -182,6 +202,7 @@ public RouterRpcClient(Configuration conf, Router router,
             HADOOP_CALLER_CONTEXT_SEPARATOR_DEFAULT);
     this.connectionManager = new ConnectionManager(clientConf, routerStateIdContext);
     this.connectionManager.start();
+    this.metadataCache = new RouterMetadataCache(conf, routerStateIdContext);
     this.routerRpcFairnessPolicyController =
         FederationUtil.newFairnessPolicyController(conf);
 
@@ -243,6 +264,46 @@ public RouterRpcClient(Configuration conf, Router router,
           activeNNStateIdRefreshPeriodMs);
     }
     this.lastActiveNNRefreshTimes = new ConcurrentHashMap<>();
+
+    this.asyncRpcEnabled = conf.getBoolean(
+        RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_ENABLE_KEY,
+        RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_ENABLE_DEFAULT);
+    this.asyncMaxInFlightPerNs = conf.getInt(
+        RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_MAX_IN_FLIGHT_PER_NS_KEY,
+        RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_MAX_IN_FLIGHT_PER_NS_DEFAULT);
+    this.asyncMaxQueuedPerNs = conf.getInt(
+        RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_MAX_QUEUED_PER_NS_KEY,
+        RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_MAX_QUEUED_PER_NS_DEFAULT);
+    if (this.asyncRpcEnabled) {
+      int numResponders = conf.getInt(
+          RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_RESPONDER_COUNT_KEY,
+          RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_RESPONDER_COUNT_DEFAULT);
+      ThreadFactory responderFactory = new ThreadFactoryBuilder()
+          .setNameFormat("RPC Router Async Responder-%d")
+          .setDaemon(true)
+          .build();
+      this.asyncResponderService = new ThreadPoolExecutor(numResponders,
+          numResponders, 0L, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<>(), responderFactory);
+      // Calls that cannot be made asynchronously block a thread of their own
+      // instead of a responder. The number of calls in flight per
+      // nameservice bounds the queue.
+      int numFallbacks = conf.getInt(
+          RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_FALLBACK_COUNT_KEY,
+          RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_FALLBACK_COUNT_DEFAULT);
+      ThreadFactory fallbackFactory = new ThreadFactoryBuilder()
+          .setNameFormat("RPC Router Async Fallback-%d")
+          .setDaemon(true)
+          .build();
+      this.asyncFallbackService = new ThreadPoolExecutor(numFallbacks,
+          numFallbacks, 0L, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<>(), fallbackFactory);
+      LOG.info("Asynchronous RPC is enabled for router with {} responders " +
+          "and {} fallback threads.", numResponders, numFallbacks);
+    } else {
+      this.asyncResponderService = null;
+      this.asyncFallbackService = null;
+    }
   }
 
   /**
@@ -267,9 +328,36 @@ private Configuration getClientConfiguration(final Configuration conf) {
     if (connectTimeOut >= 0) {
       clientConf.setLong(IPC_CLIENT_CONNECT_TIMEOUT_KEY, connectTimeOut);
     }
+    if (conf.getBoolean(RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_ENABLE_KEY,
+        RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_ENABLE_DEFAULT) &&
+        isDefaultValue(conf, IPC_CLIENT_ASYNC_CALLS_MAX_KEY)) {
+      // Asynchronous calls are bounded per nameservice by the Router, calls
+      // over an explicitly configured limit are made synchronously
+      clientConf.setInt(IPC_CLIENT_ASYNC_CALLS_MAX_KEY, Integer.MAX_VALUE);
+    }
     return clientConf;
   }
 
+  /**
+   * Check if a property takes its value from the default resources only.
+   * @param conf Configuration to check.
+   * @param key Name of the property.
+   * @return If the property is not set explicitly.
+   */
+  private static boolean isDefaultValue(final Configuration conf,
+      final String key) {
+    String[] sources = conf.getPropertySources(key);
+    if (sources == null) {
+      return true;
+    }
+    for (String source : sources) {
+      if (!source.endsWith("-default.xml")) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Get the active namenode resolver used by this client.
    * @return Active namenode resolver.
@@ -288,6 +376,12 @@ public void shutdown() {
     if (this.executorService != null) {
       this.executorService.shutdownNow();
     }
+    if (this.asyncResponderService != null) {
+      this.asyncResponderService.shutdownNow();
+    }
+    if (this.asyncFallbackService != null) {
+      this.asyncFallbackService.shutdownNow();
+    }
     if (this.routerRpcFairnessPolicyController != null) {
       this.routerRpcFairnessPolicyController.shutdown();
     }
@@ -348,6 +442,42 @@ public int getNumCreatingConnections() {
     return this.connectionManager.getNumCreatingConnections();
   }
 
+  /**
+   * Number of requests that got a usable connection from the pools.
+   *
+   * @return Number of connection pool hits.
+   */
+  public long getNumConnectionPoolHits() {
+    return this.connectionManager.getNumConnectionPoolHits();
+  }
+
+  /**
+   * Number of requests that could not get a usable connection from the pools.
+   *
+   * @return Number of connection pool misses.
+   */
+  public long getNumConnectionPoolMisses() {
+    return this.connectionManager.getNumConnectionPoolMisses();
+  }
+
+  /**
+   * Average time to get a connection to the NNs.
+   *
+   * @return Average time in milliseconds.
+   */
+  public double getConnectionWaitTimeAvg() {
+    return this.connectionManager.getConnectionWaitTimeAvg();
+  }
+
+  /**
+   * Get the cache of the results of the read calls.
+   *
+   * @return Metadata cache.
+   */
+  public RouterMetadataCache getMetadataCache() {
+    return this.metadataCache;
+  }
+
   /**
    * JSON representation of the connection pool.
    *
@@ -387,6 +517,65 @@ public String getRejectedPermitsPerNsJSON() {
   public String getAcceptedPermitsPerNsJSON() {
     return JSON.toString(acceptedPermitsPerNs);
   }
+
+  /**
+   * JSON representation of the asynchronous calls in flight for each
+   * nameservice.
+   *
+   * @return String representation of the calls in flight for each nameservice.
+   */
+  public String getAsyncInFlightPerNsJSON() {
+    Map<String, Integer> info = new TreeMap<>();
+    for (Entry<String, AsyncCallQueue> entry : asyncCallQueues.entrySet()) {
+      info.put(entry.getKey(), entry.getValue().getInFlight());
+    }
+    return JSON.toString(info);
+  }
+
+  /**
+   * JSON representation of the asynchronous calls waiting to be sent to each
+   * nameservice.
+   *
+   * @return String representation of the queued calls for each nameservice.
+   */
+  public String getAsyncQueuedPerNsJSON() {
+    Map<String, Integer> info = new TreeMap<>();
+    for (Entry<String, AsyncCallQueue> entry : asyncCallQueues.entrySet()) {
+      info.put(entry.getKey(), entry.getValue().getQueued());
+    }
+    return JSON.toString(info);
+  }
+
+  /**
+   * Number of asynchronous calls in flight to a nameservice.
+   *
+   * @param nsId Identifier of the nameservice.
+   * @return Number of calls in flight.
+   */
+  public int getAsyncInFlight(String nsId) {
+    AsyncCallQueue queue = asyncCallQueues.get(nsId);
+    return queue == null ? 0 : queue.getInFlight();
+  }
+
+  /**
+   * Number of asynchronous calls waiting to be sent to a nameservice.
+   *
+   * @param nsId Identifier of the nameservice.
+   * @return Number of queued calls.
+   */
+  public int getAsyncQueued(String nsId) {
+    AsyncCallQueue queue = asyncCallQueues.get(nsId);
+    return queue == null ? 0 : queue.getQueued();
+  }
+
+  /**
+   * Check if supported calls are forwarded without blocking the handlers.
+   *
+   * @return If asynchronous RPC is enabled.
+   */
+  public boolean isAsyncRpcEnabled() {
+    return asyncRpcEnabled;
+  }
   /**
    * Get ClientProtocol proxy client for a NameNode. Each combination of user +
    * NN must use a unique proxy client. Previously created clients are cached
@@ -412,7 +601,11 @@ private ConnectionContext getConnection(UserGroupInformation ugi, String nsId,
 
       // TODO Add tokens from the federated UGI
       UserGroupInformation connUGI = ugi;
-      if (UserGroupInformation.isSecurityEnabled() || this.enableProxyUser) {
+      if (this.connectionManager.isMultiplexEnabled()) {
+        // The user is sent in the caller context of each call
+        connUGI = UserGroupInformation.getLoginUser();
+      } else if (UserGroupInformation.isSecurityEnabled() ||
+          this.enableProxyUser) {
         UserGroupInformation routerUser = UserGroupInformation.getLoginUser();
         connUGI = UserGroupInformation.createProxyUser(
             ugi.getUserName(), routerUser);
@@ -432,6 +625,25 @@ private ConnectionContext getConnection(UserGroupInformation ugi, String nsId,
     return connection;
   }
 
+  /**
+   * Get the client of a connection to use it.
+   *
+   * @param connection Connection from the connection manager.
+   * @param rpcAddress Address of the namenode.
+   * @return Client of the connection, to release with the connection.
+   * @throws ConnectionNullException If the connection was retired by the
+   *                                 cleanup of its pool after it was picked.
+   */
+  private static ProxyAndInfo<?> getClient(ConnectionContext connection,
+      String rpcAddress) throws ConnectionNullException {
+    ProxyAndInfo<?> client = connection.getClient();
+    if (client == null) {
+      throw new ConnectionNullException("Connection to " + rpcAddress
+          + " was closed while getting it");
+    }
+    return client;
+  }
+
   /**
    * Convert an exception to an IOException.
    *
@@ -538,22 +750,11 @@ public Object invokeMethod(
       String rpcAddress = namenode.getRpcAddress();
       try {
         connection = this.getConnection(ugi, nsId, rpcAddress, protocol);
-        ProxyAndInfo<?> client = connection.getClient();
+        ProxyAndInfo<?> client = getClient(connection, rpcAddress);
         final Object proxy = client.getProxy();
 
         ret = invoke(nsId, namenode, useObserver, 0, method, proxy, params);
-        if (failover &&
-            FederationNamenodeServiceState.OBSERVER != namenode.getState()) {
-          // Success on alternate server, update
-          InetSocketAddress address = client.getAddress();
-          namenodeResolver.updateActiveNamenode(nsId, address);
-        }
-        if (this.rpcMonitor != null) {
-          this.rpcMonitor.proxyOpComplete(true, nsId, namenode.getState());
-        }
-        if (this.router.getRouterClientMetrics() != null) {
-          this.router.getRouterClientMetrics().incInvokedMethod(method);
-        }
+        handleInvokeSuccess(namenode, client, failover, method);
         return ret;
       } catch (IOException ioe) {
         ioes.put(namenode, ioe);
@@ -561,69 +762,149 @@ public Object invokeMethod(
           LOG.info("Encountered ObserverRetryOnActiveException from {}."
                   + " Retry active namenode directly.", namenode);
           shouldUseObserver = false;
-        } else if (ioe instanceof StandbyException) {
-          // Fail over indicated by retry policy and/or NN
-          if (this.rpcMonitor != null) {
-            this.rpcMonitor.proxyOpFailureStandby(nsId);
-          }
+        } else if (handleInvokeException(ioe, namenode, useObserver)) {
           failover = true;
-        } else if (isUnavailableException(ioe)) {
-          if (this.rpcMonitor != null) {
-            this.rpcMonitor.proxyOpFailureCommunicate(nsId);
-          }
-          if (FederationNamenodeServiceState.OBSERVER == namenode.getState()) {
-            namenodeResolver.updateUnavailableNamenode(nsId,
-                NetUtils.createSocketAddr(namenode.getRpcAddress()));
-          } else {
-            failover = true;
-          }
-        } else if (ioe instanceof RemoteException) {
-          if (this.rpcMonitor != null) {
-            this.rpcMonitor.proxyOpComplete(true, nsId, namenode.getState());
-          }
-          RemoteException re = (RemoteException) ioe;
-          ioe = re.unwrapRemoteException();
-          ioe = getCleanException(ioe);
-          // RemoteException returned by NN
-          throw ioe;
-        } else if (ioe instanceof ConnectionNullException) {
-          if (this.rpcMonitor != null) {
-            this.rpcMonitor.proxyOpFailureCommunicate(nsId);
-          }
-          LOG.error("Get connection for {} {} error: {}", nsId, rpcAddress,
-              ioe.getMessage());
-          // Throw StandbyException so that client can retry
-          StandbyException se = new StandbyException(ioe.getMessage());
-          se.initCause(ioe);
-          throw se;
-        } else if (ioe instanceof NoNamenodesAvailableException) {
-          IOException cause = (IOException) ioe.getCause();
-          if (this.rpcMonitor != null) {
-            this.rpcMonitor.proxyOpNoNamenodes(nsId);
-          }
-          LOG.error("Cannot get available namenode for {} {} error: {}",
-              nsId, rpcAddress, ioe.getMessage());
-          // Rotate cache so that client can retry the next namenode in the cache
-          if (shouldRotateCache(cause)) {
-            this.namenodeResolver.rotateCache(nsId, namenode, useObserver);
-          }
-          // Throw RetriableException so that client can retry
-          throw new RetriableException(ioe);
-        } else {
-          // Other communication error, this is a failure
-          // Communication retries are handled by the retry policy
-          if (this.rpcMonitor != null) {
-            this.rpcMonitor.proxyOpFailureCommunicate(nsId);
-            this.rpcMonitor.proxyOpComplete(false, nsId, namenode.getState());
-          }
-          throw ioe;
         }
       } finally {
-        if (connection != null) {
-          connection.release();
-        }
+        releaseConnection(connection, nsId, method);
       }
     }
+    throw handleNoNamenodeAvailable(namenodes, method, params, ioes);
+  }
+
+  /**
+   * Release the connection used for a call to a namenode.
+   *
+   * @param connection Connection used for the call, null if none was got.
+   * @param nsId Nameservice that was called.
+   * @param method Remote method that was invoked.
+   */
+  private void releaseConnection(ConnectionContext connection, String nsId,
+      Method method) {
+    if (connection != null) {
+      connection.release();
+    }
+    if (isWriteCall(method)) {
+      // The call may have changed the namespace even if it failed
+      metadataCache.namespaceModified(nsId);
+    }
+  }
+
+  /**
+   * Update the state after a successful call to a namenode.
+   *
+   * @param namenode Namenode that was called.
+   * @param client Client used for the call.
+   * @param failover If the call failed over from another namenode.
+   * @param method Remote method that was invoked.
+   * @throws IOException If the active namenode cannot be updated.
+   */
+  private void handleInvokeSuccess(FederationNamenodeContext namenode,
+      ProxyAndInfo<?> client, boolean failover, Method method)
+      throws IOException {
+    String nsId = namenode.getNameserviceId();
+    if (failover &&
+        FederationNamenodeServiceState.OBSERVER != namenode.getState()) {
+      // Success on alternate server, update
+      InetSocketAddress address = client.getAddress();
+      namenodeResolver.updateActiveNamenode(nsId, address);
+    }
+    if (this.rpcMonitor != null) {
+      this.rpcMonitor.proxyOpComplete(true, nsId, namenode.getState());
+    }
+    if (this.router.getRouterClientMetrics() != null) {
+      this.router.getRouterClientMetrics().incInvokedMethod(method);
+    }
+  }
+
+  /**
+   * Handle an exception from a call to a namenode, other than
+   * ObserverRetryOnActiveException.
+   *
+   * @param ioe Exception from the call.
+   * @param namenode Namenode that was called.
+   * @param useObserver Whether observer namenodes are used.
+   * @return If the call should fail over to the next namenode.
+   * @throws IOException If the exception should be returned to the client.
+   */
+  private boolean handleInvokeException(IOException ioe,
+      FederationNamenodeContext namenode, boolean useObserver)
+      throws IOException {
+    String nsId = namenode.getNameserviceId();
+    String rpcAddress = namenode.getRpcAddress();
+    if (ioe instanceof StandbyException) {
+      // Fail over indicated by retry policy and/or NN
+      if (this.rpcMonitor != null) {
+        this.rpcMonitor.proxyOpFailureStandby(nsId);
+      }
+      return true;
+    } else if (isUnavailableException(ioe)) {
+      if (this.rpcMonitor != null) {
+        this.rpcMonitor.proxyOpFailureCommunicate(nsId);
+      }
+      if (FederationNamenodeServiceState.OBSERVER == namenode.getState()) {
+        namenodeResolver.updateUnavailableNamenode(nsId,
+            NetUtils.createSocketAddr(namenode.getRpcAddress()));
+        return false;
+      }
+      return true;
+    } else if (ioe instanceof RemoteException) {
+      if (this.rpcMonitor != null) {
+        this.rpcMonitor.proxyOpComplete(true, nsId, namenode.getState());
+      }
+      RemoteException re = (RemoteException) ioe;
+      ioe = re.unwrapRemoteException();
+      ioe = getCleanException(ioe);
+      // RemoteException returned by NN
+      throw ioe;
+    } else if (ioe instanceof ConnectionNullException) {
+      if (this.rpcMonitor != null) {
+        this.rpcMonitor.proxyOpFailureCommunicate(nsId);
+      }
+      LOG.error("Get connection for {} {} error: {}", nsId, rpcAddress,
+          ioe.getMessage());
+      // Throw StandbyException so that client can retry
+      StandbyException se = new StandbyException(ioe.getMessage());
+      se.initCause(ioe);
+      throw se;
+    } else if (ioe instanceof NoNamenodesAvailableException) {
+      IOException cause = (IOException) ioe.getCause();
+      if (this.rpcMonitor != null) {
+        this.rpcMonitor.proxyOpNoNamenodes(nsId);
+      }
+      LOG.error("Cannot get available namenode for {} {} error: {}",
+          nsId, rpcAddress, ioe.getMessage());
+      // Rotate cache so that client can retry the next namenode in the cache
+      if (shouldRotateCache(cause)) {
+        this.namenodeResolver.rotateCache(nsId, namenode, useObserver);
+      }
+      // Throw RetriableException so that client can retry
+      throw new RetriableException(ioe);
+    } else {
+      // Other communication error, this is a failure
+      // Communication retries are handled by the retry policy
+      if (this.rpcMonitor != null) {
+        this.rpcMonitor.proxyOpFailureCommunicate(nsId);
+        this.rpcMonitor.proxyOpComplete(false, nsId, namenode.getState());
+      }
+      throw ioe;
+    }
+  }
+
+  /**
+   * Build the exception to return when all the namenodes of a nameservice
+   * were unavailable or in standby.
+   *
+   * @param namenodes Namenodes that were tried.
+   * @param method Remote method that was invoked.
+   * @param params Parameters of the method.
+   * @param ioes Exception from each namenode.
+   * @return ConnectException if no namenode could be reached,
+   *         StandbyException otherwise.
+   */
+  private IOException handleNoNamenodeAvailable(
+      List<? extends FederationNamenodeContext> namenodes, Method method,
+      Object[] params, Map<FederationNamenodeContext, IOException> ioes) {
     if (this.rpcMonitor != null) {
       this.rpcMonitor.proxyOpComplete(false, null, null);
     }
@@ -652,9 +933,9 @@ public Object invokeMethod(
       }
     }
     if (exConnect == ioes.size()) {
-      throw new ConnectException(msg);
+      return new ConnectException(msg);
     } else {
-      throw new StandbyException(msg);
+      return new StandbyException(msg);
     }
   }
 
@@ -663,7 +944,9 @@ public Object invokeMethod(
    * It adds trace info "clientIp:ip", "clientPort:port",
    * "clientId:id", "clientCallId:callId" and "realUser:userName"
    * in the caller context, removing the old values if they were
-   * already present.
+   * already present. When the connections are multiplexed, it starts with
+   * "proxyUser:userName", the user the namenodes run the call as; a proxy
+   * user set by the client is always removed.
    */
   private void addClientInfoToCallerContext(UserGroupInformation ugi) {
     CallerContext ctx = CallerContext.getCurrent();
@@ -673,8 +956,14 @@ private void addClientInfoToCallerContext(UserGroupInformation ugi) {
     if (ugi.getRealUser() != null) {
       realUser = ugi.getRealUser().getUserName();
     }
+    String proxyUser = null;
+    if (this.connectionManager.isMultiplexEnabled() &&
+        !isLoginUser(ugi)) {
+      proxyUser = ugi.getUserName();
+    }
     CallerContext.Builder builder =
         new CallerContext.Builder("", contextFieldSeparator)
+            .append(CallerContext.PROXY_USER_STR, proxyUser)
             .append(CallerContext.CLIENT_IP_STR, Server.getRemoteAddress())
             .append(CallerContext.CLIENT_PORT_STR,
                 Integer.toString(Server.getRemotePort()))
@@ -689,6 +978,9 @@ private void addClientInfoToCallerContext(UserGroupInformation ugi) {
       for (String part : origContext.split(contextFieldSeparator)) {
         String[] keyValue =
             part.split(CallerContext.Builder.KEY_VALUE_SEPARATOR, 2);
+        if (CallerContext.PROXY_USER_STR.equals(keyValue[0])) {
+          continue;
+        }
         if (keyValue.length == 2) {
           builder.appendIfAbsent(keyValue[0], keyValue[1]);
         } else if (keyValue.length == 1) {
@@ -699,6 +991,21 @@ private void addClientInfoToCallerContext(UserGroupInformation ugi) {
     CallerContext.setCurrent(builder.build());
   }
 
+  /**
+   * Check if a user is the one running the Router.
+   *
+   * @param ugi User to check.
+   * @return If the user is the login user of the Router.
+   */
+  private static boolean isLoginUser(UserGroupInformation ugi) {
+    try {
+      return ugi.getUserName().equals(
+          UserGroupInformation.getLoginUser().getUserName());
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
   /**
    * Invokes a method on the designated object. Catches exceptions specific to
    * the invocation.
@@ -729,32 +1036,53 @@ private Object invoke(
         IOException ioe = (IOException) cause;
 
         // Check if we should retry.
-        RetryDecision decision = shouldRetry(ioe, retryCount, nsId, namenode, listObserverFirst);
-        if (decision == RetryDecision.RETRY) {
-          if (this.rpcMonitor != null) {
-            this.rpcMonitor.proxyOpRetries();
-          }
-
+        IOException failure =
+            checkRetry(ioe, retryCount, nsId, namenode, listObserverFirst);
+        if (failure == null) {
           // retry
           return invoke(nsId, namenode, listObserverFirst, ++retryCount, method, obj, params);
-        } else if (decision == RetryDecision.FAILOVER_AND_RETRY) {
-          // failover, invoker looks for standby exceptions for failover.
-          if (ioe instanceof StandbyException) {
-            throw ioe;
-          } else if (isUnavailableException(ioe)) {
-            throw ioe;
-          } else {
-            throw new StandbyException(ioe.getMessage());
-          }
-        } else {
-          throw ioe;
         }
+        throw failure;
       } else {
         throw new IOException(e);
       }
     }
   }
 
+  /**
+   * Check if a failed call should be retried on the same namenode.
+   *
+   * @param ioe Exception from the call.
+   * @param retryCount Current retry times.
+   * @param nsId Identifier for the namespace.
+   * @param namenode Namenode that was called.
+   * @param listObserverFirst Observer read case, observer NN will be ranked first.
+   * @return Null if the call should be retried, or the exception to throw.
+   * @throws IOException If there are no more retries.
+   */
+  private IOException checkRetry(IOException ioe, int retryCount, String nsId,
+      FederationNamenodeContext namenode, boolean listObserverFirst)
+      throws IOException {
+    RetryDecision decision = shouldRetry(ioe, retryCount, nsId, namenode, listObserverFirst);
+    if (decision == RetryDecision.RETRY) {
+      if (this.rpcMonitor != null) {
+        this.rpcMonitor.proxyOpRetries();
+      }
+      return null;
+    } else if (decision == RetryDecision.FAILOVER_AND_RETRY) {
+      // failover, invoker looks for standby exceptions for failover.
+      if (ioe instanceof StandbyException) {
+        return ioe;
+      } else if (isUnavailableException(ioe)) {
+        return ioe;
+      } else {
+        return new StandbyException(ioe.getMessage());
+      }
+    } else {
+      return ioe;
+    }
+  }
+
   /**
    * Check if the exception comes from an unavailable subcluster.
    * @param ioe IOException to check.
@@ -1178,6 +1506,484 @@ public <R extends RemoteLocationContext, T> RemoteResult invokeSequential(
     return new RemoteResult<>(locations.get(0), ret);
   }
 
+  /**
+   * Invokes sequential proxy calls to different locations without blocking
+   * the calling handler, with the same semantics as
+   * {@link #invokeSequential(List, RemoteMethod, Class, Object)}. The
+   * returned future is completed by an asynchronous responder thread, which
+   * runs with the thread local context of the calling handler.
+   *
+   * Like the synchronous calls, each call holds a permit of the fairness
+   * policy controller for its nameservice until it completes. In addition,
+   * the calls in flight to each nameservice are bounded and the calls over
+   * that bound are queued; the calls over the queue limit are rejected with
+   * a StandbyException.
+   *
+   * If asynchronous RPC is disabled or not supported for the method, the
+   * calls are made synchronously and a completed future is returned.
+   *
+   * @param <T> The type of the remote method return.
+   * @param locations List of locations/nameservices to call sequentially.
+   * @param remoteMethod The remote method and parameters to invoke.
+   * @param expectedResultClass In order to be considered a positive result, the
+   *          return type must be of this class.
+   * @param expectedResultValue In order to be considered a positive result, the
+   *          return value must equal the value of this object.
+   * @return Future for the result of the first successful call, or if no
+   *         calls are successful, the result of the first RPC call executed.
+   * @throws IOException If the calls cannot be started.
+   */
+  public <T> CompletableFuture<T> invokeSequentialAsync(
+      final List<? extends RemoteLocationContext> locations,
+      final RemoteMethod remoteMethod, Class<T> expectedResultClass,
+      Object expectedResultValue) throws IOException {
+    final Method m = remoteMethod.getMethod();
+    if (!asyncRpcEnabled || !AsyncNamenodeInvoker.isSupported(m)) {
+      T result = invokeSequential(
+          locations, remoteMethod, expectedResultClass, expectedResultValue);
+      return CompletableFuture.completedFuture(result);
+    }
+    final UserGroupInformation ugi = RouterRpcServer.getRemoteUser();
+    AsyncSequentialInvocation<T> invocation = new AsyncSequentialInvocation<>(
+        ugi, locations, remoteMethod, m, expectedResultClass,
+        expectedResultValue);
+    invocation.next();
+    return invocation.result;
+  }
+
+  /**
+   * Invoke a method on the namenodes of a nameservice without blocking the
+   * caller, failing over between the namenodes like
+   * {@link #invokeMethod(UserGroupInformation, List, boolean, Class, Method,
+   * Object...)}.
+   *
+   * @param ugi User group information.
+   * @param namenodes A prioritized list of namenodes within the same
+   *                  nameservice.
+   * @param useObserver Whether to use observer namenodes.
+   * @param protocol the protocol of the connection.
+   * @param method Remote ClientProtocol method to invoke.
+   * @param params Variable list of parameters matching the method.
+   * @return Future for the result of the invocation.
+   * @throws IOException If the call cannot be started.
+   */
+  private CompletableFuture<Object> invokeMethodAsync(
+      final UserGroupInformation ugi,
+      final List<? extends FederationNamenodeContext> namenodes,
+      final boolean useObserver, final Class<?> protocol,
+      final Method method, final Object... params) throws IOException {
+
+    if (namenodes == null || namenodes.isEmpty()) {
+      throw new IOException("No namenodes to invoke " + method.getName() +
+          " with params " + Arrays.deepToString(params) + " from "
+          + router.getRouterId());
+    }
+
+    addClientInfoToCallerContext(ugi);
+    if (rpcMonitor != null) {
+      rpcMonitor.proxyOp();
+    }
+
+    final String nsId = namenodes.get(0).getNameserviceId();
+    final AsyncCallQueue queue = asyncCallQueues.computeIfAbsent(nsId,
+        k -> new AsyncCallQueue(asyncMaxInFlightPerNs, asyncMaxQueuedPerNs));
+    final AsyncMethodInvocation invocation = new AsyncMethodInvocation(
+        ugi, namenodes, useObserver, protocol, method, params);
+    if (!queue.submit(invocation)) {
+      LOG.debug("Asynchronous call queue full for ugi: {} for method: {}",
+          ugi, method.getName());
+      throw new StandbyException(
+          "Router " + router.getRouterId() + " is overloaded for NS: " + nsId);
+    }
+    invocation.result.whenComplete((ret, error) -> {
+      Runnable next = queue.complete();
+      if (next != null) {
+        try {
+          asyncResponderService.execute(next);
+        } catch (RejectedExecutionException e) {
+          // The queue only holds invocations, fail the one that cannot start
+          ((AsyncMethodInvocation) next).result.completeExceptionally(
+              getStoppingException(nsId, e));
+        }
+      }
+    });
+    return invocation.result;
+  }
+
+  /**
+   * Get the exception for an asynchronous call that cannot be handled
+   * because the responders are stopped. The client can retry it on another
+   * Router.
+   *
+   * @param nsId Nameservice of the call.
+   * @param e Rejection by the responders.
+   * @return Exception to fail the call with.
+   */
+  private StandbyException getStoppingException(String nsId,
+      RejectedExecutionException e) {
+    LOG.debug("Cannot handle call to {}, router is stopping", nsId);
+    StandbyException se = new StandbyException(
+        "Router " + router.getRouterId() + " is stopping");
+    se.initCause(e);
+    return se;
+  }
+
+  /**
+   * Run a task with the thread local context of a client call, and restore
+   * the context of the current thread afterwards.
+   *
+   * @param call Client call.
+   * @param context CallerContext of the client call.
+   * @param task Task to run.
+   */
+  private void runWithContext(final Call call, final CallerContext context,
+      final Runnable task) {
+    final Call currentCall = Server.getCurCall().get();
+    final CallerContext currentContext = CallerContext.getCurrent();
+    transferThreadLocalContext(call, context);
+    try {
+      task.run();
+    } finally {
+      transferThreadLocalContext(currentCall, currentContext);
+    }
+  }
+
+  /**
+   * Get the cause of an exception thrown by a future.
+   *
+   * @param t Exception completing the future.
+   * @return The underlying exception.
+   */
+  private static Throwable unwrapCompletionException(Throwable t) {
+    while ((t instanceof CompletionException ||
+        t instanceof ExecutionException) && t.getCause() != null) {
+      t = t.getCause();
+    }
+    return t;
+  }
+
+  /**
+   * Sequential invocation of a method on a list of locations, see
+   * {@link #invokeSequentialAsync(List, RemoteMethod, Class, Object)}. Each
+   * location is only called once the previous one completed.
+   *
+   * @param <T> The type of the remote method return.
+   */
+  private final class AsyncSequentialInvocation<T> {
+    private final UserGroupInformation ugi;
+    private final List<? extends RemoteLocationContext> locations;
+    private final RemoteMethod remoteMethod;
+    private final Method method;
+    private final Class<T> expectedResultClass;
+    private final Object expectedResultValue;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private final List<IOException> thrownExceptions = new ArrayList<>();
+    private Object firstResult = null;
+    private int index = 0;
+
+    private AsyncSequentialInvocation(UserGroupInformation ugi,
+        List<? extends RemoteLocationContext> locations,
+        RemoteMethod remoteMethod, Method method,
+        Class<T> expectedResultClass, Object expectedResultValue) {
+      this.ugi = ugi;
+      this.locations = locations;
+      this.remoteMethod = remoteMethod;
+      this.method = method;
+      this.expectedResultClass = expectedResultClass;
+      this.expectedResultValue = expectedResultValue;
+    }
+
+    /** Invoke the method on the next location, or complete the result. */
+    private void next() {
+      if (index >= locations.size()) {
+        finish();
+        return;
+      }
+      // Only the first location is called from the handler, the next ones
+      // are called from the responders which must not wait for a permit
+      final boolean waitForPermit = index == 0;
+      final RemoteLocationContext loc = locations.get(index++);
+      final String ns = loc.getNameserviceId();
+      final RouterRpcFairnessPolicyController controller =
+          getRouterRpcFairnessPolicyController();
+      final CompletableFuture<Object> call;
+      try {
+        boolean isObserverRead = isObserverReadEligible(ns, method);
+        List<? extends FederationNamenodeContext> namenodes =
+            getOrderedNamenodes(ns, isObserverRead);
+        acquirePermit(ns, ugi, remoteMethod, controller, waitForPermit);
+        try {
+          call = invokeMethodAsync(ugi, namenodes, isObserverRead,
+              remoteMethod.getProtocol(), method, remoteMethod.getParams(loc));
+        } catch (IOException ioe) {
+          releasePermit(ns, ugi, remoteMethod, controller);
+          throw ioe;
+        }
+      } catch (IOException ioe) {
+        result.completeExceptionally(ioe);
+        return;
+      }
+      call.whenComplete((ret, error) -> {
+        releasePermit(ns, ugi, remoteMethod, controller);
+        if (error == null) {
+          // Check if the result is what we expected
+          if (isExpectedClass(expectedResultClass, ret) &&
+              isExpectedValue(expectedResultValue, ret)) {
+            // Valid result, stop here
+            @SuppressWarnings("unchecked") T value = (T) ret;
+            result.complete(value);
+            return;
+          }
+          if (firstResult == null) {
+            firstResult = ret;
+          }
+        } else {
+          Throwable cause = unwrapCompletionException(error);
+          if (cause instanceof IOException) {
+            // Localize the exception
+            thrownExceptions.add(processException((IOException) cause, loc));
+          } else {
+            LOG.error("Unexpected exception {} proxying {} to {}",
+                cause.getClass(), method.getName(), ns, cause);
+            thrownExceptions.add(new IOException(
+                "Unexpected exception proxying API " + cause.getMessage(),
+                cause));
+          }
+        }
+        next();
+      });
+    }
+
+    private void finish() {
+      if (!thrownExceptions.isEmpty()) {
+        // An unavailable subcluster may be the actual cause
+        // We cannot surface other exceptions (e.g., FileNotFoundException)
+        for (IOException ioe : thrownExceptions) {
+          if (isUnavailableException(ioe)) {
+            result.completeExceptionally(ioe);
+            return;
+          }
+        }
+        // re-throw the first exception thrown for compatibility
+        result.completeExceptionally(thrownExceptions.get(0));
+        return;
+      }
+      // Return the first result, whether it is the value or not
+      @SuppressWarnings("unchecked") T ret = (T) firstResult;
+      result.complete(ret);
+    }
+  }
+
+  /**
+   * Invocation of a method on the namenodes of a nameservice, see
+   * {@link #invokeMethodAsync(UserGroupInformation, List, boolean, Class,
+   * Method, Object...)}. The responses are handled by the asynchronous
+   * responders with the thread local context of the client call.
+   */
+  private final class AsyncMethodInvocation implements Runnable {
+    private final UserGroupInformation ugi;
+    private final List<? extends FederationNamenodeContext> namenodes;
+    private final boolean useObserver;
+    private final Class<?> protocol;
+    private final Method method;
+    private final Object[] params;
+    /** Client call and its context, to handle the responses. */
+    private final Call originCall = Server.getCurCall().get();
+    private final CallerContext originContext = CallerContext.getCurrent();
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+    private final Map<FederationNamenodeContext, IOException> ioes =
+        new LinkedHashMap<>();
+    private boolean shouldUseObserver;
+    private boolean failover = false;
+    private int index = 0;
+
+    private AsyncMethodInvocation(UserGroupInformation ugi,
+        List<? extends FederationNamenodeContext> namenodes,
+        boolean useObserver, Class<?> protocol, Method method,
+        Object[] params) {
+      this.ugi = ugi;
+      this.namenodes = namenodes;
+      this.useObserver = useObserver;
+      this.shouldUseObserver = useObserver;
+      this.protocol = protocol;
+      this.method = method;
+      this.params = params;
+    }
+
+    /** Start the invocation, possibly from a responder thread. */
+    @Override
+    public void run() {
+      runWithContext(originCall, originContext, this::next);
+    }
+
+    /** Invoke the method on the next namenode, or fail. */
+    private void next() {
+      while (index < namenodes.size()) {
+        FederationNamenodeContext namenode = namenodes.get(index++);
+        if (!shouldUseObserver && (namenode.getState()
+            == FederationNamenodeServiceState.OBSERVER)) {
+          continue;
+        }
+        attempt(namenode, 0);
+        return;
+      }
+      result.completeExceptionally(
+          handleNoNamenodeAvailable(namenodes, method, params, ioes));
+    }
+
+    /**
+     * Invoke the method on a namenode.
+     *
+     * @param namenode Namenode to call.
+     * @param retryCount Number of times the call was retried on it.
+     */
+    private void attempt(final FederationNamenodeContext namenode,
+        final int retryCount) {
+      final String nsId = namenode.getNameserviceId();
+      final ConnectionContext connection;
+      final ProxyAndInfo<?> client;
+      try {
+        connection = getConnection(
+            ugi, nsId, namenode.getRpcAddress(), protocol);
+        client = RouterRpcClient.this.getClient(
+            connection, namenode.getRpcAddress());
+      } catch (IOException ioe) {
+        onFailure(namenode, ioe);
+        return;
+      }
+      final Object proxy = client.getProxy();
+      if (!AsyncNamenodeInvoker.isSupported(proxy, method)) {
+        // The connection does not support asynchronous calls
+        attemptSync(namenode, retryCount, connection, client);
+        return;
+      }
+      CompletableFuture<Object> call;
+      try {
+        call = AsyncNamenodeInvoker.invoke(proxy, method, params);
+      } catch (AsyncCallLimitExceededException e) {
+        // The IPC client has too many asynchronous calls outstanding
+        LOG.debug("Invoking {} synchronously: {}", method.getName(),
+            e.getMessage());
+        attemptSync(namenode, retryCount, connection, client);
+        return;
+      } catch (IOException ioe) {
+        call = new CompletableFuture<>();
+        call.completeExceptionally(ioe);
+      }
+      call.whenComplete((ret, error) -> {
+        try {
+          asyncResponderService.execute(() -> runWithContext(
+              originCall, originContext,
+              () -> onResponse(namenode, retryCount, connection, client, ret,
+                  error)));
+        } catch (RejectedExecutionException e) {
+          releaseConnection(connection, nsId, method);
+          result.completeExceptionally(getStoppingException(nsId, e));
+        }
+      });
+    }
+
+    /**
+     * Invoke the method on a namenode synchronously, in a fallback thread so
+     * that neither the handlers nor the responders block on it.
+     *
+     * @param namenode Namenode to call.
+     * @param retryCount Number of times the call was retried on it.
+     * @param connection Connection to use for the call.
+     * @param client Client to use for the call.
+     */
+    private void attemptSync(final FederationNamenodeContext namenode,
+        final int retryCount, final ConnectionContext connection,
+        final ProxyAndInfo<?> client) {
+      final String nsId = namenode.getNameserviceId();
+      try {
+        asyncFallbackService.execute(() -> runWithContext(
+            originCall, originContext, () -> {
+              Object ret;
+              try {
+                ret = invoke(nsId, namenode, useObserver, retryCount,
+                    method, client.getProxy(), params);
+              } catch (IOException ioe) {
+                onFailure(namenode, ioe);
+                return;
+              } finally {
+                releaseConnection(connection, nsId, method);
+              }
+              onSuccess(namenode, client, ret);
+            }));
+      } catch (RejectedExecutionException e) {
+        releaseConnection(connection, nsId, method);
+        result.completeExceptionally(getStoppingException(nsId, e));
+      }
+    }
+
+    /**
+     * Handle the response of a namenode, in a responder thread.
+     *
+     * @param namenode Namenode that was called.
+     * @param retryCount Number of times the call was retried on it.
+     * @param connection Connection used for the call.
+     * @param client Client used for the call.
+     * @param ret Result of the call.
+     * @param error Failure of the call, null if it succeeded.
+     */
+    private void onResponse(FederationNamenodeContext namenode,
+        int retryCount, ConnectionContext connection, ProxyAndInfo<?> client,
+        Object ret, Throwable error) {
+      final String nsId = namenode.getNameserviceId();
+      releaseConnection(connection, nsId, method);
+      if (error == null) {
+        onSuccess(namenode, client, ret);
+        return;
+      }
+      Throwable cause = unwrapCompletionException(error);
+      IOException ioe = cause instanceof IOException ?
+          (IOException) cause : new IOException(cause);
+      IOException failure;
+      try {
+        failure = checkRetry(ioe, retryCount, nsId, namenode, useObserver);
+      } catch (IOException e) {
+        failure = e;
+      }
+      if (failure == null) {
+        attempt(namenode, retryCount + 1);
+      } else {
+        onFailure(namenode, failure);
+      }
+    }
+
+    private void onSuccess(FederationNamenodeContext namenode,
+        ProxyAndInfo<?> client, Object ret) {
+      try {
+        handleInvokeSuccess(namenode, client, failover, method);
+      } catch (IOException ioe) {
+        onFailure(namenode, ioe);
+        return;
+      }
+      result.complete(ret);
+    }
+
+    private void onFailure(FederationNamenodeContext namenode,
+        IOException ioe) {
+      ioes.put(namenode, ioe);
+      if (ioe instanceof ObserverRetryOnActiveException) {
+        LOG.info("Encountered ObserverRetryOnActiveException from {}."
+            + " Retry active namenode directly.", namenode);
+        shouldUseObserver = false;
+      } else {
+        try {
+          if (handleInvokeException(ioe, namenode, useObserver)) {
+            failover = true;
+          }
+        } catch (IOException e) {
+          result.completeExceptionally(e);
+          return;
+        }
+      }
+      next();
+    }
+  }
+
   /**
    * Exception messages might contain local subcluster paths. This method
    * generates a new exception with the proper message.
@@ -1678,8 +2484,27 @@ private String getNameserviceForBlockPoolId(final String bpId)
   private void acquirePermit(final String nsId, final UserGroupInformation ugi,
       final RemoteMethod m, RouterRpcFairnessPolicyController controller)
       throws IOException {
+    acquirePermit(nsId, ugi, m, controller, true);
+  }
+
+  /**
+   * Acquire permit to continue processing the request for specific nsId.
+   *
+   * @param nsId Identifier of the block pool.
+   * @param ugi UserGroupIdentifier associated with the user.
+   * @param m Remote method that needs to be invoked.
+   * @param controller fairness policy controller to acquire permit from
+   * @param wait Whether to wait for a permit to be released, false fails
+   *             immediately if none is available.
+   * @throws IOException If permit could not be acquired for the nsId.
+   */
+  private void acquirePermit(final String nsId, final UserGroupInformation ugi,
+      final RemoteMethod m, RouterRpcFairnessPolicyController controller,
+      boolean wait) throws IOException {
     if (controller != null) {
-      if (!controller.acquirePermit(nsId)) {
+      boolean acquired = wait ? controller.acquirePermit(nsId) :
+          controller.tryAcquirePermit(nsId);
+      if (!acquired) {
         // Throw StandByException,
         // Clients could fail over and try another router.
         if (rpcMonitor != null) {
@@ -1829,6 +2654,14 @@ private static boolean isReadCall(Method method) {
     return !method.getAnnotationsByType(ReadOnly.class)[0].activeOnly();
   }
 
+  /**
+   * Check if a method may modify the namespace.
+   * @return whether the 'method' is not a read-only operation.
+   */
+  private static boolean isWriteCall(Method method) {
+    return method != null && !method.isAnnotationPresent(ReadOnly.class);
+  }
+
   /**
    * Checks and sets last refresh time for a namespace's stateId.
    * Returns true if refresh time is newer than threshold.
@@ -49,6 +49,7 @@
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -130,6 +131,7 @@
 import org.apache.hadoop.hdfs.protocolPB.ClientNamenodeProtocolServerSideTranslatorPB;
 import org.apache.hadoop.hdfs.protocolPB.NamenodeProtocolPB;
 import org.apache.hadoop.hdfs.protocolPB.NamenodeProtocolServerSideTranslatorPB;
+import org.apache.hadoop.hdfs.protocolPB.RouterClientNamenodeProtocolServerSideTranslatorPB;
 import org.apache.hadoop.hdfs.protocolPB.RouterPolicyProvider;
 import org.apache.hadoop.hdfs.security.token.block.DataEncryptionKey;
 import org.apache.hadoop.hdfs.security.token.block.ExportedBlockKeys;
@@ -297,7 +299,7 @@ public RouterRpcServer(Configuration conf, Router router,
 
     ClientNamenodeProtocolServerSideTranslatorPB
         clientProtocolServerTranslator =
-            new ClientNamenodeProtocolServerSideTranslatorPB(this);
+            new RouterClientNamenodeProtocolServerSideTranslatorPB(this);
     BlockingService clientNNPbService = ClientNamenodeProtocol
         .newReflectiveBlockingService(clientProtocolServerTranslator);
 
@@ -808,6 +810,20 @@ public LocatedBlocks getBlockLocations(String src, final long offset,
     return clientProto.getBlockLocations(src, offset, length);
   }
 
+  /**
+   * Get the block locations of a file without blocking the handler.
+   *
+   * @param src File name.
+   * @param offset Range start offset.
+   * @param length Range length.
+   * @return Future for the file locations.
+   * @throws IOException If the call cannot be started.
+   */
+  public CompletableFuture<LocatedBlocks> getBlockLocationsAsync(String src,
+      final long offset, final long length) throws IOException {
+    return clientProto.getBlockLocationsAsync(src, offset, length);
+  }
+
   @Override // ClientProtocol
   public FsServerDefaults getServerDefaults() throws IOException {
     return clientProto.getServerDefaults();
@@ -1054,11 +1070,35 @@ public HdfsFileStatus getFileInfo(String src) throws IOException {
     return clientProto.getFileInfo(src);
   }
 
+  /**
+   * Get the file info of a path without blocking the handler.
+   *
+   * @param src The string representation of the path to the file.
+   * @return Future for the file info, null if not found.
+   * @throws IOException If the call cannot be started.
+   */
+  public CompletableFuture<HdfsFileStatus> getFileInfoAsync(String src)
+      throws IOException {
+    return clientProto.getFileInfoAsync(src);
+  }
+
   @Override // ClientProtocol
   public boolean isFileClosed(String src) throws IOException {
     return clientProto.isFileClosed(src);
   }
 
+  /**
+   * Check if a file is closed without blocking the handler.
+   *
+   * @param src The string representation of the path to the file.
+   * @return Future for whether the file is closed.
+   * @throws IOException If the call cannot be started.
+   */
+  public CompletableFuture<Boolean> isFileClosedAsync(String src)
+      throws IOException {
+    return clientProto.isFileClosedAsync(src);
+  }
+
   @Override // ClientProtocol
   public HdfsFileStatus getFileLinkInfo(String src) throws IOException {
     return clientProto.getFileLinkInfo(src);
@@ -1070,6 +1110,19 @@ public HdfsLocatedFileStatus getLocatedFileInfo(String src,
     return clientProto.getLocatedFileInfo(src, needBlockToken);
   }
 
+  /**
+   * Get the located file info of a path without blocking the handler.
+   *
+   * @param src The string representation of the path to the file.
+   * @param needBlockToken Generate block tokens for the locations.
+   * @return Future for the located file info, null if not found.
+   * @throws IOException If the call cannot be started.
+   */
+  public CompletableFuture<HdfsLocatedFileStatus> getLocatedFileInfoAsync(
+      String src, boolean needBlockToken) throws IOException {
+    return clientProto.getLocatedFileInfoAsync(src, needBlockToken);
+  }
+
   @Override // ClientProtocol
   public long[] getStats() throws IOException {
     return clientProto.getStats();
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.federation.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.hadoop.hdfs.server.federation.store.records.MountTable;
+import org.junit.Test;
+
+/**
+ * Test {@link MountTableTrie}.
+ */
+public class TestMountTableTrie {
+
+  private static MountTable newEntry(String src) throws IOException {
+    return MountTable.newInstance(src,
+        Collections.singletonMap("ns0", src));
+  }
+
+  @Test
+  public void testFindDeepest() throws IOException {
+    MountTable user = newEntry("/user");
+    MountTable userA = newEntry("/user/a");
+    MountTable tmp = newEntry("/tmp");
+    MountTableTrie trie = MountTableTrie.EMPTY.toBuilder()
+        .putAll(Arrays.asList(user, userA, tmp))
+        .build();
+
+    assertEquals(3, trie.size());
+    assertSame(user, trie.findDeepest("/user"));
+    assertSame(user, trie.findDeepest("/user/ab"));
+    assertSame(userA, trie.findDeepest("/user/a"));
+    assertSame(userA, trie.findDeepest("/user/a/b/c"));
+    assertSame(tmp, trie.findDeepest("/tmp/file"));
+    assertNull(trie.findDeepest("/"));
+    assertNull(trie.findDeepest("/us"));
+
+    // The root mount point is the fallback for every path
+    MountTable root = newEntry("/");
+    trie = trie.toBuilder().put(root).build();
+    assertSame(root, trie.findDeepest("/"));
+    assertSame(root, trie.findDeepest("/us"));
+    assertSame(userA, trie.findDeepest("/user/a/b"));
+  }
+
+  @Test
+  public void testGetMountPoints() throws IOException {
+    MountTableTrie trie = MountTableTrie.EMPTY.toBuilder()
+        .put(newEntry("/user/b"))
+        .put(newEntry("/user/a/x"))
+        .put(newEntry("/tmp"))
+        .build();
+
+    assertEquals(Arrays.asList("tmp", "user"), trie.getMountPoints("/"));
+    assertEquals(Arrays.asList("a", "b"), trie.getMountPoints("/user"));
+    assertEquals(Arrays.asList("x"), trie.getMountPoints("/user/a"));
+    assertEquals(Collections.emptyList(), trie.getMountPoints("/tmp"));
+    assertNull(trie.getMountPoints("/user/c"));
+    assertNull(MountTableTrie.EMPTY.getMountPoints("/"));
+  }
+
+  @Test
+  public void testCopyOnWrite() throws IOException {
+    MountTable userA = newEntry("/user/a");
+    MountTable userB = newEntry("/user/b");
+    MountTableTrie v1 = MountTableTrie.EMPTY.toBuilder()
+        .put(userA)
+        .put(userB)
+        .build();
+
+    // Updates do not modify the previous versions
+    MountTable newUserA = MountTable.newInstance("/user/a",
+        Collections.singletonMap("ns1", "/a"));
+    MountTableTrie v2 = v1.toBuilder()
+        .put(newUserA)
+        .remove("/user/b")
+        .build();
+    assertSame(userA, v1.findDeepest("/user/a/file"));
+    assertSame(userB, v1.findDeepest("/user/b/file"));
+    assertEquals(2, v1.size());
+    assertSame(newUserA, v2.findDeepest("/user/a/file"));
+    assertNull(v2.findDeepest("/user/b/file"));
+    assertEquals(Arrays.asList("a"), v2.getMountPoints("/user"));
+    assertEquals(1, v2.size());
+
+    // The empty nodes are pruned
+    MountTableTrie v3 = v2.toBuilder().remove("/user/a").build();
+    assertNull(v3.getMountPoints("/"));
+    assertEquals(0, v3.size());
+    assertSame(MountTableTrie.EMPTY, MountTableTrie.EMPTY.toBuilder().build());
+
+    // Removing a missing entry returns the same version
+    assertSame(v2, v2.toBuilder().remove("/user").remove("/x").build());
+  }
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.federation.router;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test {@link AsyncCallQueue}.
+ */
+public class TestAsyncCallQueue {
+
+  @Test
+  public void testInFlightAndQueued() {
+    AsyncCallQueue queue = new AsyncCallQueue(2, 1);
+    List<Integer> run = new ArrayList<>();
+
+    assertTrue(queue.submit(() -> run.add(1)));
+    assertTrue(queue.submit(() -> run.add(2)));
+    assertEquals(2, queue.getInFlight());
+    assertEquals(2, run.size());
+
+    // Over the in flight limit, the call waits
+    Runnable third = () -> run.add(3);
+    assertTrue(queue.submit(third));
+    assertEquals(1, queue.getQueued());
+    assertEquals(2, run.size());
+
+    // Over the queue limit, the call is rejected
+    assertFalse(queue.submit(() -> run.add(4)));
+    assertEquals(1, queue.getQueued());
+
+    // A completed call hands its place to the queued one
+    assertSame(third, queue.complete());
+    assertEquals(2, queue.getInFlight());
+    assertEquals(0, queue.getQueued());
+
+    assertNull(queue.complete());
+    assertNull(queue.complete());
+    assertEquals(0, queue.getInFlight());
+    assertNull(queue.complete());
+    assertEquals(0, queue.getInFlight());
+  }
+}
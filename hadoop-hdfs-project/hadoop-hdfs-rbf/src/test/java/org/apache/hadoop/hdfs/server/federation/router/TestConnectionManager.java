@@ -44,6 +44,7 @@
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /**
  * Test functionalities of {@link ConnectionManager}, which manages a pool
@@ -422,6 +423,130 @@ private void testConnectionCleanup(float ratio, int totalConns,
     tmpConnManager.close();
   }
 
+  @Test
+  public void testConnectionPoolHitsAndMisses() throws Exception {
+    assertEquals(0, connManager.getNumConnectionPoolHits());
+    assertEquals(0, connManager.getNumConnectionPoolMisses());
+
+    // The pool is created
+    ConnectionContext conn = connManager.getConnection(TEST_USER1,
+        TEST_NN_ADDRESS, ClientProtocol.class, "ns0");
+    assertNotNull(conn);
+    assertEquals(0, connManager.getNumConnectionPoolHits());
+    assertEquals(1, connManager.getNumConnectionPoolMisses());
+
+    // The pool has a usable connection
+    conn = connManager.getConnection(TEST_USER1, TEST_NN_ADDRESS,
+        ClientProtocol.class, "ns0");
+    assertEquals(1, connManager.getNumConnectionPoolHits());
+
+    // All the connections are in use
+    conn.getClient();
+    connManager.getConnection(TEST_USER1, TEST_NN_ADDRESS,
+        ClientProtocol.class, "ns0");
+    assertEquals(1, connManager.getNumConnectionPoolHits());
+    assertEquals(2, connManager.getNumConnectionPoolMisses());
+    assertTrue(connManager.getConnectionWaitTimeAvg() >= 0);
+  }
+
+  @Test
+  public void testMultiplexRemovesIdleConnections() throws Exception {
+    Configuration tmpConf = new Configuration();
+    tmpConf.setBoolean(
+        RBFConfigKeys.DFS_ROUTER_CONNECTION_MULTIPLEX_ENABLE_KEY, true);
+    tmpConf.setInt(RBFConfigKeys.DFS_ROUTER_CONNECTION_MULTIPLEX_SIZE_KEY, 3);
+    tmpConf.setLong(
+        RBFConfigKeys.DFS_ROUTER_CONNECTION_MULTIPLEX_IDLE_MS_KEY, 100);
+    ConnectionManager tmpConnManager = new ConnectionManager(tmpConf);
+    tmpConnManager.start();
+    tmpConnManager.closeConnectionCreator();
+    try {
+      assertTrue(tmpConnManager.isMultiplexEnabled());
+      tmpConnManager.getConnection(TEST_USER1, TEST_NN_ADDRESS,
+          ClientProtocol.class, "ns0");
+      ConnectionPool pool = tmpConnManager.getPools().get(
+          new ConnectionPoolId(TEST_USER1, TEST_NN_ADDRESS,
+              ClientProtocol.class));
+      assertEquals(3, pool.getMaxSize());
+
+      // Two more connections, one of them in use
+      ConnectionContext active = pool.newConnection();
+      pool.addConnection(active);
+      pool.addConnection(pool.newConnection());
+      active.getClient();
+      assertEquals(3, pool.getNumConnections());
+
+      // Recently used connections are kept
+      tmpConnManager.cleanup(pool);
+      assertEquals(3, pool.getNumConnections());
+
+      // The idle connections are closed but the one in use is kept
+      Thread.sleep(200);
+      tmpConnManager.cleanup(pool);
+      assertEquals(1, pool.getNumConnections());
+      assertEquals(1, pool.getNumActiveConnections());
+
+      // The pool keeps its minimum size
+      active.release();
+      Thread.sleep(200);
+      tmpConnManager.cleanup(pool);
+      assertEquals(1, pool.getNumConnections());
+      assertFalse(active.isClosed());
+    } finally {
+      tmpConnManager.close();
+    }
+  }
+
+  @Test
+  public void testRetiredConnection() throws Exception {
+    ConnectionPool pool = new ConnectionPool(conf, TEST_NN_ADDRESS,
+        TEST_USER1, 0, 10, 0.5f, ClientProtocol.class, null);
+    ConnectionContext inUse = pool.newConnection();
+    ConnectionContext picked = pool.newConnection();
+
+    // A connection in use cannot be retired
+    assertNotNull(inUse.getClient());
+    assertFalse(inUse.retire());
+    inUse.release();
+    assertTrue(inUse.retire());
+    assertFalse(inUse.retire());
+
+    // A connection picked before it was retired is not handed out
+    assertTrue(picked.retire());
+    assertNull(picked.getClient());
+    picked.release();
+    assertFalse(picked.isActive());
+    assertNull(picked.getClient());
+    inUse.close();
+    picked.close();
+  }
+
+  @Test
+  public void testConcurrentGetClientAndRelease() throws Exception {
+    Configuration tmpConf = new Configuration(conf);
+    tmpConf.setInt(
+        RBFConfigKeys.DFS_ROUTER_MAX_CONCURRENCY_PER_CONNECTION_KEY, 1000);
+    ConnectionPool pool = new ConnectionPool(tmpConf, TEST_NN_ADDRESS,
+        TEST_USER1, 1, 1, 0.5f, ClientProtocol.class, null);
+    final ConnectionContext conn = pool.getConnection();
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < 10000; j++) {
+          conn.getClient();
+          conn.release();
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertFalse(conn.isActive());
+    assertTrue(conn.isIdle());
+    pool.close();
+  }
+
   @Test
   public void testUnsupportedProtoExceptionMsg() throws Exception {
     LambdaTestUtils.intercept(IllegalStateException.class,
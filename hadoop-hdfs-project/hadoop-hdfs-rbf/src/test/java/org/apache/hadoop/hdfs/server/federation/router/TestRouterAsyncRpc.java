@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.federation.router;
+
+import static org.apache.hadoop.hdfs.server.federation.FederationTestUtils.simulateSlowNamenode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.HdfsLocatedFileStatus;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.server.federation.MiniRouterDFSCluster;
+import org.apache.hadoop.hdfs.server.federation.MiniRouterDFSCluster.RouterContext;
+import org.apache.hadoop.hdfs.server.federation.RouterConfigBuilder;
+import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.hdfs.server.namenode.ha.HAContext;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.test.LambdaTestUtils;
+import org.apache.hadoop.test.Whitebox;
+import org.apache.hadoop.util.Time;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the Router forwarding calls to the namenodes asynchronously. This
+ * feature is managed by {@link RBFConfigKeys#DFS_ROUTER_ASYNC_RPC_ENABLE_KEY}.
+ */
+public class TestRouterAsyncRpc {
+
+  private static MiniRouterDFSCluster cluster;
+  private static RouterContext routerContext;
+  private static RouterRpcClient rpcClient;
+  private static String ns0;
+  private static String ns1;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    cluster = new MiniRouterDFSCluster(false, 2);
+    cluster.setNumDatanodesPerNameservice(1);
+    cluster.startCluster();
+
+    Configuration routerConf = new RouterConfigBuilder()
+        .metrics()
+        .rpc()
+        .build();
+    routerConf.setBoolean(RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_ENABLE_KEY, true);
+    // A single handler, which is released while the namenodes are called
+    routerConf.setInt(RBFConfigKeys.DFS_ROUTER_HANDLER_COUNT_KEY, 1);
+    cluster.addRouterOverrides(routerConf);
+    cluster.startRouters();
+
+    cluster.registerNamenodes();
+    cluster.waitNamenodeRegistration();
+    cluster.installMockLocations();
+
+    routerContext = cluster.getRandomRouter();
+    rpcClient = routerContext.getRouter().getRpcServer().getRPCClient();
+    ns0 = cluster.getNameservices().get(0);
+    ns1 = cluster.getNameservices().get(1);
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  private static String createFile(String nsId, String name, int length)
+      throws Exception {
+    String path = cluster.getFederatedPathForNS(nsId) + "/" + name;
+    FileSystem fs = routerContext.getFileSystem();
+    try (FSDataOutputStream out = fs.create(new Path(path))) {
+      out.write(new byte[length]);
+    }
+    return path;
+  }
+
+  private static void waitForNoAsyncCalls() throws Exception {
+    GenericTestUtils.waitFor(() -> rpcClient.getAsyncInFlight(ns0) == 0 &&
+        rpcClient.getAsyncInFlight(ns1) == 0, 100, 10000);
+    assertEquals(0, rpcClient.getAsyncQueued(ns0));
+    assertEquals(0, rpcClient.getAsyncQueued(ns1));
+  }
+
+  @Test
+  public void testReadOperations() throws Exception {
+    assertTrue(rpcClient.isAsyncRpcEnabled());
+    String path = createFile(ns0, "testReadOperations", 1024);
+    DFSClient client = routerContext.getClient();
+    ClientProtocol routerProtocol = client.getNamenode();
+
+    HdfsFileStatus status = client.getFileInfo(path);
+    assertNotNull(status);
+    assertEquals(1024, status.getLen());
+    assertNull(client.getFileInfo(path + "-missing"));
+
+    HdfsLocatedFileStatus located = client.getLocatedFileInfo(path, false);
+    assertNotNull(located);
+    assertEquals(1, located.getLocatedBlocks().locatedBlockCount());
+
+    LocatedBlocks blocks = routerProtocol.getBlockLocations(path, 0, 1024);
+    assertEquals(1, blocks.locatedBlockCount());
+    assertEquals(1024, blocks.getFileLength());
+
+    assertTrue(client.isFileClosed(path));
+
+    LambdaTestUtils.intercept(FileNotFoundException.class,
+        () -> client.open(path + "-missing"));
+    LambdaTestUtils.intercept(FileNotFoundException.class,
+        () -> client.isFileClosed(path + "-missing"));
+
+    // Calls to the second nameservice use their own queue
+    String path1 = createFile(ns1, "testReadOperations", 10);
+    assertEquals(10, client.getFileInfo(path1).getLen());
+
+    waitForNoAsyncCalls();
+    String inFlight = routerContext.getRouter().getRpcServer()
+        .getRPCMetrics().getAsyncInFlightPerNs();
+    assertTrue(inFlight, inFlight.contains("\"" + ns0 + "\":0"));
+  }
+
+  @Test
+  public void testSlowNamenodeDoesNotBlockHandler() throws Exception {
+    final String path0 = createFile(ns0, "testSlowNamenode", 1);
+    final String path1 = createFile(ns1, "testSlowNamenode", 1);
+    final DFSClient client = routerContext.getClient();
+    final int numCalls = 5;
+
+    NameNode nn0 = cluster.getNamenode(ns0, null).getNamenode();
+    FSNamesystem namesystem = nn0.getNamesystem();
+    HAContext haContext = namesystem.getHAContext();
+    simulateSlowNamenode(nn0, 3);
+    ExecutorService exec = Executors.newFixedThreadPool(numCalls);
+    try {
+      List<Future<HdfsFileStatus>> futures = new ArrayList<>();
+      for (int i = 0; i < numCalls; i++) {
+        futures.add(exec.submit(() -> client.getFileInfo(path0)));
+      }
+
+      // All the calls are waiting for the namenode, not for the handler
+      GenericTestUtils.waitFor(
+          () -> rpcClient.getAsyncInFlight(ns0) == numCalls, 10, 10000);
+
+      // The other nameservice is not affected by the slow one
+      long start = Time.monotonicNow();
+      assertNotNull(client.getFileInfo(path1));
+      long elapsed = Time.monotonicNow() - start;
+      assertTrue("Call to " + ns1 + " took " + elapsed + "ms",
+          elapsed < 3000);
+
+      for (Future<HdfsFileStatus> future : futures) {
+        HdfsFileStatus status = future.get();
+        assertNotNull(status);
+        assertFalse(status.isDirectory());
+      }
+    } finally {
+      exec.shutdownNow();
+      Whitebox.setInternalState(namesystem, "haContext", haContext);
+    }
+    waitForNoAsyncCalls();
+  }
+
+  @Test
+  public void testFairnessPermits() throws Exception {
+    String path = createFile(ns0, "testFairnessPermits", 1);
+    DFSClient client = routerContext.getClient();
+    assertNotNull(rpcClient.getRouterRpcFairnessPolicyController());
+    long accepted = rpcClient.getAcceptedPermitForNs(ns0);
+    assertNotNull(client.getFileInfo(path));
+    assertEquals(accepted + 1, (long) rpcClient.getAcceptedPermitForNs(ns0));
+  }
+
+  @Test(timeout = 60000)
+  public void testRespondersStopped() throws Exception {
+    String path = createFile(ns0, "testRespondersStopped", 1);
+    DFSClient client = routerContext.getClient();
+    Object responders =
+        Whitebox.getInternalState(rpcClient, "asyncResponderService");
+    ThreadPoolExecutor stopped =
+        (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+    stopped.shutdown();
+    Whitebox.setInternalState(rpcClient, "asyncResponderService", stopped);
+    try {
+      // The call fails instead of waiting forever for its response
+      LambdaTestUtils.intercept(IOException.class, "is stopping",
+          () -> client.getFileInfo(path));
+    } finally {
+      Whitebox.setInternalState(rpcClient, "asyncResponderService",
+          responders);
+    }
+    waitForNoAsyncCalls();
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.federation.router;
+
+import static org.apache.hadoop.fs.CommonConfigurationKeys.IPC_CLIENT_ASYNC_CALLS_MAX_KEY;
+import static org.apache.hadoop.hdfs.server.federation.FederationTestUtils.NAMENODES;
+import static org.apache.hadoop.hdfs.server.federation.FederationTestUtils.simulateSlowNamenode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.server.federation.MiniRouterDFSCluster;
+import org.apache.hadoop.hdfs.server.federation.MiniRouterDFSCluster.RouterContext;
+import org.apache.hadoop.hdfs.server.federation.RouterConfigBuilder;
+import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.hdfs.server.namenode.ha.HAContext;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.test.Whitebox;
+import org.apache.hadoop.util.Time;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the Router forwarding calls asynchronously when the IPC client has
+ * more calls outstanding than {@code ipc.client.async.calls.max}. The IPC
+ * client is shared by the whole JVM, so the limit is set for the namenodes
+ * and datanodes too.
+ */
+public class TestRouterAsyncRpcCallLimit {
+
+  private static final int SLOW_SECONDS = 2;
+
+  private MiniRouterDFSCluster cluster;
+  private RouterContext routerContext;
+  private RouterRpcClient rpcClient;
+  private String ns;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setInt(IPC_CLIENT_ASYNC_CALLS_MAX_KEY, 1);
+    cluster = new MiniRouterDFSCluster(true, 1, conf);
+    cluster.setNumDatanodesPerNameservice(1);
+    cluster.startCluster(conf);
+
+    Configuration routerConf = new RouterConfigBuilder()
+        .rpc()
+        .build();
+    routerConf.setBoolean(RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_ENABLE_KEY, true);
+    routerConf.setInt(IPC_CLIENT_ASYNC_CALLS_MAX_KEY, 1);
+    // A single responder, which would serialize the calls if they blocked it
+    routerConf.setInt(
+        RBFConfigKeys.DFS_ROUTER_ASYNC_RPC_RESPONDER_COUNT_KEY, 1);
+    cluster.addRouterOverrides(routerConf);
+    cluster.startRouters();
+
+    ns = cluster.getNameservices().get(0);
+    cluster.switchToActive(ns, NAMENODES[0]);
+    cluster.switchToStandby(ns, NAMENODES[1]);
+    cluster.registerNamenodes();
+    cluster.waitNamenodeRegistration();
+    cluster.installMockLocations();
+
+    routerContext = cluster.getRouters().get(0);
+    rpcClient = routerContext.getRouter().getRpcServer().getRPCClient();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testCallLimitWithFailover() throws Exception {
+    final String path = cluster.getFederatedPathForNS(ns) + "/testCallLimit";
+    FileSystem fs = routerContext.getFileSystem();
+    try (FSDataOutputStream out = fs.create(new Path(path))) {
+      out.write(new byte[1]);
+    }
+    final DFSClient client = routerContext.getClient();
+    final int numCalls = 5;
+
+    // Fail over without the Router knowing, every call first gets a
+    // StandbyException from the first namenode
+    cluster.switchToStandby(ns, NAMENODES[0]);
+    cluster.switchToActive(ns, NAMENODES[1]);
+    NameNode nn1 = cluster.getNamenode(ns, NAMENODES[1]).getNamenode();
+    FSNamesystem namesystem = nn1.getNamesystem();
+    HAContext haContext = namesystem.getHAContext();
+    simulateSlowNamenode(nn1, SLOW_SECONDS);
+
+    ThreadPoolExecutor fallbacks = (ThreadPoolExecutor)
+        Whitebox.getInternalState(rpcClient, "asyncFallbackService");
+    long fallbacksBefore = fallbacks.getCompletedTaskCount();
+    ExecutorService exec = Executors.newFixedThreadPool(numCalls);
+    try {
+      long start = Time.monotonicNow();
+      List<Future<HdfsFileStatus>> futures = new ArrayList<>();
+      // The first call holds the only asynchronous call of the IPC client
+      futures.add(exec.submit(() -> client.getFileInfo(path)));
+      GenericTestUtils.waitFor(
+          () -> rpcClient.getAsyncInFlight(ns) == 1, 10, 10000);
+      // The next ones are over the limit and fail over synchronously
+      for (int i = 1; i < numCalls; i++) {
+        futures.add(exec.submit(() -> client.getFileInfo(path)));
+      }
+      for (Future<HdfsFileStatus> future : futures) {
+        HdfsFileStatus status = future.get();
+        assertEquals(1, status.getLen());
+      }
+      long elapsed = Time.monotonicNow() - start;
+      // Blocking calls on the single responder would run one after another
+      assertTrue("Calls took " + elapsed + "ms",
+          elapsed < (numCalls - 1) * SLOW_SECONDS * 1000);
+    } finally {
+      exec.shutdownNow();
+      Whitebox.setInternalState(namesystem, "haContext", haContext);
+    }
+
+    GenericTestUtils.waitFor(() -> fallbacks.getCompletedTaskCount() >=
+        fallbacksBefore + numCalls - 1, 10, 10000);
+    GenericTestUtils.waitFor(
+        () -> rpcClient.getAsyncInFlight(ns) == 0, 100, 10000);
+  }
+}
@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.federation.router;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_CALLER_CONTEXT_PROXY_USERS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.server.federation.MiniRouterDFSCluster;
+import org.apache.hadoop.hdfs.server.federation.MiniRouterDFSCluster.RouterContext;
+import org.apache.hadoop.hdfs.server.federation.RouterConfigBuilder;
+import org.apache.hadoop.hdfs.server.federation.metrics.FederationRPCMetrics;
+import org.apache.hadoop.security.AccessControlException;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.security.authorize.ProxyUsers;
+import org.apache.hadoop.test.LambdaTestUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the Router multiplexing the calls of many users over its own
+ * connections to the namenodes. This feature is managed by
+ * {@link RBFConfigKeys#DFS_ROUTER_CONNECTION_MULTIPLEX_ENABLE_KEY}.
+ */
+public class TestRouterConnectionMultiplex {
+
+  private static MiniRouterDFSCluster cluster;
+  private static RouterContext routerContext;
+  private static String routerUser;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    routerUser = UserGroupInformation.getLoginUser().getShortUserName();
+    Configuration conf = new Configuration();
+    conf.set("hadoop.proxyuser." + routerUser + ".hosts", "*");
+    conf.set("hadoop.proxyuser." + routerUser + ".users",
+        "fake_joe,fake_bob");
+    conf.set(DFS_NAMENODE_CALLER_CONTEXT_PROXY_USERS, routerUser);
+    ProxyUsers.refreshSuperUserGroupsConfiguration(conf);
+
+    cluster = new MiniRouterDFSCluster(false, 2, conf);
+    cluster.addNamenodeOverrides(conf);
+    cluster.setNumDatanodesPerNameservice(1);
+    cluster.startCluster();
+
+    Configuration routerConf = new RouterConfigBuilder()
+        .metrics()
+        .rpc()
+        .build();
+    routerConf.setBoolean(
+        RBFConfigKeys.DFS_ROUTER_CONNECTION_MULTIPLEX_ENABLE_KEY, true);
+    routerConf.setInt(RBFConfigKeys.DFS_ROUTER_CONNECTION_MULTIPLEX_SIZE_KEY, 2);
+    cluster.addRouterOverrides(routerConf);
+    cluster.startRouters();
+
+    cluster.registerNamenodes();
+    cluster.waitNamenodeRegistration();
+    cluster.installMockLocations();
+
+    routerContext = cluster.getRandomRouter();
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  private static FileSystem getFileSystem(String user) throws Exception {
+    final FileSystem routerFs = routerContext.getFileSystem();
+    UserGroupInformation ugi = UserGroupInformation.createUserForTesting(
+        user, new String[] {"fake_group"});
+    return ugi.doAs((PrivilegedExceptionAction<FileSystem>) () ->
+        FileSystem.newInstance(routerFs.getUri(), routerFs.getConf()));
+  }
+
+  @Test
+  public void testCallsRunAsTheirUser() throws Exception {
+    String ns0 = cluster.getNameservices().get(0);
+    Path base = new Path(cluster.getFederatedPathForNS(ns0), "multiplex");
+    FileSystem routerFs = routerContext.getFileSystem();
+    routerFs.mkdirs(base);
+    routerFs.setPermission(base, new FsPermission((short) 0777));
+    assertEquals(routerUser, routerFs.getFileStatus(base).getOwner());
+
+    RouterRpcClient rpcClient =
+        routerContext.getRouter().getRpcServer().getRPCClient();
+    Path joeDir = new Path(base, "joe");
+    try (FileSystem joeFs = getFileSystem("fake_joe")) {
+      joeFs.mkdirs(joeDir);
+      joeFs.setPermission(joeDir, new FsPermission((short) 0700));
+      assertEquals("fake_joe", joeFs.getFileStatus(joeDir).getOwner());
+    }
+    int numPools = rpcClient.getNumConnectionPools();
+
+    // Another user shares the pools of the Router user
+    try (FileSystem bobFs = getFileSystem("fake_bob")) {
+      Path bobDir = new Path(base, "bob");
+      bobFs.mkdirs(bobDir);
+      assertEquals("fake_bob", bobFs.getFileStatus(bobDir).getOwner());
+
+      // The permissions are checked for the user of the call
+      LambdaTestUtils.intercept(AccessControlException.class,
+          () -> bobFs.mkdirs(new Path(joeDir, "bob")));
+    }
+    assertEquals(numPools, rpcClient.getNumConnectionPools());
+
+    // The Router can only impersonate the allowed users
+    try (FileSystem eveFs = getFileSystem("fake_eve")) {
+      IOException e = LambdaTestUtils.intercept(IOException.class,
+          () -> eveFs.mkdirs(new Path(base, "eve")));
+      assertTrue(e.getMessage(),
+          e.getMessage().contains("not allowed to impersonate fake_eve"));
+    }
+
+    FederationRPCMetrics metrics =
+        routerContext.getRouter().getRpcServer().getRPCMetrics();
+    assertTrue(metrics.getRpcClientConnectionPoolHits() > 0);
+    assertTrue(metrics.getRpcClientConnectionPoolMisses() > 0);
+    assertTrue(metrics.getRpcClientConnectionWaitTimeAvg() >= 0);
+  }
+}
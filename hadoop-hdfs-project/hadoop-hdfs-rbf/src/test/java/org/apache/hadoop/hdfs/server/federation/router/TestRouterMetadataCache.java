@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.federation.router;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_STATE_CONTEXT_ENABLED_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.server.federation.MiniRouterDFSCluster.RouterContext;
+import org.apache.hadoop.hdfs.server.federation.RouterConfigBuilder;
+import org.apache.hadoop.hdfs.server.federation.StateStoreDFSCluster;
+import org.apache.hadoop.hdfs.server.federation.metrics.FederationRPCMetrics;
+import org.apache.hadoop.hdfs.server.federation.resolver.MountTableResolver;
+import org.apache.hadoop.hdfs.server.federation.store.protocol.AddMountTableEntryRequest;
+import org.apache.hadoop.hdfs.server.federation.store.records.MountTable;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the cache of the read calls in the Router. This feature is managed by
+ * {@link RBFConfigKeys#DFS_ROUTER_METADATA_CACHE_ENABLE_KEY}.
+ */
+public class TestRouterMetadataCache {
+
+  private static StateStoreDFSCluster cluster;
+  private static RouterContext routerContext;
+  private static RouterMetadataCache metadataCache;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    cluster = new StateStoreDFSCluster(false, 2);
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(DFS_NAMENODE_STATE_CONTEXT_ENABLED_KEY, true);
+    cluster.addNamenodeOverrides(conf);
+    Configuration routerConf = new RouterConfigBuilder()
+        .stateStore()
+        .admin()
+        .metrics()
+        .rpc()
+        .build();
+    routerConf.setBoolean(
+        RBFConfigKeys.DFS_ROUTER_METADATA_CACHE_ENABLE_KEY, true);
+    routerConf.set(
+        RBFConfigKeys.DFS_ROUTER_METADATA_CACHE_MOUNT_POINTS_KEY, "/cached");
+    routerConf.set(
+        RBFConfigKeys.DFS_ROUTER_METADATA_CACHE_MAX_STALENESS_KEY, "1h");
+    cluster.addRouterOverrides(routerConf);
+    cluster.startCluster();
+    cluster.startRouters();
+    cluster.waitClusterUp();
+
+    routerContext = cluster.getRandomRouter();
+    Router router = routerContext.getRouter();
+    addMountTable(MountTable.newInstance("/cached",
+        Collections.singletonMap("ns0", "/cached")));
+    addMountTable(MountTable.newInstance("/uncached",
+        Collections.singletonMap("ns1", "/uncached")));
+    ((MountTableResolver) router.getSubclusterResolver()).loadCache(true);
+    metadataCache = router.getRpcServer().getRPCClient().getMetadataCache();
+  }
+
+  private static void addMountTable(MountTable entry) throws Exception {
+    routerContext.getAdminClient().getMountTableManager().addMountTableEntry(
+        AddMountTableEntryRequest.newInstance(entry));
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    if (cluster != null) {
+      cluster.stopRouter(routerContext);
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  @Test
+  public void testWritesThroughRouter() throws Exception {
+    FileSystem routerFs = routerContext.getFileSystem();
+    Path dir = new Path("/cached/writes");
+    routerFs.mkdirs(dir);
+    routerFs.setPermission(dir, new FsPermission((short) 0755));
+
+    long hits = metadataCache.getNumHits();
+    assertEquals(new FsPermission((short) 0755),
+        routerFs.getFileStatus(dir).getPermission());
+    assertEquals(new FsPermission((short) 0755),
+        routerFs.getFileStatus(dir).getPermission());
+    assertEquals(hits + 1, metadataCache.getNumHits());
+    routerFs.listStatus(dir);
+    routerFs.listStatus(dir);
+    assertEquals(hits + 2, metadataCache.getNumHits());
+
+    // A write through the Router is seen right away
+    routerFs.setPermission(dir, new FsPermission((short) 0700));
+    assertEquals(new FsPermission((short) 0700),
+        routerFs.getFileStatus(dir).getPermission());
+    Path file = new Path(dir, "file");
+    routerFs.create(file).close();
+    assertEquals(1, routerFs.listStatus(dir).length);
+    assertTrue(routerFs.exists(file));
+    assertEquals(hits + 2, metadataCache.getNumHits());
+
+    FederationRPCMetrics metrics =
+        routerContext.getRouter().getRpcServer().getRPCMetrics();
+    assertEquals(metadataCache.getNumHits(), metrics.getMetadataCacheHits());
+    assertEquals(metadataCache.getNumMisses(),
+        metrics.getMetadataCacheMisses());
+    assertTrue(metrics.getMetadataCacheHitRatio() > 0);
+  }
+
+  @Test
+  public void testWritesToNamenode() throws Exception {
+    FileSystem routerFs = routerContext.getFileSystem();
+    Path dir = new Path("/cached/direct");
+    Path otherDir = new Path("/cached/other");
+    routerFs.mkdirs(dir);
+    routerFs.mkdirs(otherDir);
+    assertTrue(routerFs.exists(dir));
+
+    // Write to the namenode without going through the Router
+    FileSystem nnFs = cluster.getNamenode("ns0", null).getFileSystem();
+    Path nnDir = new Path("/cached/direct");
+    assertTrue(nnFs.delete(nnDir, true));
+
+    // The next response from the namespace has a newer state ID
+    routerFs.getFileStatus(otherDir);
+    assertFalse(routerFs.exists(dir));
+  }
+
+  @Test
+  public void testMountPointNotCached() throws Exception {
+    FileSystem routerFs = routerContext.getFileSystem();
+    Path dir = new Path("/uncached/dir");
+    routerFs.mkdirs(dir);
+
+    long hits = metadataCache.getNumHits();
+    long misses = metadataCache.getNumMisses();
+    routerFs.getFileStatus(dir);
+    routerFs.getFileStatus(dir);
+    routerFs.listStatus(dir);
+    assertEquals(hits, metadataCache.getNumHits());
+    assertEquals(misses, metadataCache.getNumMisses());
+  }
+}
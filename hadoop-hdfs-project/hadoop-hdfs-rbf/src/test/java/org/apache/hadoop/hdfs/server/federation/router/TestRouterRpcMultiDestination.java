@@ -396,6 +396,58 @@ public void testIsFileClosed() throws Exception {
     }
   }
 
+  @Test
+  public void testProxyListFilesMaxEntries() throws Exception {
+    // Spread a directory across both namespaces with a name in both
+    // /listing
+    //   ns0 -> /listing: file-0, file-2, ..., file-8, file-9
+    //   ns1 -> /listing: file-1, file-3, ..., file-9
+    List<String> nss = getCluster().getNameservices();
+    for (RouterContext rc : getCluster().getRouters()) {
+      MockResolver resolver =
+          (MockResolver) rc.getRouter().getSubclusterResolver();
+      resolver.addLocation("/listing", nss.get(0), "/listing");
+      resolver.addLocation("/listing", nss.get(1), "/listing");
+    }
+    FileSystem nnFs0 = getCluster().getNamenode(nss.get(0), null)
+        .getFileSystem();
+    FileSystem nnFs1 = getCluster().getNamenode(nss.get(1), null)
+        .getFileSystem();
+    for (int i = 0; i < 10; i++) {
+      createFile(i % 2 == 0 ? nnFs0 : nnFs1, "/listing/file-" + i, 32);
+    }
+    createFile(nnFs0, "/listing/file-9", 32);
+
+    RouterClientProtocol clientProtocol =
+        getRouterContext().getRouter().getRpcServer()
+            .getClientProtocolModule();
+    setInternalState(clientProtocol, "maxListingEntries", 3);
+    try {
+      DirectoryListing listing = getRouterProtocol().getListing(
+          "/listing", HdfsFileStatus.EMPTY_NAME, false);
+      assertEquals(3, listing.getPartialListing().length);
+      assertTrue(listing.hasMore());
+
+      // The client continues after the last entry of each page
+      FileStatus[] files = getRouterFileSystem().listStatus(
+          new Path("/listing"));
+      assertEquals(10, files.length);
+      for (int i = 0; i < 10; i++) {
+        assertEquals("file-" + i, files[i].getPath().getName());
+      }
+    } finally {
+      setInternalState(clientProtocol, "maxListingEntries", 0);
+      nnFs0.delete(new Path("/listing"), true);
+      nnFs1.delete(new Path("/listing"), true);
+      for (RouterContext rc : getCluster().getRouters()) {
+        MockResolver resolver =
+            (MockResolver) rc.getRouter().getSubclusterResolver();
+        resolver.removeLocation("/listing", nss.get(0), "/listing");
+        resolver.removeLocation("/listing", nss.get(1), "/listing");
+      }
+    }
+  }
+
   @Test
   public void testGetContentSummaryEc() throws Exception {
     DistributedFileSystem routerDFS =
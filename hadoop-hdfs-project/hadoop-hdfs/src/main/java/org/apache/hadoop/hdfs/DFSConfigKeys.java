@@ -180,6 +180,32 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.datanode.replica.cache.expiry.time";
   public static final long DFS_DATANODE_REPLICA_CACHE_EXPIRY_TIME_DEFAULT =
       300000;
+  public static final String DFS_DATANODE_REPLICA_INDEX_ENABLED_KEY =
+      "dfs.datanode.replica.index.enabled";
+  public static final boolean DFS_DATANODE_REPLICA_INDEX_ENABLED_DEFAULT =
+      false;
+  public static final String DFS_DATANODE_REPLICA_INDEX_SYNC_KEY =
+      "dfs.datanode.replica.index.sync";
+  public static final boolean DFS_DATANODE_REPLICA_INDEX_SYNC_DEFAULT = false;
+  public static final String
+      DFS_DATANODE_REPLICA_INDEX_COMPACTION_THRESHOLD_KEY =
+      "dfs.datanode.replica.index.compaction.threshold";
+  public static final long
+      DFS_DATANODE_REPLICA_INDEX_COMPACTION_THRESHOLD_DEFAULT = 1000000;
+  public static final String DFS_DATANODE_IO_SCHEDULER_ENABLED_KEY =
+      "dfs.datanode.io.scheduler.enabled";
+  public static final boolean DFS_DATANODE_IO_SCHEDULER_ENABLED_DEFAULT =
+      false;
+  public static final String DFS_DATANODE_IO_SCHEDULER_VOLUME_CONCURRENCY_KEY =
+      "dfs.datanode.io.scheduler.volume.concurrency";
+  public static final int DFS_DATANODE_IO_SCHEDULER_VOLUME_CONCURRENCY_DEFAULT =
+      8;
+  public static final String DFS_DATANODE_IO_SCHEDULER_CLIENT_READ_DEADLINE_KEY =
+      "dfs.datanode.io.scheduler.client-read.deadline";
+  public static final long
+      DFS_DATANODE_IO_SCHEDULER_CLIENT_READ_DEADLINE_DEFAULT = 50;
+  public static final String DFS_DATANODE_IO_SCHEDULER_WEIGHTS_KEY =
+      "dfs.datanode.io.scheduler.weights";
 
   // This setting is for testing/internal use only.
   public static final String  DFS_DATANODE_DUPLICATE_REPLICA_DELETION = "dfs.datanode.duplicate.replica.deletion";
@@ -711,6 +737,9 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_METRICS_SESSION_ID_KEY =
       HdfsClientConfigKeys.DeprecatedKeys.DFS_METRICS_SESSION_ID_KEY;
   public static final String  DFS_METRICS_PERCENTILES_INTERVALS_KEY = "dfs.metrics.percentiles.intervals";
+  public static final String  DFS_METRICS_HISTOGRAM_ENABLE_KEY =
+      "dfs.metrics.histogram.enable";
+  public static final boolean DFS_METRICS_HISTOGRAM_ENABLE_DEFAULT = false;
 
   public static final String  DFS_DATANODE_PEER_STATS_ENABLED_KEY =
       "dfs.datanode.peer.stats.enabled";
@@ -960,6 +989,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_DN_EC_RECONSTRUCTION_VALIDATION_KEY =
       "dfs.datanode.ec.reconstruction.validation";
   public static final boolean DFS_DN_EC_RECONSTRUCTION_VALIDATION_VALUE = false;
+  public static final String DFS_DN_EC_RECONSTRUCTION_PIPELINE_ENABLED_KEY =
+      "dfs.datanode.ec.reconstruction.pipeline.enabled";
+  public static final boolean DFS_DN_EC_RECONSTRUCTION_PIPELINE_ENABLED_DEFAULT =
+      false;
 
   public static final String
       DFS_DATANODE_DIRECTORYSCAN_THROTTLE_LIMIT_MS_PER_SEC_KEY =
@@ -1052,6 +1085,9 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int     DFS_NAMENODE_SERVICE_HANDLER_COUNT_DEFAULT = 10;
   // List of users that can override their client ip
   public static final String  DFS_NAMENODE_IP_PROXY_USERS = "dfs.namenode.ip-proxy-users";
+  // List of users that can run each call as the user in its caller context
+  public static final String  DFS_NAMENODE_CALLER_CONTEXT_PROXY_USERS =
+      "dfs.namenode.caller-context-proxy-users";
   public static final String  DFS_HTTP_POLICY_KEY = "dfs.http.policy";
   public static final String  DFS_HTTP_POLICY_DEFAULT =  HttpConfig.Policy.HTTP_ONLY.name();
   public static final String  DFS_DATANODE_HTTPSERVER_FILTER_HANDLERS = "dfs.datanode.httpserver.filter.handlers";
@@ -1501,10 +1537,15 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_JOURNALNODE_EDIT_CACHE_SIZE_FRACTION_KEY =
           "dfs.journalnode.edit-cache-size.fraction";
   public static final float DFS_JOURNALNODE_EDIT_CACHE_SIZE_FRACTION_DEFAULT = 0.5f;
+  public static final String DFS_JOURNALNODE_EDIT_CACHE_LONG_POLL_TIMEOUT_KEY =
+      "dfs.journalnode.edit-cache.long-poll.timeout";
+  public static final long DFS_JOURNALNODE_EDIT_CACHE_LONG_POLL_TIMEOUT_DEFAULT = 0;
 
   // Journal-node related configs for the client side.
   public static final String  DFS_QJOURNAL_QUEUE_SIZE_LIMIT_KEY = "dfs.qjournal.queued-edits.limit.mb";
   public static final int     DFS_QJOURNAL_QUEUE_SIZE_LIMIT_DEFAULT = 10;
+  public static final String  DFS_QJOURNAL_COALESCED_EDITS_LIMIT_KEY = "dfs.qjournal.coalesced-edits.limit.kb";
+  public static final int     DFS_QJOURNAL_COALESCED_EDITS_LIMIT_DEFAULT = 1024;
   
   // Quorum-journal timeouts for various operations. Unlikely to need
   // to be tweaked, but configurable just in case.
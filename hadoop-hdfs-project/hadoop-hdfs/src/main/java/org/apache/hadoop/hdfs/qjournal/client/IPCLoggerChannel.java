@@ -23,6 +23,11 @@
 import java.net.URI;
 import java.net.URL;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -59,11 +64,13 @@
 import org.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.util.Preconditions;
 import org.apache.hadoop.thirdparty.com.google.common.net.InetAddresses;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ForwardingListeningExecutorService;
 import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.FutureCallback;
 import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.Futures;
 import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ListenableFuture;
 import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ListeningExecutorService;
 import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.MoreExecutors;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.SettableFuture;
 import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.UncaughtExceptionHandlers;
 import org.apache.hadoop.util.Time;
@@ -137,6 +144,47 @@ public class IPCLoggerChannel implements AsyncLogger {
    */
   private final int queueSizeLimitBytes;
 
+  /**
+   * The maximum number of bytes of queued edits sent in one call.
+   */
+  private final int coalescedEditsLimitBytes;
+
+  /**
+   * Batches of edits waiting to be sent, in the order they were queued.
+   */
+  private final Deque<QueuedEdits> queuedEdits = new ArrayDeque<>();
+
+  /**
+   * Number of tasks submitted to the single thread executor. Two batches of
+   * edits are only sent together if no other call was submitted between
+   * them.
+   */
+  private long submittedTasks = 0;
+
+  /**
+   * A batch of edits waiting to be sent to the remote node.
+   */
+  private static final class QueuedEdits {
+    private final long segmentTxId;
+    private final long firstTxnId;
+    private final int numTxns;
+    private final byte[] data;
+    /** Submission time, used to calculate how far we are lagging. */
+    private final long submitNanos;
+    private final SettableFuture<Void> future = SettableFuture.create();
+    /** Sequence number of the task sending the batch. */
+    private long task;
+
+    QueuedEdits(long segmentTxId, long firstTxnId, int numTxns, byte[] data,
+        long submitNanos) {
+      this.segmentTxId = segmentTxId;
+      this.firstTxnId = firstTxnId;
+      this.numTxns = numTxns;
+      this.data = data;
+      this.submitNanos = submitNanos;
+    }
+  }
+
   /**
    * If this logger misses some edits, or restarts in the middle of
    * a segment, the writer won't be able to write any more edits until
@@ -171,9 +219,12 @@ public IPCLoggerChannel(Configuration conf, NamespaceInfo nsInfo,
     this.queueSizeLimitBytes = 1024 * 1024 * conf.getInt(
         DFSConfigKeys.DFS_QJOURNAL_QUEUE_SIZE_LIMIT_KEY,
         DFSConfigKeys.DFS_QJOURNAL_QUEUE_SIZE_LIMIT_DEFAULT);
+    this.coalescedEditsLimitBytes = 1024 * conf.getInt(
+        DFSConfigKeys.DFS_QJOURNAL_COALESCED_EDITS_LIMIT_KEY,
+        DFSConfigKeys.DFS_QJOURNAL_COALESCED_EDITS_LIMIT_DEFAULT);
     
-    singleThreadExecutor = MoreExecutors.listeningDecorator(
-        createSingleThreadExecutor());
+    singleThreadExecutor = new SequencedExecutorService(
+        MoreExecutors.listeningDecorator(createSingleThreadExecutor()));
     parallelExecutor = MoreExecutors.listeningDecorator(
         createParallelExecutor());
     
@@ -350,46 +401,28 @@ public ListenableFuture<Void> sendEdits(
     
     // When this batch is acked, we use its submission time in order
     // to calculate how far we are lagging.
-    final long submitNanos = Time.monotonicNowNanos();
-    
-    ListenableFuture<Void> ret = null;
+    final QueuedEdits edits = new QueuedEdits(
+        segmentTxId, firstTxnId, numTxns, data, Time.monotonicNowNanos());
+    boolean submitted = false;
     try {
-      ret = singleThreadExecutor.submit(() -> {
-        throwIfOutOfSync();
-
-        final long rpcSendTimeNanos = Time.monotonicNowNanos();
+      // Each batch gets a task, which may also send the batches queued
+      // right after it
+      synchronized (this) {
+        queuedEdits.add(edits);
         try {
-          getProxy().journal(createReqInfo(), segmentTxId, firstTxnId, numTxns, data);
-        } catch (IOException e) {
-          QuorumJournalManager.LOG.warn("Remote journal {} failed to write txns {}-{}."
-                  + " Will try to write to this JN again after the next log roll.",
-              IPCLoggerChannel.this, firstTxnId, (firstTxnId + numTxns - 1), e);
-          synchronized (IPCLoggerChannel.this) {
-            outOfSync = true;
-          }
+          singleThreadExecutor.submit(() -> {
+            sendQueuedEdits(edits);
+            return null;
+          });
+          edits.task = submittedTasks;
+        } catch (RuntimeException e) {
+          queuedEdits.removeLast();
           throw e;
-        } finally {
-          final long nowNanos = Time.monotonicNowNanos();
-          final long rpcTimeMicros = TimeUnit.MICROSECONDS.convert(
-              (nowNanos - rpcSendTimeNanos), TimeUnit.NANOSECONDS);
-          final long endToEndTimeMicros = TimeUnit.MICROSECONDS.convert(
-              (nowNanos - submitNanos), TimeUnit.NANOSECONDS);
-          metrics.addWriteEndToEndLatency(endToEndTimeMicros);
-          metrics.addWriteRpcLatency(rpcTimeMicros);
-          if (rpcTimeMicros / 1000 > WARN_JOURNAL_MILLIS_THRESHOLD) {
-            QuorumJournalManager.LOG.warn(
-                "Took {}ms to send a batch of {} edits ({} bytes) to remote journal {}.",
-                rpcTimeMicros / 1000, numTxns, data.length, IPCLoggerChannel.this);
-          }
-        }
-        synchronized (IPCLoggerChannel.this) {
-          highestAckedTxId = firstTxnId + numTxns - 1;
-          lastAckNanos = submitNanos;
         }
-        return null;
-      });
+      }
+      submitted = true;
     } finally {
-      if (ret == null) {
+      if (!submitted) {
         // it didn't successfully get submitted,
         // so adjust the queue size back down.
         unreserveQueueSpace(data.length);
@@ -397,7 +430,7 @@ public ListenableFuture<Void> sendEdits(
         // It was submitted to the queue, so adjust the length
         // once the call completes, regardless of whether it
         // succeeds or fails.
-        Futures.addCallback(ret, new FutureCallback<Void>() {
+        Futures.addCallback(edits.future, new FutureCallback<Void>() {
           @Override
           public void onFailure(Throwable t) {
             unreserveQueueSpace(data.length);
@@ -410,7 +443,108 @@ public void onSuccess(Void t) {
         }, MoreExecutors.directExecutor());
       }
     }
-    return ret;
+    return edits.future;
+  }
+
+  /**
+   * Send a queued batch of edits to the remote node, unless it was already
+   * sent with an earlier batch. The batches queued right after it for the
+   * same segment are coalesced into the same call, saving a round trip for
+   * each of them. A batch queued after another call, e.g. one finalizing
+   * the segment, is never sent before that call.
+   *
+   * @param edits Batch of edits of the task.
+   */
+  private void sendQueuedEdits(QueuedEdits edits) {
+    final List<QueuedEdits> batches = new ArrayList<>();
+    synchronized (this) {
+      // The tasks run in order, so the earlier batches are all sent
+      if (queuedEdits.peek() != edits) {
+        // Already sent with an earlier batch
+        return;
+      }
+      batches.add(queuedEdits.poll());
+      QueuedEdits last = edits;
+      long size = edits.data.length;
+      for (QueuedEdits next = queuedEdits.peek(); next != null &&
+          next.task == last.task + 1 &&
+          next.segmentTxId == edits.segmentTxId &&
+          next.firstTxnId == last.firstTxnId + last.numTxns &&
+          size + next.data.length <= coalescedEditsLimitBytes;
+          next = queuedEdits.peek()) {
+        batches.add(queuedEdits.poll());
+        size += next.data.length;
+        last = next;
+      }
+    }
+
+    try {
+      sendEdits(batches);
+      for (QueuedEdits batch : batches) {
+        batch.future.set(null);
+      }
+    } catch (Throwable t) {
+      for (QueuedEdits batch : batches) {
+        batch.future.setException(t);
+      }
+    }
+  }
+
+  private void sendEdits(List<QueuedEdits> batches) throws IOException {
+    throwIfOutOfSync();
+
+    final QueuedEdits first = batches.get(0);
+    final QueuedEdits last = batches.get(batches.size() - 1);
+    final long firstTxnId = first.firstTxnId;
+    final int numTxns = (int) (last.firstTxnId + last.numTxns - firstTxnId);
+    final byte[] data;
+    if (batches.size() == 1) {
+      data = first.data;
+    } else {
+      int size = 0;
+      for (QueuedEdits edits : batches) {
+        size += edits.data.length;
+      }
+      data = new byte[size];
+      int offset = 0;
+      for (QueuedEdits edits : batches) {
+        System.arraycopy(edits.data, 0, data, offset, edits.data.length);
+        offset += edits.data.length;
+      }
+    }
+
+    final long rpcSendTimeNanos = Time.monotonicNowNanos();
+    try {
+      getProxy().journal(createReqInfo(), first.segmentTxId, firstTxnId,
+          numTxns, data);
+    } catch (IOException e) {
+      QuorumJournalManager.LOG.warn("Remote journal {} failed to write txns {}-{}."
+              + " Will try to write to this JN again after the next log roll.",
+          IPCLoggerChannel.this, firstTxnId, (firstTxnId + numTxns - 1), e);
+      synchronized (IPCLoggerChannel.this) {
+        outOfSync = true;
+      }
+      throw e;
+    } finally {
+      final long nowNanos = Time.monotonicNowNanos();
+      final long rpcTimeMicros = TimeUnit.MICROSECONDS.convert(
+          (nowNanos - rpcSendTimeNanos), TimeUnit.NANOSECONDS);
+      for (QueuedEdits edits : batches) {
+        final long endToEndTimeMicros = TimeUnit.MICROSECONDS.convert(
+            (nowNanos - edits.submitNanos), TimeUnit.NANOSECONDS);
+        metrics.addWriteEndToEndLatency(endToEndTimeMicros);
+      }
+      metrics.addWriteRpcLatency(rpcTimeMicros);
+      if (rpcTimeMicros / 1000 > WARN_JOURNAL_MILLIS_THRESHOLD) {
+        QuorumJournalManager.LOG.warn(
+            "Took {}ms to send a batch of {} edits ({} bytes) to remote journal {}.",
+            rpcTimeMicros / 1000, numTxns, data.length, IPCLoggerChannel.this);
+      }
+    }
+    synchronized (IPCLoggerChannel.this) {
+      highestAckedTxId = firstTxnId + numTxns - 1;
+      lastAckNanos = last.submitNanos;
+    }
   }
 
   private void throwIfOutOfSync() throws IOException {
@@ -462,6 +596,56 @@ private synchronized void unreserveQueueSpace(int size) {
     queuedEditsSizeBytes -= size;
   }
 
+  /**
+   * Numbers the tasks submitted to the single thread executor, in the order
+   * they run.
+   */
+  private final class SequencedExecutorService
+      extends ForwardingListeningExecutorService {
+    private final ListeningExecutorService delegate;
+
+    private SequencedExecutorService(ListeningExecutorService delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    protected ListeningExecutorService delegate() {
+      return delegate;
+    }
+
+    @Override
+    public <T> ListenableFuture<T> submit(Callable<T> task) {
+      synchronized (IPCLoggerChannel.this) {
+        submittedTasks++;
+        return super.submit(task);
+      }
+    }
+
+    @Override
+    public ListenableFuture<?> submit(Runnable task) {
+      synchronized (IPCLoggerChannel.this) {
+        submittedTasks++;
+        return super.submit(task);
+      }
+    }
+
+    @Override
+    public <T> ListenableFuture<T> submit(Runnable task, T result) {
+      synchronized (IPCLoggerChannel.this) {
+        submittedTasks++;
+        return super.submit(task, result);
+      }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      synchronized (IPCLoggerChannel.this) {
+        submittedTasks++;
+        super.execute(command);
+      }
+    }
+  }
+
   @Override
   public ListenableFuture<Void> format(final NamespaceInfo nsInfo, final boolean force) {
     return singleThreadExecutor.submit(() -> {
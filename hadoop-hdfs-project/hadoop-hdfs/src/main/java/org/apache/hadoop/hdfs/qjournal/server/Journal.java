@@ -30,14 +30,21 @@
 import java.nio.file.StandardCopyOption;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.Range;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
 import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.qjournal.protocol.JournalNotFormattedException;
@@ -66,6 +73,7 @@
 import org.apache.hadoop.hdfs.util.BestEffortLongFile;
 import org.apache.hadoop.hdfs.util.PersistentLongFile;
 import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.ipc.Client;
 import org.apache.hadoop.ipc.Server;
 import org.apache.hadoop.security.SecurityUtil;
 import org.apache.hadoop.security.UserGroupInformation;
@@ -75,6 +83,7 @@
 import org.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.util.Preconditions;
 import org.apache.hadoop.thirdparty.com.google.common.collect.ImmutableList;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.hadoop.thirdparty.protobuf.TextFormat;
 
 /**
@@ -91,7 +100,7 @@ public class Journal implements Closeable {
   private long curSegmentTxId = HdfsServerConstants.INVALID_TXID;
   private int curSegmentLayoutVersion = 0;
   private long nextTxId = HdfsServerConstants.INVALID_TXID;
-  private long highestWrittenTxId = 0;
+  private volatile long highestWrittenTxId = 0;
   
   private final String journalId;
   
@@ -156,10 +165,44 @@ public class Journal implements Closeable {
    */
   private static final int WARN_SYNC_MILLIS_THRESHOLD = 1000;
 
+  /**
+   * Maximum time a request for journaled edits waits for new edits.
+   */
+  private final long editsLongPollTimeoutMs;
+
+  /**
+   * Requests for journaled edits waiting for the next transaction ID.
+   */
+  private final Set<EditsWaiter> editsWaiters = new HashSet<>();
+
+  /**
+   * Answers the waiting requests for journaled edits, or null if they do
+   * not wait.
+   */
+  private final ScheduledExecutorService editsWaiterExecutor;
+
+  /**
+   * A request for journaled edits whose response is deferred until new
+   * edits are written or its timeout expires.
+   */
+  private static final class EditsWaiter {
+    private final long sinceTxId;
+    private final int maxTxns;
+    private final CompletableFuture<GetJournaledEditsResponseProto> response =
+        new CompletableFuture<>();
+    private ScheduledFuture<?> timeout;
+
+    private EditsWaiter(long sinceTxId, int maxTxns) {
+      this.sinceTxId = sinceTxId;
+      this.maxTxns = maxTxns;
+    }
+  }
+
   Journal(Configuration conf, File logDir, String journalId,
       StartupOption startOpt, StorageErrorReporter errorReporter)
       throws IOException {
     this.conf = conf;
+    this.editsLongPollTimeoutMs = getEditsLongPollTimeoutMs(conf);
     storage = new JNStorage(conf, logDir, startOpt, errorReporter);
     this.journalId = journalId;
 
@@ -168,6 +211,7 @@ public class Journal implements Closeable {
     this.fjm = storage.getJournalManager();
 
     this.cache = createCache();
+    this.editsWaiterExecutor = createEditsWaiterExecutor();
 
     this.metrics = JournalMetrics.create(this);
     
@@ -177,6 +221,45 @@ public class Journal implements Closeable {
     }
   }
 
+  private static long getEditsLongPollTimeoutMs(Configuration conf) {
+    long timeoutMs = conf.getTimeDuration(
+        DFSConfigKeys.DFS_JOURNALNODE_EDIT_CACHE_LONG_POLL_TIMEOUT_KEY,
+        DFSConfigKeys.DFS_JOURNALNODE_EDIT_CACHE_LONG_POLL_TIMEOUT_DEFAULT,
+        TimeUnit.MILLISECONDS);
+    if (timeoutMs <= 0) {
+      return timeoutMs;
+    }
+    // The tailer gives up on the request after these timeouts, so a longer
+    // wait would only turn an empty response into a failed one
+    long selectTimeoutMs = conf.getInt(
+        DFSConfigKeys.DFS_QJOURNAL_SELECT_INPUT_STREAMS_TIMEOUT_KEY,
+        DFSConfigKeys.DFS_QJOURNAL_SELECT_INPUT_STREAMS_TIMEOUT_DEFAULT);
+    Preconditions.checkArgument(timeoutMs < selectTimeoutMs,
+        "%s (%sms) must be lower than %s (%sms)",
+        DFSConfigKeys.DFS_JOURNALNODE_EDIT_CACHE_LONG_POLL_TIMEOUT_KEY,
+        timeoutMs, DFSConfigKeys.DFS_QJOURNAL_SELECT_INPUT_STREAMS_TIMEOUT_KEY,
+        selectTimeoutMs);
+    int rpcTimeoutMs = Client.getRpcTimeout(conf);
+    Preconditions.checkArgument(rpcTimeoutMs <= 0 || timeoutMs < rpcTimeoutMs,
+        "%s (%sms) must be lower than %s (%sms)",
+        DFSConfigKeys.DFS_JOURNALNODE_EDIT_CACHE_LONG_POLL_TIMEOUT_KEY,
+        timeoutMs, CommonConfigurationKeys.IPC_CLIENT_RPC_TIMEOUT_KEY,
+        rpcTimeoutMs);
+    return timeoutMs;
+  }
+
+  private ScheduledExecutorService createEditsWaiterExecutor() {
+    if (editsLongPollTimeoutMs <= 0 || cache == null) {
+      return null;
+    }
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+        new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("Journal edits waiter for " + journalId)
+            .build());
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
+  }
+
   private JournaledEditsCache createCache() {
     if (conf.getBoolean(DFSConfigKeys.DFS_HA_TAILEDITS_INPROGRESS_KEY,
         DFSConfigKeys.DFS_HA_TAILEDITS_INPROGRESS_DEFAULT)) {
@@ -264,6 +347,16 @@ void format(NamespaceInfo nsInfo, boolean force) throws IOException {
    */
   @Override // Closeable
   public void close() throws IOException {
+    if (editsWaiterExecutor != null) {
+      List<EditsWaiter> waiters;
+      synchronized (editsWaiters) {
+        editsWaiterExecutor.shutdownNow();
+        waiters = new ArrayList<>(editsWaiters);
+      }
+      for (EditsWaiter waiter : waiters) {
+        respond(waiter);
+      }
+    }
     IOUtils.closeStream(committedTxnId);
     IOUtils.closeStream(curSegment);
     storage.close();
@@ -320,6 +413,53 @@ synchronized long getHighestWrittenTxId() {
   private void updateHighestWrittenTxId(long val) {
     highestWrittenTxId = val;
     fjm.setLastReadableTxId(val);
+    if (editsWaiterExecutor != null) {
+      notifyEditsWaiters();
+    }
+  }
+
+  /**
+   * Respond to the requests for journaled edits which no longer wait for
+   * the next transaction ID, off the thread that wrote the edits.
+   */
+  private void notifyEditsWaiters() {
+    synchronized (editsWaiters) {
+      if (editsWaiters.isEmpty() || editsWaiterExecutor.isShutdown()) {
+        return;
+      }
+      editsWaiterExecutor.execute(() -> {
+        List<EditsWaiter> ready = new ArrayList<>();
+        synchronized (editsWaiters) {
+          for (EditsWaiter waiter : editsWaiters) {
+            if (waiter.sinceTxId != highestWrittenTxId + 1) {
+              ready.add(waiter);
+            }
+          }
+        }
+        for (EditsWaiter waiter : ready) {
+          respond(waiter);
+        }
+      });
+    }
+  }
+
+  /**
+   * Answer a waiting request for journaled edits with the edits that are
+   * available now, if it was not answered already.
+   */
+  private void respond(EditsWaiter waiter) {
+    synchronized (editsWaiters) {
+      if (!editsWaiters.remove(waiter)) {
+        return;
+      }
+    }
+    waiter.timeout.cancel(false);
+    try {
+      waiter.response.complete(
+          getJournaledEdits(waiter.sinceTxId, waiter.maxTxns));
+    } catch (IOException | RuntimeException e) {
+      waiter.response.completeExceptionally(e);
+    }
   }
 
   JournalMetrics getMetrics() {
@@ -449,6 +589,9 @@ synchronized void journal(RequestInfo reqInfo,
     long nanoSeconds = sw.now();
     metrics.addSync(
         TimeUnit.MICROSECONDS.convert(nanoSeconds, TimeUnit.NANOSECONDS));
+    if (shouldFsync) {
+      metrics.addSyncBatch(numTxns);
+    }
     long milliSeconds = TimeUnit.MILLISECONDS.convert(
         nanoSeconds, TimeUnit.NANOSECONDS);
 
@@ -740,6 +883,41 @@ public RemoteEditLogManifest getEditLogManifest(long sinceTxId,
     return new RemoteEditLogManifest(logs, getCommittedTxnId());
   }
 
+  /**
+   * Get the journaled edits like {@link #getJournaledEdits(long, int)}. If
+   * the request is for the next transaction ID and long-polling is enabled,
+   * the response completes when new edits are written or after the
+   * long-poll timeout, with no thread waiting in between.
+   *
+   * @param sinceTxId The first transaction ID that is requested.
+   * @param maxTxns The maximum number of transactions to return.
+   * @return The response, which may not be completed yet.
+   * @throws IOException if the request fails right away.
+   */
+  CompletableFuture<GetJournaledEditsResponseProto> getJournaledEditsAsync(
+      long sinceTxId, int maxTxns) throws IOException {
+    if (editsWaiterExecutor == null ||
+        sinceTxId != highestWrittenTxId + 1) {
+      return CompletableFuture.completedFuture(
+          getJournaledEdits(sinceTxId, maxTxns));
+    }
+    EditsWaiter waiter = new EditsWaiter(sinceTxId, maxTxns);
+    synchronized (editsWaiters) {
+      if (editsWaiterExecutor.isShutdown()) {
+        return CompletableFuture.completedFuture(
+            getJournaledEdits(sinceTxId, maxTxns));
+      }
+      waiter.timeout = editsWaiterExecutor.schedule(() -> respond(waiter),
+          editsLongPollTimeoutMs, TimeUnit.MILLISECONDS);
+      editsWaiters.add(waiter);
+    }
+    // The edits may have been written before the request was added
+    if (sinceTxId != highestWrittenTxId + 1) {
+      respond(waiter);
+    }
+    return waiter.response;
+  }
+
   /**
    * @see QJournalProtocol#getJournaledEdits(String, String, long, int)
    */
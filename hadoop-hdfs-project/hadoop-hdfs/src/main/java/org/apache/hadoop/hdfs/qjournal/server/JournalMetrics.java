@@ -54,6 +54,8 @@ class JournalMetrics {
 
   private MutableStat rpcRequestCacheMissAmount;
 
+  private MutableStat syncBatch;
+
   @Metric("Number of RPC requests with zero edits returned")
   MutableCounterLong rpcEmptyResponses;
 
@@ -88,6 +90,8 @@ class JournalMetrics {
                 "served due to lack of availability in cache, and how many " +
                 "transactions away the request was from being in the cache.",
             "Misses", "Txns");
+    syncBatch = registry.newStat("SyncBatch",
+        "Number of transactions made durable by each sync", "Syncs", "Txns");
   }
   
   public static JournalMetrics create(Journal j) {
@@ -148,6 +152,10 @@ void addSync(long us) {
     }
   }
 
+  void addSyncBatch(int numTxns) {
+    syncBatch.add(numTxns);
+  }
+
   public MutableCounterLong getNumEditLogsSynced() {
     return numEditLogsSynced;
   }
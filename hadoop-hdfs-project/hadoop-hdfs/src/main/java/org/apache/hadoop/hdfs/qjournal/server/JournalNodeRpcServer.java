@@ -48,6 +48,7 @@
 import org.apache.hadoop.hdfs.server.protocol.NamespaceInfo;
 import org.apache.hadoop.hdfs.server.protocol.RemoteEditLogManifest;
 import org.apache.hadoop.ipc.ProtobufRpcEngine2;
+import org.apache.hadoop.ipc.ProtobufRpcEngineCallback2;
 import org.apache.hadoop.ipc.RPC;
 import org.apache.hadoop.ipc.RPC.Server;
 import org.apache.hadoop.net.NetUtils;
@@ -55,6 +56,8 @@
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_JOURNALNODE_HANDLER_COUNT_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_JOURNALNODE_HANDLER_COUNT_KEY;
@@ -267,8 +270,34 @@ public StorageInfoProto getStorageInfo(String jid,
   @Override
   public GetJournaledEditsResponseProto getJournaledEdits(String jid,
       String nameServiceId, long sinceTxId, int maxTxns) throws IOException {
-    return jn.getOrCreateJournal(jid, nameServiceId)
-        .getJournaledEdits(sinceTxId, maxTxns);
+    Journal journal = jn.getOrCreateJournal(jid, nameServiceId);
+    if (!Server.isRpcInvocation()) {
+      return journal.getJournaledEdits(sinceTxId, maxTxns);
+    }
+    CompletableFuture<GetJournaledEditsResponseProto> future =
+        journal.getJournaledEditsAsync(sinceTxId, maxTxns);
+    if (future.isDone()) {
+      try {
+        return future.join();
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException(cause);
+      }
+    }
+    // Release the handler while the request waits for new edits
+    ProtobufRpcEngineCallback2 callback =
+        ProtobufRpcEngine2.Server.registerForDeferredResponse2();
+    future.whenComplete((response, error) -> {
+      if (error != null) {
+        callback.error(error);
+      } else {
+        callback.setResponse(response);
+      }
+    });
+    return null;
   }
 
   @Override
@@ -167,6 +167,7 @@
 import org.apache.hadoop.hdfs.HDFSPolicyProvider;
 import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.hdfs.server.common.DataNodeLockManager.LockLevel;
+import org.apache.hadoop.hdfs.server.datanode.FileIoScheduler.IoClass;
 import org.apache.hadoop.hdfs.server.datanode.checker.DatasetVolumeChecker;
 import org.apache.hadoop.hdfs.server.datanode.checker.StorageLocationChecker;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.impl.BlockPoolSlice;
@@ -3048,6 +3049,7 @@ private class DataTransfer implements Runnable {
      */
     @Override
     public void run() {
+      FileIoScheduler.setIoClass(IoClass.REPLICATION);
       incrementXmitsInProgress();
       Socket sock = null;
       DataOutputStream out = null;
@@ -125,6 +125,12 @@ public void stripedBlockChecksumReconstruction() throws IOException {}
    */
   public void delayBlockReader() {}
 
+  /**
+   * Used as a hook to inject latency when writing a reconstructed stripe
+   * to the targets in erasure coding reconstruction process.
+   */
+  public void delayStripedBlockWriter() {}
+
   /**
    * Used as a hook to inject intercept when free the block reader buffer.
    */
@@ -57,6 +57,7 @@
 import org.apache.hadoop.hdfs.server.datanode.BlockChecksumHelper.BlockGroupNonStripedChecksumComputer;
 import org.apache.hadoop.hdfs.server.datanode.DataNode.ShortCircuitFdsUnsupportedException;
 import org.apache.hadoop.hdfs.server.datanode.DataNode.ShortCircuitFdsVersionException;
+import org.apache.hadoop.hdfs.server.datanode.FileIoScheduler.IoClass;
 import org.apache.hadoop.hdfs.server.datanode.ShortCircuitRegistry.NewShmInfo;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
 import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitShm.SlotId;
@@ -585,6 +586,7 @@ public void readBlock(final ExtendedBlock block,
       final boolean sendChecksum,
       final CachingStrategy cachingStrategy) throws IOException {
     previousOpClientName = clientName;
+    FileIoScheduler.setIoClass(FileIoScheduler.getReadIoClass(clientName));
     long read = 0;
     updateCurrentThreadName("Sending block " + block);
     OutputStream baseStream = getOutputStream();
@@ -701,6 +703,8 @@ public void writeBlock(final ExtendedBlock block,
     final boolean isClient = !isDatanode;
     final boolean isTransfer = stage == BlockConstructionStage.TRANSFER_RBW
         || stage == BlockConstructionStage.TRANSFER_FINALIZED;
+    FileIoScheduler.setIoClass(isClient ?
+        IoClass.CLIENT_WRITE : IoClass.REPLICATION);
     allowLazyPersist = allowLazyPersist &&
         (dnConf.getAllowNonLocalLazyPersist() || peer.isLocal());
     long size = 0;
@@ -1092,6 +1096,7 @@ public void blockGroupChecksum(final StripedBlockInfo stripedBlockInfo,
   public void copyBlock(final ExtendedBlock block,
       final Token<BlockTokenIdentifier> blockToken) throws IOException {
     updateCurrentThreadName("Copying block " + block);
+    FileIoScheduler.setIoClass(IoClass.REPLICATION);
     DataOutputStream reply = getBufferedOutputStream();
     checkAccess(reply, true, block, blockToken, Op.COPY_BLOCK,
         BlockTokenIdentifier.AccessMode.COPY);
@@ -1173,6 +1178,7 @@ public void replaceBlock(final ExtendedBlock block,
       final DatanodeInfo proxySource,
       final String storageId) throws IOException {
     updateCurrentThreadName("Replacing block " + block + " from " + delHint);
+    FileIoScheduler.setIoClass(IoClass.REPLICATION);
     DataOutputStream replyOut = new DataOutputStream(getOutputStream());
     checkAccess(replyOut, true, block, blockToken,
         Op.REPLACE_BLOCK, BlockTokenIdentifier.AccessMode.REPLACE,
@@ -44,6 +44,7 @@
 import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.datanode.FileIoScheduler.IoClass;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi.ScanInfo;
@@ -709,6 +710,7 @@ public ReportCompiler(FsVolumeSpi volume) {
      */
     @Override
     public ScanInfoVolumeReport call() throws IOException {
+      FileIoScheduler.setIoClass(IoClass.DIRECTORY_SCANNER);
       String[] bpList = volume.getBlockPoolList();
       ScanInfoVolumeReport result =
           new ScanInfoVolumeReport(volume, Arrays.asList(bpList));
@@ -30,6 +30,7 @@
 import org.apache.hadoop.hdfs.server.datanode.DiskBalancerWorkStatus
     .DiskBalancerWorkEntry;
 import org.apache.hadoop.hdfs.server.datanode.DiskBalancerWorkStatus.Result;
+import org.apache.hadoop.hdfs.server.datanode.FileIoScheduler.IoClass;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
 import org.apache.hadoop.hdfs.server.diskbalancer.DiskBalancerConstants;
@@ -1051,6 +1052,7 @@ private void closePoolIters(List<FsVolumeSpi.BlockIterator> poolIters) {
      */
     @Override
     public void copyBlocks(VolumePair pair, DiskBalancerWorkItem item) {
+      FileIoScheduler.setIoClass(IoClass.DISK_BALANCER);
       String sourceVolUuid = pair.getSourceVolUuid();
       String destVolUuuid = pair.getDestVolUuid();
 
@@ -38,6 +38,7 @@
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileInputStream;
@@ -66,6 +67,10 @@
  * and {@link DFSConfigKeys#DFS_DATANODE_ENABLE_FILEIO_FAULT_INJECTION_KEY}.
  * These event hooks are disabled by default.
  *
+ * Data reads, writes and copies can also be queued per volume and IO class
+ * by the {@link FileIoScheduler}, enabled through
+ * {@link DFSConfigKeys#DFS_DATANODE_IO_SCHEDULER_ENABLED_KEY}.
+ *
  * Most functions accept an optional {@link FsVolumeSpi} parameter for
  * instrumentation/logging.
  *
@@ -81,6 +86,7 @@ public class FileIoProvider {
 
   private final ProfilingFileIoEvents profilingEventHook;
   private final FaultInjectorFileIoEvents faultInjectorEventHook;
+  private final FileIoScheduler ioScheduler;
   private final DataNode datanode;
 
   private static final int LEN_INT = 4;
@@ -95,6 +101,7 @@ public FileIoProvider(@Nullable Configuration conf,
                         final DataNode datanode) {
     profilingEventHook = new ProfilingFileIoEvents(conf);
     faultInjectorEventHook = new FaultInjectorFileIoEvents(conf);
+    ioScheduler = new FileIoScheduler(conf);
     this.datanode = datanode;
   }
 
@@ -275,8 +282,13 @@ public void transferToSocketFully(
     final long begin = profilingEventHook.beforeFileIo(volume, TRANSFER, count);
     try {
       faultInjectorEventHook.beforeFileIo(volume, TRANSFER, count);
-      sockOut.transferToFully(fileCh, position, count,
-          waitTime, transferTime);
+      if (ioScheduler.isEnabled() && volume != null) {
+        transferToSocketScheduled(volume, sockOut, fileCh, position, count,
+            waitTime, transferTime);
+      } else {
+        sockOut.transferToFully(fileCh, position, count,
+            waitTime, transferTime);
+      }
       profilingEventHook.afterFileIo(volume, TRANSFER, begin, count);
     } catch (Exception e) {
       String em = e.getMessage();
@@ -292,6 +304,55 @@ public void transferToSocketFully(
     }
   }
 
+  /**
+   * Same as {@link SocketOutputStream#transferToFully(FileChannel, long,
+   * int, LongWritable, LongWritable)}, but holding an IO slot of the volume
+   * only while data is copied from the file, not while waiting for a slow
+   * reader to drain the socket.
+   */
+  private void transferToSocketScheduled(FsVolumeSpi volume,
+      SocketOutputStream sockOut, FileChannel fileCh, long position,
+      int count, LongWritable waitTime, LongWritable transferTime)
+      throws IOException {
+    long totalWait = 0;
+    long totalTransfer = 0;
+    while (count > 0) {
+      long start = System.nanoTime();
+      sockOut.waitForWritable();
+      long wait = System.nanoTime();
+      int transferred;
+      ioScheduler.acquire(volume);
+      try {
+        transferred = (int) fileCh.transferTo(position, count,
+            sockOut.getChannel());
+      } finally {
+        ioScheduler.release(volume);
+      }
+      if (transferred == 0) {
+        if (position >= fileCh.size()) {
+          throw new EOFException("EOF Reached. file size is "
+              + fileCh.size() + " and " + count + " more bytes left to be "
+              + "transfered.");
+        }
+      } else if (transferred < 0) {
+        throw new IOException("Unexpected return of " + transferred
+            + " from transferTo()");
+      } else {
+        position += transferred;
+        count -= transferred;
+      }
+      long transfer = System.nanoTime();
+      totalWait += wait - start;
+      totalTransfer += transfer - wait;
+    }
+    if (waitTime != null) {
+      waitTime.set(totalWait);
+    }
+    if (transferTime != null) {
+      transferTime.set(totalTransfer);
+    }
+  }
+
   /**
    * Create a file.
    * @param volume  target volume. null if unavailable.
@@ -359,11 +420,36 @@ public FileInputStream getFileInputStream(
   public FileOutputStream getFileOutputStream(
       @Nullable FsVolumeSpi volume, File f,
       boolean append) throws FileNotFoundException {
+    return getFileOutputStream(volume, f, append, true);
+  }
+
+  /**
+   * Same as {@link #getFileOutputStream(FsVolumeSpi, File, boolean)}, but
+   * the writes never wait for the {@link FileIoScheduler}. Meant for small
+   * metadata writes issued while holding the dataset locks, which must not
+   * stall every other lock user behind a busy volume.
+   *
+   * @param volume  target volume. null if unavailable.
+   * @param f  File object.
+   * @param append  if true, then bytes will be written to the end of the
+   *                file rather than the beginning.
+   * @return  FileOutputStream to the given file object.
+   * @throws FileNotFoundException
+   */
+  public FileOutputStream getUnscheduledFileOutputStream(
+      @Nullable FsVolumeSpi volume, File f,
+      boolean append) throws FileNotFoundException {
+    return getFileOutputStream(volume, f, append, false);
+  }
+
+  private FileOutputStream getFileOutputStream(
+      @Nullable FsVolumeSpi volume, File f,
+      boolean append, boolean scheduled) throws FileNotFoundException {
     final long begin = profilingEventHook.beforeMetadataOp(volume, OPEN);
     FileOutputStream fos = null;
     try {
       faultInjectorEventHook.beforeMetadataOp(volume, OPEN);
-      fos = new WrappedFileOutputStream(volume, f, append);
+      fos = new WrappedFileOutputStream(volume, f, append, scheduled);
       profilingEventHook.afterMetadataOp(volume, OPEN, begin);
       return fos;
     } catch(Exception e) {
@@ -403,7 +489,7 @@ public FileOutputStream getFileOutputStream(
    */
   public FileOutputStream getFileOutputStream(
       @Nullable FsVolumeSpi volume, FileDescriptor fd) {
-    return new WrappedFileOutputStream(volume, fd);
+    return new WrappedFileOutputStream(volume, fd, true);
   }
 
   /**
@@ -629,6 +715,7 @@ public void nativeCopyFileUnbuffered(
       @Nullable FsVolumeSpi volume, File src, File target,
       boolean preserveFileDate) throws IOException {
     final long length = src.length();
+    ioScheduler.acquire(volume);
     final long begin = profilingEventHook.beforeFileIo(volume, NATIVE_COPY,
         length);
     try {
@@ -638,6 +725,8 @@ public void nativeCopyFileUnbuffered(
     } catch(Exception e) {
       onFailure(volume, begin);
       throw e;
+    } finally {
+      ioScheduler.release(volume);
     }
   }
 
@@ -858,6 +947,7 @@ public int read() throws IOException {
      */
     @Override
     public int read(@Nonnull byte[] b) throws IOException {
+      ioScheduler.acquire(volume);
       final long begin = profilingEventHook.beforeFileIo(volume, READ, b
           .length);
       try {
@@ -868,6 +958,8 @@ public int read(@Nonnull byte[] b) throws IOException {
       } catch(Exception e) {
         onFailure(volume, begin);
         throw e;
+      } finally {
+        ioScheduler.release(volume);
       }
     }
 
@@ -876,6 +968,7 @@ public int read(@Nonnull byte[] b) throws IOException {
      */
     @Override
     public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+      ioScheduler.acquire(volume);
       final long begin = profilingEventHook.beforeFileIo(volume, READ, len);
       try {
         faultInjectorEventHook.beforeFileIo(volume, READ, len);
@@ -885,6 +978,8 @@ public int read(@Nonnull byte[] b, int off, int len) throws IOException {
       } catch(Exception e) {
         onFailure(volume, begin);
         throw e;
+      } finally {
+        ioScheduler.release(volume);
       }
     }
   }
@@ -895,24 +990,28 @@ public int read(@Nonnull byte[] b, int off, int len) throws IOException {
    */
   private final class WrappedFileOutputStream extends FileOutputStream {
     private @Nullable final FsVolumeSpi volume;
+    /** Volume the writes wait for the scheduler on, null for none. */
+    private @Nullable final FsVolumeSpi scheduledVolume;
 
     /**
      * {@inheritDoc}.
      */
     private WrappedFileOutputStream(
         @Nullable FsVolumeSpi volume, File f,
-        boolean append) throws FileNotFoundException {
+        boolean append, boolean scheduled) throws FileNotFoundException {
       super(f, append);
       this.volume = volume;
+      this.scheduledVolume = scheduled ? volume : null;
     }
 
     /**
      * {@inheritDoc}.
      */
     private WrappedFileOutputStream(
-        @Nullable FsVolumeSpi volume, FileDescriptor fd) {
+        @Nullable FsVolumeSpi volume, FileDescriptor fd, boolean scheduled) {
       super(fd);
       this.volume = volume;
+      this.scheduledVolume = scheduled ? volume : null;
     }
 
     /**
@@ -937,6 +1036,7 @@ public void write(int b) throws IOException {
      */
     @Override
     public void write(@Nonnull byte[] b) throws IOException {
+      ioScheduler.acquire(scheduledVolume);
       final long begin = profilingEventHook.beforeFileIo(volume, WRITE, b
           .length);
       try {
@@ -946,6 +1046,8 @@ public void write(@Nonnull byte[] b) throws IOException {
       } catch(Exception e) {
         onFailure(volume, begin);
         throw e;
+      } finally {
+        ioScheduler.release(scheduledVolume);
       }
     }
 
@@ -954,6 +1056,7 @@ public void write(@Nonnull byte[] b) throws IOException {
      */
     @Override
     public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+      ioScheduler.acquire(scheduledVolume);
       final long begin = profilingEventHook.beforeFileIo(volume, WRITE, len);
       try {
         faultInjectorEventHook.beforeFileIo(volume, WRITE, len);
@@ -962,6 +1065,8 @@ public void write(@Nonnull byte[] b, int off, int len) throws IOException {
       } catch(Exception e) {
         onFailure(volume, begin);
         throw e;
+      } finally {
+        ioScheduler.release(scheduledVolume);
       }
     }
   }
@@ -996,6 +1101,7 @@ public int read() throws IOException {
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
+      ioScheduler.acquire(volume);
       final long begin = profilingEventHook.beforeFileIo(volume, READ, len);
       try {
         faultInjectorEventHook.beforeFileIo(volume, READ, len);
@@ -1005,11 +1111,14 @@ public int read(byte[] b, int off, int len) throws IOException {
       } catch(Exception e) {
         onFailure(volume, begin);
         throw e;
+      } finally {
+        ioScheduler.release(volume);
       }
     }
 
     @Override
     public int read(byte[] b) throws IOException {
+      ioScheduler.acquire(volume);
       final long begin = profilingEventHook.beforeFileIo(volume, READ, b
           .length);
       try {
@@ -1020,6 +1129,8 @@ public int read(byte[] b) throws IOException {
       } catch(Exception e) {
         onFailure(volume, begin);
         throw e;
+      } finally {
+        ioScheduler.release(volume);
       }
     }
 
@@ -1039,6 +1150,7 @@ public void write(int b) throws IOException {
 
     @Override
     public void write(@Nonnull byte[] b) throws IOException {
+      ioScheduler.acquire(volume);
       final long begin = profilingEventHook.beforeFileIo(volume, WRITE, b
           .length);
       try {
@@ -1048,11 +1160,14 @@ public void write(@Nonnull byte[] b) throws IOException {
       } catch(Exception e) {
         onFailure(volume, begin);
         throw e;
+      } finally {
+        ioScheduler.release(volume);
       }
     }
 
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
+      ioScheduler.acquire(volume);
       final long begin = profilingEventHook.beforeFileIo(volume, WRITE, len);
       try {
         faultInjectorEventHook.beforeFileIo(volume, WRITE, len);
@@ -1061,6 +1176,8 @@ public void write(byte[] b, int off, int len) throws IOException {
       } catch(Exception e) {
         onFailure(volume, begin);
         throw e;
+      } finally {
+        ioScheduler.release(volume);
       }
     }
   }
@@ -1072,6 +1189,10 @@ private void onFailure(@Nullable FsVolumeSpi volume, long begin) {
     profilingEventHook.onFailure(volume, begin);
   }
 
+  public FileIoScheduler getIoScheduler() {
+    return ioScheduler;
+  }
+
   public ProfilingFileIoEvents getProfilingEventHook() {
     return profilingEventHook;
   }
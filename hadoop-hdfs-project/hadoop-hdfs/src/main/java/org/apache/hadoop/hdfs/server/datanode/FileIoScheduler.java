@@ -0,0 +1,353 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs.server.datanode;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.DataNodeVolumeMetrics;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
+import org.apache.hadoop.util.Preconditions;
+import org.apache.hadoop.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Schedules the data file IO issued through {@link FileIoProvider} on each
+ * volume.
+ *
+ * Every thread doing IO belongs to an {@link IoClass}, set with
+ * {@link #setIoClass(IoClass)} by the DataXceiver, the scanners, the disk
+ * balancer and so on. At most
+ * {@link DFSConfigKeys#DFS_DATANODE_IO_SCHEDULER_VOLUME_CONCURRENCY_KEY}
+ * IOs run concurrently on a volume. Further IOs queue up per class and the
+ * queues are served by stride scheduling in proportion to the class
+ * weights, except for client reads waiting longer than the configured
+ * deadline, which are always served first. This keeps background work from
+ * inflating the latency of client reads while still guaranteeing it some
+ * share of the disk.
+ *
+ * The scheduler is disabled by default, in which case it costs a single
+ * branch per IO.
+ */
+@InterfaceAudience.Private
+public class FileIoScheduler {
+  public static final Logger LOG =
+      LoggerFactory.getLogger(FileIoScheduler.class);
+
+  /**
+   * Classes of DataNode disk IO.
+   */
+  public enum IoClass {
+    CLIENT_READ(16),
+    CLIENT_WRITE(16),
+    REPLICATION(4),
+    RECONSTRUCTION(4),
+    DISK_BALANCER(2),
+    VOLUME_SCANNER(1),
+    DIRECTORY_SCANNER(1),
+    OTHER(8);
+
+    private final int defaultWeight;
+
+    IoClass(int defaultWeight) {
+      this.defaultWeight = defaultWeight;
+    }
+
+    public int getDefaultWeight() {
+      return defaultWeight;
+    }
+  }
+
+  /**
+   * Client name of the block reads issued by erasure coding reconstruction.
+   */
+  public static final String RECONSTRUCTION_CLIENT_NAME =
+      "DFSReconstruction";
+  /** Client name used for reconstruction reads by older DataNodes. */
+  private static final String LEGACY_RECONSTRUCTION_CLIENT_NAME = "dummy";
+
+  private static final IoClass[] IO_CLASSES = IoClass.values();
+  private static final long STRIDE = 1L << 20;
+
+  private static final ThreadLocal<IoClass> CURRENT_IO_CLASS =
+      ThreadLocal.withInitial(() -> IoClass.OTHER);
+
+  private final boolean enabled;
+  private final int volumeConcurrency;
+  private final long clientReadDeadlineNanos;
+  private final int[] weights = new int[IO_CLASSES.length];
+  private final ConcurrentHashMap<String, VolumeQueue> queues =
+      new ConcurrentHashMap<>();
+
+  /**
+   * @param conf  Configuration object. May be null. When null,
+   *              the scheduler is disabled.
+   */
+  public FileIoScheduler(@Nullable Configuration conf) {
+    for (IoClass ioClass : IO_CLASSES) {
+      weights[ioClass.ordinal()] = ioClass.getDefaultWeight();
+    }
+    if (conf == null) {
+      enabled = false;
+      volumeConcurrency = Integer.MAX_VALUE;
+      clientReadDeadlineNanos = 0;
+      return;
+    }
+    enabled = conf.getBoolean(
+        DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_ENABLED_DEFAULT);
+    volumeConcurrency = conf.getInt(
+        DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_VOLUME_CONCURRENCY_KEY,
+        DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_VOLUME_CONCURRENCY_DEFAULT);
+    Preconditions.checkArgument(volumeConcurrency > 0,
+        DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_VOLUME_CONCURRENCY_KEY
+            + " should be larger than 0");
+    clientReadDeadlineNanos = conf.getTimeDuration(
+        DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_CLIENT_READ_DEADLINE_KEY,
+        DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_CLIENT_READ_DEADLINE_DEFAULT,
+        TimeUnit.MILLISECONDS, TimeUnit.NANOSECONDS);
+    for (String entry : conf.getTrimmedStringCollection(
+        DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_WEIGHTS_KEY)) {
+      String[] pair = entry.split("=");
+      Preconditions.checkArgument(pair.length == 2,
+          "Invalid entry " + entry + " in "
+              + DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_WEIGHTS_KEY);
+      IoClass ioClass = IoClass.valueOf(
+          StringUtils.toUpperCase(pair[0].trim()));
+      int weight = Integer.parseInt(pair[1].trim());
+      Preconditions.checkArgument(weight > 0,
+          "Weight of " + ioClass + " should be larger than 0");
+      weights[ioClass.ordinal()] = weight;
+    }
+    if (enabled) {
+      LOG.info("IO scheduler enabled with {} concurrent IOs per volume",
+          volumeConcurrency);
+    }
+  }
+
+  /**
+   * Set the class of the IO issued by the current thread.
+   *
+   * @return the previous class of the current thread.
+   */
+  public static IoClass setIoClass(IoClass ioClass) {
+    IoClass previous = CURRENT_IO_CLASS.get();
+    CURRENT_IO_CLASS.set(ioClass);
+    return previous;
+  }
+
+  public static IoClass getIoClass() {
+    return CURRENT_IO_CLASS.get();
+  }
+
+  /**
+   * @return the class of a block read requested by the given client.
+   */
+  public static IoClass getReadIoClass(String clientName) {
+    if (clientName.isEmpty()) {
+      return IoClass.REPLICATION;
+    }
+    if (clientName.equals(RECONSTRUCTION_CLIENT_NAME)
+        || clientName.equals(LEGACY_RECONSTRUCTION_CLIENT_NAME)) {
+      return IoClass.RECONSTRUCTION;
+    }
+    return IoClass.CLIENT_READ;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Wait for the current thread to be allowed to do IO on the volume. Each
+   * call must be followed by a call to {@link #release(FsVolumeSpi)}.
+   */
+  void acquire(@Nullable FsVolumeSpi volume) throws InterruptedIOException {
+    if (enabled && volume != null) {
+      getQueue(volume).acquire(getIoClass());
+    }
+  }
+
+  void release(@Nullable FsVolumeSpi volume) {
+    if (enabled && volume != null) {
+      getQueue(volume).release();
+    }
+  }
+
+  @VisibleForTesting
+  int getQueueLength(FsVolumeSpi volume, IoClass ioClass) {
+    VolumeQueue queue = queues.get(volume.getStorageID());
+    return queue == null ? 0 : queue.getQueueLength(ioClass);
+  }
+
+  private VolumeQueue getQueue(FsVolumeSpi volume) {
+    VolumeQueue queue = queues.get(volume.getStorageID());
+    if (queue == null) {
+      queue = queues.computeIfAbsent(volume.getStorageID(),
+          id -> new VolumeQueue(volume.getMetrics()));
+    }
+    return queue;
+  }
+
+  private static final class Waiter {
+    private final long enqueueTime;
+    private final Condition granted;
+    private boolean isGranted;
+
+    private Waiter(long enqueueTime, Condition granted) {
+      this.enqueueTime = enqueueTime;
+      this.granted = granted;
+    }
+  }
+
+  /**
+   * The IO queues of a single volume.
+   */
+  private final class VolumeQueue {
+    private final ReentrantLock lock = new ReentrantLock();
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<Waiter>[] waiting =
+        new ArrayDeque[IO_CLASSES.length];
+    private final long[] pass = new long[IO_CLASSES.length];
+    private final DataNodeVolumeMetrics metrics;
+    private long globalPass;
+    private int inFlight;
+    private int numWaiting;
+
+    private VolumeQueue(@Nullable DataNodeVolumeMetrics metrics) {
+      this.metrics = metrics;
+      for (int i = 0; i < waiting.length; i++) {
+        waiting[i] = new ArrayDeque<>();
+      }
+    }
+
+    private void acquire(IoClass ioClass) throws InterruptedIOException {
+      final int c = ioClass.ordinal();
+      final long start = System.nanoTime();
+      lock.lock();
+      try {
+        if (numWaiting == 0 && inFlight < volumeConcurrency) {
+          inFlight++;
+          charge(c);
+          return;
+        }
+        Waiter waiter = new Waiter(start, lock.newCondition());
+        if (waiting[c].isEmpty()) {
+          // Don't let a class that was idle catch up on its share.
+          pass[c] = Math.max(pass[c], globalPass);
+        }
+        waiting[c].add(waiter);
+        numWaiting++;
+        if (metrics != null) {
+          metrics.incrIoSchedulerQueued(ioClass);
+        }
+        try {
+          while (!waiter.isGranted) {
+            waiter.granted.await();
+          }
+        } catch (InterruptedException e) {
+          if (waiter.isGranted) {
+            releaseLocked();
+          } else {
+            waiting[c].remove(waiter);
+            numWaiting--;
+            if (metrics != null) {
+              metrics.decrIoSchedulerQueued(ioClass);
+            }
+          }
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException(
+              "Interrupted while waiting to do " + ioClass + " IO");
+        }
+      } finally {
+        lock.unlock();
+      }
+      if (metrics != null) {
+        metrics.addIoSchedulerWait(ioClass, TimeUnit.NANOSECONDS.toMillis(
+            System.nanoTime() - start));
+      }
+    }
+
+    private void release() {
+      lock.lock();
+      try {
+        releaseLocked();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void releaseLocked() {
+      inFlight--;
+      while (inFlight < volumeConcurrency && numWaiting > 0) {
+        int c = nextClass();
+        Waiter waiter = waiting[c].poll();
+        numWaiting--;
+        if (metrics != null) {
+          metrics.decrIoSchedulerQueued(IO_CLASSES[c]);
+        }
+        charge(c);
+        inFlight++;
+        waiter.isGranted = true;
+        waiter.granted.signal();
+      }
+    }
+
+    /** @return the class of the next waiter to be granted. */
+    private int nextClass() {
+      final int read = IoClass.CLIENT_READ.ordinal();
+      Waiter oldestRead = waiting[read].peek();
+      if (oldestRead != null && System.nanoTime() - oldestRead.enqueueTime
+          >= clientReadDeadlineNanos) {
+        return read;
+      }
+      int next = -1;
+      for (int i = 0; i < waiting.length; i++) {
+        if (!waiting[i].isEmpty() && (next < 0 || pass[i] < pass[next])) {
+          next = i;
+        }
+      }
+      return next;
+    }
+
+    private void charge(int c) {
+      globalPass = Math.max(globalPass, pass[c]);
+      pass[c] += STRIDE / weights[c];
+    }
+
+    private int getQueueLength(IoClass ioClass) {
+      lock.lock();
+      try {
+        return waiting[ioClass.ordinal()].size();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -29,8 +29,10 @@
 import org.slf4j.Logger;
 
 import java.util.Collection;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -53,6 +55,7 @@ public final class ErasureCodingWorker {
 
   private ThreadPoolExecutor stripedReconstructionPool;
   private ThreadPoolExecutor stripedReadPool;
+  private ThreadPoolExecutor stripedWritePool;
 
   public ErasureCodingWorker(Configuration conf, DataNode datanode) {
     this.datanode = datanode;
@@ -67,6 +70,7 @@ public ErasureCodingWorker(Configuration conf, DataNode datanode) {
             ", it can not be negative value (" + this.xmitWeight + ").");
 
     initializeStripedReadThreadPool();
+    initializeStripedWriteThreadPool();
     initializeStripedBlkReconstructionThreadPool(conf.getInt(
         DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_THREADS_KEY,
         DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_THREADS_DEFAULT));
@@ -103,6 +107,26 @@ public void rejectedExecution(Runnable runnable,
     stripedReadPool.allowCoreThreadTimeOut(true);
   }
 
+  private void initializeStripedWriteThreadPool() {
+    // Runs the decoding and write of a stripe while the reconstruction
+    // thread reads the next one. A reconstruction task has at most one
+    // stripe in the background, so this is bounded by the number of tasks.
+    stripedWritePool = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+        60, TimeUnit.SECONDS,
+        new SynchronousQueue<>(),
+        new Daemon.DaemonFactory() {
+          private final AtomicInteger threadIndex = new AtomicInteger(0);
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = super.newThread(r);
+            t.setName("stripedWrite-" + threadIndex.getAndIncrement());
+            return t;
+          }
+        });
+    stripedWritePool.allowCoreThreadTimeOut(true);
+  }
+
   private void initializeStripedBlkReconstructionThreadPool(int numThreads) {
     LOG.debug("Using striped block reconstruction; pool threads={}",
         numThreads);
@@ -164,9 +188,20 @@ CompletionService<BlockReadStats> createReadService() {
     return new ExecutorCompletionService<>(stripedReadPool);
   }
 
+  /**
+   * Run the decoding and write of a stripe in the background.
+   *
+   * @param task the decoding and write of the stripe.
+   * @return future of the task.
+   */
+  Future<Void> submitStripeWrite(Callable<Void> task) {
+    return stripedWritePool.submit(task);
+  }
+
   public void shutDown() {
     stripedReconstructionPool.shutdown();
     stripedReadPool.shutdown();
+    stripedWritePool.shutdown();
   }
 
   public float getXmitWeight() {
@@ -32,6 +32,7 @@
 import org.apache.hadoop.hdfs.security.token.block.BlockTokenIdentifier;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
 import org.apache.hadoop.hdfs.server.datanode.DataNodeFaultInjector;
+import org.apache.hadoop.hdfs.server.datanode.FileIoScheduler;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil.BlockReadStats;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.net.NetUtils;
@@ -95,6 +96,18 @@ ByteBuffer getReadBuffer() {
     return buffer;
   }
 
+  /**
+   * Take the read buffer out of this reader, the next read goes to a new
+   * buffer.
+   *
+   * @return the read buffer, the caller has to free it.
+   */
+  ByteBuffer takeReadBuffer() {
+    ByteBuffer ret = getReadBuffer();
+    buffer = null;
+    return ret;
+  }
+
   void freeReadBuffer() {
     DataNodeFaultInjector.get().interceptFreeBlockReaderBuffer();
     buffer = null;
@@ -129,8 +142,9 @@ private BlockReader createBlockReader(long offsetInBlock) {
         this.isLocal = true;
       }
       return BlockReaderRemote.newBlockReader(
-          "dummy", block, blockToken, offsetInBlock,
-          block.getNumBytes() - offsetInBlock, true, "", peer, source,
+          FileIoScheduler.RECONSTRUCTION_CLIENT_NAME, block, blockToken,
+          offsetInBlock, block.getNumBytes() - offsetInBlock, true, "", peer,
+          source,
           null, stripedReader.getCachingStrategy(), -1, conf);
     } catch (IOException e) {
       LOG.info("Exception while creating remote block reader for {}, datanode {}",
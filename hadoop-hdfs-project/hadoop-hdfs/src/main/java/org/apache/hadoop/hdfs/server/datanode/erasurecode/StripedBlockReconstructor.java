@@ -19,9 +19,15 @@
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.server.datanode.DataNodeFaultInjector;
+import org.apache.hadoop.hdfs.server.datanode.FileIoScheduler;
+import org.apache.hadoop.hdfs.server.datanode.FileIoScheduler.IoClass;
 import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
 import org.apache.hadoop.io.erasurecode.rawcoder.InvalidDecodingException;
 import org.apache.hadoop.util.Time;
@@ -36,6 +42,7 @@ class StripedBlockReconstructor extends StripedReconstructor
     implements Runnable {
 
   private StripedWriter stripedWriter;
+  private final boolean pipelineEnabled;
 
   StripedBlockReconstructor(ErasureCodingWorker worker,
       StripedReconstructionInfo stripedReconInfo) {
@@ -43,6 +50,9 @@ class StripedBlockReconstructor extends StripedReconstructor
 
     stripedWriter = new StripedWriter(this, getDatanode(),
         getConf(), stripedReconInfo);
+    pipelineEnabled = getConf().getBoolean(
+        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_PIPELINE_ENABLED_KEY,
+        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_PIPELINE_ENABLED_DEFAULT);
   }
 
   boolean hasValidTargets() {
@@ -51,6 +61,8 @@ boolean hasValidTargets() {
 
   @Override
   public void run() {
+    FileIoScheduler.setIoClass(IoClass.RECONSTRUCTION);
+    long start = Time.monotonicNow();
     try {
       initDecoderIfNecessary();
 
@@ -63,6 +75,8 @@ public void run() {
       reconstruct();
 
       stripedWriter.endTargetBlocks();
+      getDatanode().getMetrics().addECReconstructionTime(getBytesWritten(),
+          Time.monotonicNow() - start);
 
       // Currently we don't check the acks for packets, this is similar as
       // block replication.
@@ -88,6 +102,10 @@ public void run() {
 
   @Override
   void reconstruct() throws IOException {
+    if (pipelineEnabled) {
+      reconstructPipelined();
+      return;
+    }
     while (getPositionInBlock() < getMaxTargetLength()) {
       DataNodeFaultInjector.get().stripedBlockReconstruction();
       long remaining = getMaxTargetLength() - getPositionInBlock();
@@ -105,18 +123,12 @@ void reconstruct() throws IOException {
       long readEnd = Time.monotonicNow();
 
       // step2: decode to reconstruct targets
-      reconstructTargets(toReconstructLen);
+      reconstructTargets(getStripedReader().getInputBuffers(toReconstructLen),
+          toReconstructLen, getPositionInBlock());
       long decodeEnd = Time.monotonicNow();
 
       // step3: transfer data
-      long bytesToWrite = (long) toReconstructLen * stripedWriter.getTargets();
-      if (getDatanode().getEcReconstuctWriteThrottler() != null) {
-        getDatanode().getEcReconstuctWriteThrottler().throttle(bytesToWrite);
-      }
-      if (stripedWriter.transferData2Targets() == 0) {
-        String error = "Transfer failed for all targets.";
-        throw new IOException(error);
-      }
+      transferData2Targets(toReconstructLen);
       long writeEnd = Time.monotonicNow();
 
       // Only the succeed reconstructions are recorded.
@@ -131,9 +143,142 @@ void reconstruct() throws IOException {
     }
   }
 
-  private void reconstructTargets(int toReconstructLen) throws IOException {
-    ByteBuffer[] inputs = getStripedReader().getInputBuffers(toReconstructLen);
+  /**
+   * Reconstruct with the decoding and write of a stripe in the background
+   * while the next stripe is read from the sources. The readers hand the
+   * buffers of a stripe over to the background and read the next one to new
+   * buffers from the pool, so at most two stripes are in memory.
+   */
+  private void reconstructPipelined() throws IOException {
+    final DataNodeMetrics metrics = getDatanode().getMetrics();
+    Future<Void> pending = null;
+    try {
+      while (getPositionInBlock() < getMaxTargetLength()) {
+        DataNodeFaultInjector.get().stripedBlockReconstruction();
+        long remaining = getMaxTargetLength() - getPositionInBlock();
+        final int toReconstructLen =
+            (int) Math.min(getStripedReader().getBufferSize(), remaining);
+
+        long start = Time.monotonicNow();
+        long bytesToRead =
+            (long) toReconstructLen * getStripedReader().getMinRequiredSources();
+        if (getDatanode().getEcReconstuctReadThrottler() != null) {
+          getDatanode().getEcReconstuctReadThrottler().throttle(bytesToRead);
+        }
+        getStripedReader().readMinimumSources(toReconstructLen);
+        long readEnd = Time.monotonicNow();
+        metrics.incrECReconstructionReadTime(readEnd - start);
+
+        // The previous stripe has to be written before handing this one over
+        waitForStripeWrite(pending);
+        pending = null;
+        metrics.incrECReconstructionPipelineStallTime(
+            Time.monotonicNow() - readEnd);
+
+        final ByteBuffer[] inputs =
+            getStripedReader().takeInputBuffers(toReconstructLen);
+        final long positionInBlock = getPositionInBlock();
+        try {
+          pending = getErasureCodingWorker().submitStripeWrite(() -> {
+            decodeAndTransfer(inputs, toReconstructLen, positionInBlock);
+            return null;
+          });
+        } catch (RejectedExecutionException e) {
+          freeBuffers(inputs);
+          throw new IOException("Cannot write the reconstructed stripe", e);
+        }
+
+        updatePositionInBlock(toReconstructLen);
+        getStripedReader().clearBuffers();
+      }
+      waitForStripeWrite(pending);
+      pending = null;
+    } finally {
+      if (pending != null) {
+        // The buffers of the stripe must not be freed while it is written
+        try {
+          waitForStripeWrite(pending);
+        } catch (IOException e) {
+          LOG.debug("Failed to write the last stripe of {}", getBlockGroup(),
+              e);
+        }
+      }
+    }
+  }
+
+  private void waitForStripeWrite(Future<Void> pending) throws IOException {
+    if (pending == null) {
+      return;
+    }
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          pending.get();
+          return;
+        } catch (InterruptedException e) {
+          // Keep waiting as the stripe still uses the buffers
+          interrupted = true;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          }
+          throw new IOException("Failed to write the reconstructed stripe",
+              cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Decode a stripe and transfer it to the targets, in the background.
+   */
+  private void decodeAndTransfer(ByteBuffer[] inputs, int toReconstructLen,
+      long positionInBlock) throws IOException {
+    try {
+      long start = Time.monotonicNow();
+      reconstructTargets(inputs, toReconstructLen, positionInBlock);
+      long decodeEnd = Time.monotonicNow();
+      transferData2Targets(toReconstructLen);
+      long writeEnd = Time.monotonicNow();
+
+      final DataNodeMetrics metrics = getDatanode().getMetrics();
+      metrics.incrECReconstructionDecodingTime(decodeEnd - start);
+      metrics.incrECReconstructionWriteTime(writeEnd - decodeEnd);
+
+      stripedWriter.clearBuffers();
+    } finally {
+      freeBuffers(inputs);
+    }
+  }
+
+  private void freeBuffers(ByteBuffer[] buffers) {
+    for (ByteBuffer buffer : buffers) {
+      if (buffer != null) {
+        freeBuffer(buffer);
+      }
+    }
+  }
+
+  private void transferData2Targets(int toReconstructLen) throws IOException {
+    DataNodeFaultInjector.get().delayStripedBlockWriter();
+    long bytesToWrite = (long) toReconstructLen * stripedWriter.getTargets();
+    if (getDatanode().getEcReconstuctWriteThrottler() != null) {
+      getDatanode().getEcReconstuctWriteThrottler().throttle(bytesToWrite);
+    }
+    if (stripedWriter.transferData2Targets() == 0) {
+      String error = "Transfer failed for all targets.";
+      throw new IOException(error);
+    }
+  }
 
+  private void reconstructTargets(ByteBuffer[] inputs, int toReconstructLen,
+      long positionInBlock) throws IOException {
     int[] erasedIndices = stripedWriter.getRealTargetIndices();
     ByteBuffer[] outputs = stripedWriter.getRealTargetBuffers(toReconstructLen);
 
@@ -160,7 +305,7 @@ private void reconstructTargets(int toReconstructLen) throws IOException {
       decode(inputs, erasedIndices, outputs);
     }
 
-    stripedWriter.updateRealTargetBuffers(toReconstructLen);
+    stripedWriter.updateRealTargetBuffers(toReconstructLen, positionInBlock);
   }
 
   private void decode(ByteBuffer[] inputs, int[] erasedIndices,
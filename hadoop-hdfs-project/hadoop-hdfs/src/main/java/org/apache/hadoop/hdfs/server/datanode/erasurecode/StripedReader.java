@@ -241,6 +241,27 @@ ByteBuffer[] getInputBuffers(int toReconstructLen) {
     return inputs;
   }
 
+  /**
+   * Get the input buffers like {@link #getInputBuffers(int)} and take them
+   * out of this reader, so the next stripe can be read while they are
+   * decoded. The next stripe is read to new buffers from the pool.
+   *
+   * @param toReconstructLen the length to reconstruct.
+   * @return the input buffers, the caller has to free them.
+   */
+  ByteBuffer[] takeInputBuffers(int toReconstructLen) {
+    ByteBuffer[] inputs = getInputBuffers(toReconstructLen);
+    for (int index : successList) {
+      getReader(index).takeReadBuffer();
+    }
+    if (successList.length < dataBlkNum) {
+      for (int i = 0; i < zeroStripeBuffers.length; i++) {
+        zeroStripeBuffers[i] = reconstructor.allocateBuffer(bufferSize);
+      }
+    }
+    return inputs;
+  }
+
   private void paddingBufferToLen(ByteBuffer buffer, int len) {
     if (len > buffer.limit()) {
       buffer.limit(len);
@@ -245,10 +245,21 @@ ByteBuffer[] getRealTargetBuffers(int toReconstructLen) {
   }
 
   void updateRealTargetBuffers(int toReconstructLen) {
+    updateRealTargetBuffers(toReconstructLen,
+        reconstructor.getPositionInBlock());
+  }
+
+  /**
+   * Limit the target buffers to the lengths of the target blocks.
+   *
+   * @param toReconstructLen the length reconstructed.
+   * @param positionInBlock the position of the reconstructed stripe.
+   */
+  void updateRealTargetBuffers(int toReconstructLen, long positionInBlock) {
     for (int i = 0; i < targets.length; i++) {
       if (targetsStatus[i]) {
         long blockLen = reconstructor.getBlockLen(targetIndices[i]);
-        long remaining = blockLen - reconstructor.getPositionInBlock();
+        long remaining = blockLen - positionInBlock;
         if (remaining <= 0) {
           writers[i].getTargetBuffer().limit(0);
         } else if (remaining < toReconstructLen) {
@@ -21,14 +21,17 @@
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.datanode.FileIoScheduler.IoClass;
 import org.apache.hadoop.metrics2.MetricsSystem;
 import org.apache.hadoop.metrics2.annotation.Metric;
 import org.apache.hadoop.metrics2.annotation.Metrics;
 import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.hadoop.metrics2.lib.MetricsRegistry;
 import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
 import org.apache.hadoop.metrics2.lib.MutableQuantiles;
 import org.apache.hadoop.metrics2.lib.MutableRate;
+import org.apache.hadoop.util.StringUtils;
 
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -84,6 +87,10 @@ public class DataNodeVolumeMetrics {
   @Metric("file io error rate")
   private MutableRate fileIoErrorRate;
 
+  // Per IoClass metrics of the FileIoScheduler, indexed by ordinal
+  private final MutableRate[] ioSchedulerWaitRates;
+  private final MutableGaugeInt[] ioSchedulerQueued;
+
   public long getTotalMetadataOperations() {
     return totalMetadataOperations.value();
   }
@@ -237,6 +244,18 @@ public DataNodeVolumeMetrics(final MetricsSystem metricsSystem,
     writeIoLatencyQuantiles = new MutableQuantiles[len];
     transferIoLatencyQuantiles = new MutableQuantiles[len];
     nativeCopyIoLatencyQuantiles = new MutableQuantiles[len];
+    IoClass[] ioClasses = IoClass.values();
+    ioSchedulerWaitRates = new MutableRate[ioClasses.length];
+    ioSchedulerQueued = new MutableGaugeInt[ioClasses.length];
+    for (IoClass ioClass : ioClasses) {
+      String prefix = StringUtils.camelize(ioClass.name());
+      ioSchedulerWaitRates[ioClass.ordinal()] = registry.newRate(
+          prefix + "IoSchedulerWait",
+          "Time in ms " + ioClass + " IO waited in the IO scheduler");
+      ioSchedulerQueued[ioClass.ordinal()] = registry.newGauge(
+          prefix + "IoSchedulerQueued",
+          "Number of " + ioClass + " IOs queued in the IO scheduler", 0);
+    }
     for (int i = 0; i < len; i++) {
       int interval = intervals[i];
       metadataOperationLatencyQuantiles[i] = registry.newQuantiles(
@@ -350,4 +369,25 @@ public void addFileIoError(final long latency) {
     totalFileIoErrors.incr();
     fileIoErrorRate.add(latency);
   }
-}
\ No newline at end of file
+
+  public void addIoSchedulerWait(IoClass ioClass, final long waitTime) {
+    ioSchedulerWaitRates[ioClass.ordinal()].add(waitTime);
+  }
+
+  public void incrIoSchedulerQueued(IoClass ioClass) {
+    ioSchedulerQueued[ioClass.ordinal()].incr();
+  }
+
+  public void decrIoSchedulerQueued(IoClass ioClass) {
+    ioSchedulerQueued[ioClass.ordinal()].decr();
+  }
+
+  // Based on the ioSchedulerWaitRate of the given class
+  public long getIoSchedulerWaitSampleCount(IoClass ioClass) {
+    return ioSchedulerWaitRates[ioClass.ordinal()].lastStat().numSamples();
+  }
+
+  public int getIoSchedulerQueued(IoClass ioClass) {
+    return ioSchedulerQueued[ioClass.ordinal()].value();
+  }
+}
@@ -32,6 +32,7 @@
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -116,6 +117,10 @@ public class BlockPoolSlice {
   private static final String REPLICA_CACHE_FILE = "replicas";
   private final long replicaCacheExpiry;
   private final File replicaCacheDir;
+  // null if the replica index is disabled.
+  private final ReplicaIndexLog replicaIndex;
+  // Finalized replicas found by a full scan, used to rebuild the index.
+  private volatile Queue<Block> replicasToIndex;
   private AtomicLong numOfBlocks = new AtomicLong();
   private final long cachedDfsUsedCheckTime;
   private final Timer timer;
@@ -213,6 +218,19 @@ public int compare(File f1, File f2) {
         DFSConfigKeys.DFS_DATANODE_REPLICA_CACHE_EXPIRY_TIME_KEY,
         DFSConfigKeys.DFS_DATANODE_REPLICA_CACHE_EXPIRY_TIME_DEFAULT,
         TimeUnit.MILLISECONDS);
+    if (conf.getBoolean(DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_ENABLED_DEFAULT)) {
+      this.replicaIndex = new ReplicaIndexLog(volume, fileIoProvider,
+          replicaCacheDir,
+          conf.getBoolean(DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_SYNC_KEY,
+              DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_SYNC_DEFAULT),
+          conf.getLong(
+              DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_COMPACTION_THRESHOLD_KEY,
+              DFSConfigKeys.
+                  DFS_DATANODE_REPLICA_INDEX_COMPACTION_THRESHOLD_DEFAULT));
+    } else {
+      this.replicaIndex = null;
+    }
 
     // Use cached value initially if available. Or the following call will
     // block until the initial du command completes.
@@ -452,9 +470,30 @@ File addFinalizedBlock(Block b, ReplicaInfo replicaInfo) throws IOException {
       ((CachingGetSpaceUsed) dfsUsage).incDfsUsed(
           b.getNumBytes() + metaFile.length());
     }
+    onReplicaFinalized(b);
     return blockFile;
   }
 
+  /**
+   * Record a replica that is now finalized in this slice in the replica
+   * index, if enabled.
+   */
+  void onReplicaFinalized(Block b) {
+    if (replicaIndex != null) {
+      replicaIndex.add(b);
+    }
+  }
+
+  /**
+   * Record a replica that is no longer finalized in this slice in the
+   * replica index, if enabled.
+   */
+  void onReplicaRemoved(long blockId) {
+    if (replicaIndex != null) {
+      replicaIndex.remove(blockId);
+    }
+  }
+
   /**
    * Move a persisted replica from lazypersist directory to a subdirectory
    * under finalized.
@@ -480,6 +519,7 @@ ReplicaInfo activateSavedReplica(ReplicaInfo replicaInfo,
         .setFsVolume(replicaState.getLazyPersistVolume())
         .setDirectoryToUse(targetBlockFile.getParentFile())
         .build();
+    onReplicaFinalized(newReplicaInfo);
     return newReplicaInfo;
   }
 
@@ -502,35 +542,74 @@ void getVolumeMap(ReplicaMap volumeMap,
           "Recovered " + numRecovered + " replicas from " + lazypersistDir);
     }
 
+    if (replicaIndex != null) {
+      replicasToIndex = new ConcurrentLinkedQueue<Block>();
+    }
     boolean success = readReplicasFromCache(volumeMap, lazyWriteReplicaMap);
+    if (!success && replicaIndex != null) {
+      replicasToIndex = null;
+      success = readReplicasFromIndex(volumeMap, lazyWriteReplicaMap);
+      if (!success) {
+        replicasToIndex = new ConcurrentLinkedQueue<Block>();
+      }
+    }
     if (!success) {
-      List<IOException> exceptions = Collections
-          .synchronizedList(new ArrayList<IOException>());
-      Queue<RecursiveAction> subTaskQueue =
-          new ConcurrentLinkedQueue<RecursiveAction>();
+      scanReplicas(volumeMap, lazyWriteReplicaMap, true);
+    }
+    if (replicasToIndex != null) {
+      // The index was not used, rebuild it from what has been loaded.
+      try {
+        replicaIndex.reset(replicasToIndex);
+      } catch (IOException e) {
+        LOG.warn("Failed to rebuild the replica index in " + replicaCacheDir,
+            e);
+      } finally {
+        replicasToIndex = null;
+      }
+    }
+  }
 
-      // add finalized replicas
-      AddReplicaProcessor task = new AddReplicaProcessor(volumeMap,
-          finalizedDir, lazyWriteReplicaMap, true, exceptions, subTaskQueue);
-      ForkJoinTask<Void> finalizedTask = addReplicaThreadPool.submit(task);
+  /**
+   * Add the replicas found on disk to the volume map.
+   *
+   * @param includeFinalized whether to scan the finalized directory in
+   *                         addition to the rbw directory.
+   */
+  private void scanReplicas(ReplicaMap volumeMap,
+      final RamDiskReplicaTracker lazyWriteReplicaMap,
+      boolean includeFinalized) throws IOException {
+    List<IOException> exceptions = Collections
+        .synchronizedList(new ArrayList<IOException>());
+    Queue<RecursiveAction> subTaskQueue =
+        new ConcurrentLinkedQueue<RecursiveAction>();
+
+    // add finalized replicas
+    ForkJoinTask<Void> finalizedTask = null;
+    AddReplicaProcessor task;
+    if (includeFinalized) {
+      task = new AddReplicaProcessor(volumeMap, finalizedDir,
+          lazyWriteReplicaMap, true, exceptions, subTaskQueue);
+      finalizedTask = addReplicaThreadPool.submit(task);
+    }
 
-      // add rbw replicas
-      task = new AddReplicaProcessor(volumeMap, rbwDir, lazyWriteReplicaMap,
-          false, exceptions, subTaskQueue);
-      ForkJoinTask<Void> rbwTask = addReplicaThreadPool.submit(task);
+    // add rbw replicas
+    task = new AddReplicaProcessor(volumeMap, rbwDir, lazyWriteReplicaMap,
+        false, exceptions, subTaskQueue);
+    ForkJoinTask<Void> rbwTask = addReplicaThreadPool.submit(task);
 
-      try {
+    try {
+      if (finalizedTask != null) {
         finalizedTask.get();
-        rbwTask.get();
-      } catch (InterruptedException | ExecutionException e) {
-        exceptions.add(new IOException(
-            "Failed to start sub tasks to add replica in replica map :"
-                + e.getMessage()));
       }
-
-      //wait for all the tasks to finish.
-      waitForSubTaskToFinish(subTaskQueue, exceptions);
+      rbwTask.get();
+    } catch (InterruptedException | ExecutionException e) {
+      exceptions.add(new IOException(
+          "Failed to start sub tasks to add replica in replica map :"
+              + e.getMessage()));
     }
+
+    //wait for all the tasks to finish.
+    waitForSubTaskToFinish(subTaskQueue, exceptions);
   }
 
   /**
@@ -722,6 +801,10 @@ private void addReplicaToReplicasMap(Block block, ReplicaMap volumeMap,
     if (oldReplica == null) {
       incrNumBlocks();
     }
+    Queue<Block> toIndex = replicasToIndex;
+    if (toIndex != null && isFinalized && newReplica.getVolume() == volume) {
+      toIndex.add(new Block(newReplica));
+    }
   }
 
 
@@ -942,6 +1025,9 @@ public String toString() {
 
   void shutdown(BlockListAsLongs blocksListToPersist) {
     saveReplicas(blocksListToPersist);
+    if (replicaIndex != null) {
+      replicaIndex.close();
+    }
     saveDfsUsed();
     dfsUsedSaved = true;
 
@@ -1031,6 +1117,45 @@ private boolean readReplicasFromCache(ReplicaMap volumeMap,
     }
   }
 
+  /**
+   * Load the finalized replicas from the replica index, and scan only the
+   * rbw directory. The loaded replicas are not checked against the disk,
+   * the DirectoryScanner reconciles any difference later on.
+   *
+   * @return false if the index cannot be used.
+   */
+  private boolean readReplicasFromIndex(ReplicaMap volumeMap,
+      final RamDiskReplicaTracker lazyWriteReplicaMap) throws IOException {
+    final Collection<Block> indexed;
+    try {
+      indexed = replicaIndex.load();
+    } catch (IOException e) {
+      LOG.warn("Failed to load the replica index in " + replicaCacheDir
+          + ", will scan the volume", e);
+      return false;
+    }
+    if (indexed == null) {
+      return false;
+    }
+    ReplicaMap tmpReplicaMap = new ReplicaMap();
+    for (Block block : indexed) {
+      addReplicaToReplicasMap(block, tmpReplicaMap, lazyWriteReplicaMap, true);
+    }
+    for (Iterator<ReplicaInfo> iter =
+        tmpReplicaMap.replicas(bpid).iterator(); iter.hasNext(); ) {
+      ReplicaInfo info = iter.next();
+      // We use a lightweight GSet to store replicaInfo, we need to remove
+      // it from one GSet before adding to another.
+      iter.remove();
+      volumeMap.add(bpid, info);
+    }
+    LOG.info("Successfully read " + indexed.size()
+        + " finalized replicas from the replica index in " + replicaCacheDir);
+    // Replicas being written are not indexed.
+    scanReplicas(volumeMap, lazyWriteReplicaMap, false);
+    return true;
+  }
+
   private void saveReplicas(BlockListAsLongs blocksListToPersist) {
     if (blocksListToPersist == null ||
         blocksListToPersist.getNumberOfBlocks()== 0) {
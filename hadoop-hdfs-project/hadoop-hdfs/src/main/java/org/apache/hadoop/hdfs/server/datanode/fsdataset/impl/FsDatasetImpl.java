@@ -1458,6 +1458,10 @@ private ReplicaInPipeline append(String bpid,
       }
       // Replace finalized replica by a RBW replica in replicas map
       volumeMap.add(bpid, rip.getReplicaInfo());
+      // Clients must stop trusting what they verified of the finalized
+      // replica, such as its checksums, now that it is being appended to.
+      datanode.getShortCircuitRegistry().processBlockInvalidation(
+          new ExtendedBlockId(replicaInfo.getBlockId(), bpid));
       return rip;
     }
   }
@@ -1573,6 +1577,10 @@ public Replica recoverClose(ExtendedBlock b, long newGS,
           // finalize the replica if RBW
           if (replicaInfo.getState() == ReplicaState.RBW) {
             finalizeReplica(b.getBlockPoolId(), replicaInfo);
+          } else if (replicaInfo.getState() == ReplicaState.FINALIZED) {
+            // record the new GS of the finalized replica in the index
+            ((FsVolumeImpl) replicaInfo.getVolume()).onReplicaFinalized(
+                b.getBlockPoolId(), replicaInfo);
           }
           return replicaInfo;
         }
@@ -2025,6 +2033,8 @@ private ReplicaInfo finalizeReplica(String bpid, ReplicaInfo replicaInfo)
           == ReplicaState.FINALIZED) {
         newReplicaInfo = replicaInfo.getOriginalReplica();
         ((FinalizedReplica)newReplicaInfo).loadLastPartialChunkChecksum();
+        ((FsVolumeImpl) newReplicaInfo.getVolume()).onReplicaFinalized(bpid,
+            newReplicaInfo);
       } else {
         FsVolumeImpl v = (FsVolumeImpl)replicaInfo.getVolume();
         if (v == null) {
@@ -2362,6 +2372,7 @@ private void invalidate(String bpid, Block[] invalidBlks, boolean async)
         }
       }
 
+      v.onReplicaRemoved(bpid, invalidBlks[i].getBlockId());
       try {
         if (async) {
           // Delete the block asynchronously to make sure we can do it fast
@@ -2802,6 +2813,8 @@ public void checkAndUpdate(String bpid, ScanInfo scanInfo)
           // Block is in memory and not on the disk
           // Remove the block from volumeMap
           volumeMap.remove(bpid, blockId);
+          ((FsVolumeImpl) memBlockInfo.getVolume()).onReplicaRemoved(bpid,
+              blockId);
           if (curDirScannerNotifyCount < maxDirScannerNotifyCount) {
             curDirScannerNotifyCount++;
             datanode.notifyNamenodeDeletedBlock(new ExtendedBlock(bpid,
@@ -2833,6 +2846,7 @@ public void checkAndUpdate(String bpid, ScanInfo scanInfo)
             .setDirectoryToUse(diskFile.getParentFile())
             .build();
         volumeMap.add(bpid, diskBlockInfo);
+        ((FsVolumeImpl) vol).onReplicaFinalized(bpid, diskBlockInfo);
         if (curDirScannerNotifyCount < maxDirScannerNotifyCount) {
           maxDirScannerNotifyCount++;
           datanode.notifyNamenodeReceivedBlock(
@@ -2852,6 +2866,8 @@ public void checkAndUpdate(String bpid, ScanInfo scanInfo)
       /*
        * Block exists in volumeMap and the block file exists on the disk
        */
+      final long memGS = memBlockInfo.getGenerationStamp();
+      final long memNumBytes = memBlockInfo.getNumBytes();
       // Compare block files
       if (memBlockInfo.blockDataExists()) {
         if (memBlockInfo.getBlockURI().compareTo(diskFile.toURI()) != 0) {
@@ -2947,6 +2963,11 @@ public void checkAndUpdate(String bpid, ScanInfo scanInfo)
               corruptBlock.getBlockId(), memBlockFile, memMetaFile);
         }
       }
+      if (memBlockInfo.getGenerationStamp() != memGS
+          || memBlockInfo.getNumBytes() != memNumBytes) {
+        ((FsVolumeImpl) memBlockInfo.getVolume()).onReplicaFinalized(bpid,
+            memBlockInfo);
+      }
     } finally {
       if (dataNodeMetrics != null) {
         long checkAndUpdateTimeMs = Time.monotonicNow() - startTimeMs;
@@ -3544,6 +3565,10 @@ private void removeOldReplica(ReplicaInfo replicaInfo,
         newReplicaInfo.isOnTransientStorage());
 
     // Remove the old replicas
+    if (replicaInfo.getVolume() != newReplicaInfo.getVolume()) {
+      ((FsVolumeImpl) replicaInfo.getVolume()).onReplicaRemoved(bpid,
+          replicaInfo.getBlockId());
+    }
     cleanupReplica(bpid, replicaInfo);
 
     // If deletion failed then the directory scanner will cleanup the blocks
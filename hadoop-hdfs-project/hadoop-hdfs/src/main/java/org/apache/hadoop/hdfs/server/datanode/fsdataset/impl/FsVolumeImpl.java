@@ -379,6 +379,28 @@ void onMetaFileDeletion(String bpid, long value) {
     decDfsUsedAndNumBlocks(bpid, value, false);
   }
 
+  /**
+   * Called when a replica of this volume has been finalized, or when its
+   * finalized generation stamp or length changed.
+   */
+  void onReplicaFinalized(String bpid, Block b) {
+    BlockPoolSlice bp = bpSlices.get(bpid);
+    if (bp != null) {
+      bp.onReplicaFinalized(b);
+    }
+  }
+
+  /**
+   * Called when a finalized replica of this volume is deleted or reopened
+   * for writing.
+   */
+  void onReplicaRemoved(String bpid, long blockId) {
+    BlockPoolSlice bp = bpSlices.get(bpid);
+    if (bp != null) {
+      bp.onReplicaRemoved(blockId);
+    }
+  }
+
   private void decDfsUsedAndNumBlocks(String bpid, long value,
                                       boolean blockFileDeleted) {
     // BlockPoolSlice map is thread safe, and update the space used or
@@ -1294,6 +1316,7 @@ public ReplicaInPipeline append(String bpid, ReplicaInfo replicaInfo,
     long oldReplicaLength = replicaInfo.getNumBytes() + replicaInfo.getMetadataLength();
     newReplicaInfo.moveReplicaFrom(replicaInfo, newBlkFile);
     getBlockPoolSlice(bpid).decDfsUsed(oldReplicaLength);
+    getBlockPoolSlice(bpid).onReplicaRemoved(replicaInfo.getBlockId());
 
     reserveSpaceForReplica(bytesReserved);
     return newReplicaInfo;
@@ -0,0 +1,462 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.server.datanode.FileIoProvider;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.util.Daemon;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A crash-consistent on-disk index of the finalized replicas of a
+ * {@link BlockPoolSlice}. It lets a volume rebuild its part of the
+ * {@link ReplicaMap} on restart without listing every finalized subdir.
+ *
+ * The index is made of three files in the replica cache directory:
+ * <ul>
+ *   <li>{@value #BASE_FILE}: a compacted snapshot of the index.</li>
+ *   <li>{@value #ROLLED_FILE}: a journal being folded into the snapshot by
+ *   an in-progress compaction.</li>
+ *   <li>{@value #JOURNAL_FILE}: the journal that replica changes are
+ *   appended to.</li>
+ * </ul>
+ * Every record carries a checksum, so a torn tail left behind by a crash is
+ * detected and dropped on load. Replaying the files in the order above is
+ * idempotent, so a crash at any point of a compaction leaves a loadable
+ * index. Records lost to a crash only make the index stale, which the
+ * {@link org.apache.hadoop.hdfs.server.datanode.DirectoryScanner} corrects
+ * on its next pass through
+ * {@link FsDatasetImpl#checkAndUpdate(String,
+ * org.apache.hadoop.hdfs.server.datanode.DirectoryScanner.ScanInfo)}.
+ *
+ * Records are appended while the callers hold the dataset locks, so they
+ * are never synced inline. If syncing is enabled, a syncer thread fsyncs
+ * the journal as soon as records are pending, and a single fsync covers
+ * every record appended meanwhile.
+ */
+class ReplicaIndexLog implements Closeable {
+  static final Logger LOG = LoggerFactory.getLogger(ReplicaIndexLog.class);
+
+  static final String BASE_FILE = "replicas.index";
+  static final String JOURNAL_FILE = "replicas.journal";
+  static final String ROLLED_FILE = "replicas.journal.rolled";
+
+  private static final int MAGIC = 0x48524958;
+  private static final int LAYOUT_VERSION = 1;
+  private static final int HEADER_LENGTH = 8;
+
+  private static final byte OP_ADD = 1;
+  private static final byte OP_REMOVE = 2;
+  /** op, block id, generation stamp, length and CRC32 of the former. */
+  @VisibleForTesting
+  static final int RECORD_LENGTH = 1 + 3 * 8 + 4;
+
+  private final FsVolumeSpi volume;
+  private final FileIoProvider fileIoProvider;
+  private final File baseFile;
+  private final File journalFile;
+  private final File rolledFile;
+  private final boolean syncOnAppend;
+  private final long compactionThreshold;
+
+  private final ByteBuffer record = ByteBuffer.allocate(RECORD_LENGTH);
+  private final CRC32 checksum = new CRC32();
+  private final AtomicBoolean compacting = new AtomicBoolean(false);
+
+  /** Journal being appended to; null until opened or once invalidated. */
+  private FileOutputStream journal;
+  private long journalRecords;
+  /** Journal with records not synced yet, if syncing is enabled. */
+  private FileOutputStream unsyncedJournal;
+  private Daemon syncer;
+  private boolean closed;
+
+  ReplicaIndexLog(FsVolumeSpi volume, FileIoProvider fileIoProvider,
+      File dir, boolean syncOnAppend, long compactionThreshold) {
+    this.volume = volume;
+    this.fileIoProvider = fileIoProvider;
+    this.baseFile = new File(dir, BASE_FILE);
+    this.journalFile = new File(dir, JOURNAL_FILE);
+    this.rolledFile = new File(dir, ROLLED_FILE);
+    this.syncOnAppend = syncOnAppend;
+    this.compactionThreshold = compactionThreshold;
+  }
+
+  /**
+   * Replay the index and open the journal for appending.
+   *
+   * @return the indexed finalized replicas, or null if there is no usable
+   *         index, in which case the caller should scan the volume and
+   *         {@link #reset(Collection)} the index.
+   */
+  synchronized Collection<Block> load() throws IOException {
+    closeJournal();
+    if (!baseFile.exists()) {
+      LOG.info("Replica index {} doesn't exist", baseFile);
+      return null;
+    }
+    Map<Long, Block> replicas = new HashMap<>();
+    if (!replay(baseFile, replicas)) {
+      LOG.warn("Replica index {} is truncated, ignoring it", baseFile);
+      return null;
+    }
+    boolean pending = false;
+    if (rolledFile.exists()) {
+      replay(rolledFile, replicas);
+      pending = true;
+    }
+    if (journalFile.exists()) {
+      replay(journalFile, replicas);
+      pending = true;
+    }
+    if (pending) {
+      // Fold the journals in now so the node starts with an empty journal.
+      reset(replicas.values());
+    } else {
+      openJournal();
+    }
+    return replicas.values();
+  }
+
+  /**
+   * Replace the index with the given finalized replicas and start a new
+   * journal.
+   */
+  synchronized void reset(Collection<Block> replicas) throws IOException {
+    closeJournal();
+    commitSnapshot(writeSnapshot(replicas));
+    fileIoProvider.deleteWithExistsCheck(volume, rolledFile);
+    fileIoProvider.deleteWithExistsCheck(volume, journalFile);
+    openJournal();
+  }
+
+  /** Record that a replica has been finalized on this volume. */
+  void add(Block b) {
+    append(OP_ADD, b.getBlockId(), b.getGenerationStamp(), b.getNumBytes());
+  }
+
+  /** Record that a replica is no longer finalized on this volume. */
+  void remove(long blockId) {
+    append(OP_REMOVE, blockId, 0, 0);
+  }
+
+  private void append(byte op, long blockId, long genStamp, long numBytes) {
+    synchronized (this) {
+      if (journal == null) {
+        return;
+      }
+      try {
+        writeRecord(journal, record, checksum, op, blockId, genStamp,
+            numBytes);
+        if (syncOnAppend) {
+          requestSync();
+        }
+      } catch (IOException e) {
+        LOG.warn("Failed to append to replica index journal {}, the index "
+            + "will be rebuilt on the next restart", journalFile, e);
+        invalidate();
+        return;
+      }
+      if (++journalRecords < compactionThreshold ||
+          !compacting.compareAndSet(false, true)) {
+        return;
+      }
+    }
+    Daemon compactor = new Daemon(this::compact);
+    compactor.setName("ReplicaIndexCompactor-" + baseFile.getParent());
+    compactor.start();
+  }
+
+  /** Wake up the syncer, starting it on first use. */
+  private void requestSync() {
+    if (unsyncedJournal == null) {
+      unsyncedJournal = journal;
+      notifyAll();
+    }
+    if (syncer == null && !closed) {
+      syncer = new Daemon(this::syncJournal);
+      syncer.setName("ReplicaIndexSyncer-" + baseFile.getParent());
+      syncer.start();
+    }
+  }
+
+  /** Sync the journal whenever records are pending, until closed. */
+  private void syncJournal() {
+    while (true) {
+      FileOutputStream toSync;
+      synchronized (this) {
+        while (unsyncedJournal == null && !closed) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+        if (closed) {
+          return;
+        }
+        toSync = unsyncedJournal;
+        unsyncedJournal = null;
+      }
+      try {
+        fileIoProvider.sync(volume, toSync);
+      } catch (IOException e) {
+        synchronized (this) {
+          // A journal closed meanwhile is folded into a synced snapshot.
+          if (toSync == journal) {
+            LOG.warn("Failed to sync replica index journal {}, the index "
+                + "will be rebuilt on the next restart", journalFile, e);
+            invalidate();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Roll the journal and fold it into a new snapshot. Appends go to a fresh
+   * journal while the snapshot is written.
+   */
+  @VisibleForTesting
+  void compact() {
+    try {
+      synchronized (this) {
+        if (journal == null) {
+          return;
+        }
+        closeJournal();
+        fileIoProvider.rename(volume, journalFile, rolledFile);
+        openJournal();
+      }
+      Map<Long, Block> replicas = new HashMap<>();
+      if (!replay(baseFile, replicas)) {
+        throw new IOException("Replica index " + baseFile + " is truncated");
+      }
+      replay(rolledFile, replicas);
+      File tmpFile = writeSnapshot(replicas.values());
+      synchronized (this) {
+        if (journal == null) {
+          // The index was invalidated while the snapshot was written.
+          fileIoProvider.deleteWithExistsCheck(volume, tmpFile);
+          return;
+        }
+        commitSnapshot(tmpFile);
+        fileIoProvider.deleteWithExistsCheck(volume, rolledFile);
+      }
+      LOG.info("Compacted replica index {} to {} replicas", baseFile,
+          replicas.size());
+    } catch (IOException e) {
+      LOG.warn("Failed to compact replica index {}, the index will be "
+          + "rebuilt on the next restart", baseFile, e);
+      synchronized (this) {
+        invalidate();
+      }
+    } finally {
+      compacting.set(false);
+    }
+  }
+
+  /**
+   * Stop maintaining the index and remove it, so that the next restart
+   * falls back to a full scan instead of loading a stale index.
+   */
+  private void invalidate() {
+    closeJournal();
+    fileIoProvider.deleteWithExistsCheck(volume, baseFile);
+    fileIoProvider.deleteWithExistsCheck(volume, rolledFile);
+    fileIoProvider.deleteWithExistsCheck(volume, journalFile);
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    syncer = null;
+    notifyAll();
+    if (journal != null) {
+      try {
+        fileIoProvider.sync(volume, journal);
+      } catch (IOException e) {
+        LOG.warn("Failed to sync replica index journal {}", journalFile, e);
+      }
+    }
+    closeJournal();
+  }
+
+  @VisibleForTesting
+  synchronized long getJournalRecords() {
+    return journalRecords;
+  }
+
+  private void closeJournal() {
+    IOUtils.cleanupWithLogger(LOG, journal);
+    journal = null;
+    unsyncedJournal = null;
+    journalRecords = 0;
+  }
+
+  private void openJournal() throws IOException {
+    long validLength = HEADER_LENGTH;
+    if (journalFile.exists()) {
+      validLength = Math.max(validLength, scan(journalFile, null));
+    }
+    // Appended to under the dataset locks, so it must not wait for the
+    // IO scheduler of a busy volume.
+    FileOutputStream out = fileIoProvider.getUnscheduledFileOutputStream(
+        volume, journalFile, true);
+    try {
+      if (out.getChannel().size() < HEADER_LENGTH) {
+        out.getChannel().truncate(0);
+        writeHeader(out);
+      } else if (out.getChannel().size() > validLength) {
+        // Drop the torn tail left behind by a crash.
+        out.getChannel().truncate(validLength);
+      }
+      journalRecords = (validLength - HEADER_LENGTH) / RECORD_LENGTH;
+      journal = out;
+    } catch (IOException e) {
+      IOUtils.closeStream(out);
+      throw e;
+    }
+  }
+
+  /** @return a temporary file holding a snapshot of the given replicas. */
+  private File writeSnapshot(Collection<Block> replicas) throws IOException {
+    File tmpFile = new File(baseFile.getParentFile(), BASE_FILE + ".tmp");
+    fileIoProvider.deleteWithExistsCheck(volume, tmpFile);
+    try (FileOutputStream fos = fileIoProvider.getFileOutputStream(
+        volume, tmpFile)) {
+      BufferedOutputStream out = new BufferedOutputStream(fos);
+      ByteBuffer buf = ByteBuffer.allocate(RECORD_LENGTH);
+      CRC32 crc = new CRC32();
+      writeHeader(out);
+      for (Block b : replicas) {
+        writeRecord(out, buf, crc, OP_ADD, b.getBlockId(),
+            b.getGenerationStamp(), b.getNumBytes());
+      }
+      out.flush();
+      fileIoProvider.sync(volume, fos);
+    }
+    return tmpFile;
+  }
+
+  private void commitSnapshot(File tmpFile) throws IOException {
+    fileIoProvider.move(volume, tmpFile.toPath(), baseFile.toPath(),
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void writeHeader(OutputStream out) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+    header.putInt(MAGIC).putInt(LAYOUT_VERSION);
+    out.write(header.array());
+  }
+
+  private static void writeRecord(OutputStream out, ByteBuffer buf,
+      CRC32 crc, byte op, long blockId, long genStamp, long numBytes)
+      throws IOException {
+    buf.clear();
+    buf.put(op).putLong(blockId).putLong(genStamp).putLong(numBytes);
+    crc.reset();
+    crc.update(buf.array(), 0, RECORD_LENGTH - 4);
+    buf.putInt((int) crc.getValue());
+    out.write(buf.array(), 0, RECORD_LENGTH);
+  }
+
+  /**
+   * Apply the records of the given file to the replica map.
+   *
+   * @return false if the file ended with a torn or corrupt record, which
+   *         is dropped along with anything following it.
+   */
+  private boolean replay(File file, Map<Long, Block> replicas)
+      throws IOException {
+    return scan(file, replicas) == file.length();
+  }
+
+  /** @return the length of the valid prefix of the file. */
+  private long scan(File file, Map<Long, Block> replicas) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        fileIoProvider.getFileInputStream(volume, file)))) {
+      try {
+        if (in.readInt() != MAGIC) {
+          throw new IOException("Bad magic number in " + file);
+        }
+        int version = in.readInt();
+        if (version != LAYOUT_VERSION) {
+          throw new IOException("Unsupported replica index layout version "
+              + version + " in " + file);
+        }
+      } catch (EOFException e) {
+        return 0;
+      }
+      long validLength = HEADER_LENGTH;
+      byte[] buf = new byte[RECORD_LENGTH];
+      CRC32 crc = new CRC32();
+      while (true) {
+        try {
+          in.readFully(buf);
+        } catch (EOFException e) {
+          break;
+        }
+        ByteBuffer rec = ByteBuffer.wrap(buf);
+        crc.reset();
+        crc.update(buf, 0, RECORD_LENGTH - 4);
+        if (rec.getInt(RECORD_LENGTH - 4) != (int) crc.getValue()) {
+          break;
+        }
+        byte op = rec.get();
+        long blockId = rec.getLong();
+        long genStamp = rec.getLong();
+        long numBytes = rec.getLong();
+        if (op != OP_ADD && op != OP_REMOVE) {
+          break;
+        }
+        if (replicas != null) {
+          if (op == OP_ADD) {
+            replicas.put(blockId, new Block(blockId, numBytes, genStamp));
+          } else {
+            replicas.remove(blockId);
+          }
+        }
+        validLength += RECORD_LENGTH;
+      }
+      return validLength;
+    }
+  }
+}
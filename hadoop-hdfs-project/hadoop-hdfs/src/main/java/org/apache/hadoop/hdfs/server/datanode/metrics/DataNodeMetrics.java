@@ -32,12 +32,14 @@
 import org.apache.hadoop.metrics2.lib.MutableCounterLong;
 import org.apache.hadoop.metrics2.lib.MutableQuantiles;
 import org.apache.hadoop.metrics2.lib.MutableRate;
+import org.apache.hadoop.metrics2.lib.MutableStat;
 import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
 import org.apache.hadoop.metrics2.lib.MutableGaugeLong;
 import org.apache.hadoop.metrics2.lib.MutableRatesWithAggregation;
 import org.apache.hadoop.metrics2.source.JvmMetrics;
 
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -179,6 +181,14 @@ public class DataNodeMetrics {
   private MutableCounterLong ecReconstructionWriteTimeMillis;
   @Metric("Milliseconds spent on validating by erasure coding worker")
   private MutableCounterLong ecReconstructionValidateTimeMillis;
+  @Metric("Milliseconds spent by erasure coding reconstruction tasks")
+  private MutableCounterLong ecReconstructionTimeMillis;
+  @Metric("Milliseconds the reads of erasure coding worker waited for the" +
+      " decoding and write of the previous stripe")
+  private MutableCounterLong ecReconstructionPipelineStallTimeMillis;
+  @Metric(value = "Throughput of erasure coding reconstruction tasks",
+      sampleName = "Tasks", valueName = "MBps")
+  private MutableStat ecReconstructionThroughput;
   @Metric("Sum of all BPServiceActors command queue length")
   private MutableCounterLong sumOfActorCommandQueueLength;
   @Metric("Num of processed commands of all BPServiceActors")
@@ -229,6 +239,11 @@ public class DataNodeMetrics {
 
   public DataNodeMetrics(String name, String sessionId, int[] intervals,
       final JvmMetrics jvmMetrics) {
+    this(name, sessionId, intervals, false, jvmMetrics);
+  }
+
+  public DataNodeMetrics(String name, String sessionId, int[] intervals,
+      boolean histograms, final JvmMetrics jvmMetrics) {
     this.name = name;
     this.jvmMetrics = jvmMetrics;    
     registry.tag(SessionId, sessionId);
@@ -246,31 +261,34 @@ public DataNodeMetrics(String name, String sessionId, int[] intervals,
 
     for (int i = 0; i < len; i++) {
       int interval = intervals[i];
-      packetAckRoundTripTimeNanosQuantiles[i] = registry.newQuantiles(
+      packetAckRoundTripTimeNanosQuantiles[i] = newQuantiles(histograms,
           "packetAckRoundTripTimeNanos" + interval + "s",
-          "Packet Ack RTT in ns", "ops", "latency", interval);
-      flushNanosQuantiles[i] = registry.newQuantiles(
+          "Packet Ack RTT in ns", "ops", "latency", interval,
+          TimeUnit.NANOSECONDS);
+      flushNanosQuantiles[i] = newQuantiles(histograms,
           "flushNanos" + interval + "s", 
-          "Disk flush latency in ns", "ops", "latency", interval);
-      fsyncNanosQuantiles[i] = registry.newQuantiles(
+          "Disk flush latency in ns", "ops", "latency", interval,
+          TimeUnit.NANOSECONDS);
+      fsyncNanosQuantiles[i] = newQuantiles(histograms,
           "fsyncNanos" + interval + "s", "Disk fsync latency in ns", 
-          "ops", "latency", interval);
-      sendDataPacketBlockedOnNetworkNanosQuantiles[i] = registry.newQuantiles(
+          "ops", "latency", interval, TimeUnit.NANOSECONDS);
+      sendDataPacketBlockedOnNetworkNanosQuantiles[i] = newQuantiles(histograms,
           "sendDataPacketBlockedOnNetworkNanos" + interval + "s", 
           "Time blocked on network while sending a packet in ns",
-          "ops", "latency", interval);
-      sendDataPacketTransferNanosQuantiles[i] = registry.newQuantiles(
+          "ops", "latency", interval, TimeUnit.NANOSECONDS);
+      sendDataPacketTransferNanosQuantiles[i] = newQuantiles(histograms,
           "sendDataPacketTransferNanos" + interval + "s", 
           "Time reading from disk and writing to network while sending " +
-          "a packet in ns", "ops", "latency", interval);
-      ramDiskBlocksEvictionWindowMsQuantiles[i] = registry.newQuantiles(
+          "a packet in ns", "ops", "latency", interval,
+          TimeUnit.NANOSECONDS);
+      ramDiskBlocksEvictionWindowMsQuantiles[i] = newQuantiles(histograms,
           "ramDiskBlocksEvictionWindows" + interval + "s",
           "Time between the RamDisk block write and eviction in ms",
-          "ops", "latency", interval);
-      ramDiskBlocksLazyPersistWindowMsQuantiles[i] = registry.newQuantiles(
+          "ops", "latency", interval, TimeUnit.MILLISECONDS);
+      ramDiskBlocksLazyPersistWindowMsQuantiles[i] = newQuantiles(histograms,
           "ramDiskBlocksLazyPersistWindows" + interval + "s",
           "Time between the RamDisk block write and disk persist in ms",
-          "ops", "latency", interval);
+          "ops", "latency", interval, TimeUnit.MILLISECONDS);
       readTransferRateQuantiles[i] = registry.newInverseQuantiles(
           "readTransferRate" + interval + "s",
           "Rate at which bytes are read from datanode calculated in bytes per second",
@@ -278,6 +296,16 @@ public DataNodeMetrics(String name, String sessionId, int[] intervals,
     }
   }
 
+  private MutableQuantiles newQuantiles(boolean histogram, String metricName,
+      String desc, String sampleName, String valueName, int interval,
+      TimeUnit unit) {
+    return histogram
+        ? registry.newHistogram(metricName, desc, sampleName, valueName,
+            interval, unit)
+        : registry.newQuantiles(metricName, desc, sampleName, valueName,
+            interval);
+  }
+
   public static DataNodeMetrics create(Configuration conf, String dnName) {
     String sessionId = conf.get(DFSConfigKeys.DFS_METRICS_SESSION_ID_KEY);
     MetricsSystem ms = DefaultMetricsSystem.instance();
@@ -290,8 +318,12 @@ public static DataNodeMetrics create(Configuration conf, String dnName) {
     int[] intervals = 
         conf.getInts(DFSConfigKeys.DFS_METRICS_PERCENTILES_INTERVALS_KEY);
     
+    boolean histograms = conf.getBoolean(
+        DFSConfigKeys.DFS_METRICS_HISTOGRAM_ENABLE_KEY,
+        DFSConfigKeys.DFS_METRICS_HISTOGRAM_ENABLE_DEFAULT);
+
     return ms.register(name, null, new DataNodeMetrics(name, sessionId,
-        intervals, jm));
+        intervals, histograms, jm));
   }
 
   public String name() { return name; }
@@ -704,6 +736,22 @@ public void incrECReconstructionValidateTime(long millis) {
     ecReconstructionValidateTimeMillis.incr(millis);
   }
 
+  /**
+   * Add a successful reconstruction task.
+   * @param bytesWritten bytes written to the targets by the task.
+   * @param millis wall clock time of the task.
+   */
+  public void addECReconstructionTime(long bytesWritten, long millis) {
+    ecReconstructionTimeMillis.incr(millis);
+    if (millis > 0) {
+      ecReconstructionThroughput.add(bytesWritten * 1000 / millis / (1 << 20));
+    }
+  }
+
+  public void incrECReconstructionPipelineStallTime(long millis) {
+    ecReconstructionPipelineStallTimeMillis.incr(millis);
+  }
+
   public DataNodeUsageReport getDNUsageReport(long timeSinceLastReport) {
     return dnUsageReportUtil.getUsageReport(bytesWritten.value(), bytesRead
             .value(), totalWriteTime.value(), totalReadTime.value(),
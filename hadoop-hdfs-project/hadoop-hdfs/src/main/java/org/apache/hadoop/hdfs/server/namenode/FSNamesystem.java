@@ -8907,7 +8907,15 @@ private Supplier<String> getLockReportInfoSupplier(String src, String dst,
   private Supplier<String> getLockReportInfoSupplier(String src, String dst,
       FileStatus status) {
     return () -> {
-      UserGroupInformation ugi = Server.getRemoteUser();
+      UserGroupInformation ugi = null;
+      if (Server.isRpcInvocation()) {
+        try {
+          ugi = NameNode.getRemoteUser();
+        } catch (IOException e) {
+          // The call cannot run as its proxy user, report the remote user
+          ugi = Server.getRemoteUser();
+        }
+      }
       String userName = ugi != null ? ugi.toString() : null;
       InetAddress addr = Server.getRemoteIp();
       StringBuilder sb = new StringBuilder();
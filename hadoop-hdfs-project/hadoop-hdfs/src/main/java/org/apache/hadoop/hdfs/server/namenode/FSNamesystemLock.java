@@ -32,6 +32,7 @@
 import org.apache.hadoop.ipc.Server;
 import org.apache.hadoop.log.LogThrottlingHelper;
 import org.apache.hadoop.metrics2.lib.MutableRatesWithAggregation;
+import org.apache.hadoop.util.SamplingProfiler;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.util.Time;
 import org.apache.hadoop.util.Timer;
@@ -189,6 +190,7 @@ public void readUnlock(String opName,
         timer.monotonicNowNanos() - readLockHeldTimeStampNanos.get();
     final long currentTimeMs = timer.now();
     coarseLock.readLock().unlock();
+    SamplingProfiler.flushLockWaits();
 
     if (needReport) {
       addMetric(opName, readLockIntervalNanos, false);
@@ -334,6 +336,7 @@ private void writeUnlock(String opName, boolean suppressWriteLockReport,
     }
 
     coarseLock.writeLock().unlock();
+    SamplingProfiler.flushLockWaits();
 
     if (needReport) {
       addMetric(opName, writeLockIntervalNanos, true);
@@ -442,6 +445,9 @@ private void doLockInterruptibly(boolean isWrite)
   private void updateLockWait(long startNanos, boolean isWrite) {
     long now = timer.monotonicNowNanos();
     updateProcessingDetails(Timing.LOCKWAIT, now - startNanos);
+    SamplingProfiler.recordLockWait(
+        isWrite ? writeLockMetricPrefix : readLockMetricPrefix,
+        now - startNanos);
     if (isWrite) {
       if (coarseLock.getWriteHoldCount() == 1) {
         writeLockHeldTimeStampNanos = now;
@@ -88,6 +88,7 @@
 import org.apache.hadoop.security.RefreshUserMappingsProtocol;
 import org.apache.hadoop.security.SecurityUtil;
 import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.security.authorize.ProxyUsers;
 import org.apache.hadoop.security.authorize.RefreshAuthorizationPolicyProtocol;
 import org.apache.hadoop.tools.GetUserMappingsProtocol;
 import org.apache.hadoop.tracing.TraceUtils;
@@ -118,8 +119,10 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -140,6 +143,7 @@
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_HA_NN_NOT_BECOME_ACTIVE_IN_SAFEMODE_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_CALLER_CONTEXT_PROXY_USERS;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LOCK_DETAILED_METRICS_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LOCK_DETAILED_METRICS_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_READ_LOCK_REPORTING_THRESHOLD_MS_DEFAULT;
@@ -498,6 +502,12 @@ public static void format(Configuration conf) throws IOException {
 
   static NameNodeMetrics metrics;
   private static final StartupProgress startupProgress = new StartupProgress();
+  /**
+   * Users whose calls run as the proxy user in their caller context, for
+   * each RPC server of the namenodes of this JVM.
+   */
+  private static final Map<Server, String[]> CALLER_CONTEXT_PROXY_USERS =
+      new ConcurrentHashMap<>();
   /** Return the {@link FSNamesystem} object.
    * @return {@link FSNamesystem} object.
    */
@@ -834,8 +844,99 @@ NamenodeRegistration setRegistration() {
    * UGI.getCurrentUser which is synch'ed
    */
   public static UserGroupInformation getRemoteUser() throws IOException {
-    UserGroupInformation ugi = Server.getRemoteUser();
-    return (ugi != null) ? ugi : UserGroupInformation.getCurrentUser();
+    final Server.Call call = Server.getCurCall().get();
+    final UserGroupInformation ugi =
+        (call != null) ? call.getRemoteUser() : null;
+    if (ugi == null) {
+      return UserGroupInformation.getCurrentUser();
+    }
+    UserGroupInformation callUser = call.getCallUser();
+    if (callUser != null) {
+      return callUser;
+    }
+    final Server server = Server.get();
+    final String[] proxyUsers =
+        (server != null) ? CALLER_CONTEXT_PROXY_USERS.get(server) : null;
+    if (proxyUsers == null) {
+      // Not a namenode server, e.g. the Router
+      return ugi;
+    }
+    // Resolve the proxy user once, the call may ask for its user many times
+    callUser = getCallerContextProxyUser(ugi, proxyUsers);
+    call.setCallUser(callUser);
+    return callUser;
+  }
+
+  /**
+   * Set the users whose calls to an RPC server run as the user in the
+   * proxyUser field of their caller context. Used when the Router multiplexes
+   * the calls of many users over its own connections.
+   * @param server RPC server of the namenode.
+   * @param proxyUsers Users allowed to set a proxy user per call, empty to
+   *                   reject every proxy user, null to clear them when the
+   *                   server stops.
+   */
+  static void setCallerContextProxyUsers(final Server server,
+      final String[] proxyUsers) {
+    if (proxyUsers == null) {
+      CALLER_CONTEXT_PROXY_USERS.remove(server);
+    } else {
+      CALLER_CONTEXT_PROXY_USERS.put(server, proxyUsers);
+    }
+  }
+
+  @VisibleForTesting
+  static String[] getCallerContextProxyUsers(final Server server) {
+    return CALLER_CONTEXT_PROXY_USERS.get(server);
+  }
+
+  /**
+   * Get the user a call runs as. If the caller context has a proxyUser field,
+   * the call runs as that user, impersonated by the connection user. The
+   * connection user has to be one of the proxyUsers and the field has to lead
+   * the caller context, otherwise the call is rejected rather than run as the
+   * connection user.
+   * @param ugi User of the connection.
+   * @param proxyUsers Users allowed to set a proxy user per call.
+   * @return User to run the call as.
+   * @throws IOException If the proxy user cannot be honored or the
+   *                     impersonation is not authorized.
+   */
+  private static UserGroupInformation getCallerContextProxyUser(
+      final UserGroupInformation ugi, final String[] proxyUsers)
+      throws IOException {
+    CallerContext context = CallerContext.getCurrent();
+    if (context == null || !context.isContextValid()) {
+      return ugi;
+    }
+    String key = CallerContext.PROXY_USER_STR +
+        CallerContext.Builder.KEY_VALUE_SEPARATOR;
+    String cc = context.getContext();
+    String user = parseSpecialValue(cc, key);
+    if (user == null) {
+      return ugi;
+    }
+    if (proxyUsers.length == 0) {
+      throw new AccessControlException("User " + ugi.getUserName() +
+          " set a proxy user in its caller context but "
+          + DFS_NAMENODE_CALLER_CONTEXT_PROXY_USERS + " is not configured");
+    }
+    if (ugi.getRealUser() != null ||
+        !ArrayUtils.contains(proxyUsers, ugi.getShortUserName())) {
+      throw new AccessControlException("User " + ugi.getUserName() +
+          " is not allowed to set a proxy user in its caller context");
+    }
+    if (!cc.startsWith(key) || user.isEmpty()) {
+      throw new AccessControlException("Invalid proxy user in the caller "
+          + "context of " + ugi.getUserName() + ": " + cc);
+    }
+    if (user.equals(ugi.getUserName())) {
+      return ugi;
+    }
+    UserGroupInformation proxyUgi =
+        UserGroupInformation.createProxyUser(user, ugi);
+    ProxyUsers.authorize(proxyUgi, Server.getRemoteAddress());
+    return proxyUgi;
   }
 
   @Override
@@ -21,6 +21,7 @@
 import static org.apache.hadoop.fs.CommonConfigurationKeys.IPC_MAXIMUM_DATA_LENGTH_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_HANDLER_COUNT_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_HANDLER_COUNT_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_CALLER_CONTEXT_PROXY_USERS;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_IP_PROXY_USERS;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LIFELINE_HANDLER_COUNT_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LIFELINE_HANDLER_RATIO_DEFAULT;
@@ -552,6 +553,15 @@ public NameNodeRpcServer(Configuration conf, NameNode nn)
     if (serviceRpcServer != null) {
       serviceRpcServer.setTracer(nn.tracer);
     }
+
+    String[] callerContextProxyUsers =
+        conf.getTrimmedStrings(DFS_NAMENODE_CALLER_CONTEXT_PROXY_USERS);
+    NameNode.setCallerContextProxyUsers(clientRpcServer,
+        callerContextProxyUsers);
+    if (serviceRpcServer != null) {
+      NameNode.setCallerContextProxyUsers(serviceRpcServer,
+          callerContextProxyUsers);
+    }
     if (lifelineRpcServer != null) {
       lifelineRpcServer.setTracer(nn.tracer);
     }
@@ -614,9 +624,11 @@ void join() throws InterruptedException {
   void stop() {
     if (clientRpcServer != null) {
       clientRpcServer.stop();
+      NameNode.setCallerContextProxyUsers(clientRpcServer, null);
     }
     if (serviceRpcServer != null) {
       serviceRpcServer.stop();
+      NameNode.setCallerContextProxyUsers(serviceRpcServer, null);
     }
     if (lifelineRpcServer != null) {
       lifelineRpcServer.stop();
@@ -24,6 +24,7 @@
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -42,8 +43,10 @@
 import org.apache.hadoop.fs.ChecksumException;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.StreamCapabilities;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants.DatanodeReportType;
@@ -306,6 +309,85 @@ public void testHedgedPreadDFSBasic() throws IOException {
                                     // transferTo.
   }
 
+  /**
+   * Tests vectored reads of ranges within and across blocks, read in
+   * parallel on the vectored read thread pool, with hedged reads disabled
+   * and enabled.
+   */
+  @Test
+  public void testVectoredRead() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(HdfsClientConfigKeys.Read.VECTORED_MIN_SEEK_SIZE_KEY, 1024);
+    conf.setInt(HdfsClientConfigKeys.Read.VECTORED_MAX_MERGED_SIZE_KEY,
+        2 * blockSize);
+    dfsVectoredReadTest(conf, false);
+    conf.setInt(HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY, 5);
+    dfsVectoredReadTest(conf, false);
+  }
+
+  /**
+   * Tests vectored reads with the vectored read thread pool disabled, which
+   * reads the ranges one after another in the calling thread.
+   */
+  @Test
+  public void testVectoredReadSequential() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(HdfsClientConfigKeys.Read.VECTORED_MIN_SEEK_SIZE_KEY, 1024);
+    conf.setInt(HdfsClientConfigKeys.Read.VECTORED_MAX_MERGED_SIZE_KEY,
+        2 * blockSize);
+    conf.setInt(HdfsClientConfigKeys.Read.VECTORED_THREADPOOL_SIZE_KEY, 0);
+    dfsVectoredReadTest(conf, true);
+  }
+
+  private void dfsVectoredReadTest(Configuration conf, boolean sequential)
+      throws Exception {
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(3).build();
+    try {
+      FileSystem fileSys = cluster.getFileSystem();
+      Path file = new Path("/vectoredread.dat");
+      DFSTestUtil.createFile(fileSys, file, fileSize, fileSize,
+          blockSize, (short) 3, seed);
+      byte[] expected = new byte[fileSize];
+      new Random(seed).nextBytes(expected);
+
+      List<FileRange> ranges = new ArrayList<>();
+      // Two ranges merged together, and one too far from them.
+      ranges.add(FileRange.createFileRange(1500, 100));
+      ranges.add(FileRange.createFileRange(1650, 50));
+      ranges.add(FileRange.createFileRange(100, 100));
+      // Ranges around and just after a block boundary.
+      ranges.add(FileRange.createFileRange(blockSize - 100, 200));
+      ranges.add(FileRange.createFileRange(blockSize + 200, 50));
+      // A range spanning several blocks, and one ending at EOF.
+      ranges.add(FileRange.createFileRange(3 * blockSize + 10,
+          3 * blockSize));
+      ranges.add(FileRange.createFileRange(fileSize - 10, 10));
+      DFSClient client = ((DistributedFileSystem) fileSys).getClient();
+      assertEquals(sequential, client.getVectoredReadsThreadPool() == null);
+      try (FSDataInputStream in = fileSys.open(file)) {
+        assertTrue(in.hasCapability(StreamCapabilities.VECTOREDIO));
+        in.readVectored(ranges, ByteBuffer::allocate);
+        if (sequential) {
+          // every range has been read by the time readVectored returns
+          for (FileRange range : ranges) {
+            assertTrue(range.getData().isDone());
+          }
+        }
+        for (FileRange range : ranges) {
+          ByteBuffer data = range.getData().get(30, TimeUnit.SECONDS);
+          assertEquals(range.getLength(), data.remaining());
+          byte[] actual = new byte[range.getLength()];
+          data.get(actual);
+          checkAndEraseData(actual, (int) range.getOffset(), expected,
+              "Vectored read of " + range);
+        }
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
   @Test
   public void testHedgedReadLoopTooManyTimes() throws IOException {
     Configuration conf = new Configuration();
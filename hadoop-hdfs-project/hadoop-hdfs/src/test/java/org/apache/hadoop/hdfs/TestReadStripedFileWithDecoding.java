@@ -17,8 +17,14 @@
  */
 package org.apache.hadoop.hdfs;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.statistics.IOStatistics;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
@@ -47,6 +53,10 @@
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import static org.apache.hadoop.fs.statistics.IOStatisticAssertions.lookupCounterStatistic;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_EC_DECODE;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_EC_SPECULATIVE_READS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_EC_STRIPES;
 import static org.apache.hadoop.hdfs.ReadStripedFileWithDecodingHelper.BLOCK_SIZE;
 import static org.apache.hadoop.hdfs.ReadStripedFileWithDecodingHelper.CELL_SIZE;
 import static org.apache.hadoop.hdfs.ReadStripedFileWithDecodingHelper.NUM_DATA_UNITS;
@@ -132,6 +142,58 @@ public void testReportBadBlock() throws IOException {
     }
   }
 
+  /**
+   * A data cell slow to read from its DataNode is decoded from a parity cell
+   * instead of waiting for it.
+   */
+  @Test
+  public void testStatefulReadWithSlowDataNode() throws Exception {
+    final Path file = new Path("/slowDataNode");
+    final int length = BLOCK_SIZE * NUM_DATA_UNITS;
+    final byte[] bytes = StripedFileTestUtil.generateBytes(length);
+    DFSTestUtil.writeFile(dfs, file, bytes);
+
+    LocatedStripedBlock slb = (LocatedStripedBlock) dfs.getClient()
+        .getLocatedBlocks(file.toString(), 0, length).get(0);
+    final LocatedBlock[] blks = StripedBlockUtil.parseStripedBlockGroup(slb,
+        CELL_SIZE, NUM_DATA_UNITS, NUM_PARITY_UNITS);
+    final DatanodeInfo slowNode = blks[1].getLocations()[0];
+
+    Configuration conf = new Configuration(dfs.getConf());
+    conf.setLong(
+        HdfsClientConfigKeys.StripedRead.SPECULATIVE_THRESHOLD_MILLIS_KEY, 100);
+    conf.setInt(HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY, 2);
+    DFSClientFaultInjector oldInjector = DFSClientFaultInjector.get();
+    DFSClientFaultInjector.set(new DFSClientFaultInjector() {
+      @Override
+      public void delayStripedChunkRead(DatanodeInfo datanode) {
+        if (datanode.equals(slowNode)) {
+          try {
+            Thread.sleep(2000);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    });
+    try (FileSystem client = FileSystem.newInstance(dfs.getUri(), conf);
+         FSDataInputStream in = client.open(file)) {
+      byte[] buf = new byte[length];
+      in.readFully(buf);
+      Assert.assertArrayEquals(bytes, buf);
+
+      IOStatistics stats = in.getIOStatistics();
+      Assert.assertEquals(BLOCK_SIZE / CELL_SIZE,
+          lookupCounterStatistic(stats, STREAM_READ_EC_STRIPES));
+      Assert.assertTrue(
+          lookupCounterStatistic(stats, STREAM_READ_EC_SPECULATIVE_READS) > 0);
+      Assert.assertTrue(
+          lookupCounterStatistic(stats, STREAM_READ_EC_DECODE) > 0);
+    } finally {
+      DFSClientFaultInjector.set(oldInjector);
+    }
+  }
+
   @Test
   public void testInvalidateBlock() throws IOException, InterruptedException {
     final Path file = new Path("/invalidate");
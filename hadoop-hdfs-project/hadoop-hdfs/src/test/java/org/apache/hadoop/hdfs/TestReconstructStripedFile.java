@@ -116,6 +116,10 @@ public boolean isValidationEnabled() {
     return false;
   }
 
+  public boolean isPipelineEnabled() {
+    return false;
+  }
+
   public int getPendingTimeout() {
     return DFSConfigKeys
         .DFS_NAMENODE_RECONSTRUCTION_PENDING_TIMEOUT_SEC_DEFAULT;
@@ -155,6 +159,8 @@ public void setup() throws IOException {
         getPendingTimeout());
     conf.setBoolean(DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_VALIDATION_KEY,
         isValidationEnabled());
+    conf.setBoolean(DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_PIPELINE_ENABLED_KEY,
+        isPipelineEnabled());
     cluster = new MiniDFSCluster.Builder(conf, baseDir.getRoot()).numDataNodes(dnNum)
         .build();
     cluster.waitActive();
@@ -0,0 +1,43 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This test extends {@link TestReconstructStripedFile} to test
+ * ec reconstruction with the read of the next stripe overlapping the
+ * decoding and the transfer of the current one.
+ */
+public class TestReconstructStripedFileWithPipeline
+    extends TestReconstructStripedFile {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(TestReconstructStripedFileWithPipeline.class);
+
+  public TestReconstructStripedFileWithPipeline() {
+    LOG.info("run {} with pipelined reconstruction.",
+        TestReconstructStripedFileWithPipeline.class.getSuperclass()
+            .getSimpleName());
+  }
+
+  @Override
+  public boolean isPipelineEnabled() {
+    return true;
+  }
+}
@@ -22,6 +22,7 @@
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
@@ -657,6 +658,59 @@ public void doTest(BlockReaderLocal reader, byte original[])
     }
   }
 
+  private static class TestBlockReaderLocalTrustVerifiedChecksum
+      extends BlockReaderLocalTest {
+    private File blockFile;
+
+    @Override
+    public void setConfiguration(HdfsConfiguration conf) {
+      conf.setBoolean(
+          HdfsClientConfigKeys.Read.ShortCircuit.TRUST_VERIFIED_CHECKSUM_KEY,
+          true);
+    }
+
+    @Override
+    public void setup(File blockFile, boolean usingChecksums) {
+      this.blockFile = blockFile;
+    }
+
+    @Override
+    public void doTest(BlockReaderLocal reader, byte[] original, int shift)
+        throws IOException {
+      final int blockLength = 10 * 1024;
+      Assert.assertTrue(reader.getVerifyChecksum());
+      Assert.assertFalse(reader.getReplica().isChecksumVerified());
+      ByteBuffer buf = ByteBuffer.wrap(new byte[blockLength]);
+      readFully(reader, buf, 0, 5000);
+      Assert.assertFalse(reader.getReplica().isChecksumVerified());
+      readFully(reader, buf, 5000, blockLength - 5000);
+      assertArrayRegionsEqual(original, shift, buf.array(), 0, blockLength);
+      // Having checksummed the whole replica, we no longer need an anchor
+      // to mmap it.
+      Assert.assertTrue(reader.getReplica().isChecksumVerified());
+      Assert.assertTrue(reader.getReplica().getSlot().isValid());
+      // Bytes appended to the replica have not been verified.
+      try (FileOutputStream out = new FileOutputStream(blockFile, true)) {
+        out.write(new byte[100]);
+      }
+      Assert.assertFalse(reader.getReplica().isChecksumVerified());
+    }
+  }
+
+  @Test
+  public void testBlockReaderLocalTrustVerifiedChecksum()
+      throws IOException {
+    runBlockReaderLocalTest(new TestBlockReaderLocalTrustVerifiedChecksum(),
+        true, HdfsClientConfigKeys.DFS_DATANODE_READAHEAD_BYTES_DEFAULT);
+  }
+
+  @Test
+  public void testBlockReaderLocalTrustVerifiedChecksumNoReadahead()
+      throws IOException {
+    runBlockReaderLocalTest(new TestBlockReaderLocalTrustVerifiedChecksum(),
+        true, 0);
+  }
+
   private static class TestBlockReaderLocalReadZeroBytes
       extends BlockReaderLocalTest {
     @Override
@@ -21,6 +21,8 @@
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -37,9 +39,12 @@
 import org.apache.hadoop.hdfs.server.protocol.NamespaceInfo;
 import org.apache.hadoop.test.GenericTestUtils;
 import org.apache.hadoop.test.GenericTestUtils.DelayAnswer;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ListenableFuture;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 
 import java.util.function.Supplier;
 
@@ -130,6 +135,104 @@ public Boolean get() {
     }, 10, 1000);
   }
   
+  /**
+   * Test that the batches queued while a call is in progress are sent
+   * together in the next call.
+   */
+  @Test
+  public void testCoalesceQueuedEdits() throws Exception {
+    DelayAnswer delayer = new DelayAnswer(LOG) {
+      @Override
+      protected Object passThrough(InvocationOnMock invocation) {
+        return null;
+      }
+    };
+    Mockito.doAnswer(delayer).when(mockProxy).journal(
+        Mockito.<RequestInfo>any(),
+        Mockito.eq(1L), Mockito.eq(1L),
+        Mockito.eq(1), Mockito.same(FAKE_DATA));
+
+    ListenableFuture<Void> first = ch.sendEdits(1L, 1L, 1, FAKE_DATA);
+    delayer.waitForCall();
+    List<ListenableFuture<Void>> queued = new ArrayList<>();
+    for (long txid = 2; txid <= 4; txid++) {
+      queued.add(ch.sendEdits(1L, txid, 1, FAKE_DATA));
+    }
+    // Not contiguous with the previous batch
+    queued.add(ch.sendEdits(1L, 6L, 1, FAKE_DATA));
+    delayer.proceed();
+
+    first.get();
+    for (ListenableFuture<Void> future : queued) {
+      future.get();
+    }
+    Mockito.verify(mockProxy).journal(Mockito.<RequestInfo>any(),
+        Mockito.eq(1L), Mockito.eq(2L), Mockito.eq(3),
+        Mockito.argThat(data -> data.length == 3 * FAKE_DATA.length));
+    Mockito.verify(mockProxy).journal(Mockito.<RequestInfo>any(),
+        Mockito.eq(1L), Mockito.eq(6L), Mockito.eq(1),
+        Mockito.same(FAKE_DATA));
+    GenericTestUtils.waitFor(() -> ch.getQueuedEditsSize() == 0, 10, 1000);
+  }
+
+  /**
+   * Test that the edits queued after another call, like the roll of a
+   * segment, are not sent before that call.
+   */
+  @Test
+  public void testRollSegmentWhileEditsQueued() throws Exception {
+    DelayAnswer delayer = new DelayAnswer(LOG) {
+      @Override
+      protected Object passThrough(InvocationOnMock invocation) {
+        return null;
+      }
+    };
+    Mockito.doAnswer(delayer).when(mockProxy).journal(
+        Mockito.<RequestInfo>any(),
+        Mockito.eq(1L), Mockito.eq(1L),
+        Mockito.eq(1), Mockito.same(FAKE_DATA));
+
+    ListenableFuture<Void> first = ch.sendEdits(1L, 1L, 1, FAKE_DATA);
+    delayer.waitForCall();
+    List<ListenableFuture<?>> queued = new ArrayList<>();
+    queued.add(ch.sendEdits(1L, 2L, 1, FAKE_DATA));
+    queued.add(ch.sendEdits(1L, 3L, 1, FAKE_DATA));
+    // Another call between contiguous batches of the same segment
+    queued.add(ch.isFormatted());
+    queued.add(ch.sendEdits(1L, 4L, 1, FAKE_DATA));
+    // Roll the segment
+    queued.add(ch.finalizeLogSegment(1L, 4L));
+    queued.add(ch.startLogSegment(5L,
+        NameNodeLayoutVersion.CURRENT_LAYOUT_VERSION));
+    queued.add(ch.sendEdits(5L, 5L, 1, FAKE_DATA));
+    delayer.proceed();
+
+    first.get();
+    for (ListenableFuture<?> future : queued) {
+      future.get();
+    }
+    InOrder inOrder = Mockito.inOrder(mockProxy);
+    inOrder.verify(mockProxy).journal(Mockito.<RequestInfo>any(),
+        Mockito.eq(1L), Mockito.eq(1L), Mockito.eq(1),
+        Mockito.same(FAKE_DATA));
+    inOrder.verify(mockProxy).journal(Mockito.<RequestInfo>any(),
+        Mockito.eq(1L), Mockito.eq(2L), Mockito.eq(2),
+        Mockito.argThat(data -> data.length == 2 * FAKE_DATA.length));
+    inOrder.verify(mockProxy).isFormatted(Mockito.eq(JID), Mockito.any());
+    inOrder.verify(mockProxy).journal(Mockito.<RequestInfo>any(),
+        Mockito.eq(1L), Mockito.eq(4L), Mockito.eq(1),
+        Mockito.same(FAKE_DATA));
+    inOrder.verify(mockProxy).finalizeLogSegment(Mockito.<RequestInfo>any(),
+        Mockito.eq(1L), Mockito.eq(4L));
+    inOrder.verify(mockProxy).startLogSegment(Mockito.<RequestInfo>any(),
+        Mockito.eq(5L), Mockito.anyInt());
+    inOrder.verify(mockProxy).journal(Mockito.<RequestInfo>any(),
+        Mockito.eq(5L), Mockito.eq(5L), Mockito.eq(1),
+        Mockito.same(FAKE_DATA));
+    inOrder.verifyNoMoreInteractions();
+    GenericTestUtils.waitFor(() -> ch.getQueuedEditsSize() == 0, 10, 1000);
+  }
+
   /**
    * Test that, if the remote node gets unsynchronized (eg some edits were
    * missed or the node rebooted), the client stops sending edits until
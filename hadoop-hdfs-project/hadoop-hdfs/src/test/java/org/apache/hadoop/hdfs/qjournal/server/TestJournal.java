@@ -29,8 +29,11 @@
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
 import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
@@ -50,6 +53,7 @@
 import org.apache.hadoop.hdfs.server.protocol.NamespaceInfo;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.test.LambdaTestUtils;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Assume;
@@ -507,6 +511,85 @@ public void testReadFromCache() throws Exception {
     assertJournaledEditsTxnCountAndContents(16, 10, 20, newLayoutVersion);
   }
 
+  @Test
+  public void testLongPollJournaledEdits() throws Exception {
+    IOUtils.closeStream(journal);
+    conf.setTimeDuration(
+        DFSConfigKeys.DFS_JOURNALNODE_EDIT_CACHE_LONG_POLL_TIMEOUT_KEY,
+        10, TimeUnit.SECONDS);
+    journal = new Journal(conf, TEST_LOG_DIR, JID, StartupOption.REGULAR,
+        mockErrorReporter);
+    journal.newEpoch(FAKE_NSINFO, 1);
+    journal.startLogSegment(makeRI(1), 1,
+        NameNodeLayoutVersion.CURRENT_LAYOUT_VERSION);
+    journal.journal(makeRI(2), 1, 1, 5, QJMTestUtil.createTxnData(1, 5));
+
+    // The request for the next edits completes when they are written
+    CompletableFuture<GetJournaledEditsResponseProto> future =
+        journal.getJournaledEditsAsync(6, 10);
+    Thread.sleep(100);
+    assertFalse(future.isDone());
+    journal.journal(makeRI(3), 1, 6, 5, QJMTestUtil.createTxnData(6, 5));
+    assertEquals(5, future.get(10, TimeUnit.SECONDS).getTxnCount());
+
+    // Edits that are already written are returned right away
+    future = journal.getJournaledEditsAsync(1, 30);
+    assertTrue(future.isDone());
+    assertEquals(10, future.get().getTxnCount());
+  }
+
+  @Test
+  public void testLongPollJournaledEditsTimeout() throws Exception {
+    IOUtils.closeStream(journal);
+    conf.setTimeDuration(
+        DFSConfigKeys.DFS_JOURNALNODE_EDIT_CACHE_LONG_POLL_TIMEOUT_KEY,
+        100, TimeUnit.MILLISECONDS);
+    journal = new Journal(conf, TEST_LOG_DIR, JID, StartupOption.REGULAR,
+        mockErrorReporter);
+    journal.newEpoch(FAKE_NSINFO, 1);
+    journal.startLogSegment(makeRI(1), 1,
+        NameNodeLayoutVersion.CURRENT_LAYOUT_VERSION);
+    journal.journal(makeRI(2), 1, 1, 5, QJMTestUtil.createTxnData(1, 5));
+
+    // Without new edits the request gets an empty response
+    CompletableFuture<GetJournaledEditsResponseProto> future =
+        journal.getJournaledEditsAsync(6, 10);
+    assertEquals(0, future.get(10, TimeUnit.SECONDS).getTxnCount());
+
+    // Closing the journal answers the waiting requests
+    conf.setTimeDuration(
+        DFSConfigKeys.DFS_JOURNALNODE_EDIT_CACHE_LONG_POLL_TIMEOUT_KEY,
+        10, TimeUnit.SECONDS);
+    journal.close();
+    journal = new Journal(conf, TEST_LOG_DIR, JID, StartupOption.REGULAR,
+        mockErrorReporter);
+    future = journal.getJournaledEditsAsync(6, 10);
+    assertFalse(future.isDone());
+    journal.close();
+    assertEquals(0, future.get(10, TimeUnit.SECONDS).getTxnCount());
+  }
+
+  @Test
+  public void testLongPollTimeoutAboveRpcTimeout() throws Exception {
+    IOUtils.closeStream(journal);
+    conf.setTimeDuration(
+        DFSConfigKeys.DFS_JOURNALNODE_EDIT_CACHE_LONG_POLL_TIMEOUT_KEY,
+        1, TimeUnit.MINUTES);
+    LambdaTestUtils.intercept(IllegalArgumentException.class,
+        DFSConfigKeys.DFS_QJOURNAL_SELECT_INPUT_STREAMS_TIMEOUT_KEY,
+        () -> new Journal(conf, TEST_LOG_DIR, JID, StartupOption.REGULAR,
+            mockErrorReporter));
+
+    conf.setTimeDuration(
+        DFSConfigKeys.DFS_JOURNALNODE_EDIT_CACHE_LONG_POLL_TIMEOUT_KEY,
+        10, TimeUnit.SECONDS);
+    conf.setInt(CommonConfigurationKeys.IPC_CLIENT_RPC_TIMEOUT_KEY, 5000);
+    LambdaTestUtils.intercept(IllegalArgumentException.class,
+        CommonConfigurationKeys.IPC_CLIENT_RPC_TIMEOUT_KEY,
+        () -> new Journal(conf, TEST_LOG_DIR, JID, StartupOption.REGULAR,
+            mockErrorReporter));
+  }
+
   private void assertJournaledEditsTxnCountAndContents(int startTxn,
       int requestedMaxTxns, int expectedEndTxn, int layoutVersion)
       throws Exception {
@@ -27,6 +27,7 @@
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.hadoop.hdfs.qjournal.QJMTestUtil;
 import org.apache.hadoop.hdfs.qjournal.client.IPCLoggerChannel;
+import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.GetJournaledEditsResponseProto;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.NewEpochResponseProto;
 import org.apache.hadoop.hdfs.qjournal.protocol.QJournalProtocolProtos.PrepareRecoveryResponseProto;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
@@ -56,6 +57,7 @@
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 
@@ -146,6 +148,13 @@ public void setup() throws Exception {
       conf.setInt(DFSConfigKeys.DFS_JOURNALNODE_HANDLER_COUNT_KEY, -1);
     } else if (testName.getMethodName().equals("testConfNormalHandlerNumber")) {
       conf.setInt(DFSConfigKeys.DFS_JOURNALNODE_HANDLER_COUNT_KEY, 10);
+    } else if (testName.getMethodName().equals(
+        "testLongPollReleasesHandler")) {
+      conf.setInt(DFSConfigKeys.DFS_JOURNALNODE_HANDLER_COUNT_KEY, 1);
+      conf.setBoolean(DFSConfigKeys.DFS_HA_TAILEDITS_INPROGRESS_KEY, true);
+      conf.setTimeDuration(
+          DFSConfigKeys.DFS_JOURNALNODE_EDIT_CACHE_LONG_POLL_TIMEOUT_KEY,
+          10, TimeUnit.SECONDS);
     }
     jn = new JournalNode();
     jn.setConf(conf);
@@ -284,6 +293,7 @@ public void testJournal() throws Exception {
         journal.getMetrics().getName());
     MetricsAsserts.assertCounter("BatchesWritten", 1L, metrics);
     MetricsAsserts.assertCounter("BatchesWrittenWhileLagging", 0L, metrics);
+    MetricsAsserts.assertCounter("SyncBatchNumSyncs", 1L, metrics);
     MetricsAsserts.assertGauge("CurrentLagTxns", 0L, metrics);
     long lastJournalTimestamp = MetricsAsserts.getLongGauge(
         "LastJournalTimestamp", metrics);
@@ -297,6 +307,7 @@ public void testJournal() throws Exception {
         journal.getMetrics().getName());
     MetricsAsserts.assertCounter("BatchesWritten", 2L, metrics);
     MetricsAsserts.assertCounter("BatchesWrittenWhileLagging", 1L, metrics);
+    MetricsAsserts.assertCounter("SyncBatchNumSyncs", 1L, metrics);
     MetricsAsserts.assertGauge("CurrentLagTxns", 98L, metrics);
     lastJournalTimestamp = MetricsAsserts.getLongGauge(
         "LastJournalTimestamp", metrics);
@@ -507,6 +518,30 @@ private void doPerfTest(int editsSize, int numEdits) throws Exception {
     System.err.println("Throughput: " + throughput + " bytes/sec");
   }
 
+  @Test(timeout=100000)
+  public void testLongPollReleasesHandler() throws Exception {
+    ch.newEpoch(1).get();
+    ch.setEpoch(1);
+    ch.startLogSegment(1, NameNodeLayoutVersion.CURRENT_LAYOUT_VERSION).get();
+    ch.sendEdits(1L, 1, 1, QJMTestUtil.createTxnData(1, 1)).get();
+
+    IPCLoggerChannel tailer = new IPCLoggerChannel(
+        conf, FAKE_NSINFO, journalId, jn.getBoundIpcAddress());
+    try {
+      Future<GetJournaledEditsResponseProto> edits =
+          tailer.getJournaledEdits(2, 10);
+      Thread.sleep(100);
+      assertFalse(edits.isDone());
+
+      // The waiting request does not hold the only handler
+      ch.sendEdits(1L, 2, 1, QJMTestUtil.createTxnData(2, 1))
+          .get(5, TimeUnit.SECONDS);
+      assertEquals(1, edits.get(5, TimeUnit.SECONDS).getTxnCount());
+    } finally {
+      tailer.close();
+    }
+  }
+
   /**
    * Test case to check if JournalNode exits cleanly when httpserver or rpc
    * server fails to start. Call to JournalNode start should fail with bind
@@ -110,6 +110,48 @@ public void testFullBlock() throws Exception {
     Assert.assertTrue(getLongMetric("EcReconstructionReadTimeMillis") > 0);
     Assert.assertTrue(getLongMetric("EcReconstructionDecodingTimeMillis") > 0);
     Assert.assertTrue(getLongMetric("EcReconstructionWriteTimeMillis") > 0);
+    Assert.assertTrue(getLongMetric("EcReconstructionTimeMillis") > 0);
+  }
+
+  @Test(timeout = 120000)
+  public void testFullBlockPipelined() throws Exception {
+    for (DataNode dn : cluster.getDataNodes()) {
+      dn.getConf().setBoolean(
+          DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_PIPELINE_ENABLED_KEY, true);
+    }
+    // Writing a stripe is slower than reading the next one, so the reads
+    // wait for the writes
+    DataNodeFaultInjector oldInjector = DataNodeFaultInjector.get();
+    DataNodeFaultInjector.set(new DataNodeFaultInjector() {
+      @Override
+      public void delayStripedBlockWriter() {
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    try {
+      doTest("/testEcMetricsPipelined", blockGroupSize, 0);
+    } finally {
+      DataNodeFaultInjector.set(oldInjector);
+    }
+
+    Assert.assertEquals("EcReconstructionTasks should be ",
+        1, getLongMetric("EcReconstructionTasks"));
+    Assert.assertEquals("EcFailedReconstructionTasks should be ",
+        0, getLongMetric("EcFailedReconstructionTasks"));
+    Assert.assertEquals("EcReconstructionBytesRead should be ",
+        blockGroupSize, getLongMetric("EcReconstructionBytesRead"));
+    Assert.assertEquals("EcReconstructionBytesWritten should be ",
+        blockSize, getLongMetric("EcReconstructionBytesWritten"));
+    Assert.assertTrue(getLongMetric("EcReconstructionReadTimeMillis") > 0);
+    Assert.assertTrue(getLongMetric("EcReconstructionDecodingTimeMillis") > 0);
+    Assert.assertTrue(getLongMetric("EcReconstructionWriteTimeMillis") > 0);
+    Assert.assertTrue(getLongMetric("EcReconstructionTimeMillis") > 0);
+    Assert.assertTrue(
+        getLongMetric("EcReconstructionPipelineStallTimeMillis") > 0);
   }
 
   // A partial block, reconstruct the partial block
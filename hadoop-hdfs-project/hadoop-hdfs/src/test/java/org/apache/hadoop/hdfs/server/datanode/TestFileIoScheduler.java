@@ -0,0 +1,283 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.server.datanode.FileIoScheduler.IoClass;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
+import org.apache.hadoop.net.SocketOutputStream;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FileIoScheduler}.
+ */
+public class TestFileIoScheduler {
+  private FsVolumeSpi volume;
+
+  @Before
+  public void setUp() {
+    volume = mock(FsVolumeSpi.class);
+    when(volume.getStorageID()).thenReturn("DS-test");
+  }
+
+  private static FileIoScheduler newScheduler(long deadlineMs) {
+    Configuration conf = new Configuration();
+    conf.setBoolean(DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_ENABLED_KEY, true);
+    conf.setInt(
+        DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_VOLUME_CONCURRENCY_KEY, 1);
+    conf.setLong(
+        DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_CLIENT_READ_DEADLINE_KEY,
+        deadlineMs);
+    conf.set(DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_WEIGHTS_KEY,
+        "client_write=3, volume_scanner=1");
+    return new FileIoScheduler(conf);
+  }
+
+  private Thread startIo(final FileIoScheduler scheduler,
+      final IoClass ioClass, final List<IoClass> order) {
+    Thread t = new Thread(() -> {
+      FileIoScheduler.setIoClass(ioClass);
+      try {
+        scheduler.acquire(volume);
+        order.add(ioClass);
+        scheduler.release(volume);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    t.start();
+    return t;
+  }
+
+  private void waitForQueued(FileIoScheduler scheduler, IoClass ioClass,
+      int length) throws Exception {
+    GenericTestUtils.waitFor(
+        () -> scheduler.getQueueLength(volume, ioClass) == length, 10, 10000);
+  }
+
+  @Test
+  public void testDisabledByDefault() throws Exception {
+    FileIoScheduler scheduler = new FileIoScheduler(new Configuration());
+    assertFalse(scheduler.isEnabled());
+    // Nothing is ever queued, even when all slots would be in use.
+    Thread t = startIo(scheduler, IoClass.CLIENT_WRITE,
+        Collections.synchronizedList(new ArrayList<>()));
+    for (int i = 0; i < 100; i++) {
+      scheduler.acquire(volume);
+    }
+    t.join(10000);
+    assertFalse(t.isAlive());
+    for (IoClass ioClass : IoClass.values()) {
+      assertEquals(0, scheduler.getQueueLength(volume, ioClass));
+    }
+    for (int i = 0; i < 100; i++) {
+      scheduler.release(volume);
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testClientReadDeadline() throws Exception {
+    FileIoScheduler scheduler = newScheduler(0);
+    List<IoClass> order = Collections.synchronizedList(new ArrayList<>());
+
+    FileIoScheduler.setIoClass(IoClass.OTHER);
+    scheduler.acquire(volume);
+    Thread scanner = startIo(scheduler, IoClass.VOLUME_SCANNER, order);
+    waitForQueued(scheduler, IoClass.VOLUME_SCANNER, 1);
+    Thread read = startIo(scheduler, IoClass.CLIENT_READ, order);
+    waitForQueued(scheduler, IoClass.CLIENT_READ, 1);
+    scheduler.release(volume);
+    scanner.join();
+    read.join();
+
+    // The read overtakes the scanner IO queued before it.
+    assertEquals(Arrays.asList(IoClass.CLIENT_READ, IoClass.VOLUME_SCANNER),
+        order);
+  }
+
+  @Test(timeout = 60000)
+  public void testWeightedShare() throws Exception {
+    FileIoScheduler scheduler = newScheduler(Long.MAX_VALUE / 2);
+    List<IoClass> order = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+
+    FileIoScheduler.setIoClass(IoClass.OTHER);
+    scheduler.acquire(volume);
+    for (int i = 0; i < 4; i++) {
+      threads.add(startIo(scheduler, IoClass.VOLUME_SCANNER, order));
+      waitForQueued(scheduler, IoClass.VOLUME_SCANNER, i + 1);
+      threads.add(startIo(scheduler, IoClass.CLIENT_WRITE, order));
+      waitForQueued(scheduler, IoClass.CLIENT_WRITE, i + 1);
+    }
+    scheduler.release(volume);
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    // With weights 3:1, three writes are served for each scanner IO.
+    assertEquals(8, order.size());
+    assertEquals(3, Collections.frequency(order.subList(0, 4),
+        IoClass.CLIENT_WRITE));
+  }
+
+  /**
+   * The replica index journal is appended to under the dataset lock, so
+   * finalizing a replica must not wait for a slot on a busy volume.
+   */
+  @Test(timeout = 120000)
+  public void testFinalizeWithAllSlotsInUse() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean(DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_ENABLED_KEY, true);
+    conf.setInt(
+        DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_VOLUME_CONCURRENCY_KEY, 1);
+    conf.setBoolean(DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_ENABLED_KEY,
+        true);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    DataNode dn = cluster.getDataNodes().get(0);
+    FileIoScheduler scheduler = dn.getFileIoProvider().getIoScheduler();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    List<FsVolumeSpi> held = new ArrayList<>();
+    try {
+      cluster.waitActive();
+      FsDatasetSpi<?> dataset = dn.getFSDataset();
+      String bpid = cluster.getNamesystem().getBlockPoolId();
+      ExtendedBlock block = new ExtendedBlock(bpid, 1234L, 0L, 1001L);
+
+      FileIoScheduler.setIoClass(IoClass.OTHER);
+      try (FsDatasetSpi.FsVolumeReferences volumes =
+          dataset.getFsVolumeReferences()) {
+        for (FsVolumeSpi v : volumes) {
+          scheduler.acquire(v);
+          held.add(v);
+        }
+      }
+      Future<?> finalized = executor.submit(() -> {
+        try (ReplicaHandler replica =
+            dataset.createRbw(StorageType.DEFAULT, null, block, false)) {
+          dataset.finalizeBlock(block, false);
+        }
+        return null;
+      });
+      finalized.get(30, TimeUnit.SECONDS);
+      assertTrue(dataset.isValidBlock(block));
+    } finally {
+      for (FsVolumeSpi v : held) {
+        scheduler.release(v);
+      }
+      executor.shutdownNow();
+      cluster.shutdown();
+    }
+  }
+
+  @Test
+  public void testReadIoClass() {
+    assertEquals(IoClass.REPLICATION, FileIoScheduler.getReadIoClass(""));
+    assertEquals(IoClass.RECONSTRUCTION, FileIoScheduler.getReadIoClass(
+        FileIoScheduler.RECONSTRUCTION_CLIENT_NAME));
+    assertEquals(IoClass.CLIENT_READ,
+        FileIoScheduler.getReadIoClass("DFSClient_NONMAPREDUCE_1_1"));
+  }
+
+  @Test(timeout = 60000)
+  public void testTransferToSlowSocket() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean(DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_ENABLED_KEY, true);
+    conf.setInt(
+        DFSConfigKeys.DFS_DATANODE_IO_SCHEDULER_VOLUME_CONCURRENCY_KEY, 1);
+    FileIoProvider fileIoProvider = new FileIoProvider(conf, null);
+    FileIoScheduler scheduler = fileIoProvider.getIoScheduler();
+    File dir = GenericTestUtils.getRandomizedTestDir();
+    assertTrue(dir.mkdirs());
+    File file = new File(dir, "blk");
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(64 * 1024 * 1024);
+    }
+
+    try (ServerSocketChannel server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress("localhost", 0));
+      SocketChannel client = SocketChannel.open(server.getLocalAddress());
+      SocketChannel reader = server.accept();
+      SocketOutputStream sockOut = new SocketOutputStream(client, 60000);
+      FileChannel fileCh = new RandomAccessFile(file, "r").getChannel();
+      // the reader never drains the socket, so the transfer blocks on it
+      Thread transfer = new Thread(() -> {
+        try {
+          fileIoProvider.transferToSocketFully(volume, sockOut, fileCh, 0,
+              (int) file.length(), null, null);
+        } catch (IOException e) {
+          // expected once the reader goes away
+        }
+      });
+      transfer.start();
+      GenericTestUtils.waitFor(() -> transfer.getState()
+          == Thread.State.RUNNABLE && isBlockedOnSocket(transfer), 10, 10000);
+
+      // other IO on the volume is not held up by the slow reader
+      FileIoScheduler.setIoClass(IoClass.VOLUME_SCANNER);
+      scheduler.acquire(volume);
+      scheduler.release(volume);
+
+      reader.close();
+      sockOut.close();
+      transfer.join();
+      fileCh.close();
+    } finally {
+      FileUtil.fullyDelete(dir);
+    }
+  }
+
+  private static boolean isBlockedOnSocket(Thread t) {
+    for (StackTraceElement e : t.getStackTrace()) {
+      if (e.getMethodName().equals("waitForWritable")) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
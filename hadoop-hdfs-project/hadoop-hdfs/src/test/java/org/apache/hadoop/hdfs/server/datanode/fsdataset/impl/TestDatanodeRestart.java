@@ -20,6 +20,8 @@
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import org.apache.hadoop.conf.Configuration;
@@ -32,10 +34,12 @@
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.ReplicaState;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
 import org.apache.hadoop.hdfs.server.datanode.DataNodeFaultInjector;
 import org.apache.hadoop.hdfs.server.datanode.DataNodeTestUtils;
+import org.apache.hadoop.hdfs.server.datanode.DataStorage;
 import org.apache.hadoop.hdfs.server.datanode.ReplicaInfo;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
@@ -214,4 +218,53 @@ public void noRegistration() throws IOException {
       }
     }
   }
+
+  // test that a recovered close of a finalized replica survives a restart
+  // from the replica index
+  @Test(timeout = 60000)
+  public void testRecoverCloseWithReplicaIndex() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_ENABLED_KEY,
+        true);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      FileSystem fs = cluster.getFileSystem();
+      Path file = new Path("/testRecoverClose");
+      DFSTestUtil.createFile(fs, file, 1024, (short) 1, 0L);
+      ExtendedBlock block = DFSTestUtil.getFirstBlock(fs, file);
+      String bpid = block.getBlockPoolId();
+      DataNode dn = cluster.getDataNodes().get(0);
+
+      long newGS = block.getGenerationStamp() + 1;
+      dataset(dn).recoverClose(block, newGS, block.getNumBytes());
+
+      // drop the replica caches saved on shutdown, so that the restarted
+      // DataNode loads its finalized replicas from the index
+      List<File> replicaCaches = new ArrayList<>();
+      try (FsDatasetSpi.FsVolumeReferences volumes =
+          dataset(dn).getFsVolumeReferences()) {
+        for (FsVolumeSpi vol : volumes) {
+          BlockPoolSlice bp = ((FsVolumeImpl) vol).getBlockPoolSlice(bpid);
+          replicaCaches.add(new File(bp.getDirectory(),
+              DataStorage.STORAGE_DIR_CURRENT + File.separator + "replicas"));
+        }
+      }
+      MiniDFSCluster.DataNodeProperties dnProps = cluster.stopDataNode(0);
+      for (File f : replicaCaches) {
+        if (f.exists()) {
+          Assert.assertTrue(f.delete());
+        }
+      }
+      cluster.restartDataNode(dnProps, true);
+      cluster.waitActive();
+
+      dn = cluster.getDataNodes().get(0);
+      Assert.assertEquals(newGS, dataset(dn).getStoredBlock(bpid,
+          block.getBlockId()).getGenerationStamp());
+    } finally {
+      cluster.shutdown();
+    }
+  }
 }
@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.server.datanode.FileIoProvider;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ReplicaIndexLog}.
+ */
+public class TestReplicaIndexLog {
+  private File dir;
+  private FileIoProvider fileIoProvider;
+
+  @Before
+  public void setUp() {
+    dir = GenericTestUtils.getRandomizedTestDir();
+    assertTrue(dir.mkdirs());
+    fileIoProvider = new FileIoProvider(null, null);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.fullyDelete(dir);
+  }
+
+  private ReplicaIndexLog newLog(long compactionThreshold) {
+    return new ReplicaIndexLog(null, fileIoProvider, dir, false,
+        compactionThreshold);
+  }
+
+  private static Map<Long, Block> toMap(Collection<Block> blocks) {
+    Map<Long, Block> map = new HashMap<>();
+    for (Block b : blocks) {
+      map.put(b.getBlockId(), b);
+    }
+    return map;
+  }
+
+  @Test
+  public void testLoadWithoutIndex() throws IOException {
+    assertNull(newLog(100).load());
+  }
+
+  @Test
+  public void testReplayJournal() throws IOException {
+    ReplicaIndexLog log = newLog(100);
+    log.reset(Arrays.asList(new Block(1, 10, 1001), new Block(2, 20, 1002)));
+    log.add(new Block(3, 30, 1003));
+    log.add(new Block(1, 15, 1004));
+    log.remove(2);
+    log.close();
+
+    Map<Long, Block> replicas = toMap(newLog(100).load());
+    assertEquals(2, replicas.size());
+    assertEquals(new Block(1, 15, 1004), replicas.get(1L));
+    assertEquals(15, replicas.get(1L).getNumBytes());
+    assertEquals(new Block(3, 30, 1003), replicas.get(3L));
+    assertFalse(replicas.containsKey(2L));
+  }
+
+  @Test
+  public void testTornJournalTail() throws IOException {
+    ReplicaIndexLog log = newLog(100);
+    log.reset(Arrays.asList(new Block(1, 10, 1001)));
+    log.add(new Block(2, 20, 1002));
+    log.add(new Block(3, 30, 1003));
+    log.close();
+
+    // Simulate a crash in the middle of the last record.
+    File journal = new File(dir, ReplicaIndexLog.JOURNAL_FILE);
+    try (RandomAccessFile raf = new RandomAccessFile(journal, "rw")) {
+      raf.setLength(raf.length() - ReplicaIndexLog.RECORD_LENGTH / 2);
+    }
+
+    log = newLog(100);
+    Map<Long, Block> replicas = toMap(log.load());
+    assertEquals(2, replicas.size());
+    assertTrue(replicas.containsKey(2L));
+    assertFalse(replicas.containsKey(3L));
+
+    // New records are appended after the valid prefix.
+    log.add(new Block(4, 40, 1004));
+    log.close();
+    replicas = toMap(newLog(100).load());
+    assertEquals(3, replicas.size());
+    assertTrue(replicas.containsKey(4L));
+  }
+
+  @Test
+  public void testCompaction() throws IOException {
+    ReplicaIndexLog log = newLog(Long.MAX_VALUE);
+    log.reset(Arrays.asList(new Block(1, 10, 1001)));
+    for (long id = 2; id <= 10; id++) {
+      log.add(new Block(id, id * 10, 1000 + id));
+    }
+    log.remove(1);
+    assertEquals(10, log.getJournalRecords());
+
+    log.compact();
+    assertEquals(0, log.getJournalRecords());
+    assertFalse(new File(dir, ReplicaIndexLog.ROLLED_FILE).exists());
+    log.add(new Block(11, 110, 1011));
+    log.close();
+
+    Map<Long, Block> replicas = toMap(newLog(Long.MAX_VALUE).load());
+    assertEquals(10, replicas.size());
+    assertFalse(replicas.containsKey(1L));
+    assertTrue(replicas.containsKey(11L));
+  }
+
+  @Test
+  public void testCrashDuringCompaction() throws IOException {
+    ReplicaIndexLog log = newLog(Long.MAX_VALUE);
+    log.reset(Arrays.asList(new Block(1, 10, 1001), new Block(2, 20, 1002)));
+    log.remove(1);
+    log.close();
+    // A rolled journal left behind by an interrupted compaction is replayed
+    // before the current journal.
+    assertTrue(new File(dir, ReplicaIndexLog.JOURNAL_FILE).renameTo(
+        new File(dir, ReplicaIndexLog.ROLLED_FILE)));
+    log = newLog(Long.MAX_VALUE);
+    log.load();
+    log.add(new Block(1, 11, 1003));
+    log.close();
+
+    Map<Long, Block> replicas = toMap(newLog(Long.MAX_VALUE).load());
+    assertEquals(2, replicas.size());
+    assertEquals(1003, replicas.get(1L).getGenerationStamp());
+  }
+
+  @Test
+  public void testSyncedJournal() throws Exception {
+    ReplicaIndexLog log = new ReplicaIndexLog(null, fileIoProvider, dir,
+        true, Long.MAX_VALUE);
+    log.reset(Arrays.asList(new Block(1, 10, 1001)));
+    for (long id = 2; id <= 100; id++) {
+      log.add(new Block(id, id * 10, 1000 + id));
+    }
+    // the syncer runs in the background, never in the appending thread
+    Pattern syncer = Pattern.compile("ReplicaIndexSyncer-.*");
+    GenericTestUtils.waitFor(() -> GenericTestUtils.anyThreadMatching(syncer),
+        10, 10000);
+    log.remove(1);
+    log.close();
+    GenericTestUtils.waitForThreadTermination(syncer.pattern(), 10, 10000);
+
+    Map<Long, Block> replicas = toMap(newLog(Long.MAX_VALUE).load());
+    assertEquals(99, replicas.size());
+    assertFalse(replicas.containsKey(1L));
+  }
+}
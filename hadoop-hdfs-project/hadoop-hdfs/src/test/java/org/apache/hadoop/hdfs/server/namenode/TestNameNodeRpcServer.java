@@ -24,9 +24,12 @@
  */
 package org.apache.hadoop.hdfs.server.namenode;
 
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_CALLER_CONTEXT_PROXY_USERS;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_IP_PROXY_USERS;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_RPC_BIND_HOST_KEY;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -52,7 +55,13 @@
 import org.apache.hadoop.hdfs.qjournal.MiniQJMHACluster;
 import org.apache.hadoop.ipc.CallerContext;
 import org.apache.hadoop.ipc.ObserverRetryOnActiveException;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.ipc.Server;
+import org.apache.hadoop.security.AccessControlException;
 import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.security.authorize.AuthorizationException;
+import org.apache.hadoop.security.authorize.DefaultImpersonationProvider;
+import org.apache.hadoop.security.authorize.ProxyUsers;
 import org.apache.hadoop.test.GenericTestUtils;
 import org.apache.hadoop.test.LambdaTestUtils;
 import org.junit.Test;
@@ -164,6 +173,136 @@ public void testNamenodeRpcClientIpProxyWithFailBack() throws Exception {
     }
   }
 
+  @Test
+  @Timeout(30000)
+  public void testNamenodeRpcCallerContextProxyUserNotConfigured()
+      throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    String prefix = DefaultImpersonationProvider.getTestProvider()
+        .getProxySuperuserUserConfKey("fake_router");
+    conf.set(prefix, "fake_joe");
+    conf.set(DefaultImpersonationProvider.getTestProvider()
+        .getProxySuperuserIpConfKey("fake_router"), "*");
+    ProxyUsers.refreshSuperUserGroupsConfiguration(conf);
+    final CallerContext original = CallerContext.getCurrent();
+
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf).build();
+      cluster.waitActive();
+      cluster.getFileSystem().setPermission(
+          new Path("/"), new FsPermission((short) 0777));
+      final MiniDFSCluster dfsCluster = cluster;
+      UserGroupInformation router =
+          UserGroupInformation.createUserForTesting("fake_router",
+              new String[]{"fake_group"});
+      FileSystem routerFs = router.doAs(
+          (PrivilegedExceptionAction<FileSystem>) () ->
+              FileSystem.newInstance(dfsCluster.getURI(), conf));
+
+      // The proxy user cannot be honored, the call must not run as the router
+      CallerContext.setCurrent(new CallerContext.Builder(
+          CallerContext.PROXY_USER_STR + ":fake_joe").build());
+      Path joePath = new Path("/joe");
+      LambdaTestUtils.intercept(AccessControlException.class,
+          () -> routerFs.mkdirs(joePath));
+      CallerContext.setCurrent(original);
+      assertFalse(routerFs.exists(joePath));
+      routerFs.close();
+    } finally {
+      CallerContext.setCurrent(original);
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
+  @Test
+  @Timeout(30000)
+  public void testNamenodeRpcCallerContextProxyUser() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.set(DFS_NAMENODE_CALLER_CONTEXT_PROXY_USERS, "fake_router");
+    String prefix = DefaultImpersonationProvider.getTestProvider()
+        .getProxySuperuserUserConfKey("fake_router");
+    conf.set(prefix, "fake_joe");
+    conf.set(DefaultImpersonationProvider.getTestProvider()
+        .getProxySuperuserIpConfKey("fake_router"), "*");
+    ProxyUsers.refreshSuperUserGroupsConfiguration(conf);
+    final CallerContext original = CallerContext.getCurrent();
+
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf).build();
+      cluster.waitActive();
+      cluster.getFileSystem().setPermission(
+          new Path("/"), new FsPermission((short) 0777));
+      final MiniDFSCluster dfsCluster = cluster;
+      UserGroupInformation router =
+          UserGroupInformation.createUserForTesting("fake_router",
+              new String[]{"fake_group"});
+      FileSystem routerFs = router.doAs(
+          (PrivilegedExceptionAction<FileSystem>) () ->
+              FileSystem.newInstance(dfsCluster.getURI(), conf));
+
+      // The call runs as the user in the caller context
+      CallerContext.setCurrent(new CallerContext.Builder(
+          CallerContext.PROXY_USER_STR + ":fake_joe,clientIp:1.2.3.4")
+          .build());
+      Path joePath = new Path("/joe");
+      routerFs.mkdirs(joePath);
+      assertEquals("fake_joe", routerFs.getFileStatus(joePath).getOwner());
+
+      // A proxy user field that does not lead the context is rejected
+      CallerContext.setCurrent(new CallerContext.Builder(
+          "test," + CallerContext.PROXY_USER_STR + ":fake_joe").build());
+      LambdaTestUtils.intercept(AccessControlException.class,
+          () -> routerFs.mkdirs(new Path("/router")));
+
+      // Without a proxy user field the call runs as the connection user
+      CallerContext.setCurrent(new CallerContext.Builder("test").build());
+      Path routerPath = new Path("/router");
+      routerFs.mkdirs(routerPath);
+      assertEquals("fake_router",
+          routerFs.getFileStatus(routerPath).getOwner());
+
+      // Only the caller context proxy users can set a proxy user
+      UserGroupInformation joe =
+          UserGroupInformation.createUserForTesting("fake_joe",
+              new String[]{"fake_group"});
+      FileSystem joeFs = joe.doAs(
+          (PrivilegedExceptionAction<FileSystem>) () ->
+              FileSystem.newInstance(dfsCluster.getURI(), conf));
+      CallerContext.setCurrent(new CallerContext.Builder(
+          CallerContext.PROXY_USER_STR + ":fake_router").build());
+      LambdaTestUtils.intercept(AccessControlException.class,
+          () -> joeFs.mkdirs(new Path("/joe_router")));
+      joeFs.close();
+
+      // The impersonation has to be authorized
+      CallerContext.setCurrent(new CallerContext.Builder(
+          CallerContext.PROXY_USER_STR + ":fake_bob").build());
+      RemoteException e = LambdaTestUtils.intercept(RemoteException.class,
+          () -> routerFs.mkdirs(new Path("/bob")));
+      assertEquals(AuthorizationException.class.getName(),
+          e.getClassName());
+      routerFs.close();
+
+      // The proxy users are only set for the servers of this namenode
+      Server server = ((NameNodeRpcServer) cluster.getNameNodeRpc())
+          .getClientRpcServer();
+      assertArrayEquals(new String[] {"fake_router"},
+          NameNode.getCallerContextProxyUsers(server));
+      cluster.shutdown();
+      cluster = null;
+      assertNull(NameNode.getCallerContextProxyUsers(server));
+    } finally {
+      CallerContext.setCurrent(original);
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
   @Test
   @Timeout(30000)
   public void testObserverHandleAddBlock() throws Exception {
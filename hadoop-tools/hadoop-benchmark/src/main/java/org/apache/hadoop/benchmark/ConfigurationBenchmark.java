@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Measures the cost of property lookups in a {@link Configuration} loaded
+ * with the default resources, before and after it is frozen.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConfigurationBenchmark {
+
+  static final int KEYS = 64;
+
+  @State(Scope.Benchmark)
+  public static class ConfigurationState {
+    /** If the lookups go to a frozen snapshot of the configuration. */
+    @Param({"false", "true"})
+    private boolean frozen;
+
+    private Configuration conf;
+    private String[] strings;
+    private String[] ints;
+    private String[] booleans;
+    private String[] durations;
+    private String[] unset;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      Configuration base = new Configuration();
+      strings = new String[KEYS];
+      ints = new String[KEYS];
+      booleans = new String[KEYS];
+      durations = new String[KEYS];
+      unset = new String[KEYS];
+      base.set("benchmark.base.dir", "/tmp/benchmark");
+      for (int i = 0; i < KEYS; i++) {
+        strings[i] = "benchmark.string." + i;
+        base.set(strings[i], "${benchmark.base.dir}/dir" + i);
+        ints[i] = "benchmark.int." + i;
+        base.setInt(ints[i], i);
+        booleans[i] = "benchmark.boolean." + i;
+        base.setBoolean(booleans[i], (i & 1) == 0);
+        durations[i] = "benchmark.duration." + i;
+        base.set(durations[i], i + "s");
+        unset[i] = "benchmark.unset." + i;
+      }
+      conf = frozen ? base.freeze() : base;
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+
+    int next() {
+      return next++ & (KEYS - 1);
+    }
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void get(ConfigurationState state, Cursor cursor,
+      Blackhole blackhole) {
+    blackhole.consume(state.conf.get(state.strings[cursor.next()]));
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void getWithDefault(ConfigurationState state, Cursor cursor,
+      Blackhole blackhole) {
+    blackhole.consume(state.conf.get(state.unset[cursor.next()], "default"));
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void getInt(ConfigurationState state, Cursor cursor,
+      Blackhole blackhole) {
+    blackhole.consume(state.conf.getInt(state.ints[cursor.next()], -1));
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void getBoolean(ConfigurationState state, Cursor cursor,
+      Blackhole blackhole) {
+    blackhole.consume(
+        state.conf.getBoolean(state.booleans[cursor.next()], false));
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void getTimeDuration(ConfigurationState state, Cursor cursor,
+      Blackhole blackhole) {
+    blackhole.consume(state.conf.getTimeDuration(
+        state.durations[cursor.next()], 0, TimeUnit.MILLISECONDS));
+  }
+
+  /**
+   * Run the benchmarks.
+   * @param args the name of the benchmark method to run, optional.
+   * @throws Exception any ex.
+   */
+  public static void main(String[] args) throws Exception {
+    OptionsBuilder opts = new OptionsBuilder();
+    opts.include("ConfigurationBenchmark" +
+        (args.length > 0 ? "." + args[0] : ""));
+    opts.jvmArgs("-server", "-Xms256m", "-Xmx1g");
+    opts.forks(1);
+    new Runner(opts.build()).run();
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.server.federation.resolver.MountTableResolver;
+import org.apache.hadoop.hdfs.server.federation.router.RBFConfigKeys;
+import org.apache.hadoop.hdfs.server.federation.store.records.MountTable;
+
+/**
+ * Measures the path resolution and the refresh of the Router mount table
+ * with a large number of mount points.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MountTableResolverBenchmark {
+
+  static final int TEAMS = 500;
+  static final int LOOKUP_PATHS = 1024;
+
+  @State(Scope.Benchmark)
+  public static class MountTableState {
+    /** Number of mount points. */
+    @Param({"50000"})
+    private int entries;
+
+    /** If the resolver caches the resolved locations. */
+    @Param({"false", "true"})
+    private boolean cache;
+
+    private MountTableResolver resolver;
+    private List<MountTable> mounts;
+    private List<MountTable> updatedMounts;
+    private String[] paths;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+      Configuration conf = new Configuration(false);
+      conf.setBoolean(RBFConfigKeys.FEDERATION_MOUNT_TABLE_CACHE_ENABLE, cache);
+      resolver = new MountTableResolver(conf);
+
+      mounts = new ArrayList<>(entries);
+      for (int i = 0; i < entries; i++) {
+        mounts.add(newEntry(i, "ns" + (i % 4)));
+      }
+      resolver.refreshEntries(mounts);
+
+      // Same mount table with a few mount points moved to another namespace
+      updatedMounts = new ArrayList<>(mounts);
+      for (int i = 0; i < entries; i += entries / 10) {
+        updatedMounts.set(i, newEntry(i, "ns-moved"));
+      }
+
+      Random random = new Random(0);
+      paths = new String[LOOKUP_PATHS];
+      for (int i = 0; i < LOOKUP_PATHS; i++) {
+        String src = mounts.get(random.nextInt(entries)).getSourcePath();
+        paths[i] = src + "/year=2024/month=0" + (i % 10) + "/part-" + i;
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      resolver.clear();
+    }
+
+    private MountTable newEntry(int i, String ns) throws IOException {
+      String src = "/data/team" + (i % TEAMS) + "/project" + (i / TEAMS);
+      return MountTable.newInstance(src, Collections.singletonMap(ns, src));
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+  }
+
+  @Benchmark
+  public void getDestinationForPath(MountTableState state, Cursor cursor,
+      Blackhole blackhole) throws IOException {
+    String path = state.paths[cursor.next++ & (LOOKUP_PATHS - 1)];
+    blackhole.consume(state.resolver.getDestinationForPath(path));
+  }
+
+  @Benchmark
+  public void getMountPoints(MountTableState state, Cursor cursor,
+      Blackhole blackhole) throws IOException {
+    int team = cursor.next++ % TEAMS;
+    blackhole.consume(state.resolver.getMountPoints("/data/team" + team));
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void refreshEntries(MountTableState state, Cursor cursor) {
+    // Alternate between the two versions so every refresh applies a diff
+    state.resolver.refreshEntries(
+        (cursor.next++ & 1) == 0 ? state.updatedMounts : state.mounts);
+  }
+
+  /**
+   * Run the benchmarks.
+   * @param args the name of the benchmark method to run, optional.
+   * @throws Exception any ex.
+   */
+  public static void main(String[] args) throws Exception {
+    OptionsBuilder opts = new OptionsBuilder();
+    opts.include("MountTableResolverBenchmark" +
+        (args.length > 0 ? "." + args[0] : ""));
+    opts.jvmArgs("-server", "-Xms256m", "-Xmx2g");
+    opts.forks(1);
+    new Runner(opts.build()).run();
+  }
+}
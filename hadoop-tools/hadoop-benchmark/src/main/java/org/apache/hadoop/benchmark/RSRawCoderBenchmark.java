@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.erasurecode.CodecRegistry;
+import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureCoderFactory;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureDecoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureEncoder;
+
+/**
+ * Compares the Reed-Solomon raw coders encoding and decoding a stripe of
+ * the RS-6-3 schema with several cell sizes. The native coder needs
+ * libhadoop with ISA-L, its runs fail without it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RSRawCoderBenchmark {
+
+  static final int NUM_DATA_UNITS = 6;
+  static final int NUM_PARITY_UNITS = 3;
+  /** Units erased for the decoding: two data units and a parity unit. */
+  static final int[] ERASED_INDEXES = {0, 2, NUM_DATA_UNITS};
+
+  @State(Scope.Thread)
+  public static class CoderState {
+    /** Name of the raw coder, as in io.erasurecode.codec.*.rawcoders. */
+    @Param({"rs-legacy_java", "rs_java", "rs_java_fast", "rs_native"})
+    private String coder;
+
+    /** Number of bytes in each cell. */
+    @Param({"4096", "65536", "1048576"})
+    private int cellSize;
+
+    /** If the cells are in direct buffers. */
+    @Param({"false", "true"})
+    private boolean direct;
+
+    private RawErasureEncoder encoder;
+    private RawErasureDecoder decoder;
+    private ByteBuffer[] data;
+    private ByteBuffer[] parity;
+    private ByteBuffer[] decodeInputs;
+    private ByteBuffer[] decodeOutputs;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+      String codec = coder.substring(0, coder.indexOf('_'));
+      RawErasureCoderFactory factory =
+          CodecRegistry.getInstance().getCoderByName(codec, coder);
+      ErasureCoderOptions options =
+          new ErasureCoderOptions(NUM_DATA_UNITS, NUM_PARITY_UNITS);
+      encoder = factory.createEncoder(options);
+      decoder = factory.createDecoder(options);
+
+      Random random = new Random(0);
+      byte[] bytes = new byte[cellSize];
+      data = new ByteBuffer[NUM_DATA_UNITS];
+      for (int i = 0; i < NUM_DATA_UNITS; i++) {
+        random.nextBytes(bytes);
+        data[i] = allocate();
+        data[i].put(bytes).flip();
+      }
+      parity = new ByteBuffer[NUM_PARITY_UNITS];
+      for (int i = 0; i < NUM_PARITY_UNITS; i++) {
+        parity[i] = allocate();
+      }
+      encode();
+
+      decodeInputs = new ByteBuffer[NUM_DATA_UNITS + NUM_PARITY_UNITS];
+      for (int i = 0; i < NUM_DATA_UNITS; i++) {
+        decodeInputs[i] = data[i].duplicate();
+      }
+      for (int i = 0; i < NUM_PARITY_UNITS; i++) {
+        decodeInputs[NUM_DATA_UNITS + i] = parity[i].duplicate();
+      }
+      for (int index : ERASED_INDEXES) {
+        decodeInputs[index] = null;
+      }
+      decodeOutputs = new ByteBuffer[ERASED_INDEXES.length];
+      for (int i = 0; i < decodeOutputs.length; i++) {
+        decodeOutputs[i] = allocate();
+      }
+    }
+
+    private ByteBuffer allocate() {
+      return direct ? ByteBuffer.allocateDirect(cellSize) :
+          ByteBuffer.allocate(cellSize);
+    }
+
+    private void encode() throws IOException {
+      rewind(data);
+      rewind(parity);
+      encoder.encode(data, parity);
+    }
+
+    private void decode() throws IOException {
+      rewind(decodeInputs);
+      rewind(decodeOutputs);
+      decoder.decode(decodeInputs, ERASED_INDEXES, decodeOutputs);
+    }
+
+    private static void rewind(ByteBuffer[] buffers) {
+      for (ByteBuffer buffer : buffers) {
+        if (buffer != null) {
+          buffer.clear();
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public ByteBuffer[] encode(CoderState state) throws IOException {
+    state.encode();
+    return state.parity;
+  }
+
+  @Benchmark
+  public ByteBuffer[] decode(CoderState state) throws IOException {
+    state.decode();
+    return state.decodeOutputs;
+  }
+
+  /**
+   * Run the benchmarks.
+   * @param args the name of the benchmark method to run, optional.
+   * @throws Exception any ex.
+   */
+  public static void main(String[] args) throws Exception {
+    OptionsBuilder opts = new OptionsBuilder();
+    opts.include("RSRawCoderBenchmark" +
+        (args.length > 0 ? "." + args[0] : ""));
+    opts.jvmArgs("-server", "-Xms256m", "-Xmx2g");
+    opts.forks(1);
+    new Runner(opts.build()).run();
+  }
+}
@@ -51,6 +51,12 @@
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 
+/**
+ * Compares vectored reads with positional reads. The data file is local by
+ * default, but may be on any filesystem, e.g. hdfs://nn:8020/tmp/taxi.orc,
+ * in which case only the benchmarks going through the Hadoop filesystem of
+ * the path are run.
+ */
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.MICROSECONDS)
 public class VectoredReadBenchmark {
@@ -69,7 +75,11 @@ static Path getTestDataPath() {
   @State(Scope.Thread)
   public static class FileSystemChoice {
 
-    @Param({"local", "raw"})
+    /**
+     * The local filesystem, the raw local filesystem, or the filesystem of
+     * the data path, whatever its scheme.
+     */
+    @Param({"local", "raw", "default"})
     private String fileSystemKind;
 
     private Configuration conf;
@@ -79,8 +89,12 @@ public static class FileSystemChoice {
     public void setup() {
       conf = new Configuration();
       try {
-        LocalFileSystem local = FileSystem.getLocal(conf);
-        fs = "raw".equals(fileSystemKind) ? local.getRaw() : local;
+        if ("default".equals(fileSystemKind)) {
+          fs = DATA_PATH.getFileSystem(conf);
+        } else {
+          LocalFileSystem local = FileSystem.getLocal(conf);
+          fs = "raw".equals(fileSystemKind) ? local.getRaw() : local;
+        }
       } catch (IOException e) {
         throw new IllegalArgumentException("Can't get filesystem", e);
       }
@@ -231,12 +245,19 @@ public void syncRead(FileSystemChoice fsChoice,
 
   /**
    * Run the benchmarks.
-   * @param args the pathname of a 100MB data file
+   * @param args the pathname or URI of a 100MB data file
    * @throws Exception any ex.
    */
   public static void main(String[] args) throws Exception {
     OptionsBuilder opts = new OptionsBuilder();
-    opts.include("VectoredReadBenchmark");
+    String scheme = new Path(args[0]).toUri().getScheme();
+    if (scheme == null || "file".equals(scheme)) {
+      opts.include("VectoredReadBenchmark");
+    } else {
+      // Only the filesystem of the path can read a remote file.
+      opts.include("VectoredReadBenchmark\\.(asyncRead|syncRead)");
+      opts.param("fileSystemKind", "default");
+    }
     opts.jvmArgs("-server", "-Xms256m", "-Xmx2g",
         "-D" + DATA_PATH_PROPERTY + "=" + args[0]);
     opts.forks(1);